@@ -2,6 +2,7 @@ plugins {
 	java
 	id("org.springframework.boot") version "4.0.1"
 	id("io.spring.dependency-management") version "1.1.7"
+	id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "com.jolt"
@@ -34,7 +35,7 @@ dependencies {
 	implementation("org.flywaydb:flyway-core")
 	implementation("org.flywaydb:flyway-database-postgresql")
 	implementation("org.hibernate.orm:hibernate-spatial")
-	runtimeOnly("org.postgresql:postgresql")
+	implementation("org.postgresql:postgresql")
 
 	compileOnly("org.projectlombok:lombok")
 	annotationProcessor("org.projectlombok:lombok")
@@ -44,6 +45,14 @@ dependencies {
 	testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
+// Microbenchmarks live in src/jmh/java; run with ./gradlew jmh (optionally -PjmhIncludes=<regex>).
+jmh {
+	findProperty("jmhIncludes")?.let { includes.add(it.toString()) }
+	warmupIterations.set(3)
+	iterations.set(5)
+	fork.set(1)
+}
+
 tasks.withType<Test> {
 	useJUnitPlatform()
 }
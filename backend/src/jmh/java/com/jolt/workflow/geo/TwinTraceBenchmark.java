@@ -0,0 +1,104 @@
+package com.jolt.workflow.geo;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Downstream trace over a synthetic tree-shaped network (a trunk with random branches, ids shaped like
+// the synced ones). Compares the per-request HashMap trace TwinController used to run, the same BFS on a
+// prebuilt HashMap index, and TwinTrace.collect on the CSR snapshot, the traversal /twin/trace runs with no
+// depth, segment or stop limits. Database time is left out of all three.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TwinTraceBenchmark {
+
+    @Param({"10000", "200000"})
+    public int segments;
+
+    private List<TwinTopology.Segment> rows;
+    private Map<String, List<TwinTopology.Segment>> downstreamIndex;
+    private Map<String, TwinTopology.Segment> segmentsByFeatureId;
+    private TwinTopology topology;
+    private String startFeatureId;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        rows = new ArrayList<>(segments);
+        for (int i = 0; i < segments; i++) {
+            // Each new pipe starts at the end node of a random earlier one, so everything hangs off pipe 0.
+            String from = i == 0 ? node(-1) : node(random.nextInt(i));
+            rows.add(new TwinTopology.Segment("seg_" + hex(i), "pipe_" + hex(i), from, node(i)));
+        }
+        downstreamIndex = new HashMap<>();
+        segmentsByFeatureId = new HashMap<>();
+        for (TwinTopology.Segment segment : rows) {
+            segmentsByFeatureId.putIfAbsent(segment.featureId(), segment);
+            downstreamIndex.computeIfAbsent(segment.fromNodeId(), ignored -> new ArrayList<>()).add(segment);
+        }
+        topology = TwinTopology.of(1, rows);
+        startFeatureId = "pipe_" + hex(0);
+    }
+
+    @Benchmark
+    public int legacyPerRequestIndex() {
+        Map<String, TwinTopology.Segment> byFeature = new HashMap<>(rows.size());
+        Map<String, List<TwinTopology.Segment>> downstream = new HashMap<>();
+        for (TwinTopology.Segment segment : rows) {
+            byFeature.putIfAbsent(segment.featureId(), segment);
+            downstream.computeIfAbsent(segment.fromNodeId(), ignored -> new ArrayList<>()).add(segment);
+        }
+        return legacyBfs(byFeature.get(startFeatureId), downstream);
+    }
+
+    @Benchmark
+    public int legacyPrebuiltIndex() {
+        return legacyBfs(segmentsByFeatureId.get(startFeatureId), downstreamIndex);
+    }
+
+    @Benchmark
+    public int csrTrace() throws IOException {
+        return TwinTrace.collect(topology, topology.resolveIndex(startFeatureId), false,
+                TwinTrace.UNLIMITED, TwinTrace.UNLIMITED, TwinTrace.Stops.NONE).segments().length;
+    }
+
+    private static int legacyBfs(TwinTopology.Segment start, Map<String, List<TwinTopology.Segment>> adjacency) {
+        Set<String> visited = new LinkedHashSet<>();
+        ArrayDeque<TwinTopology.Segment> queue = new ArrayDeque<>();
+        queue.add(start);
+        visited.add(start.id());
+        while (!queue.isEmpty()) {
+            TwinTopology.Segment current = queue.removeFirst();
+            List<TwinTopology.Segment> candidates = adjacency.get(current.toNodeId());
+            if (candidates == null) continue;
+            for (TwinTopology.Segment next : candidates) {
+                if (visited.add(next.id())) queue.addLast(next);
+            }
+        }
+        return visited.size();
+    }
+
+    private static String node(int i) {
+        return "node_" + hex(i + 1);
+    }
+
+    private static String hex(int i) {
+        return String.format("%016x", (long) i * 0x9E3779B97F4A7C15L);
+    }
+}
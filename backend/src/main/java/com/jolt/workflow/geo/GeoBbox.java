@@ -0,0 +1,14 @@
+package com.jolt.workflow.geo;
+
+// Value-typed bounding box for records that carry one; a double[] would break record equals / hashCode.
+record GeoBbox(double minLon, double minLat, double maxLon, double maxLat) {
+
+    static GeoBbox parse(String bbox) {
+        double[] b = GeoFeatureQuery.parseBbox(bbox);
+        return new GeoBbox(b[0], b[1], b[2], b[3]);
+    }
+
+    boolean intersects(GeoFeatureChangedEvent.Footprint footprint) {
+        return footprint.intersects(minLon, minLat, maxLon, maxLat);
+    }
+}
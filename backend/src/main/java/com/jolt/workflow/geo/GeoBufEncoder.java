@@ -0,0 +1,110 @@
+package com.jolt.workflow.geo;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.springframework.http.MediaType;
+import tools.jackson.databind.JsonNode;
+
+// Builds a Geobuf (mapbox/geobuf) FeatureCollection one feature at a time. Keys are dictionary-encoded and
+// written ahead of the collection in finish(), as decoders expect them first.
+final class GeoBufEncoder {
+
+    static final MediaType MEDIA_TYPE = MediaType.parseMediaType("application/x-protobuf");
+
+    private static final int DEFAULT_PRECISION = 6;
+
+    private final int precision;
+    private final GeoBufGeometry geometryEncoder;
+    private final Map<String, Integer> keyIndexes = new LinkedHashMap<>();
+    private final ProtobufWriter features = new ProtobufWriter(64 * 1024);
+    private final ProtobufWriter feature = new ProtobufWriter(1024);
+    private final ProtobufWriter value = new ProtobufWriter(64);
+    private long[] propertyIndexes = new long[32];
+    private int count;
+
+    GeoBufEncoder(int precision) {
+        this.precision = precision;
+        this.geometryEncoder = new GeoBufGeometry(precision);
+    }
+
+    // An explicit format wins; otherwise the first of protobuf / JSON listed in Accept decides.
+    static boolean requested(String format, String accept) {
+        if (format != null && !format.isBlank()) {
+            String normalized = format.trim().toLowerCase(Locale.ROOT);
+            if ("geobuf".equals(normalized)) return true;
+            if ("geojson".equals(normalized) || "json".equals(normalized)) return false;
+            throw new IllegalArgumentException("format must be geojson or geobuf");
+        }
+        if (accept == null || accept.isBlank()) return false;
+        for (String part : accept.split(",")) {
+            String type = part.split(";")[0].trim().toLowerCase(Locale.ROOT);
+            if ("application/x-protobuf".equals(type) || "application/geobuf".equals(type)) return true;
+            if (type.endsWith("/json") || type.endsWith("+json")) return false;
+        }
+        return false;
+    }
+
+    int count() {
+        return count;
+    }
+
+    void addFeature(String id, byte[] wkb, JsonNode properties) {
+        feature.reset();
+        if (wkb != null) {
+            feature.writeMessageField(1, geometryEncoder.encode(wkb));
+        }
+        if (id != null) {
+            feature.writeStringField(11, id);
+        }
+
+        int indexCount = 0;
+        int valueIndex = 0;
+        if (properties != null && properties.isObject()) {
+            for (Map.Entry<String, JsonNode> entry : properties.properties()) {
+                value.reset();
+                writeValue(entry.getValue());
+                feature.writeMessageField(13, value);
+                if (indexCount + 2 > propertyIndexes.length) {
+                    propertyIndexes = java.util.Arrays.copyOf(propertyIndexes, propertyIndexes.length * 2);
+                }
+                propertyIndexes[indexCount++] = keyIndexes.computeIfAbsent(entry.getKey(), k -> keyIndexes.size());
+                propertyIndexes[indexCount++] = valueIndex++;
+            }
+        }
+        feature.writePackedVarintField(14, propertyIndexes, indexCount);
+
+        features.writeMessageField(1, feature);
+        count++;
+    }
+
+    // Data { keys = 1; precision = 3; feature_collection = 4 }
+    byte[] finish() {
+        ProtobufWriter data = new ProtobufWriter(features.size() + keyIndexes.size() * 16 + 16);
+        for (String key : keyIndexes.keySet()) {
+            data.writeStringField(1, key);
+        }
+        if (precision != DEFAULT_PRECISION) {
+            data.writeVarintField(3, precision);
+        }
+        data.writeMessageField(4, features);
+        return data.toByteArray();
+    }
+
+    private void writeValue(JsonNode node) {
+        if (node.isTextual()) {
+            value.writeStringField(1, node.asText());
+        } else if (node.isBoolean()) {
+            value.writeBooleanField(5, node.asBoolean());
+        } else if (node.isIntegralNumber() && node.canConvertToLong()) {
+            long v = node.asLong();
+            if (v >= 0) value.writeVarintField(3, v);
+            else value.writeVarintField(4, -v);
+        } else if (node.isNumber()) {
+            value.writeDoubleField(2, node.asDouble());
+        } else {
+            // null, objects and arrays travel as JSON text
+            value.writeStringField(6, node.toString());
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.jolt.workflow.geo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Encodes (ISO or extended) WKB into a Geobuf Geometry message: coordinates quantized by 10^precision and
+// delta-encoded per ring, closing points dropped, ring/part lengths only where Geobuf needs them.
+final class GeoBufGeometry {
+
+    static final int POINT = 0;
+    static final int MULTIPOINT = 1;
+    static final int LINESTRING = 2;
+    static final int MULTILINESTRING = 3;
+    static final int POLYGON = 4;
+    static final int MULTIPOLYGON = 5;
+    static final int GEOMETRYCOLLECTION = 6;
+
+    private final double scale;
+
+    GeoBufGeometry(int precision) {
+        this.scale = Math.pow(10, precision);
+    }
+
+    ProtobufWriter encode(byte[] wkb) {
+        ByteBuffer in = ByteBuffer.wrap(wkb);
+        ProtobufWriter out = new ProtobufWriter(wkb.length / 2 + 16);
+        writeGeometry(in, out);
+        return out;
+    }
+
+    private void writeGeometry(ByteBuffer in, ProtobufWriter out) {
+        Header header = readHeader(in);
+        LongList lengths = new LongList();
+        LongList coords = new LongList();
+        switch (header.type()) {
+            case 1 -> {
+                out.writeVarintField(1, POINT);
+                double x = in.getDouble();
+                double y = in.getDouble();
+                skipExtraDims(in, header, 1);
+                if (!Double.isNaN(x) && !Double.isNaN(y)) {
+                    coords.add(Math.round(x * scale));
+                    coords.add(Math.round(y * scale));
+                }
+            }
+            case 2 -> {
+                out.writeVarintField(1, LINESTRING);
+                readLine(in, header, coords, false);
+            }
+            case 3 -> {
+                out.writeVarintField(1, POLYGON);
+                int rings = in.getInt();
+                long[] ringLengths = new long[rings];
+                for (int r = 0; r < rings; r++) {
+                    ringLengths[r] = readLine(in, header, coords, true);
+                }
+                if (rings != 1) {
+                    for (long length : ringLengths) lengths.add(length);
+                }
+            }
+            case 4 -> {
+                out.writeVarintField(1, MULTIPOINT);
+                int points = in.getInt();
+                long sumX = 0;
+                long sumY = 0;
+                for (int i = 0; i < points; i++) {
+                    Header pointHeader = readHeader(in);
+                    long x = Math.round(in.getDouble() * scale);
+                    long y = Math.round(in.getDouble() * scale);
+                    skipExtraDims(in, pointHeader, 1);
+                    coords.add(x - sumX);
+                    coords.add(y - sumY);
+                    sumX = x;
+                    sumY = y;
+                }
+            }
+            case 5 -> {
+                out.writeVarintField(1, MULTILINESTRING);
+                int lines = in.getInt();
+                long[] lineLengths = new long[lines];
+                for (int i = 0; i < lines; i++) {
+                    lineLengths[i] = readLine(in, readHeader(in), coords, false);
+                }
+                if (lines != 1) {
+                    for (long length : lineLengths) lengths.add(length);
+                }
+            }
+            case 6 -> {
+                out.writeVarintField(1, MULTIPOLYGON);
+                int polygons = in.getInt();
+                LongList polygonLengths = new LongList();
+                polygonLengths.add(polygons);
+                boolean single = polygons == 1;
+                for (int p = 0; p < polygons; p++) {
+                    Header polygonHeader = readHeader(in);
+                    int rings = in.getInt();
+                    polygonLengths.add(rings);
+                    if (rings != 1) single = false;
+                    for (int r = 0; r < rings; r++) {
+                        polygonLengths.add(readLine(in, polygonHeader, coords, true));
+                    }
+                }
+                if (!single) {
+                    lengths = polygonLengths;
+                }
+            }
+            case 7 -> {
+                out.writeVarintField(1, GEOMETRYCOLLECTION);
+                int parts = in.getInt();
+                for (int i = 0; i < parts; i++) {
+                    ProtobufWriter part = new ProtobufWriter();
+                    writeGeometry(in, part);
+                    out.writeMessageField(4, part);
+                }
+            }
+            default -> throw new IllegalArgumentException("unsupported_wkb_type_" + header.type());
+        }
+        out.writePackedVarintField(2, lengths.values, lengths.size);
+        out.writePackedSVarintField(3, coords.values, coords.size);
+    }
+
+    // Appends one ring/line (delta-encoded from zero) and returns the number of points written.
+    private long readLine(ByteBuffer in, Header header, LongList coords, boolean closed) {
+        int points = in.getInt();
+        int written = closed ? Math.max(0, points - 1) : points;
+        long sumX = 0;
+        long sumY = 0;
+        for (int i = 0; i < points; i++) {
+            double x = in.getDouble();
+            double y = in.getDouble();
+            skipExtraDims(in, header, 1);
+            if (i >= written) continue;
+            long qx = Math.round(x * scale);
+            long qy = Math.round(y * scale);
+            coords.add(qx - sumX);
+            coords.add(qy - sumY);
+            sumX = qx;
+            sumY = qy;
+        }
+        return written;
+    }
+
+    private static void skipExtraDims(ByteBuffer in, Header header, int points) {
+        int extra = header.dims() - 2;
+        if (extra > 0) {
+            in.position(in.position() + extra * 8 * points);
+        }
+    }
+
+    private static Header readHeader(ByteBuffer in) {
+        in.order(in.get() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        int rawType = in.getInt();
+        int dims = 2;
+        // Extended WKB flags (PostGIS ST_AsEWKB)
+        if ((rawType & 0x80000000) != 0) dims++;
+        if ((rawType & 0x40000000) != 0) dims++;
+        if ((rawType & 0x20000000) != 0) in.getInt();
+        int type = rawType & 0x0FFFFFFF;
+        // ISO WKB: 1000 Z, 2000 M, 3000 ZM
+        if (type >= 3000) {
+            dims += 2;
+            type -= 3000;
+        } else if (type >= 1000) {
+            dims += 1;
+            type -= type >= 2000 ? 2000 : 1000;
+        }
+        return new Header(type, dims);
+    }
+
+    private record Header(int type, int dims) {
+    }
+
+    private static final class LongList {
+        private long[] values = new long[32];
+        private int size;
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
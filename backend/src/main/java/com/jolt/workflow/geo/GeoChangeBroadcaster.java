@@ -0,0 +1,168 @@
+package com.jolt.workflow.geo;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+// Fans committed change events out to SSE subscribers. Publishing only offers to bounded queues; each
+// subscriber drains its own queue on a virtual thread, so idle or slow clients never block a writer.
+@Component
+public class GeoChangeBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(GeoChangeBroadcaster.class);
+
+    private final ObjectMapper objectMapper;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    // One permit per open subscription, taken before it is registered and returned when it is removed.
+    private final Semaphore slots;
+    private final long timeoutMs;
+    private final long heartbeatMs;
+    private final int queueCapacity;
+
+    public GeoChangeBroadcaster(
+            ObjectMapper objectMapper,
+            @Value("${app.geo.events.max-subscribers:500}") int maxSubscribers,
+            @Value("${app.geo.events.timeout-ms:1800000}") long timeoutMs,
+            @Value("${app.geo.events.heartbeat-ms:25000}") long heartbeatMs,
+            @Value("${app.geo.events.queue-capacity:256}") int queueCapacity
+    ) {
+        this.objectMapper = objectMapper;
+        this.slots = new Semaphore(Math.max(1, maxSubscribers));
+        this.timeoutMs = Math.max(0L, timeoutMs);
+        this.heartbeatMs = Math.max(1000L, heartbeatMs);
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    // Returns null when the subscriber limit is reached.
+    public SseEmitter subscribe(GeoChangeFilter filter) {
+        if (!slots.tryAcquire()) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscription subscription = new Subscription(filter, emitter, new ArrayBlockingQueue<>(queueCapacity));
+        subscriptions.add(subscription);
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(e -> subscription.close());
+        subscription.offer(new Pending("ready", "{}"));
+        Thread.ofVirtual().name("geo-sse-", subscription.hashCode()).start(subscription::drain);
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFeatureChanged(GeoFeatureChangedEvent event) {
+        if (subscriptions.isEmpty()) return;
+        ObjectNode data = objectMapper.createObjectNode();
+        data.put("featureId", event.featureId());
+        data.put("action", event.action());
+        ArrayNode layers = data.putArray("layers");
+        event.layers().forEach(layers::add);
+        ArrayNode bounds = data.putArray("bboxes");
+        for (GeoFeatureChangedEvent.Footprint footprint : event.footprints()) {
+            bounds.addArray()
+                    .add(footprint.minLon()).add(footprint.minLat())
+                    .add(footprint.maxLon()).add(footprint.maxLat());
+        }
+        Pending pending = new Pending("feature", data.toString());
+        for (Subscription subscription : subscriptions) {
+            if (subscription.filter.matches(event.footprints())) {
+                subscription.offer(pending);
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTopologyChanged(TwinTopologyChangedEvent event) {
+        if (subscriptions.isEmpty()) return;
+        ObjectNode data = objectMapper.createObjectNode();
+        data.put("featureId", event.featureId());
+        data.put("action", event.action());
+        if (event.segmentId() == null) data.putNull("segmentId");
+        else data.put("segmentId", event.segmentId());
+        ArrayNode nodeIds = data.putArray("nodeIds");
+        event.nodeIds().forEach(nodeIds::add);
+        Pending pending = new Pending("topology", data.toString());
+        for (Subscription subscription : subscriptions) {
+            if (subscription.filter.matches(event.footprint())) {
+                subscription.offer(pending);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Subscription subscription : subscriptions) {
+            subscription.emitter.complete();
+            subscription.close();
+        }
+    }
+
+    private record Pending(String name, String data) {
+    }
+
+    private final class Subscription {
+        private final GeoChangeFilter filter;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Pending> queue;
+        private volatile boolean closed;
+
+        private Subscription(GeoChangeFilter filter, SseEmitter emitter, BlockingQueue<Pending> queue) {
+            this.filter = filter;
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+
+        // A client that falls a full queue behind is dropped; on reconnect it resyncs via /features/changes.
+        private void offer(Pending pending) {
+            if (closed) return;
+            if (!queue.offer(pending)) {
+                log.debug("geo_events_slow_subscriber_dropped");
+                emitter.complete();
+                close();
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!closed) {
+                    Pending pending = queue.poll(heartbeatMs, TimeUnit.MILLISECONDS);
+                    if (closed) break;
+                    if (pending == null) {
+                        emitter.send(SseEmitter.event().comment("keepalive"));
+                    } else {
+                        emitter.send(SseEmitter.event().name(pending.name()).data(pending.data()));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | IllegalStateException e) {
+                log.debug("geo_events_subscriber_disconnected: {}", e.getMessage());
+            } finally {
+                close();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            if (subscriptions.remove(this)) slots.release();
+        }
+    }
+}
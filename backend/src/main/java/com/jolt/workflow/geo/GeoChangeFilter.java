@@ -0,0 +1,25 @@
+package com.jolt.workflow.geo;
+
+import java.util.List;
+
+// Subscriber-side filter for pushed change events; empty layers / null bbox match everything.
+record GeoChangeFilter(List<String> layers, GeoBbox bbox) {
+
+    static GeoChangeFilter of(String layers, String bbox) {
+        GeoBbox bounds = bbox == null || bbox.isBlank() ? null : GeoBbox.parse(bbox);
+        return new GeoChangeFilter(GeoLayerNames.parseQueriedLayers(layers), bounds);
+    }
+
+    boolean matches(List<GeoFeatureChangedEvent.Footprint> footprints) {
+        for (GeoFeatureChangedEvent.Footprint footprint : footprints) {
+            if (matches(footprint)) return true;
+        }
+        return false;
+    }
+
+    boolean matches(GeoFeatureChangedEvent.Footprint footprint) {
+        if (footprint == null) return layers.isEmpty() && bbox == null;
+        if (!layers.isEmpty() && !layers.contains(footprint.layer())) return false;
+        return bbox == null || bbox.intersects(footprint);
+    }
+}
@@ -0,0 +1,34 @@
+package com.jolt.workflow.geo;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/v1")
+public class GeoChangeStreamController {
+
+    private final GeoChangeBroadcaster broadcaster;
+
+    public GeoChangeStreamController(GeoChangeBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+    }
+
+    // Events: "feature" (featureId, action, layers, bboxes) and "topology" (featureId, action, segmentId, nodeIds).
+    @GetMapping(value = "/features/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChanges(
+            @RequestParam(name = "layers", required = false) String layers,
+            @RequestParam(name = "bbox", required = false) String bbox
+    ) {
+        SseEmitter emitter = broadcaster.subscribe(GeoChangeFilter.of(layers, bbox));
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+}
@@ -0,0 +1,59 @@
+package com.jolt.workflow.geo;
+
+import java.util.Locale;
+
+// How points are bucketed per zoom: a lon/lat grid of ~64 screen pixels, or a geohash of matching length.
+enum GeoClusterMode {
+    GRID,
+    GEOHASH;
+
+    private static final double CELL_PIXELS = 64.0;
+    private static final double TILE_PIXELS = 256.0;
+
+    static GeoClusterMode parse(String mode) {
+        if (mode == null || mode.isBlank()) return null;
+        switch (mode.trim().toLowerCase(Locale.ROOT)) {
+            case "grid":
+                return GRID;
+            case "geohash":
+                return GEOHASH;
+            default:
+                throw new IllegalArgumentException("cluster must be grid or geohash");
+        }
+    }
+
+    static int requireZoom(Integer zoom) {
+        if (zoom == null) {
+            throw new IllegalArgumentException("zoom is required for clustering");
+        }
+        if (zoom < 0 || zoom > GeoLod.MAX_ZOOM) {
+            throw new IllegalArgumentException("zoom must be between 0 and " + GeoLod.MAX_ZOOM);
+        }
+        return zoom;
+    }
+
+    static double gridCellDegrees(int zoom) {
+        return 360.0 / Math.pow(2, zoom) * (CELL_PIXELS / TILE_PIXELS);
+    }
+
+    // Geohash length whose cell is roughly as wide as a grid cell at this zoom.
+    static int geohashPrecision(int zoom) {
+        return Math.max(1, Math.min(9, (zoom * 2 + 4) / 5));
+    }
+
+    // SQL expression over lon/lat columns; the parameters bind in order.
+    String cellSql(String lonColumn, String latColumn) {
+        if (this == GRID) {
+            return "floor(" + lonColumn + " / ?)::bigint || ':' || floor(" + latColumn + " / ?)::bigint";
+        }
+        return "ST_GeoHash(ST_SetSRID(ST_MakePoint(" + lonColumn + ", " + latColumn + "), 4326), ?)";
+    }
+
+    Object[] cellParams(int zoom) {
+        if (this == GRID) {
+            double cell = gridCellDegrees(zoom);
+            return new Object[] {cell, cell};
+        }
+        return new Object[] {geohashPrecision(zoom)};
+    }
+}
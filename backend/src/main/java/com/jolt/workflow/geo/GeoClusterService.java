@@ -0,0 +1,194 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+// Server-side point clustering for pipe nodes and buildings. Whole-campus cells are cached per
+// (target, mode, zoom, visible) and cut to the requested bbox in memory; writes drop the affected target.
+@Component
+public class GeoClusterService {
+
+    enum Target { NODES, BUILDINGS }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final long ttlMs;
+    private final Map<ClusterKey, CachedCells> cache = new ConcurrentHashMap<>();
+    private final Map<Target, AtomicLong> generations = Map.of(
+            Target.NODES, new AtomicLong(),
+            Target.BUILDINGS, new AtomicLong()
+    );
+
+    public GeoClusterService(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            @Value("${app.geo.cluster-cache.ttl-ms:300000}") long ttlMs
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.ttlMs = Math.max(0L, ttlMs);
+    }
+
+    public ObjectNode cluster(Target target, GeoClusterMode mode, int zoom, Boolean visible, double[] bbox) {
+        ClusterKey key = new ClusterKey(target, mode, zoom, target == Target.BUILDINGS ? visible : null);
+        long now = System.currentTimeMillis();
+        CachedCells cached = cache.get(key);
+        boolean hit = cached != null && (ttlMs == 0L || now - cached.loadedAt() <= ttlMs);
+        if (!hit) {
+            long generation = generations.get(target).get();
+            cached = new CachedCells(loadCells(key), now);
+            // A write during the load means the cells may already be stale; serve them once, don't keep them.
+            if (generations.get(target).get() == generation) {
+                cache.put(key, cached);
+            }
+        }
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("type", "FeatureCollection");
+        root.put("cluster", mode.name().toLowerCase(Locale.ROOT));
+        root.put("zoom", zoom);
+        root.put("cacheHit", hit);
+        ArrayNode features = root.putArray("features");
+        for (Cell cell : cached.cells()) {
+            if (bbox != null && !cell.intersects(bbox)) continue;
+            ObjectNode feature = features.addObject();
+            feature.put("type", "Feature");
+            feature.put("id", "cluster:" + cell.cellId());
+            ObjectNode properties = feature.putObject("properties");
+            properties.put("assetType", target == Target.NODES ? "pipe_node_cluster" : "building_cluster");
+            properties.put("cluster", cell.count() > 1);
+            properties.put("count", cell.count());
+            properties.put("status", cell.healthStatus());
+            if (cell.count() == 1) {
+                properties.put("assetId", cell.sampleId());
+            }
+            properties.putArray("bbox")
+                    .add(cell.minLon()).add(cell.minLat())
+                    .add(cell.maxLon()).add(cell.maxLat());
+            ObjectNode geometry = feature.putObject("geometry");
+            geometry.put("type", "Point");
+            geometry.putArray("coordinates").add(cell.lon()).add(cell.lat());
+        }
+        return root;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTopologyChanged(TwinTopologyChangedEvent event) {
+        // Node positions and segment health feed both targets (buildings roll up serving pipes).
+        invalidate(Target.NODES);
+        invalidate(Target.BUILDINGS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFeatureChanged(GeoFeatureChangedEvent event) {
+        if (event.layers().contains("buildings")) {
+            invalidate(Target.BUILDINGS);
+        }
+    }
+
+    void invalidate(Target target) {
+        generations.get(target).incrementAndGet();
+        cache.keySet().removeIf(key -> key.target() == target);
+    }
+
+    private List<Cell> loadCells(ClusterKey key) {
+        List<Object> params = new ArrayList<>();
+        String pointsSql;
+        if (key.target() == Target.NODES) {
+            pointsSql = "WITH segment_refs AS (" +
+                    "  SELECT from_node_id AS node_id, status FROM pipe_segments " +
+                    "  UNION ALL " +
+                    "  SELECT to_node_id AS node_id, status FROM pipe_segments" +
+                    "), node_health AS (" +
+                    "  SELECT node_id, " + TwinHealthSql.worstStatus("status") + " AS health_status " +
+                    "  FROM segment_refs GROUP BY node_id" +
+                    "), points AS (" +
+                    "  SELECT n.id, ST_X(n.geom) AS lon, ST_Y(n.geom) AS lat, " +
+                    "         COALESCE(h.health_status, 'normal') AS health_status " +
+                    "  FROM pipe_nodes n LEFT JOIN node_health h ON h.node_id = n.id " +
+                    "  WHERE n.geom IS NOT NULL" +
+                    ")";
+        } else {
+            String visibleFilter = "";
+            if (key.visible() != null) {
+                visibleFilter = " AND b.visible = ?";
+                params.add(key.visible());
+            }
+            pointsSql = "WITH building_health AS (" +
+                    "  SELECT r.target_id AS building_id, " + TwinHealthSql.worstStatus("s.status") + " AS health_status " +
+                    "  FROM asset_relations r JOIN pipe_segments s ON s.feature_id = r.source_id " +
+                    "  WHERE r.source_type = 'pipe' AND r.target_type = 'building' AND r.relation_type = 'serves' " +
+                    "  GROUP BY r.target_id" +
+                    "), anchors AS (" +
+                    "  SELECT b.id, ST_PointOnSurface(b.geom) AS pt FROM geo_features b " +
+                    "  WHERE b.layer = 'buildings'" + visibleFilter +
+                    "), points AS (" +
+                    "  SELECT a.id, ST_X(a.pt) AS lon, ST_Y(a.pt) AS lat, " +
+                    "         COALESCE(h.health_status, 'normal') AS health_status " +
+                    "  FROM anchors a LEFT JOIN building_health h ON h.building_id = a.id" +
+                    ")";
+        }
+        for (Object param : key.mode().cellParams(key.zoom())) {
+            params.add(param);
+        }
+
+        String sql = pointsSql + ", cells AS (" +
+                "  SELECT " + key.mode().cellSql("lon", "lat") + " AS cell_id, id, lon, lat, health_status FROM points" +
+                ") SELECT cell_id, COUNT(*) AS point_count, MIN(id) AS sample_id, " +
+                "  AVG(lon) AS lon, AVG(lat) AS lat, MIN(lon) AS min_lon, MIN(lat) AS min_lat, " +
+                "  MAX(lon) AS max_lon, MAX(lat) AS max_lat, " +
+                TwinHealthSql.worstStatus("health_status") + " AS health_status " +
+                "FROM cells GROUP BY cell_id ORDER BY cell_id";
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new Cell(
+                rs.getString("cell_id"),
+                rs.getInt("point_count"),
+                rs.getString("sample_id"),
+                rs.getDouble("lon"),
+                rs.getDouble("lat"),
+                rs.getDouble("min_lon"),
+                rs.getDouble("min_lat"),
+                rs.getDouble("max_lon"),
+                rs.getDouble("max_lat"),
+                rs.getString("health_status")
+        ), params.toArray());
+    }
+
+    private record ClusterKey(Target target, GeoClusterMode mode, int zoom, Boolean visible) {
+    }
+
+    private record CachedCells(List<Cell> cells, long loadedAt) {
+    }
+
+    private record Cell(
+            String cellId,
+            int count,
+            String sampleId,
+            double lon,
+            double lat,
+            double minLon,
+            double minLat,
+            double maxLon,
+            double maxLat,
+            String healthStatus
+    ) {
+        boolean intersects(double[] bbox) {
+            return minLon <= bbox[2] && maxLon >= bbox[0] && minLat <= bbox[3] && maxLat >= bbox[1];
+        }
+    }
+}
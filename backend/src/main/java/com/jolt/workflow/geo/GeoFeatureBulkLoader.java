@@ -0,0 +1,466 @@
+package com.jolt.workflow.geo;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+// Streams a FeatureCollection / NDJSON body through COPY into a temp staging table, then merges it into
+// geo_features in one upsert. Invalid items are reported per index and skipped; the rest commit together.
+@Component
+public class GeoFeatureBulkLoader {
+
+    static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int COPY_FLUSH_CHARS = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final GeoFeatureChangePublisher changePublisher;
+    private final double nodeSnapToleranceMeters;
+
+    public GeoFeatureBulkLoader(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            GeoFeatureChangePublisher changePublisher,
+            @Value("${app.twin.node-snap-tolerance-m:0.1}") double nodeSnapToleranceMeters
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.changePublisher = changePublisher;
+        this.nodeSnapToleranceMeters = Math.max(0.0, nodeSnapToleranceMeters);
+    }
+
+    public ObjectNode load(InputStream in, boolean ndjson, String defaultLayer, boolean rebuildTopology) {
+        return transactionTemplate.execute(status -> loadInTransaction(in, ndjson, defaultLayer, rebuildTopology));
+    }
+
+    private ObjectNode loadInTransaction(InputStream in, boolean ndjson, String defaultLayer, boolean rebuildTopology) {
+        jdbcTemplate.execute(
+                "CREATE TEMP TABLE geo_features_bulk_stage (" +
+                        "seq INT NOT NULL, id TEXT NOT NULL, layer TEXT NOT NULL, geometry TEXT NOT NULL, " +
+                        "properties TEXT NOT NULL, visible BOOLEAN NOT NULL, geom geometry" +
+                        ") ON COMMIT DROP"
+        );
+
+        List<ItemError> errors = new ArrayList<>();
+        int received = jdbcTemplate.execute((ConnectionCallback<Integer>) con -> {
+            CopyIn copyIn = con.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                    "COPY geo_features_bulk_stage (seq, id, layer, geometry, properties, visible) FROM STDIN"
+            );
+            try {
+                StagingWriter writer = new StagingWriter(copyIn, defaultLayer, errors);
+                readFeatures(in, ndjson, writer);
+                writer.flush();
+                copyIn.endCopy();
+                return writer.received;
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        });
+
+        jdbcTemplate.update("UPDATE geo_features_bulk_stage SET geom = geo_try_geom_from_geojson(geometry)");
+        jdbcTemplate.query(
+                "SELECT seq, id FROM geo_features_bulk_stage WHERE geom IS NULL",
+                rs -> {
+                    errors.add(new ItemError(rs.getInt("seq"), rs.getString("id"), "invalid_geometry"));
+                }
+        );
+        // Repeated ids: the last occurrence wins, earlier ones are reported.
+        jdbcTemplate.query(
+                "SELECT seq, id FROM (" +
+                        "  SELECT seq, id, row_number() OVER (PARTITION BY id ORDER BY seq DESC) AS rn " +
+                        "  FROM geo_features_bulk_stage WHERE geom IS NOT NULL" +
+                        ") d WHERE rn > 1",
+                rs -> {
+                    errors.add(new ItemError(rs.getInt("seq"), rs.getString("id"), "duplicate_id"));
+                }
+        );
+
+        List<GeoFeatureChangedEvent.Footprint> footprints = new ArrayList<>(queryLayerExtents(
+                "SELECT g.layer, ST_Extent(g.geom) AS extent FROM geo_features g " +
+                        "WHERE g.id IN (SELECT id FROM geo_features_bulk_stage WHERE geom IS NOT NULL) GROUP BY g.layer"
+        ));
+
+        Map<String, Object> merged = jdbcTemplate.queryForMap(
+                "WITH merged AS (" +
+                        "  INSERT INTO geo_features (id, layer, geom, properties, visible) " +
+                        "  SELECT DISTINCT ON (id) id, layer, geom, properties::jsonb, visible " +
+                        "  FROM geo_features_bulk_stage WHERE geom IS NOT NULL " +
+                        "  ORDER BY id, seq DESC " +
+                        "  ON CONFLICT (id) DO UPDATE " +
+                        "  SET layer = EXCLUDED.layer, geom = EXCLUDED.geom, " +
+                        "      properties = EXCLUDED.properties, visible = EXCLUDED.visible " +
+                        "  RETURNING (xmax = 0) AS inserted" +
+                        ") SELECT COUNT(*) FILTER (WHERE inserted) AS inserted, " +
+                        "         COUNT(*) FILTER (WHERE NOT inserted) AS updated FROM merged"
+        );
+        long inserted = ((Number) merged.get("inserted")).longValue();
+        long updated = ((Number) merged.get("updated")).longValue();
+
+        footprints.addAll(queryLayerExtents(
+                "SELECT layer, ST_Extent(geom) AS extent FROM geo_features_bulk_stage WHERE geom IS NOT NULL GROUP BY layer"
+        ));
+
+        ObjectNode topology = null;
+        if (rebuildTopology) {
+            topology = rebuildPipeTopology();
+        }
+
+        changePublisher.publishBulk("bulk_import", footprints);
+        if (topology != null && topology.path("segments").asLong() > 0) {
+            changePublisher.publishTopology(null, "bulk_import", null, List.of(), null);
+        }
+
+        errors.sort(Comparator.comparingInt(ItemError::index));
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("ok", true);
+        result.put("received", received);
+        result.put("inserted", inserted);
+        result.put("updated", updated);
+        result.put("failed", errors.size());
+        ArrayNode errorArray = result.putArray("errors");
+        for (ItemError error : errors.subList(0, Math.min(errors.size(), MAX_REPORTED_ERRORS))) {
+            ObjectNode item = errorArray.addObject();
+            item.put("index", error.index());
+            if (error.id() == null) item.putNull("id");
+            else item.put("id", error.id());
+            item.put("error", error.error());
+        }
+        result.put("errorsTruncated", errors.size() > MAX_REPORTED_ERRORS);
+        if (topology != null) {
+            result.set("topology", topology);
+        }
+        return result;
+    }
+
+    // Points staged endpoints at the nearest existing node within the snap tolerance, taking over its
+    // coordinates so the node upsert leaves it where it is, as TwinWriteController.snapToNode does per pipe.
+    private void snapEndpoints(String idColumn, String lonColumn, String latColumn, String excludeIdSql) {
+        String point = "ST_SetSRID(ST_MakePoint(e." + lonColumn + "::double precision, e." + latColumn + "::double precision), 4326)";
+        jdbcTemplate.update(
+                "WITH snapped AS (" +
+                        "  SELECT e.feature_id, k.id, ST_X(k.geom) AS lon, ST_Y(k.geom) AS lat " +
+                        "  FROM geo_features_bulk_endpoints e CROSS JOIN LATERAL (" +
+                        "    SELECT n.id, n.geom FROM pipe_nodes n " +
+                        "    WHERE n.geom IS NOT NULL AND n.id IS DISTINCT FROM " + excludeIdSql + " " +
+                        "    ORDER BY n.geom <-> " + point + " LIMIT 1" +
+                        "  ) k WHERE ST_Distance(k.geom::geography, " + point + "::geography) <= ?" +
+                        ") " +
+                        "UPDATE geo_features_bulk_endpoints e SET " + idColumn + " = s.id, " +
+                        lonColumn + " = s.lon, " + latColumn + " = s.lat " +
+                        "FROM snapped s WHERE s.feature_id = e.feature_id",
+                nodeSnapToleranceMeters
+        );
+    }
+
+    // Joins staged endpoints that lie within the snap tolerance of each other, which snapping to existing nodes
+    // cannot catch when both ends arrive in the same batch. Each DBSCAN cluster (minpoints 1, in Web Mercator
+    // with eps scaled by the batch's mean latitude) takes one member's node: an existing node if it holds one,
+    // else the smallest id. A pipe shorter than the tolerance keeps its own to node rather than becoming a loop.
+    private void clusterEndpoints() {
+        Double meanLat = jdbcTemplate.queryForObject(
+                "SELECT AVG(lat) FROM (" +
+                        "  SELECT start_lat AS lat FROM geo_features_bulk_endpoints " +
+                        "  UNION ALL SELECT end_lat FROM geo_features_bulk_endpoints" +
+                        ") p",
+                Double.class
+        );
+        if (meanLat == null) return;
+        double eps = nodeSnapToleranceMeters / Math.max(0.01, Math.cos(Math.toRadians(meanLat)));
+        jdbcTemplate.execute(
+                "CREATE TEMP TABLE geo_features_bulk_endpoint_clusters (" +
+                        "feature_id TEXT, side TEXT, node_id TEXT, lon NUMERIC, lat NUMERIC) ON COMMIT DROP"
+        );
+        jdbcTemplate.update(
+                "INSERT INTO geo_features_bulk_endpoint_clusters (feature_id, side, node_id, lon, lat) " +
+                        "WITH pts AS (" +
+                        "  SELECT feature_id, 'from' AS side, from_node_id AS node_id, start_lon AS lon, start_lat AS lat " +
+                        "  FROM geo_features_bulk_endpoints " +
+                        "  UNION ALL " +
+                        "  SELECT feature_id, 'to', to_node_id, end_lon, end_lat FROM geo_features_bulk_endpoints" +
+                        "), clustered AS (" +
+                        "  SELECT pts.*, ST_ClusterDBSCAN(" +
+                        "           ST_Transform(ST_SetSRID(ST_MakePoint(lon::double precision, lat::double precision), 4326), 3857), ?, 1" +
+                        "         ) OVER () AS cluster_id " +
+                        "  FROM pts" +
+                        "), reps AS (" +
+                        "  SELECT DISTINCT ON (c.cluster_id) c.cluster_id, c.node_id, c.lon, c.lat " +
+                        "  FROM clustered c " +
+                        "  ORDER BY c.cluster_id, EXISTS (SELECT 1 FROM pipe_nodes n WHERE n.id = c.node_id) DESC, c.node_id" +
+                        ") " +
+                        "SELECT c.feature_id, c.side, r.node_id, r.lon, r.lat " +
+                        "FROM clustered c JOIN reps r ON r.cluster_id = c.cluster_id " +
+                        "WHERE c.node_id <> r.node_id",
+                eps
+        );
+        jdbcTemplate.update(
+                "UPDATE geo_features_bulk_endpoints e " +
+                        "SET from_node_id = c.node_id, start_lon = c.lon, start_lat = c.lat " +
+                        "FROM geo_features_bulk_endpoint_clusters c " +
+                        "WHERE c.feature_id = e.feature_id AND c.side = 'from'"
+        );
+        jdbcTemplate.update(
+                "UPDATE geo_features_bulk_endpoints e " +
+                        "SET to_node_id = c.node_id, end_lon = c.lon, end_lat = c.lat " +
+                        "FROM geo_features_bulk_endpoint_clusters c " +
+                        "WHERE c.feature_id = e.feature_id AND c.side = 'to' AND c.node_id <> e.from_node_id"
+        );
+    }
+
+    // Set-based equivalent of TwinWriteController.syncTopologyForFeature for every staged pipe.
+    private ObjectNode rebuildPipeTopology() {
+        jdbcTemplate.execute(
+                "CREATE TEMP TABLE geo_features_bulk_endpoints ON COMMIT DROP AS " +
+                        "WITH feature_line AS (" +
+                        "  SELECT g.id AS feature_id, " +
+                        "         CASE " +
+                        "           WHEN GeometryType(g.geom) = 'LINESTRING' THEN g.geom " +
+                        "           WHEN GeometryType(g.geom) = 'MULTILINESTRING' THEN ST_LineMerge(g.geom) " +
+                        "           ELSE NULL " +
+                        "         END AS merged_geom " +
+                        "  FROM geo_features g " +
+                        "  WHERE g.layer IN ('pipes', 'roads') " +
+                        "    AND g.id IN (SELECT id FROM geo_features_bulk_stage WHERE geom IS NOT NULL)" +
+                        "), line_ready AS (" +
+                        "  SELECT feature_id, " +
+                        "         CASE " +
+                        "           WHEN GeometryType(merged_geom) = 'LINESTRING' THEN merged_geom " +
+                        "           WHEN GeometryType(merged_geom) = 'MULTILINESTRING' THEN ST_GeometryN(merged_geom, 1) " +
+                        "           ELSE NULL " +
+                        "         END AS line_geom " +
+                        "  FROM feature_line WHERE merged_geom IS NOT NULL" +
+                        ") " +
+                        "SELECT feature_id, " +
+                        "       'node_' || substr(md5(concat(round(ST_X(ST_StartPoint(line_geom))::numeric, 6), '_', round(ST_Y(ST_StartPoint(line_geom))::numeric, 6))), 1, 16) AS from_node_id, " +
+                        "       'node_' || substr(md5(concat(round(ST_X(ST_EndPoint(line_geom))::numeric, 6), '_', round(ST_Y(ST_EndPoint(line_geom))::numeric, 6))), 1, 16) AS to_node_id, " +
+                        "       round(ST_X(ST_StartPoint(line_geom))::numeric, 8) AS start_lon, " +
+                        "       round(ST_Y(ST_StartPoint(line_geom))::numeric, 8) AS start_lat, " +
+                        "       round(ST_X(ST_EndPoint(line_geom))::numeric, 8) AS end_lon, " +
+                        "       round(ST_Y(ST_EndPoint(line_geom))::numeric, 8) AS end_lat " +
+                        "FROM line_ready WHERE line_geom IS NOT NULL"
+        );
+        if (nodeSnapToleranceMeters > 0) {
+            snapEndpoints("from_node_id", "start_lon", "start_lat", "NULL");
+            snapEndpoints("to_node_id", "end_lon", "end_lat", "e.from_node_id");
+            clusterEndpoints();
+        }
+
+        int nodes = jdbcTemplate.update(
+                "INSERT INTO pipe_nodes (id, feature_id, node_type, name, properties, geom) " +
+                        "SELECT DISTINCT ON (node_id) node_id, NULL, 'junction', node_id, " +
+                        "       jsonb_build_object('lon', lon, 'lat', lat, 'autoSynced', true), " +
+                        "       ST_SetSRID(ST_MakePoint(lon::double precision, lat::double precision), 4326) " +
+                        "FROM (" +
+                        "  SELECT from_node_id AS node_id, start_lon AS lon, start_lat AS lat FROM geo_features_bulk_endpoints " +
+                        "  UNION ALL " +
+                        "  SELECT to_node_id, end_lon, end_lat FROM geo_features_bulk_endpoints" +
+                        ") n ORDER BY node_id " +
+                        "ON CONFLICT (id) DO UPDATE " +
+                        "SET properties = pipe_nodes.properties || EXCLUDED.properties, geom = EXCLUDED.geom, updated_at = now()"
+        );
+
+        int segments = jdbcTemplate.update(
+                "INSERT INTO pipe_segments (" +
+                        "id, feature_id, from_node_id, to_node_id, diameter_mm, material, status, properties" +
+                        ") " +
+                        "SELECT 'seg_' || substr(md5(g.id), 1, 16), g.id, e.from_node_id, e.to_node_id, " +
+                        "NULLIF(regexp_replace(COALESCE(g.properties->>'diameter_mm', g.properties->>'diameter', ''), '[^0-9.]', '', 'g'), '')::numeric, " +
+                        "NULLIF(COALESCE(g.properties->>'material', ''), ''), " +
+                        "COALESCE(NULLIF(g.properties->>'status', ''), 'normal'), " +
+                        "jsonb_build_object('autoSynced', true, 'syncSource', 'bulk_import') " +
+                        "FROM geo_features_bulk_endpoints e JOIN geo_features g ON g.id = e.feature_id " +
+                        "ON CONFLICT (feature_id) DO UPDATE " +
+                        "SET from_node_id = EXCLUDED.from_node_id, " +
+                        "to_node_id = EXCLUDED.to_node_id, " +
+                        "diameter_mm = COALESCE(EXCLUDED.diameter_mm, pipe_segments.diameter_mm), " +
+                        "material = COALESCE(EXCLUDED.material, pipe_segments.material), " +
+                        "status = COALESCE(EXCLUDED.status, pipe_segments.status), " +
+                        "properties = pipe_segments.properties || EXCLUDED.properties, " +
+                        "updated_at = now()"
+        );
+
+        jdbcTemplate.update(
+                "DELETE FROM asset_relations " +
+                        "WHERE source_type = 'pipe' AND relation_type = 'serves' " +
+                        "  AND source_id IN (SELECT feature_id FROM geo_features_bulk_endpoints)"
+        );
+        jdbcTemplate.update(
+                "INSERT INTO asset_relations (source_id, source_type, target_id, target_type, relation_type, properties) " +
+                        "SELECT e.feature_id, 'pipe', nb.building_id, 'building', 'serves', " +
+                        "       jsonb_build_object('distanceMeters', round(nb.distance_m::numeric, 2), 'autoSynced', true) " +
+                        "FROM geo_features_bulk_endpoints e " +
+                        "JOIN geo_features src ON src.id = e.feature_id " +
+                        "CROSS JOIN LATERAL (" +
+                        "  SELECT b.id AS building_id, ST_Distance(b.geom::geography, src.geom::geography) AS distance_m " +
+                        "  FROM geo_features b WHERE b.layer = 'buildings' " +
+                        "  ORDER BY b.geom <-> src.geom LIMIT 1" +
+                        ") nb " +
+                        "ON CONFLICT (source_id, source_type, target_id, target_type, relation_type) DO UPDATE " +
+                        "SET properties = EXCLUDED.properties"
+        );
+
+        // Manhole/valve/pump relations hang off node ids and are left to the per-feature sync.
+        jdbcTemplate.update(
+                "DELETE FROM asset_relations " +
+                        "WHERE source_type = 'pipe_segment' AND relation_type = 'connects' " +
+                        "  AND source_id IN (SELECT s.id FROM pipe_segments s " +
+                        "                    JOIN geo_features_bulk_endpoints e ON e.feature_id = s.feature_id)"
+        );
+        jdbcTemplate.update(
+                "INSERT INTO asset_relations (source_id, source_type, target_id, target_type, relation_type, properties) " +
+                        "SELECT s.id, 'pipe_segment', m.id, 'manhole', 'connects', jsonb_build_object('autoSynced', true) " +
+                        "FROM geo_features_bulk_endpoints e " +
+                        "JOIN pipe_segments s ON s.feature_id = e.feature_id " +
+                        "JOIN pipe_manholes m ON m.node_id IN (e.from_node_id, e.to_node_id) " +
+                        "ON CONFLICT (source_id, source_type, target_id, target_type, relation_type) DO NOTHING"
+        );
+
+        ObjectNode topology = objectMapper.createObjectNode();
+        topology.put("nodes", nodes);
+        topology.put("segments", segments);
+        return topology;
+    }
+
+    private List<GeoFeatureChangedEvent.Footprint> queryLayerExtents(String sql) {
+        return jdbcTemplate.query(
+                "SELECT layer, ST_XMin(extent) AS min_lon, ST_YMin(extent) AS min_lat, " +
+                        "ST_XMax(extent) AS max_lon, ST_YMax(extent) AS max_lat FROM (" + sql + ") e " +
+                        "WHERE extent IS NOT NULL",
+                (rs, rowNum) -> new GeoFeatureChangedEvent.Footprint(
+                        rs.getString("layer"),
+                        rs.getDouble("min_lon"),
+                        rs.getDouble("min_lat"),
+                        rs.getDouble("max_lon"),
+                        rs.getDouble("max_lat")
+                )
+        );
+    }
+
+    private void readFeatures(InputStream in, boolean ndjson, StagingWriter writer) throws SQLException {
+        try (JsonParser parser = objectMapper.createParser(in)) {
+            JsonToken token = parser.nextToken();
+            if (ndjson) {
+                while (token != null) {
+                    writer.accept(objectMapper.readTree(parser));
+                    token = parser.nextToken();
+                }
+                return;
+            }
+            if (token == JsonToken.START_ARRAY) {
+                readArray(parser, writer);
+                return;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("feature_collection_required");
+            }
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                String name = parser.currentName();
+                token = parser.nextToken();
+                if ("features".equals(name) && token == JsonToken.START_ARRAY) {
+                    readArray(parser, writer);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (JacksonException e) {
+            throw new IllegalArgumentException("invalid_json");
+        }
+    }
+
+    private void readArray(JsonParser parser, StagingWriter writer) throws SQLException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new IllegalArgumentException("invalid_json");
+            }
+            writer.accept(objectMapper.readTree(parser));
+        }
+    }
+
+    // COPY text format: tab-separated, with backslash escapes for the separators.
+    static void appendCopyField(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '\t' -> sb.append("\\t");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                default -> sb.append(c);
+            }
+        }
+    }
+
+    private record ItemError(int index, String id, String error) {
+    }
+
+    private static final class StagingWriter {
+        private final CopyIn copyIn;
+        private final String defaultLayer;
+        private final List<ItemError> errors;
+        private final StringBuilder buffer = new StringBuilder(COPY_FLUSH_CHARS + 4096);
+        private int received;
+
+        private StagingWriter(CopyIn copyIn, String defaultLayer, List<ItemError> errors) {
+            this.copyIn = copyIn;
+            this.defaultLayer = defaultLayer;
+            this.errors = errors;
+        }
+
+        private void accept(JsonNode node) throws SQLException {
+            int index = received++;
+            GeoFeaturePayload payload;
+            try {
+                payload = GeoFeaturePayload.fromNode(node, defaultLayer);
+            } catch (IllegalArgumentException e) {
+                JsonNode idNode = node == null ? null : node.get("id");
+                String id = idNode != null && idNode.isValueNode() ? idNode.asText() : null;
+                errors.add(new ItemError(index, id, e.getMessage()));
+                return;
+            }
+
+            buffer.append(index).append('\t');
+            appendCopyField(buffer, payload.id());
+            buffer.append('\t');
+            appendCopyField(buffer, payload.layer());
+            buffer.append('\t');
+            appendCopyField(buffer, payload.geometryJson());
+            buffer.append('\t');
+            appendCopyField(buffer, payload.propertiesJson());
+            buffer.append('\t').append(payload.visible() ? 't' : 'f').append('\n');
+            if (buffer.length() >= COPY_FLUSH_CHARS) {
+                flush();
+            }
+        }
+
+        private void flush() throws SQLException {
+            if (buffer.isEmpty()) return;
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+    }
+}
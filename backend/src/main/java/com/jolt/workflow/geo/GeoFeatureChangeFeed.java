@@ -0,0 +1,110 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+// Features and tombstones changed after a client-held version (V16 change_version, V18 tombstones, V24 horizon).
+@Component
+public class GeoFeatureChangeFeed {
+
+    static final int MAX_LIMIT = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public GeoFeatureChangeFeed(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    // Highest version below which every write has committed (V24). The sequence is read before the floors, so
+    // a writer that drew a version at or below it has announced its floor by the time pg_locks is read.
+    public long committedHorizon() {
+        Long drawn = jdbcTemplate.queryForObject(
+                "SELECT CASE WHEN is_called THEN last_value ELSE 0 END FROM geo_feature_change_seq",
+                Long.class
+        );
+        Long floor = jdbcTemplate.queryForObject(
+                "SELECT MIN((l.classid::bigint << 32) | l.objid::bigint) FROM pg_locks l " +
+                        "WHERE l.locktype = 'advisory' AND l.objsubid = 2 AND l.granted " +
+                        "AND l.database = (SELECT oid FROM pg_database WHERE datname = current_database())",
+                Long.class
+        );
+        long horizon = drawn == null ? 0L : drawn;
+        return floor == null ? horizon : Math.max(0L, Math.min(horizon, floor - 1));
+    }
+
+    public ObjectNode changesSince(long since, List<String> layers, int limit) {
+        if (since < 0) {
+            throw new IllegalArgumentException("since must be >= 0");
+        }
+        int safeLimit = Math.max(1, Math.min(limit, MAX_LIMIT));
+        long horizon = committedHorizon();
+
+        String layerFilter = "";
+        List<Object> layerParams = new ArrayList<>();
+        if (!layers.isEmpty()) {
+            layerFilter = " AND layer IN (" + String.join(",", java.util.Collections.nCopies(layers.size(), "?")) + ")";
+            layerParams.addAll(layers);
+        }
+
+        List<Object> params = new ArrayList<>();
+        params.add(since);
+        params.add(horizon);
+        params.addAll(layerParams);
+        params.add(since);
+        params.add(horizon);
+        params.addAll(layerParams);
+        params.add(safeLimit + 1);
+
+        String sql = "SELECT id, change_version, deleted, properties, geometry FROM (" +
+                "  SELECT id, change_version, false AS deleted, " +
+                "         (properties || jsonb_build_object('visible', visible))::text AS properties, " +
+                "         ST_AsGeoJSON(geom) AS geometry " +
+                "  FROM geo_features WHERE change_version > ? AND change_version <= ?" + layerFilter +
+                "  UNION ALL " +
+                "  SELECT id, change_version, true, NULL, NULL " +
+                "  FROM geo_feature_tombstones WHERE change_version > ? AND change_version <= ?" + layerFilter +
+                ") c ORDER BY change_version LIMIT ?";
+
+        ObjectNode result = objectMapper.createObjectNode();
+        ArrayNode features = objectMapper.createArrayNode();
+        ArrayNode deleted = objectMapper.createArrayNode();
+        long[] lastVersion = {since};
+        int[] count = {0};
+        boolean[] hasMore = {false};
+
+        jdbcTemplate.query(sql, rs -> {
+            if (count[0] >= safeLimit) {
+                hasMore[0] = true;
+                return;
+            }
+            count[0]++;
+            lastVersion[0] = rs.getLong("change_version");
+            if (rs.getBoolean("deleted")) {
+                deleted.add(rs.getString("id"));
+                return;
+            }
+            ObjectNode feature = features.addObject();
+            feature.put("type", "Feature");
+            feature.put("id", rs.getString("id"));
+            feature.set("properties", objectMapper.readTree(rs.getString("properties")));
+            String geometry = rs.getString("geometry");
+            if (geometry == null) feature.putNull("geometry");
+            else feature.set("geometry", objectMapper.readTree(geometry));
+        }, params.toArray());
+
+        result.put("since", since);
+        // A truncated page resumes after its last row; a complete one jumps to the horizon.
+        result.put("version", hasMore[0] ? lastVersion[0] : Math.max(since, horizon));
+        result.put("hasMore", hasMore[0]);
+        result.set("features", features);
+        result.set("deleted", deleted);
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class GeoFeatureChangePublisher {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public GeoFeatureChangePublisher(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public GeoFeatureChangedEvent.Footprint footprint(String featureId) {
+        if (featureId == null || featureId.isBlank()) return null;
+        return jdbcTemplate.query(
+                "SELECT layer, ST_XMin(geom) AS min_lon, ST_YMin(geom) AS min_lat, " +
+                        "ST_XMax(geom) AS max_lon, ST_YMax(geom) AS max_lat " +
+                        "FROM geo_features WHERE id = ?",
+                ps -> ps.setString(1, featureId),
+                rs -> rs.next()
+                        ? new GeoFeatureChangedEvent.Footprint(
+                                rs.getString("layer"),
+                                rs.getDouble("min_lon"),
+                                rs.getDouble("min_lat"),
+                                rs.getDouble("max_lon"),
+                                rs.getDouble("max_lat"))
+                        : null
+        );
+    }
+
+    public void publish(
+            String featureId,
+            String action,
+            GeoFeatureChangedEvent.Footprint before,
+            GeoFeatureChangedEvent.Footprint after
+    ) {
+        List<GeoFeatureChangedEvent.Footprint> footprints = new ArrayList<>(2);
+        if (before != null) footprints.add(before);
+        if (after != null && !after.equals(before)) footprints.add(after);
+        if (footprints.isEmpty()) return;
+        eventPublisher.publishEvent(new GeoFeatureChangedEvent(featureId, action, List.copyOf(footprints)));
+    }
+
+    // One event for a set-based write; footprints are per-layer extents.
+    public void publishBulk(String action, List<GeoFeatureChangedEvent.Footprint> footprints) {
+        if (footprints == null || footprints.isEmpty()) return;
+        eventPublisher.publishEvent(new GeoFeatureChangedEvent(null, action, List.copyOf(footprints)));
+    }
+
+    public void publishTopology(
+            String featureId,
+            String action,
+            String segmentId,
+            List<String> nodeIds,
+            GeoFeatureChangedEvent.Footprint footprint
+    ) {
+        eventPublisher.publishEvent(new TwinTopologyChangedEvent(
+                featureId,
+                action,
+                segmentId,
+                nodeIds == null ? List.of() : List.copyOf(nodeIds),
+                footprint
+        ));
+    }
+}
@@ -0,0 +1,34 @@
+package com.jolt.workflow.geo;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// featureId is null for set-based writes; footprints then cover each touched layer's extent.
+public record GeoFeatureChangedEvent(
+        String featureId,
+        String action,
+        List<Footprint> footprints
+) {
+
+    public Set<String> layers() {
+        Set<String> layers = new LinkedHashSet<>();
+        for (Footprint footprint : footprints) {
+            layers.add(footprint.layer());
+        }
+        return layers;
+    }
+
+    // Layer and lon/lat envelope of a feature before or after a write.
+    public record Footprint(
+            String layer,
+            double minLon,
+            double minLat,
+            double maxLon,
+            double maxLat
+    ) {
+        public boolean intersects(double otherMinLon, double otherMinLat, double otherMaxLon, double otherMaxLat) {
+            return minLon <= otherMaxLon && maxLon >= otherMinLon && minLat <= otherMaxLat && maxLat >= otherMinLat;
+        }
+    }
+}
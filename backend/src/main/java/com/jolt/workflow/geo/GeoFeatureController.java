@@ -3,8 +3,17 @@ package com.jolt.workflow.geo;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.node.ObjectNode;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -14,9 +23,12 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/v1")
@@ -24,72 +36,89 @@ public class GeoFeatureController {
 
     private final JdbcTemplate jdbcTemplate;
     private final ObjectMapper objectMapper;
-
-    public GeoFeatureController(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+    private final GeoFeatureChangePublisher changePublisher;
+    private final GeoFeatureStreamer featureStreamer;
+    private final GeoLayerVersions layerVersions;
+    private final GeoFeatureChangeFeed changeFeed;
+    private final GeoFeatureBulkLoader bulkLoader;
+    private final GeoClusterService clusterService;
+    private final GeoFeatureSearch featureSearch;
+
+    public GeoFeatureController(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            GeoFeatureChangePublisher changePublisher,
+            GeoFeatureStreamer featureStreamer,
+            GeoLayerVersions layerVersions,
+            GeoFeatureChangeFeed changeFeed,
+            GeoFeatureBulkLoader bulkLoader,
+            GeoClusterService clusterService,
+            GeoFeatureSearch featureSearch
+    ) {
         this.jdbcTemplate = jdbcTemplate;
         this.objectMapper = objectMapper;
+        this.changePublisher = changePublisher;
+        this.featureStreamer = featureStreamer;
+        this.layerVersions = layerVersions;
+        this.changeFeed = changeFeed;
+        this.bulkLoader = bulkLoader;
+        this.clusterService = clusterService;
+        this.featureSearch = featureSearch;
     }
 
-    @GetMapping(value = "/features", produces = MediaType.APPLICATION_JSON_VALUE)
-    public JsonNode listFeatures(
+    // GeoJSON by default; Geobuf for format=geobuf or Accept: application/x-protobuf (nextCursor in X-Next-Cursor).
+    // cluster=grid|geohash with zoom returns building clusters instead of features.
+    @GetMapping(value = "/features")
+    public ResponseEntity<?> listFeatures(
             @RequestParam(name = "bbox", required = false) String bbox,
             @RequestParam(name = "layers", required = false) String layers,
             @RequestParam(name = "limit", required = false, defaultValue = "2000") int limit,
             @RequestParam(name = "page", required = false) Integer page,
             @RequestParam(name = "offset", required = false) Integer offset,
-            @RequestParam(name = "visible", required = false) Boolean visible
+            @RequestParam(name = "visible", required = false) Boolean visible,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "zoom", required = false) Integer zoom,
+            @RequestParam(name = "filter", required = false) String filter,
+            @RequestParam(name = "format", required = false) String format,
+            @RequestParam(name = "cluster", required = false) String cluster,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+            WebRequest request
     ) {
-        // bbox: minLon,minLat,maxLon,maxLat (EPSG:4326)
-        String where = "WHERE 1=1";
-        java.util.ArrayList<Object> params = new java.util.ArrayList<>();
-
-        if (layers != null && !layers.isBlank()) {
-            List<String> layerList = List.of(layers.split(",")).stream()
-                    .map(String::trim)
-                    .filter(s -> !s.isBlank())
-                    .flatMap(layer -> expandQueriedLayerNames(layer).stream())
-                    .distinct()
-                    .toList();
-
-            if (!layerList.isEmpty()) {
-                StringBuilder sb = new StringBuilder();
-                sb.append(" AND layer IN (");
-                for (int i = 0; i < layerList.size(); i++) {
-                    if (i > 0) sb.append(",");
-                    sb.append("?");
-                    params.add(layerList.get(i));
-                }
-                sb.append(")");
-                where += sb;
+        GeoClusterMode clusterMode = GeoClusterMode.parse(cluster);
+        if (clusterMode != null) {
+            if (!List.of("buildings").equals(GeoLayerNames.parseQueriedLayers(layers))) {
+                return ResponseEntity.badRequest().body(errorNode("cluster_requires_buildings_layer"));
             }
+            double[] clusterBbox = bbox == null || bbox.isBlank() ? null : GeoFeatureQuery.parseBbox(bbox);
+            return ResponseEntity.ok(clusterService.cluster(
+                    GeoClusterService.Target.BUILDINGS,
+                    clusterMode,
+                    GeoClusterMode.requireZoom(zoom),
+                    visible,
+                    clusterBbox
+            ));
         }
 
-        if (bbox != null && !bbox.isBlank()) {
-            double[] b = parseBbox(bbox);
-            where += " AND geom && ST_MakeEnvelope(?, ?, ?, ?, 4326)";
-            params.add(b[0]);
-            params.add(b[1]);
-            params.add(b[2]);
-            params.add(b[3]);
+        boolean geobuf = GeoBufEncoder.requested(format, accept);
+        GeoFeatureQuery query = GeoFeatureQuery.of(bbox, layers, limit, page, offset, visible, cursor, zoom, filter);
+        // Version is read before the data, so a concurrent write can only make the ETag older, never newer.
+        String etag = layerVersions.collectionEtag(query, geobuf ? "geobuf" : "json");
+        if (request.checkNotModified(etag)) {
+            return notModified(etag);
         }
-
-        if (visible != null) {
-            where += " AND visible = ?";
-            params.add(visible);
-        }
-
-        int safeLimit = Math.max(1, Math.min(limit, 5000));
-        long finalOffset = 0L;
-        if (offset != null) {
-            finalOffset = Math.max(0L, offset.longValue());
-        } else if (page != null && page > 1) {
-            long computed = (page.longValue() - 1L) * safeLimit;
-            finalOffset = Math.max(0L, Math.min(computed, Integer.MAX_VALUE));
+        if (geobuf) {
+            GeoFeatureStreamer.GeoBufPage geobufPage = featureStreamer.encodeGeobuf(query);
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                    .contentType(GeoBufEncoder.MEDIA_TYPE)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .eTag(etag);
+            if (geobufPage.nextCursor() != null) {
+                builder.header("X-Next-Cursor", geobufPage.nextCursor());
+            }
+            return builder.body(geobufPage.body());
         }
-
-        params.add(safeLimit);
-        params.add(finalOffset);
-        Object[] finalParams = params.toArray();
+        Object[] finalParams = query.pagedParams();
 
         String sql = "SELECT jsonb_build_object(" +
                 "'type','FeatureCollection'," +
@@ -97,22 +126,90 @@ public class GeoFeatureController {
                 "  'type','Feature'," +
                 "  'id', id," +
                 "  'properties', properties || jsonb_build_object('visible', visible)," +
-                "  'geometry', ST_AsGeoJSON(geom)::jsonb" +
-                ")),'[]'::jsonb)" +
+                "  'geometry', geometry" +
+                ") ORDER BY id),'[]'::jsonb)" +
                 ") AS fc " +
-                "FROM (SELECT id, layer, geom, properties, visible FROM geo_features " + where +
+                "FROM (SELECT id, properties, visible, " + query.lod().geoJsonSql() + "::jsonb AS geometry " +
+                "FROM geo_features " + query.whereSql() +
                 " ORDER BY id LIMIT ? OFFSET ?) t";
 
         String json = jdbcTemplate.queryForObject(sql, finalParams, String.class);
+        ObjectNode fc;
         try {
-            return objectMapper.readTree(json);
+            fc = (ObjectNode) objectMapper.readTree(json);
         } catch (Exception e) {
             throw new RuntimeException("Failed to serialize FeatureCollection", e);
         }
+
+        JsonNode features = fc.path("features");
+        String lastId = features.isEmpty() ? null : features.get(features.size() - 1).path("id").asText(null);
+        String nextCursor = query.nextCursor(lastId, features.size());
+        if (nextCursor == null) fc.putNull("nextCursor");
+        else fc.put("nextCursor", nextCursor);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(etag)
+                .body(fc);
+    }
+
+    // Same filters and paging as listFeatures, but rows are written to the response as they are read.
+    @GetMapping(value = "/features", params = {"stream=true", "format!=geobuf"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamFeatures(
+            @RequestParam(name = "bbox", required = false) String bbox,
+            @RequestParam(name = "layers", required = false) String layers,
+            @RequestParam(name = "limit", required = false, defaultValue = "2000") int limit,
+            @RequestParam(name = "page", required = false) Integer page,
+            @RequestParam(name = "offset", required = false) Integer offset,
+            @RequestParam(name = "visible", required = false) Boolean visible,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "zoom", required = false) Integer zoom,
+            @RequestParam(name = "filter", required = false) String filter,
+            WebRequest request
+    ) {
+        GeoFeatureQuery query = GeoFeatureQuery.of(bbox, layers, limit, page, offset, visible, cursor, zoom, filter);
+        String etag = layerVersions.collectionEtag(query, "json");
+        if (request.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+        StreamingResponseBody body = out -> featureStreamer.writeFeatureCollection(query, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .eTag(etag)
+                .body(body);
+    }
+
+    // Delta since a client-held version: changed features in full, deleted ids from tombstones.
+    @GetMapping(value = "/features/changes", produces = MediaType.APPLICATION_JSON_VALUE)
+    public JsonNode listFeatureChanges(
+            @RequestParam(name = "since") long since,
+            @RequestParam(name = "layers", required = false) String layers,
+            @RequestParam(name = "limit", required = false, defaultValue = "2000") int limit
+    ) {
+        return changeFeed.changesSince(since, GeoLayerNames.parseQueriedLayers(layers), limit);
+    }
+
+    // Ranked name search across map features, pipe nodes and the buildings registry (types=features,nodes,buildings).
+    @GetMapping(value = "/features/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    public JsonNode searchFeatures(
+            @RequestParam(name = "q") String q,
+            @RequestParam(name = "types", required = false) String types,
+            @RequestParam(name = "layers", required = false) String layers,
+            @RequestParam(name = "limit", required = false, defaultValue = "10") int limit
+    ) {
+        return featureSearch.search(q, types, GeoLayerNames.parseQueriedLayers(layers), limit);
     }
 
     @GetMapping(value = "/features/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public JsonNode getFeature(@PathVariable("id") String id) {
+    public ResponseEntity<JsonNode> getFeature(@PathVariable("id") String id, WebRequest request) {
+        Long version = layerVersions.featureVersion(id);
+        String etag = version == null ? null : GeoLayerVersions.featureEtag(version);
+        if (etag != null && request.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+
         String sql = "SELECT jsonb_build_object(" +
                 "'type','Feature'," +
                 "'id', id," +
@@ -128,14 +225,14 @@ public class GeoFeatureController {
 
         if (json == null) {
             try {
-                return objectMapper.readTree("{\"error\":\"not_found\"}");
+                return ResponseEntity.ok(objectMapper.readTree("{\"error\":\"not_found\"}"));
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
         }
 
         try {
-            return objectMapper.readTree(json);
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).eTag(etag).body(objectMapper.readTree(json));
         } catch (Exception e) {
             throw new RuntimeException("Failed to serialize Feature", e);
         }
@@ -143,7 +240,7 @@ public class GeoFeatureController {
 
     @PostMapping(value = "/features", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<JsonNode> createFeature(@RequestBody String body) {
-        FeaturePayload payload;
+        GeoFeaturePayload payload;
         try {
             payload = parseFeaturePayload(body);
         } catch (IllegalArgumentException e) {
@@ -164,6 +261,7 @@ public class GeoFeatureController {
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(errorNode("invalid_feature"));
         }
+        changePublisher.publish(payload.id(), "create", null, changePublisher.footprint(payload.id()));
 
         ObjectNode ok = objectMapper.createObjectNode();
         ok.put("ok", true);
@@ -171,15 +269,38 @@ public class GeoFeatureController {
         return ResponseEntity.status(201).body(ok);
     }
 
+    // Body: a FeatureCollection (or plain array) of feature payloads, or NDJSON (format=ndjson / application/x-ndjson).
+    @PostMapping(value = "/features/bulk", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<JsonNode> bulkImportFeatures(
+            @RequestParam(name = "format", required = false) String format,
+            @RequestParam(name = "layer", required = false) String layer,
+            @RequestParam(name = "rebuildTopology", required = false, defaultValue = "false") boolean rebuildTopology,
+            HttpServletRequest request
+    ) throws IOException {
+        boolean ndjson;
+        if (format == null || format.isBlank()) {
+            String contentType = request.getContentType();
+            ndjson = contentType != null && contentType.toLowerCase(Locale.ROOT).contains("ndjson");
+        } else if ("ndjson".equalsIgnoreCase(format.trim())) {
+            ndjson = true;
+        } else if ("geojson".equalsIgnoreCase(format.trim())) {
+            ndjson = false;
+        } else {
+            return ResponseEntity.badRequest().body(errorNode("format_invalid"));
+        }
+        return ResponseEntity.ok(bulkLoader.load(request.getInputStream(), ndjson, layer, rebuildTopology));
+    }
+
     @PutMapping(value = "/features", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<JsonNode> updateFeature(@RequestBody String body) {
-        FeaturePayload payload;
+        GeoFeaturePayload payload;
         try {
             payload = parseFeaturePayload(body);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(errorNode(e.getMessage()));
         }
 
+        GeoFeatureChangedEvent.Footprint before = changePublisher.footprint(payload.id());
         int updated;
         try {
             updated = jdbcTemplate.update(
@@ -197,6 +318,9 @@ public class GeoFeatureController {
         if (updated == 0) {
             return ResponseEntity.status(404).body(errorNode("not_found"));
         }
+        GeoFeatureChangedEvent.Footprint after = changePublisher.footprint(payload.id());
+        changePublisher.publish(payload.id(), "update", before, after);
+        publishPipeTopology(payload.id(), "update", before, after);
 
         ObjectNode ok = objectMapper.createObjectNode();
         ok.put("ok", true);
@@ -210,10 +334,13 @@ public class GeoFeatureController {
             return ResponseEntity.badRequest().body(errorNode("id_required"));
         }
 
+        GeoFeatureChangedEvent.Footprint before = changePublisher.footprint(id);
         int deleted = jdbcTemplate.update("DELETE FROM geo_features WHERE id = ?", id);
         if (deleted == 0) {
             return ResponseEntity.status(404).body(errorNode("not_found"));
         }
+        changePublisher.publish(id, "delete", before, null);
+        publishPipeTopology(id, "delete", before, null);
 
         ObjectNode ok = objectMapper.createObjectNode();
         ok.put("ok", true);
@@ -256,6 +383,7 @@ public class GeoFeatureController {
                 throw new RuntimeException(e);
             }
         }
+        changePublisher.publish(id, "visibility", null, changePublisher.footprint(id));
 
         try {
             return ResponseEntity.ok(objectMapper.readTree("{\"ok\":true}"));
@@ -264,6 +392,84 @@ public class GeoFeatureController {
         }
     }
 
+    // Body: {"visible": false, "ids": [...]} or {"visible": false, "layers": "pipes", "bbox": [...], "polygon": {...}}.
+    // One set-based UPDATE; rows already in the requested state are skipped, so they keep their change version.
+    @PutMapping(value = "/features/visibility/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<JsonNode> setVisibilityBatch(@RequestBody String body) {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(body);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(errorNode("invalid_json"));
+        }
+
+        JsonNode visibleNode = root.get("visible");
+        if (visibleNode == null || !visibleNode.isBoolean()) {
+            return ResponseEntity.badRequest().body(errorNode("visible_required"));
+        }
+        boolean visible = visibleNode.asBoolean();
+
+        GeoFeatureSelector selector;
+        try {
+            selector = GeoFeatureSelector.fromNode(root);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(errorNode(e.getMessage()));
+        }
+
+        List<Object> params = new ArrayList<>(selector.params());
+        params.add(visible);
+        params.add(visible);
+        String sql = "WITH target AS (" +
+                "  SELECT id, visible AS old_visible FROM geo_features WHERE " + selector.whereSql() +
+                "), changed AS (" +
+                "  UPDATE geo_features g SET visible = ? FROM target t " +
+                "  WHERE g.id = t.id AND t.old_visible IS DISTINCT FROM ? " +
+                "  RETURNING g.layer, g.geom" +
+                "), per_layer AS (" +
+                "  SELECT layer, COUNT(*) AS updated, ST_Extent(geom) AS extent FROM changed GROUP BY layer" +
+                ") " +
+                "SELECT (SELECT COUNT(*) FROM target) AS matched, p.layer, p.updated, " +
+                "       ST_XMin(p.extent) AS min_lon, ST_YMin(p.extent) AS min_lat, " +
+                "       ST_XMax(p.extent) AS max_lon, ST_YMax(p.extent) AS max_lat " +
+                "FROM (SELECT 1) one LEFT JOIN per_layer p ON true";
+
+        List<Map<String, Object>> rows;
+        try {
+            rows = jdbcTemplate.queryForList(sql, params.toArray());
+        } catch (DataAccessException e) {
+            return ResponseEntity.badRequest().body(errorNode("invalid_selector"));
+        }
+
+        long matched = 0L;
+        long updated = 0L;
+        ObjectNode result = objectMapper.createObjectNode();
+        ObjectNode updatedByLayer = objectMapper.createObjectNode();
+        List<GeoFeatureChangedEvent.Footprint> footprints = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            matched = ((Number) row.get("matched")).longValue();
+            if (row.get("layer") == null) continue;
+            String layer = String.valueOf(row.get("layer"));
+            long layerUpdated = ((Number) row.get("updated")).longValue();
+            updated += layerUpdated;
+            updatedByLayer.put(layer, layerUpdated);
+            footprints.add(new GeoFeatureChangedEvent.Footprint(
+                    layer,
+                    ((Number) row.get("min_lon")).doubleValue(),
+                    ((Number) row.get("min_lat")).doubleValue(),
+                    ((Number) row.get("max_lon")).doubleValue(),
+                    ((Number) row.get("max_lat")).doubleValue()
+            ));
+        }
+        changePublisher.publishBulk("visibility", footprints);
+
+        result.put("ok", true);
+        result.put("visible", visible);
+        result.put("matched", matched);
+        result.put("updated", updated);
+        result.set("updatedByLayer", updatedByLayer);
+        return ResponseEntity.ok(result);
+    }
+
     // Backward compatible endpoint (NOTE: ids like "relation/123" will trigger %2F issues in some servers)
     @PutMapping(value = "/features/{id}/visibility", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<JsonNode> setVisibilityLegacy(
@@ -294,6 +500,7 @@ public class GeoFeatureController {
                 throw new RuntimeException(e);
             }
         }
+        changePublisher.publish(id, "visibility", null, changePublisher.footprint(id));
 
         try {
             return ResponseEntity.ok(objectMapper.readTree("{\"ok\":true}"));
@@ -302,80 +509,32 @@ public class GeoFeatureController {
         }
     }
 
-    private static double[] parseBbox(String bbox) {
-        String[] parts = bbox.split(",");
-        if (parts.length != 4) {
-            throw new IllegalArgumentException("bbox must be minLon,minLat,maxLon,maxLat");
-        }
-        return new double[] {
-                Double.parseDouble(parts[0].trim()),
-                Double.parseDouble(parts[1].trim()),
-                Double.parseDouble(parts[2].trim()),
-                Double.parseDouble(parts[3].trim())
-        };
-    }
-
-    private static String normalizeLayerName(String layer) {
-        if ("pipes".equalsIgnoreCase(layer)) {
-            return "pipes";
-        }
-        return layer;
-    }
-
-    private static List<String> expandQueriedLayerNames(String layer) {
-        String normalized = normalizeLayerName(layer);
-        if ("pipes".equalsIgnoreCase(normalized)) {
-            return List.of("pipes", "roads");
-        }
-        return List.of(normalized);
-    }
-
-    private FeaturePayload parseFeaturePayload(String body) {
+    private GeoFeaturePayload parseFeaturePayload(String body) {
         JsonNode root;
         try {
             root = objectMapper.readTree(body);
         } catch (Exception e) {
             throw new IllegalArgumentException("invalid_json");
         }
+        return GeoFeaturePayload.fromNode(root, null);
+    }
 
-        JsonNode idNode = root.get("id");
-        if (idNode == null || !idNode.isTextual() || idNode.asText().isBlank()) {
-            throw new IllegalArgumentException("id_required");
-        }
-        String id = idNode.asText().trim();
-
-        JsonNode layerNode = root.get("layer");
-        if (layerNode == null || !layerNode.isTextual() || layerNode.asText().isBlank()) {
-            throw new IllegalArgumentException("layer_required");
-        }
-        String layer = normalizeLayerName(layerNode.asText().trim());
-
-        JsonNode geometryNode = root.get("geometry");
-        if (geometryNode == null || !geometryNode.isObject()) {
-            throw new IllegalArgumentException("geometry_required");
-        }
-
-        JsonNode propertiesNode = root.get("properties");
-        ObjectNode propertiesObject;
-        if (propertiesNode == null || propertiesNode.isNull()) {
-            propertiesObject = objectMapper.createObjectNode();
-        } else if (propertiesNode.isObject()) {
-            propertiesObject = ((ObjectNode) propertiesNode).deepCopy();
-        } else {
-            throw new IllegalArgumentException("properties_required");
-        }
-        propertiesObject.remove("visible");
-
-        JsonNode visibleNode = root.get("visible");
-        boolean visible = true;
-        if (visibleNode != null && !visibleNode.isNull()) {
-            if (!visibleNode.isBoolean()) {
-                throw new IllegalArgumentException("visible_required");
-            }
-            visible = visibleNode.asBoolean();
-        }
+    private static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).eTag(etag).build();
+    }
 
-        return new FeaturePayload(id, layer, geometryNode.toString(), propertiesObject.toString(), visible);
+    // A pipe's segment goes with its feature (cascade) and its length with the geometry, so a write that was or
+    // is a pipe also tells the topology graph and its caches.
+    private void publishPipeTopology(
+            String id,
+            String action,
+            GeoFeatureChangedEvent.Footprint before,
+            GeoFeatureChangedEvent.Footprint after
+    ) {
+        boolean pipe = (before != null && GeoLayerNames.isPipeLayer(before.layer()))
+                || (after != null && GeoLayerNames.isPipeLayer(after.layer()));
+        if (!pipe) return;
+        changePublisher.publishTopology(id, action, null, List.of(), after != null ? after : before);
     }
 
     private ObjectNode errorNode(String code) {
@@ -383,12 +542,4 @@ public class GeoFeatureController {
         node.put("error", code);
         return node;
     }
-
-    private record FeaturePayload(
-            String id,
-            String layer,
-            String geometryJson,
-            String propertiesJson,
-            boolean visible
-    ) {}
 }
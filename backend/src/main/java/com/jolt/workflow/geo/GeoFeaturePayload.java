@@ -0,0 +1,66 @@
+package com.jolt.workflow.geo;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.node.JsonNodeFactory;
+import tools.jackson.databind.node.ObjectNode;
+
+// Validated body of a feature write (single POST/PUT and each item of a bulk import).
+record GeoFeaturePayload(
+        String id,
+        String layer,
+        String geometryJson,
+        String propertiesJson,
+        boolean visible
+) {
+
+    // defaultLayer fills a missing "layer" (bulk imports of plain GeoJSON Features); null keeps it required.
+    static GeoFeaturePayload fromNode(JsonNode root, String defaultLayer) {
+        if (root == null) {
+            throw new IllegalArgumentException("invalid_json");
+        }
+
+        JsonNode idNode = root.get("id");
+        if (idNode == null || !idNode.isTextual() || idNode.asText().isBlank()) {
+            throw new IllegalArgumentException("id_required");
+        }
+        String id = idNode.asText().trim();
+
+        JsonNode layerNode = root.get("layer");
+        String layer;
+        if (layerNode != null && layerNode.isTextual() && !layerNode.asText().isBlank()) {
+            layer = layerNode.asText().trim();
+        } else if (layerNode == null && defaultLayer != null && !defaultLayer.isBlank()) {
+            layer = defaultLayer.trim();
+        } else {
+            throw new IllegalArgumentException("layer_required");
+        }
+        layer = GeoLayerNames.normalizeLayerName(layer);
+
+        JsonNode geometryNode = root.get("geometry");
+        if (geometryNode == null || !geometryNode.isObject()) {
+            throw new IllegalArgumentException("geometry_required");
+        }
+
+        JsonNode propertiesNode = root.get("properties");
+        ObjectNode propertiesObject;
+        if (propertiesNode == null || propertiesNode.isNull()) {
+            propertiesObject = JsonNodeFactory.instance.objectNode();
+        } else if (propertiesNode.isObject()) {
+            propertiesObject = ((ObjectNode) propertiesNode).deepCopy();
+        } else {
+            throw new IllegalArgumentException("properties_required");
+        }
+        propertiesObject.remove("visible");
+
+        JsonNode visibleNode = root.get("visible");
+        boolean visible = true;
+        if (visibleNode != null && !visibleNode.isNull()) {
+            if (!visibleNode.isBoolean()) {
+                throw new IllegalArgumentException("visible_required");
+            }
+            visible = visibleNode.asBoolean();
+        }
+
+        return new GeoFeaturePayload(id, layer, geometryNode.toString(), propertiesObject.toString(), visible);
+    }
+}
@@ -0,0 +1,111 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Shared WHERE / paging for the geo_features list endpoints. bbox: minLon,minLat,maxLon,maxLat (EPSG:4326)
+record GeoFeatureQuery(
+        List<String> layers,
+        String whereSql,
+        List<Object> whereParams,
+        int limit,
+        long offset,
+        String filterHash,
+        GeoLod lod
+) {
+
+    static final int MAX_LIMIT = 5000;
+
+    static GeoFeatureQuery of(
+            String bbox,
+            String layers,
+            int limit,
+            Integer page,
+            Integer offset,
+            Boolean visible,
+            String cursor,
+            Integer zoom,
+            String filter
+    ) {
+        GeoLod lod = GeoLod.forZoom(zoom);
+        String where = "WHERE 1=1";
+        List<Object> params = new ArrayList<>();
+
+        List<String> layerList = GeoLayerNames.parseQueriedLayers(layers);
+        if (!layerList.isEmpty()) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(" AND layer IN (");
+            for (int i = 0; i < layerList.size(); i++) {
+                if (i > 0) sb.append(",");
+                sb.append("?");
+                params.add(layerList.get(i));
+            }
+            sb.append(")");
+            where += sb;
+        }
+
+        if (bbox != null && !bbox.isBlank()) {
+            double[] b = parseBbox(bbox);
+            where += " AND geom && ST_MakeEnvelope(?, ?, ?, ?, 4326)";
+            params.add(b[0]);
+            params.add(b[1]);
+            params.add(b[2]);
+            params.add(b[3]);
+        }
+
+        if (visible != null) {
+            where += " AND visible = ?";
+            params.add(visible);
+        }
+
+        GeoPropertyFilter propertyFilter = GeoPropertyFilter.parse(filter);
+        where += propertyFilter.whereSql();
+        params.addAll(propertyFilter.params());
+
+        int safeLimit = Math.max(1, Math.min(limit, MAX_LIMIT));
+        String filterHash = KeysetCursor.filterHash(where, params);
+
+        // A cursor pages by primary key (id > last seen id), so deep pages cost the same as the first.
+        if (cursor != null && !cursor.isBlank()) {
+            where += " AND id > ?";
+            params.add(KeysetCursor.decodeLastId(cursor, filterHash));
+            return new GeoFeatureQuery(layerList, where, List.copyOf(params), safeLimit, 0L, filterHash, lod);
+        }
+
+        long finalOffset = 0L;
+        if (offset != null) {
+            finalOffset = Math.max(0L, offset.longValue());
+        } else if (page != null && page > 1) {
+            long computed = (page.longValue() - 1L) * safeLimit;
+            finalOffset = Math.max(0L, Math.min(computed, Integer.MAX_VALUE));
+        }
+
+        return new GeoFeatureQuery(layerList, where, List.copyOf(params), safeLimit, finalOffset, filterHash, lod);
+    }
+
+    Object[] pagedParams() {
+        List<Object> params = new ArrayList<>(whereParams);
+        params.add(limit);
+        params.add(offset);
+        return params.toArray();
+    }
+
+    // Only a full page can have a successor.
+    String nextCursor(String lastId, int returnedCount) {
+        if (lastId == null || returnedCount < limit) return null;
+        return KeysetCursor.encode(lastId, filterHash);
+    }
+
+    static double[] parseBbox(String bbox) {
+        String[] parts = bbox.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("bbox must be minLon,minLat,maxLon,maxLat");
+        }
+        return new double[] {
+                Double.parseDouble(parts[0].trim()),
+                Double.parseDouble(parts[1].trim()),
+                Double.parseDouble(parts[2].trim()),
+                Double.parseDouble(parts[3].trim())
+        };
+    }
+}
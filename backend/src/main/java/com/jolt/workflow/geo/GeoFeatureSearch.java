@@ -0,0 +1,162 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+// Type-ahead name search over geo_features, pipe_nodes and buildings, served by the V21 trigram indexes.
+// Each source is cut to top-K on its own index before the ranked union, so cost follows K, not table size.
+@Component
+public class GeoFeatureSearch {
+
+    static final int MAX_LIMIT = 50;
+    static final int MAX_QUERY_LENGTH = 64;
+    static final Set<String> SOURCES = Set.of("features", "nodes", "buildings");
+
+    // Must match the V21 index expressions.
+    static final String FEATURE_TEXT = "geo_search_text(properties->>'name', properties->>'buildingName', properties->>'ref', id)";
+    static final String NODE_TEXT = "geo_search_text(n.name, n.properties->>'name', n.node_type, n.id)";
+    static final String BUILDING_TEXT = "geo_search_text(b.building_name, b.project_name, b.location, b.code)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public GeoFeatureSearch(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public ObjectNode search(String q, String types, List<String> layers, int limit) {
+        String term = normalizeQuery(q);
+        Set<String> sources = parseSources(types);
+        int safeLimit = Math.max(1, Math.min(limit, MAX_LIMIT));
+        String like = "%" + escapeLike(term) + "%";
+        String prefix = escapeLike(term) + "%";
+
+        List<String> parts = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        if (sources.contains("features")) {
+            String layerFilter = "";
+            if (!layers.isEmpty()) {
+                layerFilter = " AND layer IN (" + String.join(",", java.util.Collections.nCopies(layers.size(), "?")) + ")";
+            }
+            String label = "COALESCE(properties->>'name', properties->>'buildingName', properties->>'ref', id)";
+            parts.add("(SELECT 'feature' AS kind, id, layer, " + label + " AS label, " +
+                    scoreSql(label, FEATURE_TEXT) + " AS score, " +
+                    "ST_XMin(geom) AS min_lon, ST_YMin(geom) AS min_lat, ST_XMax(geom) AS max_lon, ST_YMax(geom) AS max_lat " +
+                    "FROM geo_features WHERE (" + FEATURE_TEXT + " LIKE ? OR ? <% " + FEATURE_TEXT + ")" + layerFilter +
+                    " ORDER BY score DESC, length(" + label + ") LIMIT ?)");
+            addScoreParams(params, term, prefix);
+            params.add(like);
+            params.add(term);
+            params.addAll(layers);
+            params.add(safeLimit);
+        }
+        if (sources.contains("nodes")) {
+            String label = "COALESCE(n.name, n.properties->>'name', n.id)";
+            parts.add("(SELECT 'node' AS kind, n.id, n.node_type AS layer, " + label + " AS label, " +
+                    scoreSql(label, NODE_TEXT) + " AS score, " +
+                    "ST_X(n.geom) AS min_lon, ST_Y(n.geom) AS min_lat, ST_X(n.geom) AS max_lon, ST_Y(n.geom) AS max_lat " +
+                    "FROM pipe_nodes n WHERE (" + NODE_TEXT + " LIKE ? OR ? <% " + NODE_TEXT + ")" +
+                    " ORDER BY score DESC, length(" + label + ") LIMIT ?)");
+            addScoreParams(params, term, prefix);
+            params.add(like);
+            params.add(term);
+            params.add(safeLimit);
+        }
+        if (sources.contains("buildings")) {
+            String label = "b.building_name";
+            // Footprint comes from the map layer when one is linked by id or properties.code.
+            parts.add("(SELECT 'building' AS kind, b.code AS id, 'buildings' AS layer, " + label + " AS label, " +
+                    scoreSql(label, BUILDING_TEXT) + " AS score, " +
+                    "ST_XMin(g.geom) AS min_lon, ST_YMin(g.geom) AS min_lat, ST_XMax(g.geom) AS max_lon, ST_YMax(g.geom) AS max_lat " +
+                    "FROM buildings b LEFT JOIN LATERAL (" +
+                    "  SELECT f.geom FROM geo_features f WHERE f.layer = 'buildings' " +
+                    "  AND (f.id = b.code OR f.properties @> jsonb_build_object('code', b.code)) LIMIT 1" +
+                    ") g ON true WHERE (" + BUILDING_TEXT + " LIKE ? OR ? <% " + BUILDING_TEXT + ")" +
+                    " ORDER BY score DESC, length(" + label + ") LIMIT ?)");
+            addScoreParams(params, term, prefix);
+            params.add(like);
+            params.add(term);
+            params.add(safeLimit);
+        }
+
+        String sql = "SELECT kind, id, layer, label, score, min_lon, min_lat, max_lon, max_lat FROM (" +
+                String.join(" UNION ALL ", parts) +
+                ") r ORDER BY score DESC, length(label), kind, id LIMIT ?";
+        params.add(safeLimit);
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("q", term);
+        ArrayNode results = root.putArray("results");
+        jdbcTemplate.query(sql, rs -> {
+            ObjectNode item = results.addObject();
+            item.put("kind", rs.getString("kind"));
+            item.put("id", rs.getString("id"));
+            item.put("layer", rs.getString("layer"));
+            item.put("label", rs.getString("label"));
+            item.put("score", Math.round(rs.getDouble("score") * 1000.0) / 1000.0);
+            double minLon = rs.getDouble("min_lon");
+            if (rs.wasNull()) {
+                item.putNull("centroid");
+                item.putNull("bbox");
+                return;
+            }
+            double minLat = rs.getDouble("min_lat");
+            double maxLon = rs.getDouble("max_lon");
+            double maxLat = rs.getDouble("max_lat");
+            item.putArray("centroid").add((minLon + maxLon) / 2.0).add((minLat + maxLat) / 2.0);
+            item.putArray("bbox").add(minLon).add(minLat).add(maxLon).add(maxLat);
+        }, params.toArray());
+        root.put("count", results.size());
+        return root;
+    }
+
+    // Exact label beats prefix beats substring; word similarity orders within each band.
+    private static String scoreSql(String label, String searchText) {
+        return "(CASE WHEN lower(" + label + ") = ? THEN 2 WHEN lower(" + label + ") LIKE ? THEN 1 ELSE 0 END" +
+                " + word_similarity(?, " + searchText + "))";
+    }
+
+    private static void addScoreParams(List<Object> params, String term, String prefix) {
+        params.add(term);
+        params.add(prefix);
+        params.add(term);
+    }
+
+    static String normalizeQuery(String q) {
+        String term = q == null ? "" : q.trim().toLowerCase(Locale.ROOT);
+        if (term.isEmpty()) {
+            throw new IllegalArgumentException("q is required");
+        }
+        if (term.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("q must be at most " + MAX_QUERY_LENGTH + " characters");
+        }
+        return term;
+    }
+
+    static Set<String> parseSources(String types) {
+        if (types == null || types.isBlank()) return SOURCES;
+        Set<String> sources = new LinkedHashSet<>();
+        for (String type : types.split(",")) {
+            String value = type.trim().toLowerCase(Locale.ROOT);
+            if (value.isEmpty()) continue;
+            if (!SOURCES.contains(value)) {
+                throw new IllegalArgumentException("types must be features, nodes or buildings");
+            }
+            sources.add(value);
+        }
+        return sources.isEmpty() ? SOURCES : sources;
+    }
+
+    static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
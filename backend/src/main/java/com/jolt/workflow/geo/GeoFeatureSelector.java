@@ -0,0 +1,131 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import tools.jackson.databind.JsonNode;
+
+// Set selector for batch writes: an id list, or layers narrowed by an optional bbox / GeoJSON polygon.
+record GeoFeatureSelector(
+        List<String> ids,
+        List<String> layers,
+        GeoBbox bbox,
+        String polygonJson
+) {
+
+    static final int MAX_IDS = 10000;
+
+    static GeoFeatureSelector fromNode(JsonNode root) {
+        List<String> ids = parseIds(root.get("ids"));
+        List<String> layers = parseLayers(root.get("layers") != null ? root.get("layers") : root.get("layer"));
+        GeoBbox bbox = parseBbox(root.get("bbox"));
+
+        String polygonJson = null;
+        JsonNode polygonNode = root.get("polygon");
+        if (polygonNode != null && !polygonNode.isNull()) {
+            String type = polygonNode.path("type").asText("");
+            if (!polygonNode.isObject() || !("Polygon".equals(type) || "MultiPolygon".equals(type))) {
+                throw new IllegalArgumentException("polygon_invalid");
+            }
+            polygonJson = polygonNode.toString();
+        }
+
+        if (ids.isEmpty() && layers.isEmpty()) {
+            throw new IllegalArgumentException("selector_required");
+        }
+        if (!ids.isEmpty() && (!layers.isEmpty() || bbox != null || polygonJson != null)) {
+            throw new IllegalArgumentException("selector_ambiguous");
+        }
+        return new GeoFeatureSelector(ids, layers, bbox, polygonJson);
+    }
+
+    String whereSql() {
+        if (!ids.isEmpty()) {
+            return "id IN (" + String.join(",", java.util.Collections.nCopies(ids.size(), "?")) + ")";
+        }
+        StringBuilder where = new StringBuilder("layer IN (")
+                .append(String.join(",", java.util.Collections.nCopies(layers.size(), "?")))
+                .append(")");
+        if (bbox != null) {
+            where.append(" AND geom && ST_MakeEnvelope(?, ?, ?, ?, 4326)");
+        }
+        if (polygonJson != null) {
+            where.append(" AND ST_Intersects(geom, ST_SetSRID(ST_GeomFromGeoJSON(?), 4326))");
+        }
+        return where.toString();
+    }
+
+    List<Object> params() {
+        List<Object> params = new ArrayList<>();
+        if (!ids.isEmpty()) {
+            params.addAll(ids);
+            return params;
+        }
+        params.addAll(layers);
+        if (bbox != null) {
+            params.add(bbox.minLon());
+            params.add(bbox.minLat());
+            params.add(bbox.maxLon());
+            params.add(bbox.maxLat());
+        }
+        if (polygonJson != null) {
+            params.add(polygonJson);
+        }
+        return params;
+    }
+
+    private static List<String> parseIds(JsonNode idsNode) {
+        if (idsNode == null || idsNode.isNull()) return List.of();
+        if (!idsNode.isArray()) {
+            throw new IllegalArgumentException("ids_invalid");
+        }
+        Set<String> ids = new LinkedHashSet<>();
+        for (JsonNode idNode : idsNode) {
+            if (!idNode.isTextual() || idNode.asText().isBlank()) {
+                throw new IllegalArgumentException("ids_invalid");
+            }
+            ids.add(idNode.asText().trim());
+        }
+        if (ids.size() > MAX_IDS) {
+            throw new IllegalArgumentException("ids_too_many");
+        }
+        return List.copyOf(ids);
+    }
+
+    private static List<String> parseLayers(JsonNode layersNode) {
+        if (layersNode == null || layersNode.isNull()) return List.of();
+        if (layersNode.isTextual()) {
+            return GeoLayerNames.parseQueriedLayers(layersNode.asText());
+        }
+        if (!layersNode.isArray()) {
+            throw new IllegalArgumentException("layers_invalid");
+        }
+        List<String> names = new ArrayList<>();
+        for (JsonNode layerNode : layersNode) {
+            if (!layerNode.isTextual()) {
+                throw new IllegalArgumentException("layers_invalid");
+            }
+            names.add(layerNode.asText());
+        }
+        return GeoLayerNames.parseQueriedLayers(String.join(",", names));
+    }
+
+    private static GeoBbox parseBbox(JsonNode bboxNode) {
+        if (bboxNode == null || bboxNode.isNull()) return null;
+        if (bboxNode.isTextual()) {
+            return GeoBbox.parse(bboxNode.asText());
+        }
+        if (!bboxNode.isArray() || bboxNode.size() != 4) {
+            throw new IllegalArgumentException("bbox must be minLon,minLat,maxLon,maxLat");
+        }
+        double[] bbox = new double[4];
+        for (int i = 0; i < 4; i++) {
+            if (!bboxNode.get(i).isNumber()) {
+                throw new IllegalArgumentException("bbox must be minLon,minLat,maxLon,maxLat");
+            }
+            bbox[i] = bboxNode.get(i).asDouble();
+        }
+        return new GeoBbox(bbox[0], bbox[1], bbox[2], bbox[3]);
+    }
+}
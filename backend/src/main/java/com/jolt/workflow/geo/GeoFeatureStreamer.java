@@ -0,0 +1,124 @@
+package com.jolt.workflow.geo;
+
+import java.io.OutputStream;
+import java.sql.PreparedStatement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectMapper;
+
+// Writes a FeatureCollection row by row from a server-side cursor, so heap use does not grow with page size.
+@Component
+public class GeoFeatureStreamer {
+
+    private static final int FLUSH_EVERY_FEATURES = 200;
+    // 10^-7 degrees is about 1 cm, finer than any surveyed campus asset.
+    private static final int GEOBUF_MAX_PRECISION = 7;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int fetchSize;
+
+    public GeoFeatureStreamer(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.geo.stream-fetch-size:500}") int fetchSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.fetchSize = Math.max(1, fetchSize);
+    }
+
+    public void writeFeatureCollection(GeoFeatureQuery query, OutputStream out) {
+        String sql = "SELECT id, (properties || jsonb_build_object('visible', visible))::text AS properties, " +
+                query.lod().geoJsonSql() + " AS geometry " +
+                "FROM geo_features " + query.whereSql() + " ORDER BY id LIMIT ? OFFSET ?";
+        Object[] params = query.pagedParams();
+
+        try (JsonGenerator gen = objectMapper.createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeName("type");
+            gen.writeString("FeatureCollection");
+            gen.writeName("features");
+            gen.writeStartArray();
+            gen.flush();
+
+            int[] written = {0};
+            String[] lastId = {null};
+            // PostgreSQL only honours the fetch size (server-side cursor) with autocommit off.
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(
+                    con -> {
+                        PreparedStatement ps = con.prepareStatement(sql);
+                        ps.setFetchSize(fetchSize);
+                        for (int i = 0; i < params.length; i++) {
+                            ps.setObject(i + 1, params[i]);
+                        }
+                        return ps;
+                    },
+                    rs -> {
+                        gen.writeStartObject();
+                        gen.writeName("type");
+                        gen.writeString("Feature");
+                        lastId[0] = rs.getString("id");
+                        gen.writeName("id");
+                        gen.writeString(lastId[0]);
+                        gen.writeName("properties");
+                        gen.writeRawValue(rs.getString("properties"));
+                        gen.writeName("geometry");
+                        String geometry = rs.getString("geometry");
+                        if (geometry == null) gen.writeNull();
+                        else gen.writeRawValue(geometry);
+                        gen.writeEndObject();
+                        if (++written[0] % FLUSH_EVERY_FEATURES == 0) {
+                            gen.flush();
+                        }
+                    }
+            ));
+
+            gen.writeEndArray();
+            String nextCursor = query.nextCursor(lastId[0], written[0]);
+            gen.writeName("nextCursor");
+            if (nextCursor == null) gen.writeNull();
+            else gen.writeString(nextCursor);
+            gen.writeEndObject();
+        }
+    }
+
+    // Rows still come through the server-side cursor, but Geobuf wraps the collection in one length-prefixed
+    // message, so the (compact) body is returned once the last feature is encoded.
+    public GeoBufPage encodeGeobuf(GeoFeatureQuery query) {
+        String sql = "SELECT id, (properties || jsonb_build_object('visible', visible))::text AS properties, " +
+                "ST_AsBinary(ST_Force2D(" + query.lod().geometrySql("") + ")) AS wkb " +
+                "FROM geo_features " + query.whereSql() + " ORDER BY id LIMIT ? OFFSET ?";
+        Object[] params = query.pagedParams();
+        GeoBufEncoder encoder = new GeoBufEncoder(Math.min(query.lod().maxDecimalDigits(), GEOBUF_MAX_PRECISION));
+
+        String[] lastId = {null};
+        readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(sql);
+                    ps.setFetchSize(fetchSize);
+                    for (int i = 0; i < params.length; i++) {
+                        ps.setObject(i + 1, params[i]);
+                    }
+                    return ps;
+                },
+                rs -> {
+                    lastId[0] = rs.getString("id");
+                    encoder.addFeature(lastId[0], rs.getBytes("wkb"), objectMapper.readTree(rs.getString("properties")));
+                }
+        ));
+
+        return new GeoBufPage(encoder.finish(), query.nextCursor(lastId[0], encoder.count()));
+    }
+
+    public record GeoBufPage(byte[] body, String nextCursor) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.jolt.workflow.geo;
+
+import java.util.List;
+
+// Business layer "pipes" is still stored as "roads" for legacy rows, so queries expand it to both.
+final class GeoLayerNames {
+
+    private GeoLayerNames() {
+    }
+
+    static String normalizeLayerName(String layer) {
+        if ("pipes".equalsIgnoreCase(layer)) {
+            return "pipes";
+        }
+        return layer;
+    }
+
+    static boolean isPipeLayer(String layer) {
+        return "pipes".equalsIgnoreCase(layer) || "roads".equalsIgnoreCase(layer);
+    }
+
+    static List<String> expandQueriedLayerNames(String layer) {
+        String normalized = normalizeLayerName(layer);
+        if ("pipes".equalsIgnoreCase(normalized)) {
+            return List.of("pipes", "roads");
+        }
+        return List.of(normalized);
+    }
+
+    static List<String> parseQueriedLayers(String layers) {
+        if (layers == null || layers.isBlank()) {
+            return List.of();
+        }
+        return List.of(layers.split(",")).stream()
+                .map(String::trim)
+                .filter(s -> !s.isBlank())
+                .flatMap(layer -> expandQueriedLayerNames(layer).stream())
+                .distinct()
+                .toList();
+    }
+}
@@ -0,0 +1,76 @@
+package com.jolt.workflow.geo;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Reads the trigger-maintained versions (V16) to build ETags without running any PostGIS work.
+@Component
+public class GeoLayerVersions {
+
+    // geo_layer_versions key bumped by pipe_nodes / pipe_segments writes (V25); not a feature layer.
+    static final String TWIN_NODES = "twin_nodes";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public GeoLayerVersions(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Sum of the requested layers' versions: every bump strictly increases one term, so the sum changes too.
+    public long layerVersionSum(List<String> layers) {
+        Long sum;
+        if (layers == null || layers.isEmpty()) {
+            sum = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(SUM(version), 0) FROM geo_layer_versions WHERE layer <> ?",
+                    Long.class,
+                    TWIN_NODES
+            );
+        } else {
+            String placeholders = String.join(",", java.util.Collections.nCopies(layers.size(), "?"));
+            sum = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(SUM(version), 0) FROM geo_layer_versions WHERE layer IN (" + placeholders + ")",
+                    Long.class,
+                    layers.toArray()
+            );
+        }
+        return sum == null ? 0L : sum;
+    }
+
+    public Long featureVersion(String featureId) {
+        return jdbcTemplate.query(
+                "SELECT change_version FROM geo_features WHERE id = ?",
+                ps -> ps.setString(1, featureId),
+                rs -> rs.next() ? rs.getLong("change_version") : null
+        );
+    }
+
+    public String collectionEtag(GeoFeatureQuery query, String variant) {
+        long version = layerVersionSum(query.layers());
+        String shape = variant + "|" + query.whereSql() + "|" + query.whereParams() + "|" + query.limit() + "|" + query.offset() + "|" + query.lod();
+        return "\"fc-" + version + "-" + shortHash(shape) + "\"";
+    }
+
+    // /twin/nodes responses, keyed by the query parameters that shape them.
+    public String nodesEtag(String shape) {
+        long version = layerVersionSum(List.of(TWIN_NODES));
+        return "\"tn-" + version + "-" + shortHash(shape) + "\"";
+    }
+
+    public static String featureEtag(long featureVersion) {
+        return "\"f-" + featureVersion + "\"";
+    }
+
+    private static String shortHash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.jolt.workflow.geo;
+
+// Zoom -> precomputed geometry column (V17) and GeoJSON coordinate precision.
+// Tolerances are roughly half a screen pixel at the highest zoom of each band.
+enum GeoLod {
+    FULL(17, null, 9),
+    LOD1(15, "geom_lod1", 6),
+    LOD2(13, "geom_lod2", 5),
+    LOD3(0, "geom_lod3", 4);
+
+    static final int MAX_ZOOM = 22;
+
+    private final int minZoom;
+    private final String column;
+    private final int maxDecimalDigits;
+
+    GeoLod(int minZoom, String column, int maxDecimalDigits) {
+        this.minZoom = minZoom;
+        this.column = column;
+        this.maxDecimalDigits = maxDecimalDigits;
+    }
+
+    static GeoLod forZoom(Integer zoom) {
+        if (zoom == null) return FULL;
+        if (zoom < 0 || zoom > MAX_ZOOM) {
+            throw new IllegalArgumentException("zoom must be between 0 and " + MAX_ZOOM);
+        }
+        for (GeoLod lod : values()) {
+            if (zoom >= lod.minZoom) return lod;
+        }
+        return LOD3;
+    }
+
+    int maxDecimalDigits() {
+        return maxDecimalDigits;
+    }
+
+    // Geometry to render; the alias prefix lets callers qualify the columns (e.g. "g.").
+    String geometrySql(String alias) {
+        if (column == null) return alias + "geom";
+        return "COALESCE(" + alias + column + ", " + alias + "geom)";
+    }
+
+    String geoJsonSql() {
+        if (column == null) return "ST_AsGeoJSON(geom)";
+        return "ST_AsGeoJSON(" + geometrySql("") + ", " + maxDecimalDigits + ")";
+    }
+}
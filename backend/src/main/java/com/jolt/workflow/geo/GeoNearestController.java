@@ -0,0 +1,53 @@
+package com.jolt.workflow.geo;
+
+import java.util.List;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+@RestController
+@RequestMapping("/api/v1")
+public class GeoNearestController {
+
+    private final GeoNearestService nearestService;
+    private final ObjectMapper objectMapper;
+
+    public GeoNearestController(GeoNearestService nearestService, ObjectMapper objectMapper) {
+        this.nearestService = nearestService;
+        this.objectMapper = objectMapper;
+    }
+
+    // k nearest features to a point, distance in metres to the geometry itself (0 inside a building).
+    @GetMapping(value = "/features/nearest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public JsonNode nearest(
+            @RequestParam(name = "lng") double lng,
+            @RequestParam(name = "lat") double lat,
+            @RequestParam(name = "layers", required = false) String layers,
+            @RequestParam(name = "k", required = false, defaultValue = "5") int k,
+            @RequestParam(name = "maxMeters", required = false) Double maxMeters
+    ) {
+        boolean indexed = nearestService.ready();
+        List<GeoNearestService.NearestAsset> assets =
+                nearestService.nearest(lng, lat, GeoLayerNames.parseQueriedLayers(layers), k, maxMeters);
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("lng", lng);
+        root.put("lat", lat);
+        root.put("source", indexed ? "memory" : "postgis");
+        ArrayNode results = root.putArray("results");
+        for (GeoNearestService.NearestAsset asset : assets) {
+            ObjectNode item = results.addObject();
+            item.put("id", asset.id());
+            item.put("layer", asset.layer());
+            item.put("name", asset.name());
+            item.put("distanceMeters", asset.distanceMeters());
+        }
+        return root;
+    }
+}
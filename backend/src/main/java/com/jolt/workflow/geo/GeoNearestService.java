@@ -0,0 +1,275 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Nearest geo_features around a point or another feature, answered from per-layer in-memory STR-trees.
+// Single-feature writes land in a small overlay on top of the trees; bulk writes, or an overlay past
+// rebuild-threshold, rebuild the trees on a virtual thread. Until the first build finishes, or when the
+// index is disabled, the same questions go to PostGIS.
+@Component
+public class GeoNearestService {
+
+    private static final Logger log = LoggerFactory.getLogger(GeoNearestService.class);
+
+    public static final int MAX_K = 100;
+
+    public record NearestAsset(String id, String layer, String name, double distanceMeters) {
+    }
+
+    private static final String ENTRY_SQL =
+            "SELECT id, layer, COALESCE(properties->>'name', properties->>'ref', id) AS name, " +
+                    "ST_AsBinary(ST_Force2D(geom)) AS wkb FROM geo_features";
+
+    // Trees by layer and their entries by id; overlay by id, a null shape meaning deleted.
+    // Overlay generations order single writes against a rebuild that is scanning concurrently.
+    private record Snapshot(
+            Map<String, GeoStrTree> trees,
+            Map<String, GeoStrTree.Entry> byId,
+            Map<String, OverlayEntry> overlay
+    ) {
+    }
+
+    private record OverlayEntry(GeoStrTree.Entry entry, long generation) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int rebuildThreshold;
+    private final Object lock = new Object();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong bulkGeneration = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    public GeoNearestService(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.geo.nearest-index.enabled:true}") boolean enabled,
+            @Value("${app.geo.nearest-index.rebuild-threshold:256}") int rebuildThreshold
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.rebuildThreshold = Math.max(1, rebuildThreshold);
+    }
+
+    public List<NearestAsset> nearest(double lng, double lat, List<String> layers, int k, Double maxMeters) {
+        if (!Double.isFinite(lng) || !Double.isFinite(lat) || Math.abs(lng) > 180 || Math.abs(lat) > 90) {
+            throw new IllegalArgumentException("lng/lat out of range");
+        }
+        int safeK = Math.max(1, Math.min(k, MAX_K));
+        double limit = maxMeters == null ? Double.POSITIVE_INFINITY : Math.max(0.0, maxMeters);
+        Snapshot current = readySnapshot();
+        if (current == null) {
+            return nearestFromDatabase("SELECT ST_SetSRID(ST_MakePoint(?, ?), 4326) AS geom", List.of(lng, lat), null, layers, safeK, maxMeters);
+        }
+        return search(current, GeoStrTree.Probe.point(lng, lat), null, layers, safeK, limit);
+    }
+
+    // Distance to the feature's own geometry (not its centroid), the feature itself excluded.
+    public List<NearestAsset> nearestToFeature(String featureId, List<String> layers, int k, Double maxMeters) {
+        int safeK = Math.max(1, Math.min(k, MAX_K));
+        double limit = maxMeters == null ? Double.POSITIVE_INFINITY : Math.max(0.0, maxMeters);
+        Snapshot current = readySnapshot();
+        GeoStrTree.Entry source = current == null ? null : lookup(current, featureId);
+        if (source == null) {
+            return nearestFromDatabase("SELECT geom FROM geo_features WHERE id = ?", List.of(featureId), featureId, layers, safeK, maxMeters);
+        }
+        return search(current, GeoStrTree.Probe.shape(source.shape()), featureId, layers, safeK, limit);
+    }
+
+    public boolean ready() {
+        return snapshot != null;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFeatureChanged(GeoFeatureChangedEvent event) {
+        if (!enabled) return;
+        if (snapshot == null) {
+            // A build that is scanning may have missed this write; make it scan again.
+            if (rebuilding.get()) bulkGeneration.incrementAndGet();
+            return;
+        }
+        if (event.featureId() == null) {
+            // Set-based write: no way to know which rows moved, so rebuild from scratch.
+            bulkGeneration.incrementAndGet();
+            snapshot = null;
+            scheduleRebuild();
+            return;
+        }
+        try {
+            applyOverlay(event.featureId());
+        } catch (RuntimeException e) {
+            log.warn("geo_nearest_overlay_failed feature_id={} error={}", event.featureId(), e.getMessage());
+            snapshot = null;
+            scheduleRebuild();
+        }
+    }
+
+    // Re-read and install under the lock, as TwinTopologyGraph.applyFeature does, so two after-commit listeners
+    // for the same feature cannot put the older row over the newer one.
+    private void applyOverlay(String featureId) {
+        boolean rebuild;
+        synchronized (lock) {
+            Snapshot current = snapshot;
+            if (current == null) return;
+            List<GeoStrTree.Entry> rows = jdbcTemplate.query(ENTRY_SQL + " WHERE id = ?", (rs, rowNum) -> toEntry(
+                    rs.getString("id"), rs.getString("layer"), rs.getString("name"), rs.getBytes("wkb")
+            ), featureId);
+            GeoStrTree.Entry entry = rows.isEmpty() ? new GeoStrTree.Entry(featureId, null, null, null) : rows.get(0);
+            Map<String, OverlayEntry> overlay = new HashMap<>(current.overlay());
+            overlay.put(featureId, new OverlayEntry(entry, generation.incrementAndGet()));
+            snapshot = new Snapshot(current.trees(), current.byId(), Map.copyOf(overlay));
+            rebuild = overlay.size() > rebuildThreshold;
+        }
+        if (rebuild) scheduleRebuild();
+    }
+
+    private Snapshot readySnapshot() {
+        if (!enabled) return null;
+        Snapshot current = snapshot;
+        if (current == null) scheduleRebuild();
+        return current;
+    }
+
+    private void scheduleRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) return;
+        Thread.ofVirtual().name("geo-nearest-rebuild").start(() -> {
+            try {
+                while (!rebuild()) {
+                    log.info("geo_nearest_rebuild_retry");
+                }
+            } catch (RuntimeException e) {
+                log.warn("geo_nearest_rebuild_failed error={}", e.getMessage());
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+    }
+
+    // false when a bulk write raced the scan and the result was discarded.
+    private boolean rebuild() {
+        long startGeneration = generation.get();
+        long startBulk = bulkGeneration.get();
+        Map<String, List<GeoStrTree.Entry>> byLayer = new HashMap<>();
+        jdbcTemplate.query(ENTRY_SQL + " WHERE geom IS NOT NULL", rs -> {
+            GeoStrTree.Entry entry = toEntry(rs.getString("id"), rs.getString("layer"), rs.getString("name"), rs.getBytes("wkb"));
+            if (entry.shape() != null) {
+                byLayer.computeIfAbsent(entry.layer(), key -> new ArrayList<>()).add(entry);
+            }
+        });
+        Map<String, GeoStrTree> trees = new HashMap<>();
+        Map<String, GeoStrTree.Entry> byId = new HashMap<>();
+        for (Map.Entry<String, List<GeoStrTree.Entry>> layer : byLayer.entrySet()) {
+            trees.put(layer.getKey(), GeoStrTree.build(layer.getValue()));
+            for (GeoStrTree.Entry entry : layer.getValue()) byId.put(entry.id(), entry);
+        }
+        synchronized (lock) {
+            if (bulkGeneration.get() != startBulk) {
+                return false;
+            }
+            // Keep overlay entries written after the scan started; the trees may predate them.
+            Map<String, OverlayEntry> overlay = new HashMap<>();
+            Snapshot current = snapshot;
+            if (current != null) {
+                for (Map.Entry<String, OverlayEntry> item : current.overlay().entrySet()) {
+                    if (item.getValue().generation() > startGeneration) overlay.put(item.getKey(), item.getValue());
+                }
+            }
+            snapshot = new Snapshot(Map.copyOf(trees), Map.copyOf(byId), Map.copyOf(overlay));
+        }
+        log.info("geo_nearest_index_built features={} layers={}", byId.size(), trees.size());
+        return true;
+    }
+
+    private static GeoStrTree.Entry toEntry(String id, String layer, String name, byte[] wkb) {
+        GeoShape shape = wkb == null ? null : GeoShape.fromWkb(wkb);
+        return new GeoStrTree.Entry(id, layer, name, shape);
+    }
+
+    private static GeoStrTree.Entry lookup(Snapshot current, String featureId) {
+        OverlayEntry overlaid = current.overlay().get(featureId);
+        if (overlaid != null) {
+            return overlaid.entry().shape() == null ? null : overlaid.entry();
+        }
+        return current.byId().get(featureId);
+    }
+
+    private static List<NearestAsset> search(
+            Snapshot current,
+            GeoStrTree.Probe probe,
+            String excludeId,
+            List<String> layers,
+            int k,
+            double maxMeters
+    ) {
+        Iterable<String> searchLayers = layers.isEmpty() ? current.trees().keySet() : layers;
+        Map<String, OverlayEntry> overlay = current.overlay();
+        List<GeoStrTree.Hit> hits = new ArrayList<>();
+        for (String layer : searchLayers) {
+            GeoStrTree tree = current.trees().get(layer);
+            if (tree == null) continue;
+            hits.addAll(tree.nearest(probe, k, maxMeters, e -> !overlay.containsKey(e.id()) && !e.id().equals(excludeId)));
+        }
+        for (OverlayEntry item : overlay.values()) {
+            GeoStrTree.Entry entry = item.entry();
+            if (entry.shape() == null || entry.id().equals(excludeId)) continue;
+            if (!layers.isEmpty() && !layers.contains(entry.layer())) continue;
+            double distance = probe.distance(entry.shape());
+            if (distance <= maxMeters) hits.add(new GeoStrTree.Hit(entry, distance));
+        }
+        hits.sort(Comparator.comparingDouble(GeoStrTree.Hit::distanceMeters).thenComparing(hit -> hit.entry().id()));
+        List<NearestAsset> result = new ArrayList<>();
+        for (GeoStrTree.Hit hit : hits.subList(0, Math.min(k, hits.size()))) {
+            GeoStrTree.Entry entry = hit.entry();
+            result.add(new NearestAsset(entry.id(), entry.layer(), entry.name(), Math.round(hit.distanceMeters() * 100.0) / 100.0));
+        }
+        return result;
+    }
+
+    private List<NearestAsset> nearestFromDatabase(
+            String sourceSql,
+            List<Object> sourceParams,
+            String excludeId,
+            List<String> layers,
+            int k,
+            Double maxMeters
+    ) {
+        List<Object> params = new ArrayList<>(sourceParams);
+        StringBuilder where = new StringBuilder("WHERE 1=1");
+        if (!layers.isEmpty()) {
+            where.append(" AND g.layer IN (").append(String.join(",", java.util.Collections.nCopies(layers.size(), "?"))).append(")");
+            params.addAll(layers);
+        }
+        if (excludeId != null) {
+            where.append(" AND g.id <> ?");
+            params.add(excludeId);
+        }
+        if (maxMeters != null) {
+            where.append(" AND ST_DWithin(g.geom::geography, src.geom::geography, ?)");
+            params.add(Math.max(0.0, maxMeters));
+        }
+        params.add(k);
+        String sql = "WITH src AS (" + sourceSql + ") " +
+                "SELECT g.id, g.layer, COALESCE(g.properties->>'name', g.properties->>'ref', g.id) AS name, " +
+                "       ROUND(ST_Distance(g.geom::geography, src.geom::geography)::numeric, 2) AS distance_m " +
+                "FROM geo_features g, src " + where +
+                " ORDER BY g.geom <-> src.geom LIMIT ?";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new NearestAsset(
+                rs.getString("id"),
+                rs.getString("layer"),
+                rs.getString("name"),
+                rs.getDouble("distance_m")
+        ), params.toArray());
+    }
+}
@@ -0,0 +1,152 @@
+package com.jolt.workflow.geo;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import tools.jackson.databind.node.JsonNodeFactory;
+
+// Property filter for /features, e.g. filter=material=PE|HDPE;diameter>=200.
+// Terms are AND-ed by ';'. "=" compiles to properties @> ?::jsonb (GIN); <, <=, >, >= only on PROMOTED keys.
+// Values may be double-quoted to carry ';' or '|'. Only bound parameters reach SQL, never the raw text.
+record GeoPropertyFilter(String whereSql, List<Object> params) {
+
+    static final int MAX_TERMS = 8;
+    static final int MAX_ALTERNATIVES = 16;
+    static final int MAX_VALUE_LENGTH = 200;
+
+    private static final GeoPropertyFilter EMPTY = new GeoPropertyFilter("", List.of());
+    private static final Pattern KEY = Pattern.compile("[A-Za-z_][A-Za-z0-9_:.\\-]{0,63}");
+    private static final Pattern NUMBER = Pattern.compile("-?[0-9]+(\\.[0-9]+)?");
+
+    // Range-filterable keys; expressions match the V20 expression indexes.
+    static final Map<String, String> PROMOTED = Map.of(
+            "diameter", "geo_try_numeric(COALESCE(properties->>'diameter_mm', properties->>'diameter'))",
+            "building:levels", "geo_try_numeric(properties->>'building:levels')"
+    );
+
+    static GeoPropertyFilter parse(String expression) {
+        if (expression == null || expression.isBlank()) return EMPTY;
+
+        List<String> terms = split(expression, ';');
+        if (terms.size() > MAX_TERMS) {
+            throw new IllegalArgumentException("filter supports at most " + MAX_TERMS + " terms");
+        }
+        StringBuilder sql = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        for (String term : terms) {
+            if (term.isBlank()) continue;
+            appendTerm(term.trim(), sql, params);
+        }
+        if (sql.length() == 0) return EMPTY;
+        return new GeoPropertyFilter(sql.toString(), List.copyOf(params));
+    }
+
+    private static void appendTerm(String term, StringBuilder sql, List<Object> params) {
+        int opStart = indexOfOperator(term);
+        if (opStart <= 0) {
+            throw new IllegalArgumentException("filter term must be key=value or key>=number: " + term);
+        }
+        String key = term.substring(0, opStart).trim();
+        if (!KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("filter key is invalid: " + key);
+        }
+        String op = term.substring(opStart, opStart + 1);
+        if (opStart + 1 < term.length() && term.charAt(opStart + 1) == '=' && !op.equals("=")) {
+            op += "=";
+        }
+        String rawValue = term.substring(opStart + op.length()).trim();
+
+        if (op.equals("=")) {
+            List<String> alternatives = split(rawValue, '|');
+            if (alternatives.size() > MAX_ALTERNATIVES) {
+                throw new IllegalArgumentException("filter supports at most " + MAX_ALTERNATIVES + " values per key");
+            }
+            List<String> containments = new ArrayList<>();
+            for (String alternative : alternatives) {
+                String value = unquote(alternative.trim());
+                containments.add(JsonNodeFactory.instance.objectNode().put(key, value).toString());
+                // Imported data stores numbers and flags both as JSON scalars and as strings. Numbers go through
+                // BigDecimal, so "007" is sent as 7 rather than as text jsonb would reject.
+                if (!isQuoted(alternative.trim())) {
+                    if (NUMBER.matcher(value).matches()) {
+                        containments.add(JsonNodeFactory.instance.objectNode().put(key, new BigDecimal(value)).toString());
+                    } else if (value.equals("true") || value.equals("false")) {
+                        containments.add(JsonNodeFactory.instance.objectNode().put(key, Boolean.parseBoolean(value)).toString());
+                    }
+                }
+            }
+            sql.append(" AND (");
+            for (int i = 0; i < containments.size(); i++) {
+                if (i > 0) sql.append(" OR ");
+                sql.append("properties @> ?::jsonb");
+                params.add(containments.get(i));
+            }
+            sql.append(")");
+            return;
+        }
+
+        String expression = PROMOTED.get(key);
+        if (expression == null) {
+            throw new IllegalArgumentException("filter range terms only support: " + String.join(", ", PROMOTED.keySet().stream().sorted().toList()));
+        }
+        String value = unquote(rawValue);
+        if (!NUMBER.matcher(value).matches()) {
+            throw new IllegalArgumentException("filter range value must be a number: " + term);
+        }
+        sql.append(" AND ").append(expression).append(" ").append(op).append(" ?");
+        params.add(new BigDecimal(value));
+    }
+
+    // First '=', '<' or '>' outside quotes; keys never contain them.
+    private static int indexOfOperator(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (c == '"') return -1;
+            if (c == '=' || c == '<' || c == '>') return i;
+        }
+        return -1;
+    }
+
+    // Splits on the separator outside double quotes; "\"" escapes a quote inside a quoted value.
+    private static List<String> split(String text, char separator) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted && c == '\\' && i + 1 < text.length()) {
+                current.append(c).append(text.charAt(++i));
+                continue;
+            }
+            if (c == '"') quoted = !quoted;
+            if (c == separator && !quoted) {
+                parts.add(current.toString());
+                current.setLength(0);
+                continue;
+            }
+            current.append(c);
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("filter has an unterminated quote");
+        }
+        parts.add(current.toString());
+        return parts;
+    }
+
+    private static boolean isQuoted(String value) {
+        return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"");
+    }
+
+    private static String unquote(String value) {
+        String result = value;
+        if (isQuoted(value)) {
+            result = value.substring(1, value.length() - 1).replace("\\\"", "\"").replace("\\\\", "\\");
+        }
+        if (result.length() > MAX_VALUE_LENGTH) {
+            throw new IllegalArgumentException("filter value is too long");
+        }
+        return result;
+    }
+}
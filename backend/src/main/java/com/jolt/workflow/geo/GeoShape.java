@@ -0,0 +1,224 @@
+package com.jolt.workflow.geo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+// Linework of one 2D geometry kept in memory for nearest-asset lookups: every point, line and ring as
+// interleaved lon/lat, rings flagged for inside tests. Distances are metres on a local equirectangular
+// projection, which at campus scale stays within centimetres of ST_Distance(geography).
+final class GeoShape {
+
+    static final double METERS_PER_DEGREE_LAT = 110_574.0;
+    static final double METERS_PER_DEGREE_LON_AT_EQUATOR = 111_320.0;
+
+    private final double[][] parts;
+    private final boolean[] rings;
+    final double minLon;
+    final double minLat;
+    final double maxLon;
+    final double maxLat;
+
+    private GeoShape(double[][] parts, boolean[] rings) {
+        this.parts = parts;
+        this.rings = rings;
+        double x0 = Double.POSITIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY;
+        double y1 = Double.NEGATIVE_INFINITY;
+        for (double[] part : parts) {
+            for (int i = 0; i < part.length; i += 2) {
+                x0 = Math.min(x0, part[i]);
+                y0 = Math.min(y0, part[i + 1]);
+                x1 = Math.max(x1, part[i]);
+                y1 = Math.max(y1, part[i + 1]);
+            }
+        }
+        this.minLon = x0;
+        this.minLat = y0;
+        this.maxLon = x1;
+        this.maxLat = y1;
+    }
+
+    static GeoShape point(double lon, double lat) {
+        return new GeoShape(new double[][] {{lon, lat}}, new boolean[] {false});
+    }
+
+    // 2D OGC WKB (ST_AsBinary(ST_Force2D(geom))); null for empty geometries.
+    static GeoShape fromWkb(byte[] wkb) {
+        List<double[]> parts = new ArrayList<>();
+        List<Boolean> rings = new ArrayList<>();
+        readGeometry(ByteBuffer.wrap(wkb), parts, rings);
+        if (parts.isEmpty()) return null;
+        boolean[] ringFlags = new boolean[rings.size()];
+        for (int i = 0; i < ringFlags.length; i++) ringFlags[i] = rings.get(i);
+        return new GeoShape(parts.toArray(new double[0][]), ringFlags);
+    }
+
+    double centerLon() {
+        return (minLon + maxLon) / 2.0;
+    }
+
+    double centerLat() {
+        return (minLat + maxLat) / 2.0;
+    }
+
+    static double metersPerDegreeLon(double lat) {
+        return METERS_PER_DEGREE_LON_AT_EQUATOR * Math.cos(Math.toRadians(lat));
+    }
+
+    // Lower bound for any shape inside the box.
+    static double boxDistanceMeters(double lon, double lat, double minLon, double minLat, double maxLon, double maxLat) {
+        double dx = lon < minLon ? minLon - lon : (lon > maxLon ? lon - maxLon : 0.0);
+        double dy = lat < minLat ? minLat - lat : (lat > maxLat ? lat - maxLat : 0.0);
+        return Math.hypot(dx * metersPerDegreeLon(lat), dy * METERS_PER_DEGREE_LAT);
+    }
+
+    static double boxDistanceMeters(GeoShape shape, double minLon, double minLat, double maxLon, double maxLat) {
+        double dx = Math.max(0.0, Math.max(minLon - shape.maxLon, shape.minLon - maxLon));
+        double dy = Math.max(0.0, Math.max(minLat - shape.maxLat, shape.minLat - maxLat));
+        return Math.hypot(dx * metersPerDegreeLon(shape.centerLat()), dy * METERS_PER_DEGREE_LAT);
+    }
+
+    double distanceMeters(double lon, double lat) {
+        if (contains(lon, lat)) return 0.0;
+        double kx = metersPerDegreeLon(lat);
+        double best = Double.POSITIVE_INFINITY;
+        for (double[] part : parts) {
+            if (part.length == 2) {
+                best = Math.min(best, Math.hypot((part[0] - lon) * kx, (part[1] - lat) * METERS_PER_DEGREE_LAT));
+                continue;
+            }
+            for (int i = 0; i + 3 < part.length; i += 2) {
+                best = Math.min(best, pointSegment(lon, lat, part[i], part[i + 1], part[i + 2], part[i + 3], kx));
+            }
+        }
+        return best;
+    }
+
+    double distanceMeters(GeoShape other) {
+        double kx = metersPerDegreeLon((centerLat() + other.centerLat()) / 2.0);
+        double best = Double.POSITIVE_INFINITY;
+        for (double[] a : parts) {
+            for (double[] b : other.parts) {
+                best = Math.min(best, partDistance(a, b, kx));
+                if (best == 0.0) return 0.0;
+            }
+        }
+        // Disjoint linework can still overlap when one shape lies inside the other's rings.
+        if (other.contains(parts[0][0], parts[0][1]) || contains(other.parts[0][0], other.parts[0][1])) {
+            return 0.0;
+        }
+        return best;
+    }
+
+    // Even-odd over all rings, which also handles holes and non-overlapping multipolygon members.
+    boolean contains(double lon, double lat) {
+        if (lon < minLon || lon > maxLon || lat < minLat || lat > maxLat) return false;
+        boolean inside = false;
+        for (int p = 0; p < parts.length; p++) {
+            if (!rings[p]) continue;
+            double[] ring = parts[p];
+            for (int i = 0, j = ring.length - 2; i < ring.length; j = i, i += 2) {
+                double xi = ring[i];
+                double yi = ring[i + 1];
+                double xj = ring[j];
+                double yj = ring[j + 1];
+                if ((yi > lat) != (yj > lat) && lon < (xj - xi) * (lat - yi) / (yj - yi) + xi) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    private static double partDistance(double[] a, double[] b, double kx) {
+        if (a.length == 2 && b.length == 2) {
+            return Math.hypot((a[0] - b[0]) * kx, (a[1] - b[1]) * METERS_PER_DEGREE_LAT);
+        }
+        if (a.length == 2) return lineDistance(a[0], a[1], b, kx);
+        if (b.length == 2) return lineDistance(b[0], b[1], a, kx);
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i + 3 < a.length; i += 2) {
+            for (int j = 0; j + 3 < b.length; j += 2) {
+                if (segmentsIntersect(a[i], a[i + 1], a[i + 2], a[i + 3], b[j], b[j + 1], b[j + 2], b[j + 3])) {
+                    return 0.0;
+                }
+                best = Math.min(best, Math.min(
+                        Math.min(pointSegment(a[i], a[i + 1], b[j], b[j + 1], b[j + 2], b[j + 3], kx),
+                                pointSegment(a[i + 2], a[i + 3], b[j], b[j + 1], b[j + 2], b[j + 3], kx)),
+                        Math.min(pointSegment(b[j], b[j + 1], a[i], a[i + 1], a[i + 2], a[i + 3], kx),
+                                pointSegment(b[j + 2], b[j + 3], a[i], a[i + 1], a[i + 2], a[i + 3], kx))
+                ));
+            }
+        }
+        return best;
+    }
+
+    private static double lineDistance(double lon, double lat, double[] line, double kx) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i + 3 < line.length; i += 2) {
+            best = Math.min(best, pointSegment(lon, lat, line[i], line[i + 1], line[i + 2], line[i + 3], kx));
+        }
+        return best;
+    }
+
+    private static double pointSegment(double px, double py, double ax, double ay, double bx, double by, double kx) {
+        double x = (px - ax) * kx;
+        double y = (py - ay) * METERS_PER_DEGREE_LAT;
+        double dx = (bx - ax) * kx;
+        double dy = (by - ay) * METERS_PER_DEGREE_LAT;
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0.0 ? 0.0 : Math.max(0.0, Math.min(1.0, (x * dx + y * dy) / lengthSq));
+        return Math.hypot(x - t * dx, y - t * dy);
+    }
+
+    private static boolean segmentsIntersect(double ax, double ay, double bx, double by,
+                                             double cx, double cy, double dx, double dy) {
+        double d1 = cross(cx, cy, dx, dy, ax, ay);
+        double d2 = cross(cx, cy, dx, dy, bx, by);
+        double d3 = cross(ax, ay, bx, by, cx, cy);
+        double d4 = cross(ax, ay, bx, by, dx, dy);
+        return ((d1 > 0) != (d2 > 0)) && ((d3 > 0) != (d4 > 0)) && d1 != 0 && d2 != 0 && d3 != 0 && d4 != 0;
+    }
+
+    private static double cross(double ax, double ay, double bx, double by, double px, double py) {
+        return (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+    }
+
+    private static void readGeometry(ByteBuffer in, List<double[]> parts, List<Boolean> rings) {
+        in.order(in.get() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        int type = in.getInt() % 1000;
+        switch (type) {
+            case 1 -> {
+                double x = in.getDouble();
+                double y = in.getDouble();
+                if (!Double.isNaN(x) && !Double.isNaN(y)) {
+                    parts.add(new double[] {x, y});
+                    rings.add(false);
+                }
+            }
+            case 2 -> addLine(in, parts, rings, false);
+            case 3 -> {
+                int count = in.getInt();
+                for (int i = 0; i < count; i++) addLine(in, parts, rings, true);
+            }
+            case 4, 5, 6, 7 -> {
+                int count = in.getInt();
+                for (int i = 0; i < count; i++) readGeometry(in, parts, rings);
+            }
+            default -> throw new IllegalArgumentException("unsupported WKB geometry type " + type);
+        }
+    }
+
+    private static void addLine(ByteBuffer in, List<double[]> parts, List<Boolean> rings, boolean ring) {
+        int points = in.getInt();
+        double[] coords = new double[points * 2];
+        for (int i = 0; i < coords.length; i++) coords[i] = in.getDouble();
+        if (points > 0) {
+            parts.add(coords);
+            rings.add(ring);
+        }
+    }
+}
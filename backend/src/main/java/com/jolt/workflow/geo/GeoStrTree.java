@@ -0,0 +1,175 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+// Immutable Sort-Tile-Recursive R-tree over feature bounding boxes, bulk-loaded once per snapshot.
+// nearest() is best-first search: boxes are expanded in order of their lower-bound distance and an entry
+// is only reported after its exact distance has come back to the top of the queue.
+final class GeoStrTree {
+
+    static final int NODE_CAPACITY = 16;
+
+    record Entry(String id, String layer, String name, GeoShape shape) {
+    }
+
+    record Hit(Entry entry, double distanceMeters) {
+    }
+
+    // Distance from whatever is being searched around: a point or another shape.
+    interface Probe {
+        double boxDistance(double minLon, double minLat, double maxLon, double maxLat);
+
+        double distance(GeoShape shape);
+
+        static Probe point(double lon, double lat) {
+            return new Probe() {
+                @Override
+                public double boxDistance(double minLon, double minLat, double maxLon, double maxLat) {
+                    return GeoShape.boxDistanceMeters(lon, lat, minLon, minLat, maxLon, maxLat);
+                }
+
+                @Override
+                public double distance(GeoShape shape) {
+                    return shape.distanceMeters(lon, lat);
+                }
+            };
+        }
+
+        static Probe shape(GeoShape source) {
+            return new Probe() {
+                @Override
+                public double boxDistance(double minLon, double minLat, double maxLon, double maxLat) {
+                    return GeoShape.boxDistanceMeters(source, minLon, minLat, maxLon, maxLat);
+                }
+
+                @Override
+                public double distance(GeoShape shape) {
+                    return source.distanceMeters(shape);
+                }
+            };
+        }
+    }
+
+    private static final class Node {
+        final double minLon;
+        final double minLat;
+        final double maxLon;
+        final double maxLat;
+        final Node[] children;
+        final Entry[] entries;
+
+        Node(Node[] children, Entry[] entries) {
+            this.children = children;
+            this.entries = entries;
+            double x0 = Double.POSITIVE_INFINITY;
+            double y0 = Double.POSITIVE_INFINITY;
+            double x1 = Double.NEGATIVE_INFINITY;
+            double y1 = Double.NEGATIVE_INFINITY;
+            if (children != null) {
+                for (Node child : children) {
+                    x0 = Math.min(x0, child.minLon);
+                    y0 = Math.min(y0, child.minLat);
+                    x1 = Math.max(x1, child.maxLon);
+                    y1 = Math.max(y1, child.maxLat);
+                }
+            } else {
+                for (Entry entry : entries) {
+                    x0 = Math.min(x0, entry.shape().minLon);
+                    y0 = Math.min(y0, entry.shape().minLat);
+                    x1 = Math.max(x1, entry.shape().maxLon);
+                    y1 = Math.max(y1, entry.shape().maxLat);
+                }
+            }
+            this.minLon = x0;
+            this.minLat = y0;
+            this.maxLon = x1;
+            this.maxLat = y1;
+        }
+    }
+
+    private record Candidate(double distance, Node node, Entry entry, boolean exact) {
+    }
+
+    private final Node root;
+    private final int size;
+
+    private GeoStrTree(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    static GeoStrTree build(List<Entry> entries) {
+        if (entries.isEmpty()) return new GeoStrTree(null, 0);
+        List<Node> level = new ArrayList<>();
+        for (List<Entry> group : tile(entries, e -> e.shape().centerLon(), e -> e.shape().centerLat())) {
+            level.add(new Node(null, group.toArray(new Entry[0])));
+        }
+        while (level.size() > 1) {
+            List<Node> parents = new ArrayList<>();
+            for (List<Node> group : tile(level, n -> (n.minLon + n.maxLon) / 2.0, n -> (n.minLat + n.maxLat) / 2.0)) {
+                parents.add(new Node(group.toArray(new Node[0]), null));
+            }
+            level = parents;
+        }
+        return new GeoStrTree(level.get(0), entries.size());
+    }
+
+    int size() {
+        return size;
+    }
+
+    List<Hit> nearest(Probe probe, int k, double maxMeters, Predicate<Entry> accept) {
+        List<Hit> hits = new ArrayList<>();
+        if (root == null || k <= 0) return hits;
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance));
+        queue.add(new Candidate(probe.boxDistance(root.minLon, root.minLat, root.maxLon, root.maxLat), root, null, false));
+        while (!queue.isEmpty() && hits.size() < k) {
+            Candidate candidate = queue.poll();
+            if (candidate.distance() > maxMeters) break;
+            if (candidate.entry() != null) {
+                if (candidate.exact()) {
+                    hits.add(new Hit(candidate.entry(), candidate.distance()));
+                } else {
+                    queue.add(new Candidate(probe.distance(candidate.entry().shape()), null, candidate.entry(), true));
+                }
+                continue;
+            }
+            Node node = candidate.node();
+            if (node.children != null) {
+                for (Node child : node.children) {
+                    queue.add(new Candidate(probe.boxDistance(child.minLon, child.minLat, child.maxLon, child.maxLat), child, null, false));
+                }
+            } else {
+                for (Entry entry : node.entries) {
+                    if (!accept.test(entry)) continue;
+                    GeoShape shape = entry.shape();
+                    queue.add(new Candidate(probe.boxDistance(shape.minLon, shape.minLat, shape.maxLon, shape.maxLat), null, entry, false));
+                }
+            }
+        }
+        return hits;
+    }
+
+    // STR packing: sort by x into vertical slices, then by y inside each slice, and cut runs of NODE_CAPACITY.
+    private static <T> List<List<T>> tile(List<T> items, ToDoubleFunction<T> x, ToDoubleFunction<T> y) {
+        int leafCount = (items.size() + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceCount = (int) Math.ceil(Math.sqrt(leafCount));
+        int sliceSize = sliceCount * NODE_CAPACITY;
+        List<T> sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparingDouble(x));
+        List<List<T>> groups = new ArrayList<>();
+        for (int start = 0; start < sorted.size(); start += sliceSize) {
+            List<T> slice = new ArrayList<>(sorted.subList(start, Math.min(sorted.size(), start + sliceSize)));
+            slice.sort(Comparator.comparingDouble(y));
+            for (int i = 0; i < slice.size(); i += NODE_CAPACITY) {
+                groups.add(slice.subList(i, Math.min(slice.size(), i + NODE_CAPACITY)));
+            }
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,133 @@
+package com.jolt.workflow.geo;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.JsonNode;
+
+// Serves the pre-rendered PMTiles archive straight from its memory mapping: whole-file byte ranges for
+// PMTiles clients, and single tiles for plain XYZ clients. Neither path touches the database.
+@RestController
+@RequestMapping("/api/v1")
+public class GeoTileArchiveController {
+
+    private static final MediaType PMTILES_MEDIA_TYPE = MediaType.APPLICATION_OCTET_STREAM;
+
+    private final GeoTileArchiveService archiveService;
+
+    public GeoTileArchiveController(GeoTileArchiveService archiveService) {
+        this.archiveService = archiveService;
+    }
+
+    @GetMapping(value = "/features/tiles/archive.pmtiles")
+    public ResponseEntity<StreamingResponseBody> getArchive(
+            @RequestHeader(name = HttpHeaders.RANGE, required = false) String range,
+            WebRequest request
+    ) {
+        PmTilesArchive archive = archiveService.archive();
+        if (archive == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.checkNotModified(archive.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(archive.etag()).build();
+        }
+
+        long size = archive.size();
+        List<HttpRange> ranges;
+        try {
+            ranges = range == null || range.isBlank() ? List.of() : HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            ranges = List.of();
+        }
+        // Multi-range requests are answered with the whole file, which RFC 9110 allows.
+        if (ranges.size() != 1) {
+            return ResponseEntity.ok()
+                    .contentType(PMTILES_MEDIA_TYPE)
+                    .contentLength(size)
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .cacheControl(CacheControl.noCache())
+                    .eTag(archive.etag())
+                    .body(body(archive.slice(0, (int) size)));
+        }
+
+        long start;
+        long end;
+        try {
+            start = ranges.get(0).getRangeStart(size);
+            end = ranges.get(0).getRangeEnd(size);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                    .build();
+        }
+        int length = (int) (end - start + 1);
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .contentType(PMTILES_MEDIA_TYPE)
+                .contentLength(length)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size)
+                .cacheControl(CacheControl.noCache())
+                .eTag(archive.etag())
+                .body(body(archive.slice(start, length)));
+    }
+
+    @GetMapping(value = "/features/tiles/archive/{z}/{x}/{y}.mvt")
+    public ResponseEntity<StreamingResponseBody> getArchiveTile(
+            @PathVariable("z") int z,
+            @PathVariable("x") int x,
+            @PathVariable("y") int y,
+            WebRequest request
+    ) {
+        long tileCount = 1L << Math.max(0, Math.min(z, GeoLod.MAX_ZOOM));
+        if (z < 0 || z > GeoLod.MAX_ZOOM || x < 0 || y < 0 || x >= tileCount || y >= tileCount) {
+            throw new IllegalArgumentException("tile z/x/y out of range");
+        }
+        PmTilesArchive archive = archiveService.archive();
+        if (archive == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.checkNotModified(archive.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(archive.etag()).build();
+        }
+        ByteBuffer tile = archive.tile(z, x, y);
+        if (tile == null) {
+            return ResponseEntity.noContent().eTag(archive.etag()).build();
+        }
+        return ResponseEntity.ok()
+                .contentType(GeoTileController.MVT_MEDIA_TYPE)
+                .contentLength(tile.remaining())
+                .cacheControl(CacheControl.noCache())
+                .eTag(archive.etag())
+                .body(body(tile));
+    }
+
+    // full=true re-renders every tile; otherwise only tiles dirtied by writes since the last build.
+    @PostMapping(value = "/features/tiles/archive/rebuild", produces = MediaType.APPLICATION_JSON_VALUE)
+    public JsonNode rebuildArchive(@RequestParam(name = "full", required = false, defaultValue = "false") boolean full) {
+        return archiveService.rebuild(full);
+    }
+
+    private static StreamingResponseBody body(ByteBuffer slice) {
+        return out -> {
+            WritableByteChannel channel = Channels.newChannel(out);
+            ByteBuffer view = slice.duplicate();
+            while (view.hasRemaining()) channel.write(view);
+        };
+    }
+}
@@ -0,0 +1,280 @@
+package com.jolt.workflow.geo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+// Pre-rendered PMTiles pyramid for static base layers (visible features only). A rebuild writes a new file
+// next to the old one and swaps it in atomically. Incremental rebuilds re-render only tiles touched by
+// writes since the last build and copy every other tile out of the current archive.
+@Component
+public class GeoTileArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(GeoTileArchiveService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final GeoTileRenderer tileRenderer;
+    private final Path path;
+    private final List<String> layers;
+    private final int minZoom;
+    private final int maxZoom;
+    private final long maxTiles;
+    private final long rebuildDelayMs;
+    private final ReentrantLock buildLock = new ReentrantLock();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final List<GeoFeatureChangedEvent.Footprint> dirty = new ArrayList<>();
+    private boolean dirtyUnknown;
+    private volatile PmTilesArchive archive;
+
+    public GeoTileArchiveService(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            GeoTileRenderer tileRenderer,
+            @Value("${app.geo.tile-archive.path:data/tiles/basemap.pmtiles}") String path,
+            @Value("${app.geo.tile-archive.layers:buildings,roads}") String layers,
+            @Value("${app.geo.tile-archive.min-zoom:12}") int minZoom,
+            @Value("${app.geo.tile-archive.max-zoom:18}") int maxZoom,
+            @Value("${app.geo.tile-archive.max-tiles:200000}") long maxTiles,
+            @Value("${app.geo.tile-archive.rebuild-delay-ms:30000}") long rebuildDelayMs
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.tileRenderer = tileRenderer;
+        this.path = Path.of(path);
+        this.layers = GeoLayerNames.parseQueriedLayers(layers).stream().sorted().toList();
+        this.minZoom = Math.max(0, Math.min(minZoom, GeoLod.MAX_ZOOM));
+        this.maxZoom = Math.max(this.minZoom, Math.min(maxZoom, GeoLod.MAX_ZOOM));
+        this.maxTiles = Math.max(1L, maxTiles);
+        this.rebuildDelayMs = rebuildDelayMs;
+    }
+
+    // Current archive, opened on first use; null until the first build.
+    PmTilesArchive archive() {
+        PmTilesArchive current = archive;
+        if (current != null || !Files.isRegularFile(path)) return current;
+        synchronized (this) {
+            if (archive == null) {
+                try {
+                    archive = PmTilesArchive.open(path);
+                } catch (IOException | IllegalStateException e) {
+                    log.warn("geo_tile_archive_open_failed path={} error={}", path, e.getMessage());
+                }
+            }
+            return archive;
+        }
+    }
+
+    public ObjectNode rebuild(boolean full) {
+        buildLock.lock();
+        try {
+            return build(full);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buildLock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFeatureChanged(GeoFeatureChangedEvent event) {
+        if (archive() == null) return;
+        boolean relevant = false;
+        synchronized (dirty) {
+            if (event.footprints() == null || event.footprints().isEmpty()) {
+                dirtyUnknown = true;
+                relevant = true;
+            } else {
+                for (GeoFeatureChangedEvent.Footprint footprint : event.footprints()) {
+                    if (layers.isEmpty() || layers.contains(footprint.layer())) {
+                        dirty.add(footprint);
+                        relevant = true;
+                    }
+                }
+            }
+        }
+        if (relevant) scheduleRebuild();
+    }
+
+    private void scheduleRebuild() {
+        if (rebuildDelayMs <= 0 || !rebuildScheduled.compareAndSet(false, true)) return;
+        // Writes tend to come in bursts from the editor; one delayed rebuild absorbs the whole burst.
+        Thread.ofVirtual().name("geo-tile-archive").start(() -> {
+            try {
+                Thread.sleep(rebuildDelayMs);
+                rebuildScheduled.set(false);
+                rebuild(false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.warn("geo_tile_archive_rebuild_failed error={}", e.getMessage());
+            } finally {
+                rebuildScheduled.set(false);
+            }
+        });
+    }
+
+    private ObjectNode build(boolean full) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        PmTilesArchive previous = full ? null : archive();
+        List<GeoFeatureChangedEvent.Footprint> changed;
+        boolean unknown;
+        synchronized (dirty) {
+            changed = new ArrayList<>(dirty);
+            unknown = dirtyUnknown;
+            dirty.clear();
+            dirtyUnknown = false;
+        }
+        if (unknown) previous = null;
+        try {
+            return writeArchive(previous, changed, startedAt);
+        } catch (IOException | RuntimeException e) {
+            // Nothing was swapped in; keep the drained changes for the next attempt.
+            synchronized (dirty) {
+                dirty.addAll(changed);
+                dirtyUnknown |= unknown;
+            }
+            throw e;
+        }
+    }
+
+    private ObjectNode writeArchive(
+            PmTilesArchive previous,
+            List<GeoFeatureChangedEvent.Footprint> changed,
+            long startedAt
+    ) throws IOException {
+        double[] bounds = layerExtent();
+        List<long[]> tiles = new ArrayList<>();
+        if (bounds != null) {
+            for (int z = minZoom; z <= maxZoom; z++) {
+                int[] range = GeoTileMath.tileRange(z, bounds, 0.0);
+                long count = (long) (range[2] - range[0] + 1) * (range[3] - range[1] + 1);
+                if (tiles.size() + count > maxTiles) {
+                    throw new IllegalArgumentException("tile_archive_too_large");
+                }
+                for (int x = range[0]; x <= range[2]; x++) {
+                    for (int y = range[1]; y <= range[3]; y++) {
+                        tiles.add(new long[] {PmTiles.tileId(z, x, y), z, x, y});
+                    }
+                }
+            }
+        }
+        tiles.sort((a, b) -> Long.compare(a[0], b[0]));
+
+        Set<Long> dirtyTiles = new HashSet<>();
+        double buffer = (double) GeoTileCache.TILE_BUFFER / GeoTileCache.TILE_EXTENT;
+        if (previous != null) {
+            for (GeoFeatureChangedEvent.Footprint footprint : changed) {
+                double[] box = {footprint.minLon(), footprint.minLat(), footprint.maxLon(), footprint.maxLat()};
+                for (int z = minZoom; z <= maxZoom; z++) {
+                    int[] range = GeoTileMath.tileRange(z, box, buffer);
+                    for (int x = range[0]; x <= range[2]; x++) {
+                        for (int y = range[1]; y <= range[3]; y++) dirtyTiles.add(PmTiles.tileId(z, x, y));
+                    }
+                }
+            }
+        }
+
+        int rendered = 0;
+        int reused = 0;
+        Path temp = path.resolveSibling(path.getFileName() + ".building");
+        long tileCount;
+        try (PmTilesWriter writer = new PmTilesWriter(temp)) {
+            for (long[] tile : tiles) {
+                long tileId = tile[0];
+                int z = (int) tile[1];
+                int x = (int) tile[2];
+                int y = (int) tile[3];
+                byte[] data;
+                if (previous != null && !dirtyTiles.contains(tileId) && covers(previous.header(), z, x, y)) {
+                    ByteBuffer old = previous.tile(tileId);
+                    data = null;
+                    if (old != null) {
+                        data = new byte[old.remaining()];
+                        old.get(data);
+                    }
+                    reused++;
+                } else {
+                    data = tileRenderer.render(new GeoTileCache.TileKey(layers, true, z, x, y));
+                    rendered++;
+                }
+                if (data != null && data.length > 0) writer.addTile(tileId, data);
+            }
+            tileCount = writer.tileCount();
+            double[] headerBounds = bounds == null ? new double[] {0, 0, 0, 0} : bounds;
+            writer.finish(metadata(), minZoom, maxZoom, headerBounds);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        PmTilesArchive built = PmTilesArchive.open(path);
+        archive = built;
+
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("full", previous == null);
+        result.put("tiles", tileCount);
+        result.put("rendered", rendered);
+        result.put("reused", reused);
+        result.put("bytes", built.size());
+        result.put("durationMs", System.currentTimeMillis() - startedAt);
+        log.info("geo_tile_archive_built full={} tiles={} rendered={} reused={} bytes={}",
+                previous == null, tileCount, rendered, reused, built.size());
+        return result;
+    }
+
+    // A tile can be copied only if the previous build rendered it, i.e. it lay inside that build's extent.
+    private static boolean covers(PmTiles.Header header, int z, int x, int y) {
+        if (z < header.minZoom() || z > header.maxZoom()) return false;
+        int[] range = GeoTileMath.tileRange(z, new double[] {header.minLon(), header.minLat(), header.maxLon(), header.maxLat()}, 0.0);
+        return x >= range[0] && x <= range[2] && y >= range[1] && y <= range[3];
+    }
+
+    private double[] layerExtent() {
+        List<Object> params = new ArrayList<>();
+        String layerFilter = "";
+        if (!layers.isEmpty()) {
+            layerFilter = " AND layer IN (" + String.join(",", java.util.Collections.nCopies(layers.size(), "?")) + ")";
+            params.addAll(layers);
+        }
+        return jdbcTemplate.query(
+                "SELECT ST_XMin(e) AS min_lon, ST_YMin(e) AS min_lat, ST_XMax(e) AS max_lon, ST_YMax(e) AS max_lat " +
+                        "FROM (SELECT ST_Extent(geom) AS e FROM geo_features WHERE visible = true" + layerFilter + ") x",
+                rs -> {
+                    if (!rs.next()) return null;
+                    double minLon = rs.getDouble("min_lon");
+                    if (rs.wasNull()) return null;
+                    return new double[] {minLon, rs.getDouble("min_lat"), rs.getDouble("max_lon"), rs.getDouble("max_lat")};
+                },
+                params.toArray()
+        );
+    }
+
+    private byte[] metadata() {
+        ObjectNode metadata = objectMapper.createObjectNode();
+        metadata.put("name", "unispace-basemap");
+        metadata.put("format", "pbf");
+        metadata.put("generatedAt", Instant.now().toString());
+        ArrayNode vectorLayers = metadata.putArray("vector_layers");
+        for (String layer : layers) {
+            vectorLayers.addObject().put("id", layer).putObject("fields");
+        }
+        return objectMapper.writeValueAsBytes(metadata);
+    }
+}
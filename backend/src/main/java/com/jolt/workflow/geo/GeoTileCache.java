@@ -0,0 +1,105 @@
+package com.jolt.workflow.geo;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+public class GeoTileCache {
+
+    static final int TILE_EXTENT = 4096;
+    static final int TILE_BUFFER = 64;
+
+    private final int maxEntries;
+    private final Map<TileKey, byte[]> tiles;
+    // Bumped on every invalidation so a tile rendered before a write cannot be cached after it.
+    private final AtomicLong generation = new AtomicLong();
+
+    public GeoTileCache(@Value("${app.geo.tile-cache.max-entries:2048}") int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.tiles = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TileKey, byte[]> eldest) {
+                return size() > GeoTileCache.this.maxEntries;
+            }
+        };
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    public byte[] get(TileKey key) {
+        synchronized (tiles) {
+            return tiles.get(key);
+        }
+    }
+
+    public void put(TileKey key, byte[] tile, long renderedAtGeneration) {
+        synchronized (tiles) {
+            if (generation.get() != renderedAtGeneration) return;
+            tiles.put(key, tile);
+        }
+    }
+
+    public int size() {
+        synchronized (tiles) {
+            return tiles.size();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFeatureChanged(GeoFeatureChangedEvent event) {
+        invalidate(event.footprints());
+    }
+
+    void invalidate(List<GeoFeatureChangedEvent.Footprint> footprints) {
+        if (footprints == null || footprints.isEmpty()) return;
+        synchronized (tiles) {
+            generation.incrementAndGet();
+            Iterator<TileKey> it = tiles.keySet().iterator();
+            while (it.hasNext()) {
+                TileKey key = it.next();
+                for (GeoFeatureChangedEvent.Footprint footprint : footprints) {
+                    if (key.touches(footprint)) {
+                        it.remove();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (tiles) {
+            generation.incrementAndGet();
+            tiles.clear();
+        }
+    }
+
+    // layers is the expanded, sorted storage layer list; empty means every layer.
+    public record TileKey(List<String> layers, Boolean visible, int z, int x, int y) {
+
+        boolean touches(GeoFeatureChangedEvent.Footprint footprint) {
+            if (!layers.isEmpty() && !layers.contains(footprint.layer())) return false;
+            double[] b = bufferedBounds();
+            return footprint.intersects(b[0], b[1], b[2], b[3]);
+        }
+
+        // minLon, minLat, maxLon, maxLat of the tile including the MVT clip buffer.
+        double[] bufferedBounds() {
+            double n = Math.pow(2.0, z);
+            double bufferRatio = (double) TILE_BUFFER / TILE_EXTENT;
+            double minLon = GeoTileMath.tileLon(x - bufferRatio, n);
+            double maxLon = GeoTileMath.tileLon(x + 1 + bufferRatio, n);
+            double maxLat = GeoTileMath.tileLat(y - bufferRatio, n);
+            double minLat = GeoTileMath.tileLat(y + 1 + bufferRatio, n);
+            return new double[] {minLon, minLat, maxLon, maxLat};
+        }
+    }
+}
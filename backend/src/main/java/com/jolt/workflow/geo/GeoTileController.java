@@ -0,0 +1,63 @@
+package com.jolt.workflow.geo;
+
+import java.util.List;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1")
+public class GeoTileController {
+
+    static final MediaType MVT_MEDIA_TYPE = MediaType.parseMediaType("application/vnd.mapbox-vector-tile");
+    private static final int MAX_ZOOM = 22;
+
+    private final GeoTileRenderer tileRenderer;
+    private final GeoTileCache tileCache;
+
+    public GeoTileController(GeoTileRenderer tileRenderer, GeoTileCache tileCache) {
+        this.tileRenderer = tileRenderer;
+        this.tileCache = tileCache;
+    }
+
+    @GetMapping(value = "/features/tiles/{z}/{x}/{y}.mvt")
+    public ResponseEntity<byte[]> getTile(
+            @PathVariable("z") int z,
+            @PathVariable("x") int x,
+            @PathVariable("y") int y,
+            @RequestParam(name = "layers", required = false) String layers,
+            @RequestParam(name = "visible", required = false) Boolean visible
+    ) {
+        if (z < 0 || z > MAX_ZOOM) {
+            throw new IllegalArgumentException("z must be between 0 and " + MAX_ZOOM);
+        }
+        long tileCount = 1L << z;
+        if (x < 0 || y < 0 || x >= tileCount || y >= tileCount) {
+            throw new IllegalArgumentException("tile x/y out of range");
+        }
+
+        List<String> layerList = GeoLayerNames.parseQueriedLayers(layers).stream().sorted().toList();
+        GeoTileCache.TileKey key = new GeoTileCache.TileKey(layerList, visible, z, x, y);
+
+        byte[] tile = tileCache.get(key);
+        String cacheStatus = "HIT";
+        if (tile == null) {
+            long generation = tileCache.generation();
+            tile = tileRenderer.render(key);
+            tileCache.put(key, tile, generation);
+            cacheStatus = "MISS";
+        }
+
+        if (tile.length == 0) {
+            return ResponseEntity.noContent().header("X-Tile-Cache", cacheStatus).build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MVT_MEDIA_TYPE)
+                .header("X-Tile-Cache", cacheStatus)
+                .body(tile);
+    }
+}
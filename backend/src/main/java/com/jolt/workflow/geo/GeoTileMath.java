@@ -0,0 +1,45 @@
+package com.jolt.workflow.geo;
+
+// Web-Mercator XYZ tile arithmetic shared by the tile cache and the tile archive builder.
+final class GeoTileMath {
+
+    // Web Mercator stops here; clamping keeps polar inputs from producing infinite tile rows.
+    static final double MAX_LAT = 85.0511287798066;
+
+    private GeoTileMath() {
+    }
+
+    static double tileLon(double tileX, double n) {
+        return tileX / n * 360.0 - 180.0;
+    }
+
+    static double tileLat(double tileY, double n) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1.0 - 2.0 * tileY / n))));
+    }
+
+    static double tileX(double lon, double n) {
+        return (lon + 180.0) / 360.0 * n;
+    }
+
+    static double tileY(double lat, double n) {
+        double clamped = Math.max(-MAX_LAT, Math.min(MAX_LAT, lat));
+        double rad = Math.toRadians(clamped);
+        return (1.0 - Math.log(Math.tan(rad) + 1.0 / Math.cos(rad)) / Math.PI) / 2.0 * n;
+    }
+
+    // {minX, minY, maxX, maxY} of tiles at z touching bbox {minLon, minLat, maxLon, maxLat}, widened by
+    // bufferRatio of a tile so tiles whose clip buffer reaches the box are included.
+    static int[] tileRange(int z, double[] bbox, double bufferRatio) {
+        double n = Math.pow(2.0, z);
+        int last = (int) n - 1;
+        int minX = clamp((int) Math.floor(tileX(bbox[0], n) - bufferRatio), last);
+        int maxX = clamp((int) Math.floor(tileX(bbox[2], n) + bufferRatio), last);
+        int minY = clamp((int) Math.floor(tileY(bbox[3], n) - bufferRatio), last);
+        int maxY = clamp((int) Math.floor(tileY(bbox[1], n) + bufferRatio), last);
+        return new int[] {minX, minY, maxX, maxY};
+    }
+
+    private static int clamp(int value, int last) {
+        return Math.max(0, Math.min(last, value));
+    }
+}
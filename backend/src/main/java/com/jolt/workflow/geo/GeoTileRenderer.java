@@ -0,0 +1,58 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Renders one MVT tile from geo_features with ST_AsMVT; shared by the live tile endpoint and the archive builder.
+@Component
+public class GeoTileRenderer {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public GeoTileRenderer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public byte[] render(GeoTileCache.TileKey key) {
+        List<Object> params = new ArrayList<>();
+        params.add(key.z());
+        params.add(key.x());
+        params.add(key.y());
+        params.add(key.z());
+        params.add(key.x());
+        params.add(key.y());
+        params.add((double) GeoTileCache.TILE_BUFFER / GeoTileCache.TILE_EXTENT);
+
+        StringBuilder where = new StringBuilder("WHERE g.geom && bounds.filter_env");
+        if (!key.layers().isEmpty()) {
+            where.append(" AND g.layer IN (")
+                    .append(String.join(",", java.util.Collections.nCopies(key.layers().size(), "?")))
+                    .append(")");
+            params.addAll(key.layers());
+        }
+        if (key.visible() != null) {
+            where.append(" AND g.visible = ?");
+            params.add(key.visible());
+        }
+
+        // One MVT layer per stored geo layer; the per-layer tiles are concatenated into a single tile.
+        String sql = "WITH bounds AS (" +
+                "  SELECT ST_TileEnvelope(?, ?, ?) AS env, " +
+                "         ST_Transform(ST_TileEnvelope(?, ?, ?, margin => ?), 4326) AS filter_env" +
+                "), tile_rows AS (" +
+                "  SELECT g.layer, g.id, g.properties || jsonb_build_object('visible', g.visible) AS properties, " +
+                "         ST_AsMVTGeom(ST_Transform(" + GeoLod.forZoom(key.z()).geometrySql("g.") + ", 3857), bounds.env, " + GeoTileCache.TILE_EXTENT + ", " +
+                GeoTileCache.TILE_BUFFER + ", true) AS geom " +
+                "  FROM geo_features g, bounds " +
+                "  " + where +
+                "), layer_tiles AS (" +
+                "  SELECT ST_AsMVT(t, t.layer, " + GeoTileCache.TILE_EXTENT + ", 'geom') AS tile " +
+                "  FROM tile_rows t WHERE t.geom IS NOT NULL GROUP BY t.layer" +
+                ") SELECT COALESCE(string_agg(tile, ''::bytea), ''::bytea) AS tile FROM layer_tiles";
+
+        byte[] tile = jdbcTemplate.query(sql, rs -> rs.next() ? rs.getBytes("tile") : null, params.toArray());
+        return tile == null ? new byte[0] : tile;
+    }
+}
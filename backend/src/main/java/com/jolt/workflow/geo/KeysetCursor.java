@@ -0,0 +1,40 @@
+package com.jolt.workflow.geo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+// Opaque page cursor: last seen primary key plus a hash of the filter it was issued for.
+final class KeysetCursor {
+
+    private static final String VERSION = "v1";
+
+    private KeysetCursor() {
+    }
+
+    static String filterHash(String whereSql, List<Object> whereParams) {
+        return Integer.toHexString((whereSql + "|" + whereParams).hashCode());
+    }
+
+    static String encode(String lastId, String filterHash) {
+        String raw = VERSION + "|" + filterHash + "|" + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String decodeLastId(String cursor, String expectedFilterHash) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("cursor_invalid");
+        }
+        String[] parts = raw.split("\\|", 3);
+        if (parts.length != 3 || !VERSION.equals(parts[0]) || parts[2].isEmpty()) {
+            throw new IllegalArgumentException("cursor_invalid");
+        }
+        if (!parts[1].equals(expectedFilterHash)) {
+            throw new IllegalArgumentException("cursor_filter_mismatch");
+        }
+        return parts[2];
+    }
+}
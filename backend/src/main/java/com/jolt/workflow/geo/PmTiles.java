@@ -0,0 +1,216 @@
+package com.jolt.workflow.geo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// PMTiles v3 layout pieces: Hilbert tile ids, the 127-byte header and varint directories.
+// Directories and tiles are written uncompressed (compression byte 1), which every v3 reader accepts.
+final class PmTiles {
+
+    static final int HEADER_LENGTH = 127;
+    // The spec requires header + root directory to fit in the first 16 KiB.
+    static final int ROOT_BUDGET = 16_384 - HEADER_LENGTH;
+    static final int COMPRESSION_NONE = 1;
+    static final int TILE_TYPE_MVT = 1;
+
+    private static final byte[] MAGIC = "PMTiles".getBytes(StandardCharsets.US_ASCII);
+
+    private PmTiles() {
+    }
+
+    // runLength 0 marks a leaf-directory pointer rather than tile data.
+    record Entry(long tileId, long offset, int length, int runLength) {
+    }
+
+    record Header(
+            long rootOffset,
+            long rootLength,
+            long metadataOffset,
+            long metadataLength,
+            long leafOffset,
+            long leafLength,
+            long tileDataOffset,
+            long tileDataLength,
+            long addressedTiles,
+            long tileEntries,
+            long tileContents,
+            int minZoom,
+            int maxZoom,
+            double minLon,
+            double minLat,
+            double maxLon,
+            double maxLat
+    ) {
+        byte[] encode() {
+            ByteBuffer out = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            out.put(MAGIC).put((byte) 3);
+            out.putLong(rootOffset).putLong(rootLength);
+            out.putLong(metadataOffset).putLong(metadataLength);
+            out.putLong(leafOffset).putLong(leafLength);
+            out.putLong(tileDataOffset).putLong(tileDataLength);
+            out.putLong(addressedTiles).putLong(tileEntries).putLong(tileContents);
+            out.put((byte) 1);
+            out.put((byte) COMPRESSION_NONE);
+            out.put((byte) COMPRESSION_NONE);
+            out.put((byte) TILE_TYPE_MVT);
+            out.put((byte) minZoom).put((byte) maxZoom);
+            out.putInt(e7(minLon)).putInt(e7(minLat)).putInt(e7(maxLon)).putInt(e7(maxLat));
+            out.put((byte) minZoom);
+            out.putInt(e7((minLon + maxLon) / 2.0)).putInt(e7((minLat + maxLat) / 2.0));
+            return out.array();
+        }
+
+        static Header decode(ByteBuffer buffer) {
+            ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            in.position(0);
+            byte[] magic = new byte[MAGIC.length];
+            in.get(magic);
+            if (!java.util.Arrays.equals(magic, MAGIC) || in.get() != 3) {
+                throw new IllegalStateException("not a PMTiles v3 archive");
+            }
+            long rootOffset = in.getLong();
+            long rootLength = in.getLong();
+            long metadataOffset = in.getLong();
+            long metadataLength = in.getLong();
+            long leafOffset = in.getLong();
+            long leafLength = in.getLong();
+            long tileDataOffset = in.getLong();
+            long tileDataLength = in.getLong();
+            long addressed = in.getLong();
+            long entries = in.getLong();
+            long contents = in.getLong();
+            in.get();
+            if (in.get() != COMPRESSION_NONE) {
+                throw new IllegalStateException("compressed PMTiles directories are not supported");
+            }
+            in.get();
+            in.get();
+            int minZoom = in.get() & 0xFF;
+            int maxZoom = in.get() & 0xFF;
+            double minLon = in.getInt() / 1e7;
+            double minLat = in.getInt() / 1e7;
+            double maxLon = in.getInt() / 1e7;
+            double maxLat = in.getInt() / 1e7;
+            return new Header(rootOffset, rootLength, metadataOffset, metadataLength, leafOffset, leafLength,
+                    tileDataOffset, tileDataLength, addressed, entries, contents, minZoom, maxZoom,
+                    minLon, minLat, maxLon, maxLat);
+        }
+
+        private static int e7(double degrees) {
+            return (int) Math.round(degrees * 1e7);
+        }
+    }
+
+    static long tileId(int z, int x, int y) {
+        long acc = 0;
+        for (int t = 0; t < z; t++) acc += (1L << t) * (1L << t);
+        long tx = x;
+        long ty = y;
+        long d = 0;
+        for (long s = (1L << z) / 2; s > 0; s /= 2) {
+            long rx = (tx & s) > 0 ? 1 : 0;
+            long ry = (ty & s) > 0 ? 1 : 0;
+            d += s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    tx = s - 1 - tx;
+                    ty = s - 1 - ty;
+                }
+                long swap = tx;
+                tx = ty;
+                ty = swap;
+            }
+        }
+        return acc + d;
+    }
+
+    // Columnar layout: count, tile id deltas, run lengths, lengths, offsets (0 = directly after the previous).
+    static byte[] encodeDirectory(List<Entry> entries) {
+        ProtobufWriter out = new ProtobufWriter(entries.size() * 6 + 8);
+        out.writeVarint(entries.size());
+        long lastId = 0;
+        for (Entry entry : entries) {
+            out.writeVarint(entry.tileId() - lastId);
+            lastId = entry.tileId();
+        }
+        for (Entry entry : entries) out.writeVarint(entry.runLength());
+        for (Entry entry : entries) out.writeVarint(entry.length());
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (i > 0) {
+                Entry previous = entries.get(i - 1);
+                if (entry.offset() == previous.offset() + previous.length()) {
+                    out.writeVarint(0);
+                    continue;
+                }
+            }
+            out.writeVarint(entry.offset() + 1);
+        }
+        return out.toByteArray();
+    }
+
+    static List<Entry> decodeDirectory(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate();
+        int count = (int) readVarint(in);
+        long[] ids = new long[count];
+        int[] runs = new int[count];
+        int[] lengths = new int[count];
+        long lastId = 0;
+        for (int i = 0; i < count; i++) {
+            lastId += readVarint(in);
+            ids[i] = lastId;
+        }
+        for (int i = 0; i < count; i++) runs[i] = (int) readVarint(in);
+        for (int i = 0; i < count; i++) lengths[i] = (int) readVarint(in);
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long raw = readVarint(in);
+            long offset;
+            if (raw == 0 && i > 0) {
+                Entry previous = entries.get(i - 1);
+                offset = previous.offset() + previous.length();
+            } else {
+                offset = raw - 1;
+            }
+            entries.add(new Entry(ids[i], offset, lengths[i], runs[i]));
+        }
+        return entries;
+    }
+
+    // Entry covering tileId: exact match, a run that reaches it, or the leaf directory to descend into.
+    static Entry find(List<Entry> entries, long tileId) {
+        int lo = 0;
+        int hi = entries.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long id = entries.get(mid).tileId();
+            if (id < tileId) {
+                lo = mid + 1;
+            } else if (id > tileId) {
+                hi = mid - 1;
+            } else {
+                return entries.get(mid);
+            }
+        }
+        if (hi >= 0) {
+            Entry candidate = entries.get(hi);
+            if (candidate.runLength() == 0 || tileId - candidate.tileId() < candidate.runLength()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalStateException("malformed varint in PMTiles directory");
+    }
+}
@@ -0,0 +1,78 @@
+package com.jolt.workflow.geo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Read-only view of a PMTiles v3 archive mapped into memory. Lookups and range reads are slices of the
+// mapping, so serving a tile copies nothing on the heap. The mapping outlives the file being replaced.
+final class PmTilesArchive {
+
+    private final MappedByteBuffer buffer;
+    private final PmTiles.Header header;
+    private final List<PmTiles.Entry> root;
+    private final Map<Long, List<PmTiles.Entry>> leaves = new ConcurrentHashMap<>();
+    private final String etag;
+
+    private PmTilesArchive(MappedByteBuffer buffer, String etag) {
+        this.buffer = buffer;
+        this.header = PmTiles.Header.decode(buffer);
+        this.root = PmTiles.decodeDirectory(slice(header.rootOffset(), (int) header.rootLength()));
+        this.etag = etag;
+    }
+
+    static PmTilesArchive open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("tile archive larger than 2 GiB: " + path);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            String etag = "\"pmt-" + Long.toHexString(java.nio.file.Files.getLastModifiedTime(path).toMillis()) +
+                    "-" + Long.toHexString(size) + "\"";
+            return new PmTilesArchive(mapped, etag);
+        }
+    }
+
+    PmTiles.Header header() {
+        return header;
+    }
+
+    long size() {
+        return buffer.capacity();
+    }
+
+    String etag() {
+        return etag;
+    }
+
+    ByteBuffer slice(long offset, int length) {
+        return buffer.slice((int) offset, length);
+    }
+
+    // Tile bytes, or null when the archive has no tile there (empty or outside the pyramid).
+    ByteBuffer tile(long tileId) {
+        List<PmTiles.Entry> directory = root;
+        for (int depth = 0; depth < 4; depth++) {
+            PmTiles.Entry entry = PmTiles.find(directory, tileId);
+            if (entry == null) return null;
+            if (entry.runLength() > 0) {
+                return slice(header.tileDataOffset() + entry.offset(), entry.length());
+            }
+            directory = leaves.computeIfAbsent(entry.offset(), offset ->
+                    PmTiles.decodeDirectory(slice(header.leafOffset() + offset, entry.length())));
+        }
+        return null;
+    }
+
+    ByteBuffer tile(int z, int x, int y) {
+        if (z < header.minZoom() || z > header.maxZoom()) return null;
+        return tile(PmTiles.tileId(z, x, y));
+    }
+}
@@ -0,0 +1,135 @@
+package com.jolt.workflow.geo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes a PMTiles v3 archive. Tiles must arrive in ascending tile id order; their bytes are spooled to a
+// side file, identical contents are stored once, and consecutive identical tiles collapse into one run.
+// Contents are recognised by a 128-bit SHA-256 prefix plus length, so only that key stays on the heap.
+final class PmTilesWriter implements AutoCloseable {
+
+    private final Path target;
+    private final Path spool;
+    private final FileChannel spoolChannel;
+    private final List<PmTiles.Entry> entries = new ArrayList<>();
+    private final MessageDigest digest;
+    private final Map<ContentKey, Long> offsetsByContent = new HashMap<>();
+    private long dataLength;
+    private long addressedTiles;
+    private long lastTileId = -1;
+
+    PmTilesWriter(Path target) throws IOException {
+        this.target = target;
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        this.spool = Files.createTempFile(directory, target.getFileName().toString(), ".tiles");
+        this.spoolChannel = FileChannel.open(spool, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void addTile(long tileId, byte[] data) throws IOException {
+        if (tileId <= lastTileId) {
+            throw new IllegalStateException("tiles must be added in ascending tile id order");
+        }
+        lastTileId = tileId;
+        addressedTiles++;
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest(data));
+        ContentKey key = new ContentKey(hash.getLong(), hash.getLong(), data.length);
+        Long offset = offsetsByContent.get(key);
+        if (offset == null) {
+            offset = dataLength;
+            offsetsByContent.put(key, offset);
+            ByteBuffer content = ByteBuffer.wrap(data);
+            while (content.hasRemaining()) spoolChannel.write(content);
+            dataLength += data.length;
+        }
+        if (!entries.isEmpty()) {
+            PmTiles.Entry previous = entries.get(entries.size() - 1);
+            if (previous.offset() == offset && previous.tileId() + previous.runLength() == tileId) {
+                entries.set(entries.size() - 1, new PmTiles.Entry(previous.tileId(), offset, data.length, previous.runLength() + 1));
+                return;
+            }
+        }
+        entries.add(new PmTiles.Entry(tileId, offset, data.length, 1));
+    }
+
+    long tileCount() {
+        return addressedTiles;
+    }
+
+    // Writes header, root directory, metadata, leaf directories and tile data into target.
+    void finish(byte[] metadata, int minZoom, int maxZoom, double[] bounds) throws IOException {
+        byte[] root = PmTiles.encodeDirectory(entries);
+        byte[] leaves = new byte[0];
+        if (root.length > PmTiles.ROOT_BUDGET) {
+            for (int leafSize = 4096; ; leafSize *= 2) {
+                List<PmTiles.Entry> rootEntries = new ArrayList<>();
+                ByteArrayOutputStream leafBytes = new ByteArrayOutputStream();
+                for (int start = 0; start < entries.size(); start += leafSize) {
+                    List<PmTiles.Entry> leaf = entries.subList(start, Math.min(entries.size(), start + leafSize));
+                    byte[] encoded = PmTiles.encodeDirectory(leaf);
+                    rootEntries.add(new PmTiles.Entry(leaf.get(0).tileId(), leafBytes.size(), encoded.length, 0));
+                    leafBytes.write(encoded);
+                }
+                root = PmTiles.encodeDirectory(rootEntries);
+                if (root.length <= PmTiles.ROOT_BUDGET) {
+                    leaves = leafBytes.toByteArray();
+                    break;
+                }
+            }
+        }
+
+        long rootOffset = PmTiles.HEADER_LENGTH;
+        long metadataOffset = rootOffset + root.length;
+        long leafOffset = metadataOffset + metadata.length;
+        long tileDataOffset = leafOffset + leaves.length;
+        PmTiles.Header header = new PmTiles.Header(
+                rootOffset, root.length,
+                metadataOffset, metadata.length,
+                leafOffset, leaves.length,
+                tileDataOffset, dataLength,
+                addressedTiles, entries.size(), offsetsByContent.size(),
+                minZoom, maxZoom,
+                bounds[0], bounds[1], bounds[2], bounds[3]
+        );
+
+        spoolChannel.force(false);
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             FileChannel data = FileChannel.open(spool, StandardOpenOption.READ)) {
+            for (byte[] part : new byte[][] {header.encode(), root, metadata, leaves}) {
+                ByteBuffer buffer = ByteBuffer.wrap(part);
+                while (buffer.hasRemaining()) out.write(buffer);
+            }
+            long copied = 0;
+            while (copied < dataLength) {
+                copied += data.transferTo(copied, dataLength - copied, out);
+            }
+            out.force(true);
+        }
+    }
+
+    private record ContentKey(long high, long low, int length) {
+    }
+
+    @Override
+    public void close() throws IOException {
+        spoolChannel.close();
+        Files.deleteIfExists(spool);
+    }
+}
@@ -0,0 +1,106 @@
+package com.jolt.workflow.geo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Minimal protobuf wire-format writer for the Geobuf encoder (varint, zigzag, length-delimited, fixed64).
+final class ProtobufWriter {
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_FIXED64 = 1;
+    private static final int WIRE_LENGTH_DELIMITED = 2;
+
+    private byte[] buf;
+    private int pos;
+
+    ProtobufWriter() {
+        this(256);
+    }
+
+    ProtobufWriter(int initialCapacity) {
+        this.buf = new byte[Math.max(16, initialCapacity)];
+    }
+
+    int size() {
+        return pos;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, pos);
+    }
+
+    void reset() {
+        pos = 0;
+    }
+
+    void writeVarintField(int field, long value) {
+        writeTag(field, WIRE_VARINT);
+        writeVarint(value);
+    }
+
+    void writeBooleanField(int field, boolean value) {
+        writeVarintField(field, value ? 1 : 0);
+    }
+
+    void writeDoubleField(int field, double value) {
+        writeTag(field, WIRE_FIXED64);
+        long bits = Double.doubleToRawLongBits(value);
+        ensure(8);
+        for (int i = 0; i < 8; i++) {
+            buf[pos++] = (byte) (bits >>> (8 * i));
+        }
+    }
+
+    void writeStringField(int field, String value) {
+        writeBytesField(field, value.getBytes(StandardCharsets.UTF_8), 0, -1);
+    }
+
+    void writeMessageField(int field, ProtobufWriter message) {
+        writeBytesField(field, message.buf, 0, message.pos);
+    }
+
+    void writePackedVarintField(int field, long[] values, int count) {
+        if (count == 0) return;
+        ProtobufWriter packed = new ProtobufWriter(count * 2);
+        for (int i = 0; i < count; i++) packed.writeVarint(values[i]);
+        writeMessageField(field, packed);
+    }
+
+    void writePackedSVarintField(int field, long[] values, int count) {
+        if (count == 0) return;
+        ProtobufWriter packed = new ProtobufWriter(count * 2);
+        for (int i = 0; i < count; i++) packed.writeVarint(zigzag(values[i]));
+        writeMessageField(field, packed);
+    }
+
+    void writeVarint(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void writeBytesField(int field, byte[] bytes, int offset, int length) {
+        int len = length < 0 ? bytes.length : length;
+        writeTag(field, WIRE_LENGTH_DELIMITED);
+        writeVarint(len);
+        ensure(len);
+        System.arraycopy(bytes, offset, buf, pos, len);
+        pos += len;
+    }
+
+    private void writeTag(int field, int wireType) {
+        writeVarint(((long) field << 3) | wireType);
+    }
+
+    private void ensure(int extra) {
+        if (pos + extra <= buf.length) return;
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+    }
+}
@@ -0,0 +1,109 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+// Building lookups shared by the Twin read controllers: which buildings asset_relations ties to a set of
+// network ids, and the id/name rows the responses list them with.
+@Component
+class TwinBuildingLinks {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final GeoNearestService nearestService;
+
+    TwinBuildingLinks(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, GeoNearestService nearestService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.nearestService = nearestService;
+    }
+
+    // Related buildings, or the nearest ones to featureId when nothing is related.
+    ArrayNode linkedBuildings(Set<String> buildingIds, String featureId) {
+        if (buildingIds.isEmpty()) {
+            return queryNearestBuildings(featureId);
+        }
+        return queryBuildingRows(buildingIds);
+    }
+
+    // Buildings on either side of an asset_relations row touching any of the ids.
+    Set<String> queryRelatedBuildingIds(Collection<String> assetIds) {
+        Set<String> buildingIds = new LinkedHashSet<>();
+        for (Set<String> linked : queryBuildingLinks(assetIds).values()) buildingIds.addAll(linked);
+        return buildingIds;
+    }
+
+    // Asset id -> buildings related to it, for the asset ids that have any. Traces can reach tens of thousands
+    // of ids, so the lookup goes in chunks rather than one IN list per id set.
+    Map<String, Set<String>> queryBuildingLinks(Collection<String> assetIds) {
+        Map<String, Set<String>> links = new LinkedHashMap<>();
+        List<String> ids = new ArrayList<>(assetIds);
+        for (int from = 0; from < ids.size(); from += TwinTraceStops.CHUNK) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + TwinTraceStops.CHUNK));
+            Set<String> chunkIds = new HashSet<>(chunk);
+            String placeholders = String.join(",", java.util.Collections.nCopies(chunk.size(), "?"));
+            String sql = "SELECT source_id, target_id, " +
+                    "       CASE WHEN LOWER(source_type) = 'building' THEN source_id END AS source_building, " +
+                    "       CASE WHEN LOWER(target_type) = 'building' THEN target_id END AS target_building " +
+                    "FROM asset_relations " +
+                    "WHERE (source_id IN (" + placeholders + ") OR target_id IN (" + placeholders + ")) " +
+                    "  AND (LOWER(source_type) = 'building' OR LOWER(target_type) = 'building')";
+            List<Object> params = new ArrayList<>(chunk.size() * 2);
+            params.addAll(chunk);
+            params.addAll(chunk);
+            jdbcTemplate.query(sql, rs -> {
+                List<String> buildings = new ArrayList<>(2);
+                String source = rs.getString("source_building");
+                if (source != null) buildings.add(source);
+                String target = rs.getString("target_building");
+                if (target != null) buildings.add(target);
+                for (String assetId : new String[] {rs.getString("source_id"), rs.getString("target_id")}) {
+                    if (assetId != null && chunkIds.contains(assetId)) {
+                        links.computeIfAbsent(assetId, ignored -> new LinkedHashSet<>()).addAll(buildings);
+                    }
+                }
+            }, params.toArray());
+        }
+        return links;
+    }
+
+    ArrayNode queryNearestBuildings(String featureId) {
+        ArrayNode linked = objectMapper.createArrayNode();
+        for (GeoNearestService.NearestAsset asset : nearestService.nearestToFeature(featureId, List.of("buildings"), 5, null)) {
+            ObjectNode b = objectMapper.createObjectNode();
+            b.put("id", asset.id());
+            b.put("name", asset.name());
+            b.put("distanceMeters", asset.distanceMeters());
+            linked.add(b);
+        }
+        return linked;
+    }
+
+    ArrayNode queryBuildingRows(Set<String> buildingIds) {
+        ArrayNode linked = objectMapper.createArrayNode();
+        if (buildingIds.isEmpty()) return linked;
+
+        String placeholders = String.join(",", java.util.Collections.nCopies(buildingIds.size(), "?"));
+        String sql = "SELECT id, COALESCE(properties->>'name', id) AS name " +
+                "FROM geo_features WHERE id IN (" + placeholders + ")";
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, buildingIds.toArray());
+        for (Map<String, Object> row : rows) {
+            ObjectNode b = objectMapper.createObjectNode();
+            b.put("id", String.valueOf(row.get("id")));
+            b.put("name", String.valueOf(row.get("name")));
+            linked.add(b);
+        }
+        return linked;
+    }
+}
@@ -0,0 +1,205 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Weakly connected components of one topology snapshot (flow direction ignored), as a union-find forest over
+// node indices. Union by size without path compression, so a published forest is never written to and find
+// stays O(log n). Built in full for a fresh or compacted base, then carried across per-pipe edits: a pipe
+// that only adds connections unions its endpoints, one that drops or re-routes a connection relabels just
+// the components its endpoints belong to.
+//
+// A component is named by its smallest node id. That depends only on membership, so names survive
+// compaction and reloads, and an edit renames only the components whose members changed.
+final class TwinComponents {
+
+    // What an edit changed, by name, for persisting: components merged wholesale into another (in order), and
+    // individual nodes moved to a component (null: the node has no segment left).
+    record Delta(Map<String, String> merged, Map<String, String> relabeled) {
+
+        static final Delta NONE = new Delta(Map.of(), Map.of());
+
+        boolean isEmpty() {
+            return merged.isEmpty() && relabeled.isEmpty();
+        }
+    }
+
+    private final int[] parent;
+    // Per root: nodes in the component, and the member with the smallest id. Meaningless for non-roots.
+    private final int[] size;
+    private final int[] label;
+    private final Delta delta;
+
+    private TwinComponents(int[] parent, int[] size, int[] label, Delta delta) {
+        this.parent = parent;
+        this.size = size;
+        this.label = label;
+        this.delta = delta;
+    }
+
+    static TwinComponents of(TwinTopology topology) {
+        TwinComponents components = new TwinComponents(new int[0], new int[0], new int[0], Delta.NONE)
+                .extended(topology.nodeLimit(), Delta.NONE);
+        for (int segment = 0; segment < topology.segmentLimit(); segment++) {
+            if (!topology.live(segment)) continue;
+            components.union(topology, topology.fromNode(segment), topology.toNode(segment), null);
+        }
+        return components;
+    }
+
+    int find(int node) {
+        while (parent[node] != node) node = parent[node];
+        return node;
+    }
+
+    // Nodes in node's component.
+    int size(int node) {
+        return size[find(node)];
+    }
+
+    // The member of node's component with the smallest id.
+    int label(int node) {
+        return label[find(node)];
+    }
+
+    // Changes from the previous snapshot's components; NONE for a full build, which is persisted in full.
+    Delta delta() {
+        return delta;
+    }
+
+    // Components of next, which is this forest's snapshot with removed replaced by added.
+    TwinComponents after(TwinTopology next, List<TwinTopology.Segment> removed, List<TwinTopology.Segment> added) {
+        List<TwinTopology.Segment> dropped = new ArrayList<>(removed);
+        List<TwinTopology.Segment> joined = new ArrayList<>();
+        for (TwinTopology.Segment segment : added) {
+            // A pipe re-saved with the same endpoints changes nothing.
+            int same = -1;
+            for (int i = 0; i < dropped.size() && same < 0; i++) {
+                if (sameEnds(dropped.get(i), segment)) same = i;
+            }
+            if (same >= 0) dropped.remove(same);
+            else joined.add(segment);
+        }
+        if (dropped.isEmpty() && joined.isEmpty()) return extended(next.nodeLimit(), Delta.NONE);
+        if (dropped.isEmpty()) return withUnions(next, joined);
+        return relabeled(next, dropped, joined);
+    }
+
+    private TwinComponents withUnions(TwinTopology next, List<TwinTopology.Segment> joined) {
+        Map<String, String> merged = new LinkedHashMap<>();
+        Map<String, String> relabeled = new LinkedHashMap<>();
+        TwinComponents components = extended(next.nodeLimit(), new Delta(merged, relabeled));
+        for (TwinTopology.Segment segment : joined) {
+            components.union(next, next.nodeIndex(segment.fromNodeId()), next.nodeIndex(segment.toNodeId()), merged);
+        }
+        // Endpoints that had no segment before were never named, so a rename does not reach them.
+        for (TwinTopology.Segment segment : joined) {
+            for (String nodeId : new String[] {segment.fromNodeId(), segment.toNodeId()}) {
+                int node = next.nodeIndex(nodeId);
+                if (node >= 0) relabeled.put(nodeId, next.nodeId(components.label(node)));
+            }
+        }
+        return components;
+    }
+
+    // Every part of a component an edit touched contains one of the edited endpoints, so a breadth-first
+    // relabel from those endpoints covers exactly the nodes whose component may have changed.
+    private TwinComponents relabeled(TwinTopology next, List<TwinTopology.Segment> dropped, List<TwinTopology.Segment> joined) {
+        Map<String, String> relabeled = new LinkedHashMap<>();
+        TwinComponents components = extended(next.nodeLimit(), new Delta(Map.of(), relabeled));
+        BitSet visited = new BitSet(next.nodeLimit());
+        List<TwinTopology.Segment> touched = new ArrayList<>(dropped);
+        touched.addAll(joined);
+        for (TwinTopology.Segment segment : touched) {
+            for (String nodeId : new String[] {segment.fromNodeId(), segment.toNodeId()}) {
+                int start = next.nodeIndex(nodeId);
+                if (start < 0 || visited.get(start)) continue;
+                components.relabelFrom(this, next, start, visited, relabeled);
+            }
+        }
+        return components;
+    }
+
+    private void relabelFrom(TwinComponents previous, TwinTopology next, int start, BitSet visited, Map<String, String> relabeled) {
+        int[] members = new int[16];
+        int count = 0;
+        boolean connected = false;
+        int smallest = start;
+        members[count++] = start;
+        visited.set(start);
+        for (int head = 0; head < count; head++) {
+            int node = members[head];
+            if (next.nodeId(node).compareTo(next.nodeId(smallest)) < 0) smallest = node;
+            for (int pass = 0; pass < 2; pass++) {
+                boolean up = pass == 1;
+                for (int segment : next.next(node, up)) {
+                    connected = true;
+                    int other = up ? next.fromNode(segment) : next.toNode(segment);
+                    if (other < 0 || visited.get(other)) continue;
+                    visited.set(other);
+                    if (count == members.length) members = Arrays.copyOf(members, count * 2);
+                    members[count++] = other;
+                }
+            }
+        }
+
+        String name = connected ? next.nodeId(smallest) : null;
+        for (int i = 0; i < count; i++) {
+            int node = members[i];
+            // A node that was alone may never have been named, so it is written even if the name matches.
+            boolean wasAlone = node >= previous.parent.length || previous.size(node) == 1;
+            String previousName = node < previous.parent.length ? next.nodeId(previous.label(node)) : null;
+            if (wasAlone || !connected || !name.equals(previousName)) relabeled.put(next.nodeId(node), name);
+            parent[node] = start;
+        }
+        size[start] = count;
+        label[start] = smallest;
+    }
+
+    private void union(TwinTopology topology, int a, int b, Map<String, String> merged) {
+        if (a < 0 || b < 0) return;
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) return;
+        if (size[rootA] < size[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        String nameA = topology.nodeId(label[rootA]);
+        String nameB = topology.nodeId(label[rootB]);
+        boolean keepA = nameA.compareTo(nameB) <= 0;
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        if (!keepA) label[rootA] = label[rootB];
+        if (merged != null) {
+            if (keepA) merged.put(nameB, nameA);
+            else merged.put(nameA, nameB);
+        }
+    }
+
+    private TwinComponents extended(int nodeLimit, Delta nextDelta) {
+        int[] nextParent = Arrays.copyOf(parent, nodeLimit);
+        int[] nextSize = Arrays.copyOf(size, nodeLimit);
+        int[] nextLabel = Arrays.copyOf(label, nodeLimit);
+        for (int node = parent.length; node < nodeLimit; node++) {
+            nextParent[node] = node;
+            nextSize[node] = 1;
+            nextLabel[node] = node;
+        }
+        return new TwinComponents(nextParent, nextSize, nextLabel, nextDelta);
+    }
+
+    private static boolean sameEnds(TwinTopology.Segment a, TwinTopology.Segment b) {
+        return (same(a.fromNodeId(), b.fromNodeId()) && same(a.toNodeId(), b.toNodeId()))
+                || (same(a.fromNodeId(), b.toNodeId()) && same(a.toNodeId(), b.fromNodeId()));
+    }
+
+    private static boolean same(String a, String b) {
+        return (a == null || a.isBlank()) ? (b == null || b.isBlank()) : a.equals(b);
+    }
+}
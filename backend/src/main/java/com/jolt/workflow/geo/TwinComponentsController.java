@@ -0,0 +1,99 @@
+package com.jolt.workflow.geo;
+
+import java.util.List;
+import java.util.Map;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+// Network islands report over the component ids TwinTopologyGraph keeps on pipe_nodes and pipe_segments.
+// Largest components first; anything but the first is usually a fragment whose endpoints were not snapped.
+@RestController
+@RequestMapping("/api/v1/twin")
+public class TwinComponentsController {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TwinTopologyGraph topologyGraph;
+
+    public TwinComponentsController(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, TwinTopologyGraph topologyGraph) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.topologyGraph = topologyGraph;
+    }
+
+    @GetMapping(value = "/components", produces = MediaType.APPLICATION_JSON_VALUE)
+    public JsonNode components(
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "maxSegments", required = false) Integer maxSegments,
+            @RequestParam(name = "orphanLimit", required = false) Integer orphanLimit
+    ) {
+        int safeLimit = limit == null ? 100 : Math.max(1, Math.min(limit, 1000));
+        int safeOrphanLimit = orphanLimit == null ? 100 : Math.max(0, Math.min(orphanLimit, 1000));
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("topologyVersion", topologyGraph.version());
+        root.put("componentCount", jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT component_id) FROM pipe_segments WHERE component_id IS NOT NULL", Long.class));
+
+        // maxSegments narrows the list to small islands, the usual suspects for unsnapped endpoints.
+        String sql = "WITH seg AS (" +
+                "  SELECT s.component_id, COUNT(*) AS segment_count, ST_Extent(g.geom) AS extent " +
+                "  FROM pipe_segments s LEFT JOIN geo_features g ON g.id = s.feature_id " +
+                "  WHERE s.component_id IS NOT NULL GROUP BY s.component_id" +
+                "), node AS (" +
+                "  SELECT component_id, COUNT(*) AS node_count FROM pipe_nodes " +
+                "  WHERE component_id IS NOT NULL GROUP BY component_id" +
+                ") " +
+                "SELECT seg.component_id, seg.segment_count, COALESCE(node.node_count, 0) AS node_count, " +
+                "       ST_XMin(seg.extent) AS min_lon, ST_YMin(seg.extent) AS min_lat, " +
+                "       ST_XMax(seg.extent) AS max_lon, ST_YMax(seg.extent) AS max_lat " +
+                "FROM seg LEFT JOIN node ON node.component_id = seg.component_id " +
+                "WHERE seg.segment_count <= ? " +
+                "ORDER BY seg.segment_count DESC, seg.component_id LIMIT ?";
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                sql, maxSegments == null ? Long.MAX_VALUE : Math.max(0, maxSegments.longValue()), safeLimit);
+        ArrayNode components = root.putArray("components");
+        for (Map<String, Object> row : rows) {
+            ObjectNode component = components.addObject();
+            component.put("componentId", String.valueOf(row.get("component_id")));
+            component.put("segmentCount", ((Number) row.get("segment_count")).longValue());
+            component.put("nodeCount", ((Number) row.get("node_count")).longValue());
+            if (row.get("min_lon") == null) {
+                component.putNull("bbox");
+            } else {
+                component.putArray("bbox")
+                        .add(((Number) row.get("min_lon")).doubleValue())
+                        .add(((Number) row.get("min_lat")).doubleValue())
+                        .add(((Number) row.get("max_lon")).doubleValue())
+                        .add(((Number) row.get("max_lat")).doubleValue());
+            }
+        }
+
+        // Orphans are read from the segments themselves, so nodes created since the last write show up too.
+        String orphanWhere = "FROM pipe_nodes n WHERE NOT EXISTS (" +
+                "SELECT 1 FROM pipe_segments s WHERE s.from_node_id = n.id OR s.to_node_id = n.id)";
+        ObjectNode orphans = root.putObject("orphanNodes");
+        orphans.put("count", jdbcTemplate.queryForObject("SELECT COUNT(*) " + orphanWhere, Long.class));
+        ArrayNode orphanList = orphans.putArray("list");
+        if (safeOrphanLimit > 0) {
+            List<Map<String, Object>> orphanRows = jdbcTemplate.queryForList(
+                    "SELECT n.id, n.node_type, COALESCE(n.name, '') AS name " + orphanWhere + " ORDER BY n.id LIMIT ?",
+                    safeOrphanLimit);
+            for (Map<String, Object> row : orphanRows) {
+                ObjectNode node = orphanList.addObject();
+                node.put("id", String.valueOf(row.get("id")));
+                node.put("nodeType", String.valueOf(row.get("node_type")));
+                node.put("name", String.valueOf(row.get("name")));
+            }
+        }
+        return root;
+    }
+}
@@ -4,186 +4,268 @@ import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.node.ArrayNode;
 import tools.jackson.databind.node.ObjectNode;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/api/v1/twin")
 public class TwinController {
 
+    private static final Logger log = LoggerFactory.getLogger(TwinController.class);
+
     private final JdbcTemplate jdbcTemplate;
     private final ObjectMapper objectMapper;
-
-    public TwinController(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+    private final GeoClusterService clusterService;
+    private final TwinTopologyGraph topologyGraph;
+    private final TwinBuildingLinks buildingLinks;
+    private final TwinDrilldownCache drilldownCache;
+    private final GeoLayerVersions layerVersions;
+    private final long drilldownTimeoutMs;
+    // Sub-queries one drilldown may run at once; a fresh semaphore of this size is made per request.
+    private final int drilldownMaxParallelQueries;
+    // Shared by all drilldowns: the pool size less a reserve, so other endpoints always find a connection.
+    private final Semaphore drilldownQueryPermits;
+
+    public TwinController(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            GeoClusterService clusterService,
+            TwinTopologyGraph topologyGraph,
+            TwinBuildingLinks buildingLinks,
+            TwinDrilldownCache drilldownCache,
+            GeoLayerVersions layerVersions,
+            @Value("${app.twin.drilldown.timeout-ms:5000}") long drilldownTimeoutMs,
+            @Value("${app.twin.drilldown.max-parallel-queries:4}") int drilldownMaxParallelQueries,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${app.twin.drilldown.pool-reserve:2}") int poolReserve
+    ) {
         this.jdbcTemplate = jdbcTemplate;
         this.objectMapper = objectMapper;
+        this.clusterService = clusterService;
+        this.topologyGraph = topologyGraph;
+        this.buildingLinks = buildingLinks;
+        this.drilldownCache = drilldownCache;
+        this.layerVersions = layerVersions;
+        this.drilldownTimeoutMs = Math.max(1, drilldownTimeoutMs);
+        this.drilldownMaxParallelQueries = Math.max(1, drilldownMaxParallelQueries);
+        this.drilldownQueryPermits = new Semaphore(Math.max(1, poolSize - Math.max(0, poolReserve)), true);
     }
 
+    // Served from TwinDrilldownCache when possible; complete responses are cached as the bytes sent.
     @GetMapping(value = "/drilldown/{featureId}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public JsonNode drilldown(@PathVariable("featureId") String featureId) {
-        ObjectNode root = objectMapper.createObjectNode();
-        root.put("featureId", featureId);
-        root.set("feature", queryFeatureGeoJson(featureId));
+    public ResponseEntity<byte[]> drilldown(@PathVariable("featureId") String featureId) {
+        byte[] body = drilldownCache.get(featureId);
+        String cacheStatus = "HIT";
+        if (body == null) {
+            long generation = drilldownCache.generation();
+            ObjectNode root = queryDrilldown(featureId);
+            body = objectMapper.writeValueAsBytes(root);
+            if (!root.path("partial").asBoolean(false)) {
+                drilldownCache.put(featureId, body, drilldownTags(root), generation);
+            }
+            cacheStatus = "MISS";
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("X-Drilldown-Cache", cacheStatus)
+                .body(body);
+    }
 
-        ObjectNode segment = querySegmentByFeature(featureId);
-        if (segment == null) {
-            segment = querySegmentByNode(featureId);
+    // Sub-queries fan out on virtual threads as soon as their inputs are known: feature and segment first,
+    // then nodes, then relations, manholes, valves and pump stations side by side, then the building-bound ones.
+    // Whatever has not answered by app.twin.drilldown.timeout-ms, or failed, comes back empty and is listed in
+    // failedBranches; branches downstream of it carry on with what the request itself supplies.
+    private ObjectNode queryDrilldown(String featureId) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drilldownTimeoutMs);
+        Semaphore requestPermits = new Semaphore(drilldownMaxParallelQueries);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            CompletableFuture<JsonNode> feature = CompletableFuture.supplyAsync(
+                    () -> bounded(deadline, requestPermits, () -> queryFeatureGeoJson(featureId)), executor);
+            CompletableFuture<ObjectNode> segment = CompletableFuture.supplyAsync(() -> bounded(deadline, requestPermits, () -> {
+                ObjectNode bySegment = querySegmentByFeature(featureId);
+                return bySegment == null ? querySegmentByNode(featureId) : bySegment;
+            }), executor);
+            CompletableFuture<ObjectNode> segmentOrNull = segment.exceptionally(e -> null);
+            CompletableFuture<ArrayNode> nodes = segmentOrNull.thenApplyAsync(
+                    s -> bounded(deadline, requestPermits, () -> queryNodesByCandidates(drilldownCandidates(featureId, s, null))), executor);
+            CompletableFuture<ArrayNode> nodesOrEmpty = nodes.exceptionally(e -> objectMapper.createArrayNode());
+
+            CompletableFuture<ArrayNode> relations = segmentOrNull.thenCombineAsync(nodesOrEmpty,
+                    (s, n) -> bounded(deadline, requestPermits, () -> queryRelationsByCandidates(drilldownCandidates(featureId, s, n))), executor);
+            CompletableFuture<ArrayNode> linkedBuildings = relations.exceptionally(e -> objectMapper.createArrayNode())
+                    .thenApplyAsync(r -> bounded(deadline, requestPermits, () -> queryLinkedBuildings(r, featureId)), executor);
+            CompletableFuture<ArrayNode> linkedBuildingsOrEmpty = linkedBuildings.exceptionally(e -> objectMapper.createArrayNode());
+            CompletableFuture<ArrayNode> manholes = segmentOrNull.thenCombineAsync(nodesOrEmpty,
+                    (s, n) -> bounded(deadline, requestPermits, () -> queryManholes(featureId, s, n)), executor);
+            CompletableFuture<ArrayNode> valves = segmentOrNull.thenCombineAsync(nodesOrEmpty,
+                    (s, n) -> bounded(deadline, requestPermits, () -> queryValves(featureId, s, n)), executor);
+            CompletableFuture<ArrayNode> valvesOrEmpty = valves.exceptionally(e -> objectMapper.createArrayNode());
+            // One read of the pump stations on the network serves both pumpStations and equipments.
+            CompletableFuture<List<Map<String, Object>>> networkPumps = nodesOrEmpty.thenApplyAsync(
+                    n -> bounded(deadline, requestPermits, () -> queryNetworkPumpRows(featureId, n)), executor);
+            CompletableFuture<ArrayNode> pumpStations = networkPumps.thenCombineAsync(linkedBuildingsOrEmpty,
+                    (network, b) -> pumpStations(network, bounded(deadline, requestPermits, () -> queryBuildingPumpRows(b))), executor);
+            CompletableFuture<ArrayNode> buildingFloors = linkedBuildingsOrEmpty.thenApplyAsync(
+                    b -> bounded(deadline, requestPermits, () -> queryBuildingFloors(b)), executor);
+            CompletableFuture<ArrayNode> impactedRooms = linkedBuildingsOrEmpty.thenApplyAsync(
+                    b -> bounded(deadline, requestPermits, () -> queryImpactedRooms(b)), executor);
+            CompletableFuture<ArrayNode> pumpStationsOrEmpty = pumpStations.exceptionally(e -> objectMapper.createArrayNode());
+            CompletableFuture<ArrayNode> equipments = CompletableFuture
+                    .allOf(networkPumps, linkedBuildingsOrEmpty, valvesOrEmpty, pumpStationsOrEmpty)
+                    .thenApply(ignored -> equipments(
+                            networkPumps.join(), linkedBuildingsOrEmpty.join(), valvesOrEmpty.join(), pumpStationsOrEmpty.join()));
+
+            List<String> failed = new ArrayList<>();
+            ObjectNode root = objectMapper.createObjectNode();
+            root.put("featureId", featureId);
+            root.set("feature", await(featureId, "feature", feature, objectMapper.getNodeFactory().nullNode(), deadline, failed));
+            ObjectNode segmentNode = await(featureId, "segment", segment, null, deadline, failed);
+            if (segmentNode == null) root.putNull("segment");
+            else root.set("segment", segmentNode);
+            root.set("nodes", await(featureId, "nodes", nodes, objectMapper.createArrayNode(), deadline, failed));
+            root.set("relations", await(featureId, "relations", relations, objectMapper.createArrayNode(), deadline, failed));
+            root.set("linkedBuildings", await(featureId, "linkedBuildings", linkedBuildings, objectMapper.createArrayNode(), deadline, failed));
+            root.set("manholes", await(featureId, "manholes", manholes, objectMapper.createArrayNode(), deadline, failed));
+            root.set("valves", await(featureId, "valves", valves, objectMapper.createArrayNode(), deadline, failed));
+            root.set("pumpStations", await(featureId, "pumpStations", pumpStations, objectMapper.createArrayNode(), deadline, failed));
+            root.set("buildingFloors", await(featureId, "buildingFloors", buildingFloors, objectMapper.createArrayNode(), deadline, failed));
+            root.set("impactedRooms", await(featureId, "impactedRooms", impactedRooms, objectMapper.createArrayNode(), deadline, failed));
+            root.set("equipments", await(featureId, "equipments", equipments, objectMapper.createArrayNode(), deadline, failed));
+            root.put("partial", !failed.isEmpty());
+            if (!failed.isEmpty()) root.set("failedBranches", stringArray(failed));
+            return root;
+        } finally {
+            // Branches still running past the deadline are interrupted rather than waited for.
+            executor.shutdownNow();
         }
-        if (segment == null) root.putNull("segment");
-        else root.set("segment", segment);
+    }
 
-        Set<String> candidateAssetIds = new LinkedHashSet<>();
-        candidateAssetIds.add(featureId);
-        if (segment != null && segment.hasNonNull("id")) {
-            candidateAssetIds.add(segment.get("id").asText());
-            String segmentFeatureId = segment.path("featureId").asText("");
-            if (!segmentFeatureId.isBlank()) {
-                candidateAssetIds.add(segmentFeatureId);
-            }
-            String fromNodeId = segment.path("fromNodeId").asText("");
-            if (!fromNodeId.isBlank()) {
-                candidateAssetIds.add(fromNodeId);
-            }
-            String toNodeId = segment.path("toNodeId").asText("");
-            if (!toNodeId.isBlank()) {
-                candidateAssetIds.add(toNodeId);
+    // Runs one branch's queries under a permit of its own request and then a shared one, waiting for either
+    // no longer than the deadline. The request permit comes first, so a queued request holds no shared permit.
+    private <T> T bounded(long deadline, Semaphore requestPermits, Supplier<T> queries) {
+        acquire(requestPermits, deadline);
+        try {
+            acquire(drilldownQueryPermits, deadline);
+            try {
+                return queries.get();
+            } finally {
+                drilldownQueryPermits.release();
             }
+        } finally {
+            requestPermits.release();
         }
+    }
 
-        ArrayNode nodes = queryNodesByCandidates(candidateAssetIds);
-        root.set("nodes", nodes);
-        for (JsonNode node : nodes) {
-            if (node.hasNonNull("id")) candidateAssetIds.add(node.get("id").asText());
-        }
-
-        ArrayNode relations = queryRelationsByCandidates(candidateAssetIds);
-        root.set("relations", relations);
-        ArrayNode linkedBuildings = queryLinkedBuildings(relations, featureId);
-        root.set("linkedBuildings", linkedBuildings);
-        ArrayNode manholes = queryManholes(featureId, segment, nodes);
-        root.set("manholes", manholes);
-        ArrayNode valves = queryValves(featureId, segment, nodes);
-        root.set("valves", valves);
-        ArrayNode pumpStations = queryPumpStations(featureId, nodes, linkedBuildings, valves);
-        root.set("pumpStations", pumpStations);
-        root.set("buildingFloors", queryBuildingFloors(linkedBuildings));
-        root.set("impactedRooms", queryImpactedRooms(linkedBuildings));
-        root.set("equipments", queryEquipments(featureId, nodes, linkedBuildings, valves, pumpStations));
-        return root;
+    private static void acquire(Semaphore permits, long deadline) {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("drilldown_interrupted");
+        }
+        if (!acquired) {
+            throw new IllegalStateException("drilldown_query_permit_timeout");
+        }
     }
 
-    @GetMapping(value = "/trace", produces = MediaType.APPLICATION_JSON_VALUE)
-    public JsonNode trace(
-            @RequestParam("startId") String startId,
-            @RequestParam(name = "direction", required = false, defaultValue = "down") String directionRaw
-    ) {
-        String direction = "up".equalsIgnoreCase(directionRaw) ? "up" : "down";
-        List<SegmentTopology> segments = queryAllSegments();
-        Map<String, SegmentTopology> segmentsById = new HashMap<>(segments.size());
-        Map<String, SegmentTopology> segmentsByFeatureId = new HashMap<>(segments.size());
-        Map<String, List<SegmentTopology>> downstreamIndex = new HashMap<>();
-        Map<String, List<SegmentTopology>> upstreamIndex = new HashMap<>();
-        for (SegmentTopology segment : segments) {
-            segmentsById.put(segment.id(), segment);
-            if (segment.featureId() != null && !segment.featureId().isBlank()) {
-                segmentsByFeatureId.putIfAbsent(segment.featureId(), segment);
-            }
-            if (segment.fromNodeId() != null && !segment.fromNodeId().isBlank()) {
-                downstreamIndex
-                        .computeIfAbsent(segment.fromNodeId(), ignored -> new ArrayList<>())
-                        .add(segment);
-            }
-            if (segment.toNodeId() != null && !segment.toNodeId().isBlank()) {
-                upstreamIndex
-                        .computeIfAbsent(segment.toNodeId(), ignored -> new ArrayList<>())
-                        .add(segment);
+    // Every asset id the response shows, for TwinDrilldownCache invalidation.
+    private static Set<String> drilldownTags(ObjectNode root) {
+        Set<String> tags = new LinkedHashSet<>();
+        tags.add(root.path("featureId").asText(""));
+        JsonNode segment = root.path("segment");
+        for (String field : new String[] {"id", "featureId", "fromNodeId", "toNodeId"}) {
+            tags.add(segment.path(field).asText(""));
+        }
+        for (String list : new String[] {"nodes", "linkedBuildings", "manholes", "valves", "pumpStations",
+                "buildingFloors", "impactedRooms", "equipments"}) {
+            for (JsonNode item : root.path(list)) {
+                tags.add(item.path("id").asText(""));
+                tags.add(item.path("nodeId").asText(""));
+                tags.add(item.path("buildingId").asText(""));
             }
         }
-
-        SegmentTopology startSegment = segmentsById.get(startId);
-        if (startSegment == null) {
-            startSegment = segmentsByFeatureId.get(startId);
+        for (JsonNode relation : root.path("relations")) {
+            tags.add(relation.path("sourceId").asText(""));
+            tags.add(relation.path("targetId").asText(""));
         }
-
-        ObjectNode root = objectMapper.createObjectNode();
-        root.put("startId", startId);
-        root.put("direction", direction);
-
-        ArrayNode pathSegmentIds = objectMapper.createArrayNode();
-        ArrayNode pathFeatureIds = objectMapper.createArrayNode();
-        ArrayNode nodeIds = objectMapper.createArrayNode();
-
-        if (startSegment == null) {
-            root.set("pathSegmentIds", pathSegmentIds);
-            root.set("pathFeatureIds", pathFeatureIds);
-            root.set("nodeIds", nodeIds);
-            root.set("linkedBuildings", objectMapper.createArrayNode());
-            return root;
+        for (JsonNode building : root.path("linkedBuildings")) {
+            if (building.has("distanceMeters")) {
+                tags.add(TwinDrilldownCache.NEAREST_BUILDINGS_TAG);
+                break;
+            }
         }
+        tags.remove("");
+        return tags;
+    }
 
-        Set<String> visitedSegmentIds = new LinkedHashSet<>();
-        Set<String> visitedFeatureIds = new LinkedHashSet<>();
-        Set<String> visitedNodeIds = new LinkedHashSet<>();
-        ArrayDeque<SegmentTopology> queue = new ArrayDeque<>();
-        queue.add(startSegment);
-        visitedSegmentIds.add(startSegment.id());
-        if (startSegment.featureId() != null && !startSegment.featureId().isBlank()) {
-            visitedFeatureIds.add(startSegment.featureId());
-        }
-        if (startSegment.fromNodeId() != null) visitedNodeIds.add(startSegment.fromNodeId());
-        if (startSegment.toNodeId() != null) visitedNodeIds.add(startSegment.toNodeId());
-
-        Map<String, List<SegmentTopology>> adjacency = "up".equals(direction) ? upstreamIndex : downstreamIndex;
-        while (!queue.isEmpty()) {
-            SegmentTopology current = queue.removeFirst();
-            String nodeId = "up".equals(direction) ? current.fromNodeId() : current.toNodeId();
-            if (nodeId == null || nodeId.isBlank()) {
-                continue;
-            }
-            List<SegmentTopology> candidates = adjacency.get(nodeId);
-            if (candidates == null || candidates.isEmpty()) {
-                continue;
+    // The requested id plus the segment's id, pipe and end nodes, and the nodes found for them once known.
+    private static Set<String> drilldownCandidates(String featureId, ObjectNode segment, ArrayNode nodes) {
+        Set<String> candidateAssetIds = new LinkedHashSet<>();
+        candidateAssetIds.add(featureId);
+        if (segment != null && segment.hasNonNull("id")) {
+            candidateAssetIds.add(segment.get("id").asText());
+            for (String field : new String[] {"featureId", "fromNodeId", "toNodeId"}) {
+                String id = segment.path(field).asText("");
+                if (!id.isBlank()) candidateAssetIds.add(id);
             }
-            for (SegmentTopology next : candidates) {
-                if (!visitedSegmentIds.add(next.id())) continue;
-                if (next.featureId() != null && !next.featureId().isBlank()) {
-                    visitedFeatureIds.add(next.featureId());
-                }
-                if (next.fromNodeId() != null) visitedNodeIds.add(next.fromNodeId());
-                if (next.toNodeId() != null) visitedNodeIds.add(next.toNodeId());
-                queue.addLast(next);
+        }
+        if (nodes != null) {
+            for (JsonNode node : nodes) {
+                if (node.hasNonNull("id")) candidateAssetIds.add(node.get("id").asText());
             }
         }
+        return candidateAssetIds;
+    }
 
-        for (String segmentId : visitedSegmentIds) pathSegmentIds.add(segmentId);
-        for (String featureId : visitedFeatureIds) pathFeatureIds.add(featureId);
-        for (String nodeId : visitedNodeIds) nodeIds.add(nodeId);
-
-        Set<String> candidateIds = new LinkedHashSet<>();
-        candidateIds.addAll(visitedSegmentIds);
-        candidateIds.addAll(visitedFeatureIds);
-        candidateIds.addAll(visitedNodeIds);
-        ArrayNode relations = queryRelationsByCandidates(candidateIds);
-
-        root.set("pathSegmentIds", pathSegmentIds);
-        root.set("pathFeatureIds", pathFeatureIds);
-        root.set("nodeIds", nodeIds);
-        root.set("linkedBuildings", queryLinkedBuildings(relations, startId));
-        return root;
+    private <T> T await(String featureId, String branch, CompletableFuture<T> future, T fallback, long deadline, List<String> failed) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("twin_drilldown_branch_timeout feature_id={} branch={}", featureId, branch);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause()
+                    : e.getCause();
+            log.warn("twin_drilldown_branch_failed feature_id={} branch={} error={}", featureId, branch, cause.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failed.add(branch);
+        return fallback;
     }
 
+
     @GetMapping(value = "/telemetry/latest", produces = MediaType.APPLICATION_JSON_VALUE)
     public JsonNode telemetryLatest(@RequestParam("featureIds") String featureIdsRaw) {
         List<String> featureIds = List.of(featureIdsRaw.split(",")).stream()
@@ -219,55 +301,106 @@ public class TwinController {
         return root;
     }
 
+    // ETag from the twin_nodes version (V25), read before the data like GeoFeatureController's layer ETags.
     @GetMapping(value = "/nodes", produces = MediaType.APPLICATION_JSON_VALUE)
-    public JsonNode listNodes(
+    public ResponseEntity<JsonNode> listNodes(
             @RequestParam(name = "bbox", required = false) String bbox,
             @RequestParam(name = "limit", required = false, defaultValue = "1200") int limit,
             @RequestParam(name = "page", required = false) Integer page,
-            @RequestParam(name = "offset", required = false) Integer offset
+            @RequestParam(name = "offset", required = false) Integer offset,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "cluster", required = false) String cluster,
+            @RequestParam(name = "zoom", required = false) Integer zoom,
+            WebRequest request
     ) {
-        int safeLimit = Math.max(1, Math.min(limit, 4000));
-        long finalOffset = 0L;
-        if (offset != null) {
-            finalOffset = Math.max(0L, offset.longValue());
-        } else if (page != null && page > 1) {
-            long computed = (page.longValue() - 1L) * safeLimit;
-            finalOffset = Math.max(0L, Math.min(computed, Integer.MAX_VALUE));
+        GeoClusterMode clusterMode = GeoClusterMode.parse(cluster);
+        String etag = layerVersions.nodesEtag(
+                bbox + "|" + limit + "|" + page + "|" + offset + "|" + cursor + "|" + clusterMode + "|" + zoom);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).eTag(etag).build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(etag)
+                .body(queryNodes(bbox, limit, page, offset, cursor, clusterMode, zoom));
+    }
+
+    private ArrayNode stringArray(Collection<String> values) {
+        ArrayNode array = objectMapper.createArrayNode();
+        for (String value : values) array.add(value);
+        return array;
+    }
+
+    private JsonNode queryNodes(
+            String bbox,
+            int limit,
+            Integer page,
+            Integer offset,
+            String cursor,
+            GeoClusterMode clusterMode,
+            Integer zoom
+    ) {
+        if (clusterMode != null) {
+            double[] clusterBbox = bbox == null || bbox.isBlank() ? null : parseBbox(bbox);
+            return clusterService.cluster(
+                    GeoClusterService.Target.NODES,
+                    clusterMode,
+                    GeoClusterMode.requireZoom(zoom),
+                    null,
+                    clusterBbox
+            );
         }
 
-        String where = "WHERE (n.properties->>'lon') IS NOT NULL AND (n.properties->>'lat') IS NOT NULL";
+        int safeLimit = Math.max(1, Math.min(limit, 4000));
+
+        String where = "WHERE n.geom IS NOT NULL";
         List<Object> params = new ArrayList<>();
         if (bbox != null && !bbox.isBlank()) {
             double[] b = parseBbox(bbox);
-            where += " AND (n.properties->>'lon')::double precision BETWEEN ? AND ? " +
-                    "AND (n.properties->>'lat')::double precision BETWEEN ? AND ?";
+            where += " AND n.geom && ST_MakeEnvelope(?, ?, ?, ?, 4326)";
             params.add(b[0]);
-            params.add(b[2]);
             params.add(b[1]);
+            params.add(b[2]);
             params.add(b[3]);
         }
+        String filterHash = KeysetCursor.filterHash(where, params);
+
+        long finalOffset = 0L;
+        if (cursor != null && !cursor.isBlank()) {
+            where += " AND n.id > ?";
+            params.add(KeysetCursor.decodeLastId(cursor, filterHash));
+        } else if (offset != null) {
+            finalOffset = Math.max(0L, offset.longValue());
+        } else if (page != null && page > 1) {
+            long computed = (page.longValue() - 1L) * safeLimit;
+            finalOffset = Math.max(0L, Math.min(computed, Integer.MAX_VALUE));
+        }
         params.add(safeLimit);
         params.add(finalOffset);
 
-        String sql = "WITH segment_refs AS (" +
-                "  SELECT id AS segment_id, from_node_id AS node_id, status FROM pipe_segments WHERE from_node_id IS NOT NULL " +
+        // Only nodes on the current page feed segment_stats, instead of aggregating every segment.
+        String sql = "WITH page_nodes AS (" +
+                "  SELECT n.id, n.feature_id, n.node_type, n.name, n.properties, n.geom FROM pipe_nodes n " +
+                where + " ORDER BY n.id LIMIT ? OFFSET ?" +
+                "), segment_refs AS (" +
+                "  SELECT s.id AS segment_id, s.from_node_id AS node_id, s.status FROM pipe_segments s " +
+                "  JOIN page_nodes pn ON pn.id = s.from_node_id " +
                 "  UNION ALL " +
-                "  SELECT id AS segment_id, to_node_id AS node_id, status FROM pipe_segments WHERE to_node_id IS NOT NULL" +
+                "  SELECT s.id AS segment_id, s.to_node_id AS node_id, s.status FROM pipe_segments s " +
+                "  JOIN page_nodes pn ON pn.id = s.to_node_id" +
                 "), segment_stats AS (" +
-                "  SELECT node_id, COUNT(DISTINCT segment_id) AS segment_count, CASE " +
-                "    WHEN BOOL_OR(status = 'critical') THEN 'critical' " +
-                "    WHEN BOOL_OR(status = 'warning') THEN 'warning' " +
-                "    ELSE 'normal' END AS health_status " +
+                "  SELECT node_id, COUNT(DISTINCT segment_id) AS segment_count, " +
+                TwinHealthSql.worstStatus("status") + " AS health_status " +
                 "  FROM segment_refs GROUP BY node_id" +
                 ") SELECT " +
                 " n.id, n.feature_id, n.node_type, COALESCE(n.name, n.id) AS name, n.properties, " +
-                " (n.properties->>'lon')::double precision AS lon, " +
-                " (n.properties->>'lat')::double precision AS lat, " +
+                " ST_X(n.geom) AS lon, " +
+                " ST_Y(n.geom) AS lat, " +
                 " COALESCE(ss.segment_count, 0) AS segment_count, " +
                 " COALESCE(ss.health_status, 'normal') AS health_status " +
-                "FROM pipe_nodes n " +
+                "FROM page_nodes n " +
                 "LEFT JOIN segment_stats ss ON ss.node_id = n.id " +
-                where + " ORDER BY n.id LIMIT ? OFFSET ?";
+                "ORDER BY n.id";
 
         List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, params.toArray());
         ObjectNode root = objectMapper.createObjectNode();
@@ -299,6 +432,13 @@ public class TwinController {
             feature.set("geometry", geometry);
             features.add(feature);
         }
+
+        if (rows.size() < safeLimit) {
+            root.putNull("nextCursor");
+        } else {
+            String lastId = String.valueOf(rows.get(rows.size() - 1).get("id"));
+            root.put("nextCursor", KeysetCursor.encode(lastId, filterHash));
+        }
         return root;
     }
 
@@ -323,10 +463,13 @@ public class TwinController {
         }
     }
 
+    // The topology graph answers which segment (if any) belongs to the id; only its attribute row is read.
     private ObjectNode querySegmentByFeature(String featureId) {
+        TwinTopology.Segment resolved = topologyGraph.snapshot().resolve(featureId);
+        if (resolved == null) return null;
         String sql = "SELECT id, feature_id, from_node_id, to_node_id, diameter_mm, material, status, properties " +
-                "FROM pipe_segments WHERE feature_id = ? OR id = ? LIMIT 1";
-        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, featureId, featureId);
+                "FROM pipe_segments WHERE id = ?";
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, resolved.id());
         if (rows.isEmpty()) return null;
         Map<String, Object> row = rows.get(0);
         return toSegmentNode(row);
@@ -403,51 +546,9 @@ public class TwinController {
             }
         }
 
-        if (buildingIds.isEmpty()) {
-            return queryNearestBuildings(featureId);
-        }
-        return queryBuildingRows(buildingIds);
-    }
-
-    private ArrayNode queryNearestBuildings(String featureId) {
-        ArrayNode linked = objectMapper.createArrayNode();
-        String sql = "WITH src AS (" +
-                "  SELECT geom FROM geo_features WHERE id = ?" +
-                ") " +
-                "SELECT g.id, COALESCE(g.properties->>'name', g.id) AS name, " +
-                "       ROUND(ST_Distance(g.geom::geography, src.geom::geography)::numeric, 2) AS distance_m " +
-                "FROM geo_features g, src " +
-                "WHERE g.layer = 'buildings' " +
-                "ORDER BY g.geom <-> src.geom " +
-                "LIMIT 5";
-        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, featureId);
-        for (Map<String, Object> row : rows) {
-            ObjectNode b = objectMapper.createObjectNode();
-            b.put("id", String.valueOf(row.get("id")));
-            b.put("name", String.valueOf(row.get("name")));
-            Object dist = row.get("distance_m");
-            b.put("distanceMeters", dist instanceof Number ? ((Number) dist).doubleValue() : 0.0);
-            linked.add(b);
-        }
-        return linked;
+        return buildingLinks.linkedBuildings(buildingIds, featureId);
     }
 
-    private ArrayNode queryBuildingRows(Set<String> buildingIds) {
-        ArrayNode linked = objectMapper.createArrayNode();
-        if (buildingIds.isEmpty()) return linked;
-
-        String placeholders = String.join(",", java.util.Collections.nCopies(buildingIds.size(), "?"));
-        String sql = "SELECT id, COALESCE(properties->>'name', id) AS name " +
-                "FROM geo_features WHERE id IN (" + placeholders + ")";
-        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, buildingIds.toArray());
-        for (Map<String, Object> row : rows) {
-            ObjectNode b = objectMapper.createObjectNode();
-            b.put("id", String.valueOf(row.get("id")));
-            b.put("name", String.valueOf(row.get("name")));
-            linked.add(b);
-        }
-        return linked;
-    }
 
     private ArrayNode queryImpactedRooms(ArrayNode linkedBuildings) {
         ArrayNode impactedRooms = objectMapper.createArrayNode();
@@ -619,10 +720,13 @@ public class TwinController {
         return valves;
     }
 
-    private ArrayNode queryPumpStations(String featureId, ArrayNode nodes, ArrayNode linkedBuildings, ArrayNode valves) {
-        ArrayNode pumpStations = objectMapper.createArrayNode();
+    private static final String PUMP_STATION_COLUMNS = "SELECT p.id, p.feature_id, p.node_id, COALESCE(p.name, p.id) AS name, " +
+            "       p.station_type, p.status, p.design_flow_m3h, p.design_head_m, p.power_kw, p.properties " +
+            "FROM pump_stations p ";
+
+    // Pump stations sitting on the drilldown's nodes or pipe.
+    private List<Map<String, Object>> queryNetworkPumpRows(String featureId, ArrayNode nodes) {
         Set<String> nodeIds = extractNodeIds(nodes);
-        Set<String> buildingIds = extractBuildingIds(linkedBuildings);
 
         List<String> conditions = new ArrayList<>();
         List<Object> params = new ArrayList<>();
@@ -635,19 +739,34 @@ public class TwinController {
             conditions.add("p.feature_id = ?");
             params.add(featureId);
         }
-        if (!buildingIds.isEmpty()) {
-            String placeholders = String.join(",", java.util.Collections.nCopies(buildingIds.size(), "?"));
-            conditions.add("EXISTS (SELECT 1 FROM asset_relations ar WHERE ar.source_id = p.id AND ar.source_type = 'pump_station' AND ar.target_id IN (" + placeholders + "))");
-            params.addAll(buildingIds);
-        }
+        if (conditions.isEmpty()) return List.of();
 
-        if (conditions.isEmpty()) return pumpStations;
+        String sql = PUMP_STATION_COLUMNS + "WHERE " + String.join(" OR ", conditions) + " ORDER BY p.id LIMIT 100";
+        return jdbcTemplate.queryForList(sql, params.toArray());
+    }
 
-        String sql = "SELECT p.id, p.feature_id, p.node_id, COALESCE(p.name, p.id) AS name, p.station_type, p.status, " +
-                "       p.design_flow_m3h, p.design_head_m, p.power_kw, p.properties " +
-                "FROM pump_stations p WHERE " + String.join(" OR ", conditions) + " ORDER BY p.id LIMIT 100";
-        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, params.toArray());
-        for (Map<String, Object> row : rows) {
+    // Pump stations related to the linked buildings.
+    private List<Map<String, Object>> queryBuildingPumpRows(ArrayNode linkedBuildings) {
+        Set<String> buildingIds = extractBuildingIds(linkedBuildings);
+        if (buildingIds.isEmpty()) return List.of();
+
+        String placeholders = String.join(",", java.util.Collections.nCopies(buildingIds.size(), "?"));
+        String sql = PUMP_STATION_COLUMNS +
+                "WHERE EXISTS (SELECT 1 FROM asset_relations ar WHERE ar.source_id = p.id AND ar.source_type = 'pump_station' " +
+                "AND ar.target_id IN (" + placeholders + ")) ORDER BY p.id LIMIT 100";
+        return jdbcTemplate.queryForList(sql, buildingIds.toArray());
+    }
+
+    // Both lists are the first 100 by id of their condition, so the first 100 of their union is the same as
+    // querying with both conditions at once.
+    private ArrayNode pumpStations(List<Map<String, Object>> networkRows, List<Map<String, Object>> buildingRows) {
+        TreeMap<String, Map<String, Object>> byId = new TreeMap<>();
+        for (Map<String, Object> row : networkRows) byId.put(String.valueOf(row.get("id")), row);
+        for (Map<String, Object> row : buildingRows) byId.putIfAbsent(String.valueOf(row.get("id")), row);
+
+        ArrayNode pumpStations = objectMapper.createArrayNode();
+        for (Map<String, Object> row : byId.values()) {
+            if (pumpStations.size() == 100) break;
             ObjectNode pump = objectMapper.createObjectNode();
             pump.put("id", String.valueOf(row.get("id")));
             pump.put("featureId", row.get("feature_id") == null ? "" : String.valueOf(row.get("feature_id")));
@@ -655,67 +774,41 @@ public class TwinController {
             pump.put("name", String.valueOf(row.get("name")));
             pump.put("stationType", row.get("station_type") == null ? "" : String.valueOf(row.get("station_type")));
             pump.put("status", row.get("status") == null ? "" : String.valueOf(row.get("status")));
-            Object flow = row.get("design_flow_m3h");
-            if (flow instanceof Number number) pump.put("designFlowM3h", number.doubleValue());
-            else pump.putNull("designFlowM3h");
-            Object head = row.get("design_head_m");
-            if (head instanceof Number number) pump.put("designHeadM", number.doubleValue());
-            else pump.putNull("designHeadM");
-            Object power = row.get("power_kw");
-            if (power instanceof Number number) pump.put("powerKw", number.doubleValue());
-            else pump.putNull("powerKw");
-            pump.set("properties", parseJsonObject(row.get("properties")));
+            putPumpRatings(pump, row);
             pumpStations.add(pump);
         }
         return pumpStations;
     }
 
-    private ArrayNode queryEquipments(String featureId, ArrayNode nodes, ArrayNode linkedBuildings, ArrayNode valves, ArrayNode pumpStations) {
-        ArrayNode equipments = objectMapper.createArrayNode();
-        Set<String> nodeIds = extractNodeIds(nodes);
-
-        List<String> conditions = new ArrayList<>();
-        List<Object> params = new ArrayList<>();
-        if (!nodeIds.isEmpty()) {
-            String placeholders = String.join(",", java.util.Collections.nCopies(nodeIds.size(), "?"));
-            conditions.add("node_id IN (" + placeholders + ")");
-            params.addAll(nodeIds);
-        }
-        if (featureId != null && !featureId.isBlank()) {
-            conditions.add("feature_id = ?");
-            params.add(featureId);
-        }
+    private void putPumpRatings(ObjectNode target, Map<String, Object> row) {
+        Object flow = row.get("design_flow_m3h");
+        if (flow instanceof Number number) target.put("designFlowM3h", number.doubleValue());
+        else target.putNull("designFlowM3h");
+        Object head = row.get("design_head_m");
+        if (head instanceof Number number) target.put("designHeadM", number.doubleValue());
+        else target.putNull("designHeadM");
+        Object power = row.get("power_kw");
+        if (power instanceof Number number) target.put("powerKw", number.doubleValue());
+        else target.putNull("powerKw");
+        target.set("properties", parseJsonObject(row.get("properties")));
+    }
 
-        if (!conditions.isEmpty()) {
-            String sql = "SELECT id, feature_id, node_id, COALESCE(name, id) AS name, station_type, status, " +
-                    "       design_flow_m3h, design_head_m, power_kw, properties " +
-                    "FROM pump_stations WHERE " + String.join(" OR ", conditions) + " ORDER BY id LIMIT 100";
-            List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, params.toArray());
-            for (Map<String, Object> row : rows) {
-                ObjectNode equipment = objectMapper.createObjectNode();
-                equipment.put("id", String.valueOf(row.get("id")));
-                equipment.put("equipmentType", "pump_station");
-                equipment.put("name", String.valueOf(row.get("name")));
-                equipment.put("featureId", row.get("feature_id") == null ? "" : String.valueOf(row.get("feature_id")));
-                equipment.put("nodeId", row.get("node_id") == null ? "" : String.valueOf(row.get("node_id")));
-                equipment.put("stationType", row.get("station_type") == null ? "" : String.valueOf(row.get("station_type")));
-                equipment.put("status", row.get("status") == null ? "" : String.valueOf(row.get("status")));
-                Object flow = row.get("design_flow_m3h");
-                if (flow instanceof Number number) equipment.put("designFlowM3h", number.doubleValue());
-                else equipment.putNull("designFlowM3h");
-                Object head = row.get("design_head_m");
-                if (head instanceof Number number) equipment.put("designHeadM", number.doubleValue());
-                else equipment.putNull("designHeadM");
-                Object power = row.get("power_kw");
-                if (power instanceof Number number) equipment.put("powerKw", number.doubleValue());
-                else equipment.putNull("powerKw");
-                equipment.set("properties", parseJsonObject(row.get("properties")));
-                equipments.add(equipment);
-            }
+    private ArrayNode equipments(List<Map<String, Object>> networkPumpRows, ArrayNode linkedBuildings, ArrayNode valves, ArrayNode pumpStations) {
+        ArrayNode equipments = objectMapper.createArrayNode();
+        for (Map<String, Object> row : networkPumpRows) {
+            ObjectNode equipment = objectMapper.createObjectNode();
+            equipment.put("id", String.valueOf(row.get("id")));
+            equipment.put("equipmentType", "pump_station");
+            equipment.put("name", String.valueOf(row.get("name")));
+            equipment.put("featureId", row.get("feature_id") == null ? "" : String.valueOf(row.get("feature_id")));
+            equipment.put("nodeId", row.get("node_id") == null ? "" : String.valueOf(row.get("node_id")));
+            equipment.put("stationType", row.get("station_type") == null ? "" : String.valueOf(row.get("station_type")));
+            equipment.put("status", row.get("status") == null ? "" : String.valueOf(row.get("status")));
+            putPumpRatings(equipment, row);
+            equipments.add(equipment);
         }
 
         if (!equipments.isEmpty()) return equipments;
-
         for (JsonNode pumpStation : pumpStations) {
             ObjectNode equipment = objectMapper.createObjectNode();
             equipment.put("id", pumpStation.path("id").asText(""));
@@ -769,16 +862,6 @@ public class TwinController {
         return ids;
     }
 
-    private List<SegmentTopology> queryAllSegments() {
-        String sql = "SELECT id, feature_id, from_node_id, to_node_id FROM pipe_segments";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> new SegmentTopology(
-                rs.getString("id"),
-                rs.getString("feature_id"),
-                rs.getString("from_node_id"),
-                rs.getString("to_node_id")
-        ));
-    }
-
     private ObjectNode toSegmentNode(Map<String, Object> row) {
         ObjectNode node = objectMapper.createObjectNode();
         node.put("id", String.valueOf(row.get("id")));
@@ -822,11 +905,4 @@ public class TwinController {
         }
         return new double[] {minLon, minLat, maxLon, maxLat};
     }
-
-    private record SegmentTopology(
-            String id,
-            String featureId,
-            String fromNodeId,
-            String toNodeId
-    ) {}
 }
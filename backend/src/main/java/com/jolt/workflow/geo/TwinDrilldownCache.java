@@ -0,0 +1,215 @@
+package com.jolt.workflow.geo;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Serialized drilldown responses per requested id, each tagged with the ids of every asset it shows. A write
+// drops the entries tagged with what it touched: the pipe, its segment and nodes, the manholes, valves and pump
+// stations on those nodes, and whatever asset_relations links to any of them (so a building that just gained
+// or lost a pipe goes too). Writes made outside the API are only caught by the max age.
+@Component
+public class TwinDrilldownCache {
+
+    private static final Logger log = LoggerFactory.getLogger(TwinDrilldownCache.class);
+
+    // Tag for responses whose linkedBuildings fell back to the nearest buildings, which any building edit can change.
+    static final String NEAREST_BUILDINGS_TAG = "\u0000nearest-buildings";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxEntries;
+    private final long maxAgeNanos;
+    private final Map<String, Entry> entries;
+    // Tag -> keys of the entries carrying it. Guarded by entries.
+    private final Map<String, Set<String>> keysByTag = new HashMap<>();
+    // Bumped on every invalidation so a response built before a write cannot be cached after it.
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public TwinDrilldownCache(
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${app.twin.drilldown-cache.max-entries:1024}") int maxEntries,
+            @Value("${app.twin.drilldown-cache.max-age-ms:300000}") long maxAgeMs
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, maxAgeMs));
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= TwinDrilldownCache.this.maxEntries) return false;
+                unindex(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+        FunctionCounter.builder("twin.drilldown.cache.requests", hits, AtomicLong::doubleValue)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("twin.drilldown.cache.requests", misses, AtomicLong::doubleValue)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("twin.drilldown.cache.hit.ratio", this, TwinDrilldownCache::hitRatio).register(meterRegistry);
+        Gauge.builder("twin.drilldown.cache.size", this, TwinDrilldownCache::size).register(meterRegistry);
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    public byte[] get(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.cachedAt() > maxAgeNanos) {
+                entries.remove(key);
+                unindex(key, entry);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.body();
+        }
+    }
+
+    public void put(String key, byte[] body, Set<String> tags, long builtAtGeneration) {
+        synchronized (entries) {
+            if (generation.get() != builtAtGeneration) return;
+            Entry previous = entries.remove(key);
+            if (previous != null) unindex(key, previous);
+            Entry entry = new Entry(body, Set.copyOf(tags), System.nanoTime());
+            for (String tag : entry.tags()) keysByTag.computeIfAbsent(tag, ignored -> new LinkedHashSet<>()).add(key);
+            entries.put(key, entry);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public double hitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTopologyChanged(TwinTopologyChangedEvent event) {
+        if (event.featureId() == null) {
+            clear();
+            return;
+        }
+        Set<String> ids = new LinkedHashSet<>();
+        ids.add(event.featureId());
+        if (event.segmentId() != null) ids.add(event.segmentId());
+        for (String nodeId : event.nodeIds()) {
+            if (nodeId != null) ids.add(nodeId);
+        }
+        try {
+            invalidate(withRelatedAssets(ids));
+        } catch (RuntimeException e) {
+            log.warn("twin_drilldown_cache_invalidate_failed feature_id={} error={}", event.featureId(), e.getMessage());
+            clear();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFeatureChanged(GeoFeatureChangedEvent event) {
+        if (event.featureId() == null) {
+            clear();
+            return;
+        }
+        List<String> ids = new ArrayList<>(2);
+        ids.add(event.featureId());
+        if (event.layers().contains("buildings")) ids.add(NEAREST_BUILDINGS_TAG);
+        invalidate(ids);
+    }
+
+    void invalidate(Collection<String> ids) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            for (String id : ids) {
+                Set<String> keys = keysByTag.get(id);
+                if (keys == null) continue;
+                for (String key : new ArrayList<>(keys)) {
+                    Entry entry = entries.remove(key);
+                    if (entry != null) unindex(key, entry);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+            keysByTag.clear();
+        }
+    }
+
+    // Caller holds entries.
+    private void unindex(String key, Entry entry) {
+        for (String tag : entry.tags()) {
+            Set<String> keys = keysByTag.get(tag);
+            if (keys == null) continue;
+            keys.remove(key);
+            if (keys.isEmpty()) keysByTag.remove(tag);
+        }
+    }
+
+    // ids plus the manholes, valves and pump stations on them and the far side of their asset_relations rows.
+    private Set<String> withRelatedAssets(Set<String> ids) {
+        Set<String> related = new LinkedHashSet<>(ids);
+        String placeholders = String.join(",", java.util.Collections.nCopies(ids.size(), "?"));
+        List<Object> params = new ArrayList<>();
+        for (int i = 0; i < 4; i++) params.addAll(ids);
+        jdbcTemplate.query(
+                "SELECT id FROM pipe_manholes WHERE node_id IN (" + placeholders + ") " +
+                        "UNION SELECT id FROM pipe_valves WHERE node_id IN (" + placeholders + ") OR segment_id IN (" + placeholders + ") " +
+                        "UNION SELECT id FROM pump_stations WHERE node_id IN (" + placeholders + ")",
+                rs -> {
+                    related.add(rs.getString("id"));
+                },
+                params.toArray()
+        );
+
+        List<String> assets = new ArrayList<>(related);
+        String assetPlaceholders = String.join(",", java.util.Collections.nCopies(assets.size(), "?"));
+        List<Object> relationParams = new ArrayList<>(assets);
+        relationParams.addAll(assets);
+        jdbcTemplate.query(
+                "SELECT source_id, target_id FROM asset_relations " +
+                        "WHERE source_id IN (" + assetPlaceholders + ") OR target_id IN (" + assetPlaceholders + ")",
+                rs -> {
+                    related.add(rs.getString("source_id"));
+                    related.add(rs.getString("target_id"));
+                },
+                relationParams.toArray()
+        );
+        return related;
+    }
+
+    private record Entry(byte[] body, Set<String> tags, long cachedAt) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.jolt.workflow.geo;
+
+// Worst-of health rollup over pipe_segments.status, shared by node listing and clustering.
+final class TwinHealthSql {
+
+    private TwinHealthSql() {
+    }
+
+    static String worstStatus(String statusColumn) {
+        return "CASE " +
+                "WHEN BOOL_OR(" + statusColumn + " = 'critical') THEN 'critical' " +
+                "WHEN BOOL_OR(" + statusColumn + " = 'warning') THEN 'warning' " +
+                "ELSE 'normal' END";
+    }
+}
@@ -0,0 +1,247 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Valve zones: the parts of the segment graph that closing pipe_valves can cut off from everything else.
+// A valve with a node and a segment separates that segment from that node (how synced valves are stored);
+// one with only a node separates every segment meeting there; one with only a segment cuts that segment in
+// the middle, so the segment borders a zone on each side. Flow direction is ignored, since a burst pipe is
+// fed from whichever side still has pressure. Valves reported as faulty cannot be closed and do not bound.
+final class TwinIsolation {
+
+    static final Set<String> INOPERABLE_STATUSES = Set.of("fault", "stuck", "broken");
+
+    record Valve(String id, String nodeId, String segmentId, String status) {
+
+        boolean operable() {
+            return status == null || !INOPERABLE_STATUSES.contains(status.toLowerCase(Locale.ROOT));
+        }
+
+        boolean closed() {
+            return "closed".equalsIgnoreCase(status);
+        }
+    }
+
+    // Operable valves, indexed by what they separate.
+    static final class Valves {
+
+        private final Map<String, List<Valve>> atNode = new HashMap<>();
+        private final Map<String, List<Valve>> onSegmentEnd = new HashMap<>();
+        private final Map<String, List<Valve>> midSegment = new HashMap<>();
+        private final List<Valve> inoperable = new ArrayList<>();
+
+        Valves(Collection<Valve> valves) {
+            for (Valve valve : valves) {
+                boolean node = valve.nodeId() != null && !valve.nodeId().isBlank();
+                boolean segment = valve.segmentId() != null && !valve.segmentId().isBlank();
+                if (!node && !segment) continue;
+                if (!valve.operable()) {
+                    inoperable.add(valve);
+                    continue;
+                }
+                if (node && segment) onSegmentEnd.computeIfAbsent(end(valve.segmentId(), valve.nodeId()), ignored -> new ArrayList<>()).add(valve);
+                else if (node) atNode.computeIfAbsent(valve.nodeId(), ignored -> new ArrayList<>()).add(valve);
+                else midSegment.computeIfAbsent(valve.segmentId(), ignored -> new ArrayList<>()).add(valve);
+            }
+        }
+
+        List<Valve> inoperable() {
+            return inoperable;
+        }
+
+        // A segment with a valve part-way along borders the zones on both sides rather than lying in one.
+        boolean cutsMidway(String segmentId) {
+            return midSegment.containsKey(segmentId);
+        }
+
+        private List<Valve> atNode(String nodeId) {
+            return atNode.getOrDefault(nodeId, List.of());
+        }
+
+        private List<Valve> onEnd(String segmentId, String nodeId) {
+            return onSegmentEnd.getOrDefault(end(segmentId, nodeId), List.of());
+        }
+
+        private List<Valve> midSegment(String segmentId) {
+            return midSegment.getOrDefault(segmentId, List.of());
+        }
+
+        private static String end(String segmentId, String nodeId) {
+            return segmentId + "\u0000" + nodeId;
+        }
+    }
+
+    // segmentIds lie wholly inside the zone; borderSegmentIds are cut mid-way by one of its valves; nodeIds are
+    // the ends of the inside segments, valved ones included. close is the minimal set of open valves to shut,
+    // alreadyClosed the bounding valves that are shut already.
+    record Zone(
+            long topologyVersion,
+            Set<String> segmentIds,
+            Set<String> borderSegmentIds,
+            Set<String> featureIds,
+            Set<String> nodeIds,
+            List<Valve> close,
+            List<Valve> alreadyClosed
+    ) {
+
+        boolean touches(Collection<String> ids) {
+            for (String id : ids) {
+                if (segmentIds.contains(id) || borderSegmentIds.contains(id) || nodeIds.contains(id) || featureIds.contains(id)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private TwinIsolation() {
+    }
+
+    static Zone zone(TwinTopology topology, Valves valves, int start) {
+        BitSet inside = new BitSet(topology.segmentLimit());
+        BitSet border = new BitSet(topology.segmentLimit());
+        BitSet seenNodes = new BitSet(topology.nodeLimit());
+        // Candidate bounding valves with the node (or -1 for a mid-segment valve's segment) they hold shut.
+        Map<Valve, int[]> candidates = new LinkedHashMap<>();
+
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        inside.set(start);
+        while (head < tail) {
+            int segment = queue[head++];
+            String segmentId = topology.segmentId(segment);
+            for (int node : new int[] {topology.fromNode(segment), topology.toNode(segment)}) {
+                if (node < 0) continue;
+                String nodeId = topology.nodeId(node);
+                seenNodes.set(node);
+                List<Valve> cut = valves.onEnd(segmentId, nodeId);
+                if (!cut.isEmpty()) {
+                    for (Valve valve : cut) candidates.putIfAbsent(valve, new int[] {node, segment});
+                    continue;
+                }
+                List<Valve> barrier = valves.atNode(nodeId);
+                if (!barrier.isEmpty()) {
+                    for (Valve valve : barrier) candidates.putIfAbsent(valve, new int[] {node, segment});
+                    continue;
+                }
+                for (int pass = 0; pass < 2; pass++) {
+                    for (int next : topology.next(node, pass == 1)) {
+                        if (inside.get(next) || border.get(next)) continue;
+                        String nextId = topology.segmentId(next);
+                        List<Valve> nextCut = valves.onEnd(nextId, nodeId);
+                        if (!nextCut.isEmpty()) {
+                            for (Valve valve : nextCut) candidates.putIfAbsent(valve, new int[] {node, next});
+                            continue;
+                        }
+                        List<Valve> middle = valves.midSegment(nextId);
+                        if (!middle.isEmpty()) {
+                            border.set(next);
+                            for (Valve valve : middle) candidates.putIfAbsent(valve, new int[] {-1, next});
+                            continue;
+                        }
+                        inside.set(next);
+                        if (tail == queue.length) queue = Arrays.copyOf(queue, tail * 2);
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+
+        List<Valve> close = new ArrayList<>();
+        List<Valve> alreadyClosed = new ArrayList<>();
+        for (Map.Entry<Valve, int[]> candidate : candidates.entrySet()) {
+            if (!leadsOutside(topology, candidate.getValue(), inside)) continue;
+            if (candidate.getKey().closed()) alreadyClosed.add(candidate.getKey());
+            else close.add(candidate.getKey());
+        }
+
+        Set<String> segmentIds = new LinkedHashSet<>();
+        Set<String> featureIds = new LinkedHashSet<>();
+        for (int segment = inside.nextSetBit(0); segment >= 0; segment = inside.nextSetBit(segment + 1)) {
+            segmentIds.add(topology.segmentId(segment));
+            String featureId = topology.featureId(segment);
+            if (featureId != null) featureIds.add(featureId);
+        }
+        Set<String> borderSegmentIds = new LinkedHashSet<>();
+        for (int segment = border.nextSetBit(0); segment >= 0; segment = border.nextSetBit(segment + 1)) {
+            borderSegmentIds.add(topology.segmentId(segment));
+        }
+        Set<String> nodeIds = new LinkedHashSet<>();
+        for (int node = seenNodes.nextSetBit(0); node >= 0; node = seenNodes.nextSetBit(node + 1)) {
+            nodeIds.add(topology.nodeId(node));
+        }
+        return new Zone(topology.version(), segmentIds, borderSegmentIds, featureIds, nodeIds, close, alreadyClosed);
+    }
+
+    // Segments fed only through the zone lose supply with it, so everything downstream of it (border segments
+    // included) is reported, in visiting order and capped at limit.
+    record Downstream(int[] segments, boolean truncated) {
+    }
+
+    static Downstream downstream(TwinTopology topology, Zone zone, int limit) {
+        BitSet visited = new BitSet(topology.segmentLimit());
+        int[] queue = new int[16];
+        int tail = 0;
+        for (String segmentId : zone.segmentIds()) {
+            int segment = topology.segmentIndex(segmentId);
+            if (segment < 0) continue;
+            visited.set(segment);
+            if (tail == queue.length) queue = Arrays.copyOf(queue, tail * 2);
+            queue[tail++] = segment;
+        }
+        int inside = tail;
+        boolean truncated = false;
+        for (int head = 0; head < tail && !truncated; head++) {
+            int node = topology.toNode(queue[head]);
+            if (node < 0) continue;
+            for (int next : topology.next(node, false)) {
+                if (visited.get(next)) continue;
+                if (tail - inside == limit) {
+                    truncated = true;
+                    break;
+                }
+                visited.set(next);
+                if (tail == queue.length) queue = Arrays.copyOf(queue, tail * 2);
+                queue[tail++] = next;
+            }
+        }
+        return new Downstream(Arrays.copyOfRange(queue, inside, tail), truncated);
+    }
+
+    // Whether anything outside the zone is behind the valve; a valve in front of a dead end need not be shut.
+    private static boolean leadsOutside(TwinTopology topology, int[] held, BitSet inside) {
+        int node = held[0];
+        int segment = held[1];
+        if (node < 0) {
+            // Mid-segment valve: the far half matters when the far end carries on.
+            for (int end : new int[] {topology.fromNode(segment), topology.toNode(segment)}) {
+                if (end < 0) continue;
+                for (int pass = 0; pass < 2; pass++) {
+                    for (int other : topology.next(end, pass == 1)) {
+                        if (other != segment && !inside.get(other)) return true;
+                    }
+                }
+            }
+            return false;
+        }
+        if (!inside.get(segment)) return true;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int other : topology.next(node, pass == 1)) {
+                if (other != segment && !inside.get(other)) return true;
+            }
+        }
+        return false;
+    }
+}
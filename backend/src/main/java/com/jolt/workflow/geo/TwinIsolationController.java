@@ -0,0 +1,115 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+@RestController
+@RequestMapping("/api/v1/twin")
+public class TwinIsolationController {
+
+    private final ObjectMapper objectMapper;
+    private final TwinTopologyGraph topologyGraph;
+    private final TwinIsolationService isolationService;
+    private final TwinBuildingLinks buildingLinks;
+    private final int traceMaxSegments;
+
+    public TwinIsolationController(
+            ObjectMapper objectMapper,
+            TwinTopologyGraph topologyGraph,
+            TwinIsolationService isolationService,
+            TwinBuildingLinks buildingLinks,
+            @Value("${app.twin.trace.max-segments:20000}") int traceMaxSegments
+    ) {
+        this.objectMapper = objectMapper;
+        this.topologyGraph = topologyGraph;
+        this.isolationService = isolationService;
+        this.buildingLinks = buildingLinks;
+        this.traceMaxSegments = Math.max(1, traceMaxSegments);
+    }
+
+    // Shutdown plan for a burst on segmentId (or its pipe feature): the valves to close, the segments they cut
+    // off, and the buildings that lose supply, directly on the zone or downstream of it. Zones are served from
+    // TwinIsolationService's cache; only the building lookups hit the database.
+    @GetMapping(value = "/isolation", produces = MediaType.APPLICATION_JSON_VALUE)
+    public JsonNode isolation(@RequestParam("segmentId") String segmentId) {
+        TwinIsolation.Zone zone = isolationService.zone(segmentId);
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("segmentId", segmentId);
+        root.put("found", zone != null);
+        if (zone == null) return root;
+        TwinTopology topology = topologyGraph.snapshot();
+        root.put("topologyVersion", topology.version());
+
+        ObjectNode isolated = root.putObject("zone");
+        isolated.set("segmentIds", stringArray(zone.segmentIds()));
+        isolated.set("borderSegmentIds", stringArray(zone.borderSegmentIds()));
+        isolated.set("featureIds", stringArray(zone.featureIds()));
+        isolated.set("nodeIds", stringArray(zone.nodeIds()));
+        root.set("closeValves", valveArray(zone.close()));
+        root.set("alreadyClosedValves", valveArray(zone.alreadyClosed()));
+        // Faulty valves inside or around the zone were passed over; the operator may want to know why.
+        List<TwinIsolation.Valve> bypassed = new ArrayList<>();
+        for (TwinIsolation.Valve valve : isolationService.inoperableValves()) {
+            if (zone.touches(Arrays.asList(valve.nodeId(), valve.segmentId()))) bypassed.add(valve);
+        }
+        root.set("inoperableValves", valveArray(bypassed));
+
+        TwinIsolation.Downstream downstream = TwinIsolation.downstream(topology, zone, traceMaxSegments);
+        Set<String> downstreamIds = new LinkedHashSet<>();
+        ArrayNode downstreamSegmentIds = objectMapper.createArrayNode();
+        for (int segment : downstream.segments()) {
+            String id = topology.segmentId(segment);
+            downstreamSegmentIds.add(id);
+            downstreamIds.add(id);
+            String featureId = topology.featureId(segment);
+            if (featureId != null) downstreamIds.add(featureId);
+            if (topology.toNode(segment) >= 0) downstreamIds.add(topology.nodeId(topology.toNode(segment)));
+        }
+        ObjectNode downstreamNode = root.putObject("downstream");
+        downstreamNode.set("segmentIds", downstreamSegmentIds);
+        downstreamNode.put("truncated", downstream.truncated());
+
+        Set<String> zoneIds = new LinkedHashSet<>(zone.segmentIds());
+        zoneIds.addAll(zone.borderSegmentIds());
+        zoneIds.addAll(zone.featureIds());
+        zoneIds.addAll(zone.nodeIds());
+        Set<String> isolatedBuildingIds = buildingLinks.queryRelatedBuildingIds(zoneIds);
+        Set<String> downstreamBuildingIds = buildingLinks.queryRelatedBuildingIds(downstreamIds);
+        downstreamBuildingIds.removeAll(isolatedBuildingIds);
+        root.set("isolatedBuildings", buildingLinks.queryBuildingRows(isolatedBuildingIds));
+        root.set("downstreamBuildings", buildingLinks.queryBuildingRows(downstreamBuildingIds));
+        return root;
+    }
+
+    private ArrayNode stringArray(Collection<String> values) {
+        ArrayNode array = objectMapper.createArrayNode();
+        for (String value : values) array.add(value);
+        return array;
+    }
+
+    private ArrayNode valveArray(List<TwinIsolation.Valve> valves) {
+        ArrayNode array = objectMapper.createArrayNode();
+        for (TwinIsolation.Valve valve : valves) {
+            ObjectNode node = array.addObject();
+            node.put("id", valve.id());
+            node.put("nodeId", valve.nodeId() == null ? "" : valve.nodeId());
+            node.put("segmentId", valve.segmentId() == null ? "" : valve.segmentId());
+            node.put("status", valve.status() == null ? "" : valve.status());
+        }
+        return array;
+    }
+}
@@ -0,0 +1,152 @@
+package com.jolt.workflow.geo;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Valve zones for every segment, kept warm so an isolation query during an incident is a map lookup. Zones
+// are computed on the topology snapshot and dropped when a pipe edit touches one of their segments or nodes
+// (TwinTopologyRefreshedEvent) or a valve bounding or inside them changes. Valves have no write path of
+// their own, so they are re-read whenever the table's row count or latest updated_at moves.
+@Component
+public class TwinIsolationService {
+
+    private static final Logger log = LoggerFactory.getLogger(TwinIsolationService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TwinTopologyGraph topologyGraph;
+    private final Object lock = new Object();
+    // Segment id -> its zone; every segment inside a zone shares the same instance.
+    private final Map<String, TwinIsolation.Zone> zones = new ConcurrentHashMap<>();
+    // Guarded by lock.
+    private String valveStamp;
+    private volatile Map<String, TwinIsolation.Valve> valvesById = Map.of();
+    private volatile TwinIsolation.Valves valves = new TwinIsolation.Valves(List.of());
+
+    public TwinIsolationService(JdbcTemplate jdbcTemplate, TwinTopologyGraph topologyGraph) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.topologyGraph = topologyGraph;
+    }
+
+    // The zone holding segment (or a pipe's segment) on the current snapshot; null when it is not in the graph.
+    public TwinIsolation.Zone zone(String segmentOrFeatureId) {
+        refreshValves();
+        TwinTopology topology = topologyGraph.snapshot();
+        int start = topology.resolveIndex(segmentOrFeatureId);
+        if (start < 0) return null;
+        String segmentId = topology.segmentId(start);
+        TwinIsolation.Zone cached = zones.get(segmentId);
+        if (cached != null) return cached;
+        return computeAndCache(topology, start);
+    }
+
+    public List<TwinIsolation.Valve> inoperableValves() {
+        return valves.inoperable();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        Thread.ofVirtual().name("twin-isolation-warmup").start(() -> {
+            try {
+                long startedAt = System.currentTimeMillis();
+                refreshValves();
+                TwinTopology topology = topologyGraph.snapshot();
+                int computed = 0;
+                for (int segment = 0; segment < topology.segmentLimit(); segment++) {
+                    if (!topology.live(segment) || zones.containsKey(topology.segmentId(segment))) continue;
+                    computeAndCache(topology, segment);
+                    computed++;
+                }
+                log.info("twin_isolation_warmed zones={} segments={} duration_ms={}",
+                        computed, zones.size(), System.currentTimeMillis() - startedAt);
+            } catch (RuntimeException e) {
+                log.warn("twin_isolation_warmup_failed error={}", e.getMessage());
+            }
+        });
+    }
+
+    @EventListener
+    public void onTopologyRefreshed(TwinTopologyRefreshedEvent event) {
+        synchronized (lock) {
+            if (event.featureId() == null) {
+                zones.clear();
+                return;
+            }
+            Set<String> ids = new HashSet<>(event.segmentIds());
+            ids.addAll(event.nodeIds());
+            ids.add(event.featureId());
+            dropTouching(ids);
+        }
+    }
+
+    private TwinIsolation.Zone computeAndCache(TwinTopology topology, int start) {
+        TwinIsolation.Valves current = valves;
+        TwinIsolation.Zone zone = TwinIsolation.zone(topology, current, start);
+        synchronized (lock) {
+            // A zone from a superseded snapshot or valve set may already be stale; answer with it, but do not keep it.
+            if (topologyGraph.version() != zone.topologyVersion() || valves != current) return zone;
+            zones.put(topology.segmentId(start), zone);
+            for (String segmentId : zone.segmentIds()) {
+                if (!current.cutsMidway(segmentId)) zones.put(segmentId, zone);
+            }
+        }
+        return zone;
+    }
+
+    // Caller holds lock. zones has one entry per segment, all sharing their zone's instance, so each zone is
+    // checked once and remembered by identity; hashing the record would walk its id sets on every entry.
+    private void dropTouching(Set<String> ids) {
+        Map<TwinIsolation.Zone, Boolean> touched = new IdentityHashMap<>();
+        zones.values().removeIf(zone -> touched.computeIfAbsent(zone, z -> z.touches(ids)));
+    }
+
+    private void refreshValves() {
+        Map<String, Object> stampRow = jdbcTemplate.queryForMap("SELECT COUNT(*) AS n, MAX(updated_at) AS latest FROM pipe_valves");
+        Object latest = stampRow.get("latest");
+        String stamp = stampRow.get("n") + "@" + (latest instanceof Timestamp ts ? ts.toInstant() : latest);
+        synchronized (lock) {
+            if (stamp.equals(valveStamp)) return;
+            Map<String, TwinIsolation.Valve> loaded = new HashMap<>();
+            jdbcTemplate.query("SELECT id, node_id, segment_id, status FROM pipe_valves", rs -> {
+                String id = rs.getString("id");
+                loaded.put(id, new TwinIsolation.Valve(id, rs.getString("node_id"), rs.getString("segment_id"), rs.getString("status")));
+            });
+            if (valveStamp == null) {
+                zones.clear();
+            } else {
+                // A changed valve only affects zones it bounds or sits in, all of which contain its node or segment.
+                Set<String> ids = new HashSet<>();
+                Set<String> valveIds = new HashSet<>(valvesById.keySet());
+                valveIds.addAll(loaded.keySet());
+                for (String valveId : valveIds) {
+                    TwinIsolation.Valve before = valvesById.get(valveId);
+                    TwinIsolation.Valve after = loaded.get(valveId);
+                    if (Objects.equals(before, after)) continue;
+                    for (TwinIsolation.Valve valve : new TwinIsolation.Valve[] {before, after}) {
+                        if (valve == null) continue;
+                        if (valve.nodeId() != null) ids.add(valve.nodeId());
+                        if (valve.segmentId() != null) ids.add(valve.segmentId());
+                    }
+                }
+                if (!ids.isEmpty()) dropTouching(ids);
+            }
+            valvesById = loaded;
+            valves = new TwinIsolation.Valves(new ArrayList<>(loaded.values()));
+            valveStamp = stamp;
+            log.info("twin_isolation_valves_loaded valves={}", loaded.size());
+        }
+    }
+}
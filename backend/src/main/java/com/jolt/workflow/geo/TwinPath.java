@@ -0,0 +1,147 @@
+package com.jolt.workflow.geo;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Shortest route between two node sets on one topology snapshot. Pipes are walked in either direction, since
+// this is an operator's route rather than a flow trace. Weight is the segment length in metres (segments
+// without geometry cost nothing) or one per segment. Plain Dijkstra: the snapshot holds no node coordinates,
+// so there is nothing admissible to give A* as a heuristic.
+final class TwinPath {
+
+    // segments run from startNode to endNode; unmeasured counts segments without a length.
+    record Route(int startNode, int endNode, int[] segments, double cost, double lengthMeters, int unmeasured) {
+    }
+
+    private TwinPath() {
+    }
+
+    // null when no target is reachable from any source.
+    static Route shortest(TwinTopology topology, int[] sources, int[] targets, boolean byLength) {
+        int nodes = topology.nodeLimit();
+        BitSet sourceComponents = new BitSet(nodes);
+        for (int source : sources) {
+            if (source >= 0) sourceComponents.set(topology.component(source));
+        }
+        // Targets outside every source's component cannot be reached; if that is all of them, skip the search.
+        BitSet targetSet = new BitSet(nodes);
+        for (int target : targets) {
+            if (target >= 0 && sourceComponents.get(topology.component(target))) targetSet.set(target);
+        }
+        if (targetSet.isEmpty()) return null;
+
+        double[] distance = new double[nodes];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        // Segment that reached each node on its best route; -1 for sources and unreached nodes.
+        int[] via = new int[nodes];
+        Arrays.fill(via, -1);
+        BitSet settled = new BitSet(nodes);
+        MinHeap heap = new MinHeap();
+        for (int source : sources) {
+            if (source < 0 || distance[source] == 0) continue;
+            distance[source] = 0;
+            heap.push(0, source);
+        }
+
+        while (!heap.isEmpty()) {
+            double cost = heap.peekKey();
+            int node = heap.pop();
+            if (settled.get(node)) continue;
+            settled.set(node);
+            if (targetSet.get(node)) return route(topology, via, node, cost);
+            for (int pass = 0; pass < 2; pass++) {
+                boolean up = pass == 1;
+                for (int segment : topology.next(node, up)) {
+                    int other = up ? topology.fromNode(segment) : topology.toNode(segment);
+                    if (other < 0 || settled.get(other)) continue;
+                    double next = cost + weight(topology, segment, byLength);
+                    if (next < distance[other]) {
+                        distance[other] = next;
+                        via[other] = segment;
+                        heap.push(next, other);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static double weight(TwinTopology topology, int segment, boolean byLength) {
+        if (!byLength) return 1;
+        double length = topology.length(segment);
+        return Double.isNaN(length) || length < 0 ? 0 : length;
+    }
+
+    private static Route route(TwinTopology topology, int[] via, int endNode, double cost) {
+        int[] reversed = new int[8];
+        int size = 0;
+        double length = 0;
+        int unmeasured = 0;
+        int node = endNode;
+        while (via[node] >= 0) {
+            int segment = via[node];
+            if (size == reversed.length) reversed = Arrays.copyOf(reversed, size * 2);
+            reversed[size++] = segment;
+            double segmentLength = topology.length(segment);
+            if (Double.isNaN(segmentLength)) unmeasured++;
+            else length += segmentLength;
+            node = topology.toNode(segment) == node ? topology.fromNode(segment) : topology.toNode(segment);
+        }
+        int[] segments = new int[size];
+        for (int i = 0; i < size; i++) segments[i] = reversed[size - 1 - i];
+        return new Route(node, endNode, segments, cost, length, unmeasured);
+    }
+
+    // Binary min-heap of (key, node) with lazy deletion: stale entries are skipped once their node is settled.
+    private static final class MinHeap {
+
+        private double[] keys = new double[64];
+        private int[] values = new int[64];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        void push(double key, int value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                keys[i] = keys[parent];
+                values[i] = values[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        int pop() {
+            int top = values[0];
+            size--;
+            double key = keys[size];
+            int value = values[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                if (keys[child] >= key) break;
+                keys[i] = keys[child];
+                values[i] = values[child];
+                i = child;
+            }
+            keys[i] = key;
+            values[i] = value;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+@RestController
+@RequestMapping("/api/v1/twin")
+public class TwinPathController {
+
+    // Keeps the merge statement well under the driver's bind-parameter limit.
+    private static final int PATH_GEOMETRY_MAX_FEATURES = 10000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TwinTopologyGraph topologyGraph;
+
+    public TwinPathController(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, TwinTopologyGraph topologyGraph) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.topologyGraph = topologyGraph;
+    }
+
+    // from/to: a pipe node, a segment or pipe feature (either end), or an asset sitting on the network: a
+    // manhole, valve or pump station through its node, a building through its asset_relations. Routing runs on
+    // the in-memory snapshot with lengths measured at load; only endpoint lookup and the geometry hit the database.
+    @GetMapping(value = "/path", produces = MediaType.APPLICATION_JSON_VALUE)
+    public JsonNode path(
+            @RequestParam("from") String from,
+            @RequestParam("to") String to,
+            @RequestParam(name = "weight", required = false, defaultValue = "length") String weightRaw
+    ) {
+        String weight = weightRaw.trim().toLowerCase(Locale.ROOT);
+        if (!weight.equals("length") && !weight.equals("hops")) {
+            throw new IllegalArgumentException("weight must be length or hops");
+        }
+        TwinTopology topology = topologyGraph.snapshot();
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("from", from);
+        root.put("to", to);
+        root.put("weight", weight);
+        root.put("topologyVersion", topology.version());
+
+        int[] sources = pathEndpoints(topology, from);
+        int[] targets = pathEndpoints(topology, to);
+        TwinPath.Route route = sources.length == 0 || targets.length == 0
+                ? null
+                : TwinPath.shortest(topology, sources, targets, weight.equals("length"));
+        root.put("found", route != null);
+        if (route == null) {
+            root.put("reason", sources.length == 0 ? "from_unresolved" : targets.length == 0 ? "to_unresolved" : "no_path");
+            return root;
+        }
+
+        ArrayNode segmentIds = root.putArray("segmentIds");
+        ArrayNode featureIds = root.putArray("featureIds");
+        ArrayNode nodeIds = root.putArray("nodeIds");
+        List<String> pathFeatureIds = new ArrayList<>();
+        int node = route.startNode();
+        nodeIds.add(topology.nodeId(node));
+        for (int segment : route.segments()) {
+            segmentIds.add(topology.segmentId(segment));
+            String featureId = topology.featureId(segment);
+            if (featureId != null) {
+                featureIds.add(featureId);
+                pathFeatureIds.add(featureId);
+            }
+            node = topology.toNode(segment) == node ? topology.fromNode(segment) : topology.toNode(segment);
+            nodeIds.add(topology.nodeId(node));
+        }
+        root.put("hops", route.segments().length);
+        root.put("lengthMeters", Math.round(route.lengthMeters() * 100.0) / 100.0);
+        root.put("unmeasuredSegments", route.unmeasured());
+        root.set("geometry", queryMergedGeometry(pathFeatureIds));
+        return root;
+    }
+
+    private int[] pathEndpoints(TwinTopology topology, String id) {
+        Set<String> assetIds = new LinkedHashSet<>();
+        if (topology.nodeIndex(id) >= 0 || topology.resolveIndex(id) >= 0) {
+            assetIds.add(id);
+        } else {
+            String sql = "SELECT id AS asset_id FROM pipe_nodes WHERE feature_id = ? " +
+                    "UNION SELECT node_id FROM pipe_manholes WHERE id = ? OR feature_id = ? " +
+                    "UNION SELECT node_id FROM pipe_valves WHERE id = ? OR feature_id = ? " +
+                    "UNION SELECT segment_id FROM pipe_valves WHERE node_id IS NULL AND (id = ? OR feature_id = ?) " +
+                    "UNION SELECT node_id FROM pump_stations WHERE id = ? OR feature_id = ? " +
+                    "UNION SELECT CASE WHEN source_id = ? THEN target_id ELSE source_id END FROM asset_relations " +
+                    "WHERE (source_id = ? AND LOWER(source_type) = 'building') " +
+                    "   OR (target_id = ? AND LOWER(target_type) = 'building')";
+            jdbcTemplate.query(sql, rs -> {
+                String assetId = rs.getString("asset_id");
+                if (assetId != null) assetIds.add(assetId);
+            }, id, id, id, id, id, id, id, id, id, id, id, id);
+        }
+
+        BitSet nodes = new BitSet(topology.nodeLimit());
+        for (String assetId : assetIds) {
+            int node = topology.nodeIndex(assetId);
+            if (node >= 0) {
+                nodes.set(node);
+                continue;
+            }
+            int segment = topology.resolveIndex(assetId);
+            if (segment < 0) continue;
+            if (topology.fromNode(segment) >= 0) nodes.set(topology.fromNode(segment));
+            if (topology.toNode(segment) >= 0) nodes.set(topology.toNode(segment));
+        }
+        return nodes.stream().toArray();
+    }
+
+    // The route's pipe geometries merged into as few lines as they allow; null for an empty or very long route.
+    private JsonNode queryMergedGeometry(List<String> featureIds) {
+        if (featureIds.isEmpty() || featureIds.size() > PATH_GEOMETRY_MAX_FEATURES) {
+            return objectMapper.getNodeFactory().nullNode();
+        }
+        String placeholders = String.join(",", java.util.Collections.nCopies(featureIds.size(), "?"));
+        String sql = "SELECT ST_AsGeoJSON(ST_LineMerge(ST_CollectionExtract(ST_Collect(geom), 2))) AS geometry " +
+                "FROM geo_features WHERE id IN (" + placeholders + ")";
+        String json = jdbcTemplate.query(sql, rs -> rs.next() ? rs.getString("geometry") : null, featureIds.toArray());
+        if (json == null) return objectMapper.getNodeFactory().nullNode();
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            return objectMapper.getNodeFactory().nullNode();
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable, versioned view of the pipe_segments graph. A snapshot is a CSR base built from a full scan
+// plus a small overlay of segments changed since; per-feature edits copy only the overlay, and compact()
+// folds it back into the base once it grows. Readers hold on to one snapshot for a whole traversal.
+//
+// Segments and nodes are addressed by dense ints: base segments 0..B-1, overlay segments B.., base nodes
+// 0..N-1, nodes only the overlay knows N... Segment indices are only meaningful within one snapshot; node
+// indices also hold across per-feature edits up to the next compaction (overlay nodes are never dropped).
+public final class TwinTopology {
+
+    // lengthMeters: geodesic length of the pipe's geometry, NaN when the segment has none.
+    public record Segment(String id, String featureId, String fromNodeId, String toNodeId, double lengthMeters) {
+
+        public Segment(String id, String featureId, String fromNodeId, String toNodeId) {
+            this(id, featureId, fromNodeId, toNodeId, Double.NaN);
+        }
+    }
+
+    private static final int[] NONE = new int[0];
+
+    private final long version;
+    private final TwinTopologyCsr base;
+    // Base segments replaced or deleted by the overlay.
+    private final BitSet hidden;
+    private final List<Segment> extra;
+    private final Map<String, Integer> extraById = new HashMap<>();
+    private final Map<String, Integer> extraByFeature = new HashMap<>();
+    private final Map<String, Integer> extraNodes = new HashMap<>();
+    private final List<String> extraNodeIds = new ArrayList<>();
+    private final int[] extraFrom;
+    private final int[] extraTo;
+    private final Map<Integer, int[]> extraDownstream = new HashMap<>();
+    private final Map<Integer, int[]> extraUpstream = new HashMap<>();
+    private final int segmentCount;
+    // Set once right after construction, before the snapshot is handed out.
+    private TwinComponents components;
+
+    private TwinTopology(long version, TwinTopologyCsr base, BitSet hidden, List<Segment> extra, List<String> carriedNodeIds) {
+        this.version = version;
+        this.base = base;
+        this.hidden = hidden;
+        this.extra = extra;
+        this.extraFrom = new int[extra.size()];
+        this.extraTo = new int[extra.size()];
+        for (String nodeId : carriedNodeIds) internNode(nodeId);
+        Map<Integer, List<Integer>> down = new HashMap<>();
+        Map<Integer, List<Integer>> up = new HashMap<>();
+        for (int i = 0; i < extra.size(); i++) {
+            Segment segment = extra.get(i);
+            int index = base.segmentCount() + i;
+            extraById.put(segment.id(), index);
+            if (segment.featureId() != null && !segment.featureId().isBlank()) {
+                extraByFeature.putIfAbsent(segment.featureId(), index);
+            }
+            extraFrom[i] = internNode(segment.fromNodeId());
+            extraTo[i] = internNode(segment.toNodeId());
+            if (extraFrom[i] >= 0) down.computeIfAbsent(extraFrom[i], ignored -> new ArrayList<>()).add(index);
+            if (extraTo[i] >= 0) up.computeIfAbsent(extraTo[i], ignored -> new ArrayList<>()).add(index);
+        }
+        down.forEach((node, segments) -> extraDownstream.put(node, toArray(segments)));
+        up.forEach((node, segments) -> extraUpstream.put(node, toArray(segments)));
+        this.segmentCount = base.segmentCount() - hidden.cardinality() + extra.size();
+    }
+
+    static TwinTopology of(long version, Collection<Segment> segments) {
+        TwinTopology topology = new TwinTopology(version, TwinTopologyCsr.build(segments), new BitSet(), List.of(), List.of());
+        topology.components = TwinComponents.of(topology);
+        return topology;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int segmentCount() {
+        return segmentCount;
+    }
+
+    // Exclusive upper bounds for segment and node indices, for sizing bitsets and arrays.
+    public int segmentLimit() {
+        return base.segmentCount() + extra.size();
+    }
+
+    public int nodeLimit() {
+        return base.nodeCount() + extraNodeIds.size();
+    }
+
+    int overlaySize() {
+        return hidden.cardinality() + extra.size();
+    }
+
+    public int segmentIndex(String id) {
+        if (id == null) return -1;
+        Integer overlaid = extraById.get(id);
+        if (overlaid != null) return overlaid;
+        int index = base.segmentIndex(id);
+        return index < 0 || hidden.get(index) ? -1 : index;
+    }
+
+    public int featureSegmentIndex(String featureId) {
+        if (featureId == null || featureId.isBlank()) return -1;
+        Integer overlaid = extraByFeature.get(featureId);
+        if (overlaid != null) return overlaid;
+        int index = base.featureSegment(featureId);
+        return index < 0 || hidden.get(index) ? -1 : index;
+    }
+
+    // Segment id first, then the pipe feature it was synced from (what trace and drilldown accept).
+    public int resolveIndex(String idOrFeatureId) {
+        int index = segmentIndex(idOrFeatureId);
+        return index >= 0 ? index : featureSegmentIndex(idOrFeatureId);
+    }
+
+    public int nodeIndex(String nodeId) {
+        if (nodeId == null) return -1;
+        int index = base.nodeIndex(nodeId);
+        if (index >= 0) return index;
+        Integer overlaid = extraNodes.get(nodeId);
+        return overlaid == null ? -1 : overlaid;
+    }
+
+    public String segmentId(int segment) {
+        return segment < base.segmentCount() ? base.segmentIds[segment] : extra.get(segment - base.segmentCount()).id();
+    }
+
+    // null when the segment is not bound to a pipe feature.
+    public String featureId(int segment) {
+        if (segment < base.segmentCount()) return base.featureIds[segment];
+        String featureId = extra.get(segment - base.segmentCount()).featureId();
+        return featureId == null || featureId.isBlank() ? null : featureId;
+    }
+
+    // Metres; NaN when the segment has no geometry.
+    public double length(int segment) {
+        return segment < base.segmentCount() ? base.lengths[segment] : extra.get(segment - base.segmentCount()).lengthMeters();
+    }
+
+    // -1 when the endpoint is not set.
+    public int fromNode(int segment) {
+        return segment < base.segmentCount() ? base.fromNodes[segment] : extraFrom[segment - base.segmentCount()];
+    }
+
+    public int toNode(int segment) {
+        return segment < base.segmentCount() ? base.toNodes[segment] : extraTo[segment - base.segmentCount()];
+    }
+
+    // Root node of the weakly connected component node belongs to, -1 for -1.
+    public int component(int node) {
+        return node < 0 ? -1 : components.find(node);
+    }
+
+    // The smallest node id in node's component; null for -1.
+    public String componentId(int node) {
+        return node < 0 ? null : nodeId(components.label(node));
+    }
+
+    public int segmentComponent(int segment) {
+        int node = fromNode(segment);
+        return component(node >= 0 ? node : toNode(segment));
+    }
+
+    TwinComponents components() {
+        return components;
+    }
+
+    // Not replaced or deleted by the overlay.
+    boolean live(int segment) {
+        return segment >= base.segmentCount() || !hidden.get(segment);
+    }
+
+    public String nodeId(int node) {
+        if (node < 0) return null;
+        return node < base.nodeCount() ? base.nodeIds[node] : extraNodeIds.get(node - base.nodeCount());
+    }
+
+    public Segment segmentAt(int segment) {
+        if (segment < 0) return null;
+        return new Segment(segmentId(segment), featureId(segment), nodeId(fromNode(segment)), nodeId(toNode(segment)),
+                length(segment));
+    }
+
+    public Segment segment(String id) {
+        return segmentAt(segmentIndex(id));
+    }
+
+    public Segment segmentForFeature(String featureId) {
+        return segmentAt(featureSegmentIndex(featureId));
+    }
+
+    public Segment resolve(String idOrFeatureId) {
+        return segmentAt(resolveIndex(idOrFeatureId));
+    }
+
+    // Segments leaving nodeId (from_node_id = nodeId).
+    public List<Segment> downstreamOf(String nodeId) {
+        return materialize(next(nodeIndex(nodeId), false));
+    }
+
+    // Segments entering nodeId (to_node_id = nodeId).
+    public List<Segment> upstreamOf(String nodeId) {
+        return materialize(next(nodeIndex(nodeId), true));
+    }
+
+    // Live segments leaving (up=false) or entering (up=true) node.
+    public int[] next(int node, boolean up) {
+        if (node < 0) return NONE;
+        int[] overlaid = (up ? extraUpstream : extraDownstream).getOrDefault(node, NONE);
+        if (node >= base.nodeCount()) return overlaid;
+        int[] offsets = up ? base.upOffsets : base.downOffsets;
+        int[] segments = up ? base.upSegments : base.downSegments;
+        int start = offsets[node];
+        int end = offsets[node + 1];
+        int[] result = new int[end - start + overlaid.length];
+        int size = 0;
+        for (int i = start; i < end; i++) {
+            if (!hidden.get(segments[i])) result[size++] = segments[i];
+        }
+        System.arraycopy(overlaid, 0, result, size, overlaid.length);
+        size += overlaid.length;
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    // Replaces whatever segments featureId had with rows, as just read back from pipe_segments.
+    TwinTopology withFeature(long newVersion, String featureId, List<Segment> rows) {
+        BitSet nextHidden = (BitSet) hidden.clone();
+        List<Segment> nextExtra = new ArrayList<>(extra);
+        List<Segment> removed = new ArrayList<>();
+        int previous = featureSegmentIndex(featureId);
+        if (previous >= 0) {
+            removed.add(segmentAt(previous));
+            hide(previous, nextHidden, nextExtra);
+        }
+        for (Segment row : rows) {
+            int existing = segmentIndex(row.id());
+            if (existing >= 0 && existing != previous) {
+                removed.add(segmentAt(existing));
+                hide(existing, nextHidden, nextExtra);
+            }
+            nextExtra.add(row);
+        }
+        TwinTopology next = new TwinTopology(newVersion, base, nextHidden, List.copyOf(nextExtra), extraNodeIds);
+        next.components = components.after(next, removed, rows);
+        return next;
+    }
+
+    // Same graph and version, overlay folded into a fresh base.
+    TwinTopology compact() {
+        List<Segment> live = new ArrayList<>(segmentCount);
+        for (int s = 0; s < base.segmentCount(); s++) {
+            if (!hidden.get(s)) live.add(segmentAt(s));
+        }
+        live.addAll(extra);
+        return of(version, live);
+    }
+
+    private void hide(int segment, BitSet nextHidden, List<Segment> nextExtra) {
+        if (segment < base.segmentCount()) {
+            nextHidden.set(segment);
+        } else {
+            String id = segmentId(segment);
+            nextExtra.removeIf(candidate -> candidate.id().equals(id));
+        }
+    }
+
+    private int internNode(String nodeId) {
+        if (nodeId == null || nodeId.isBlank()) return -1;
+        int index = base.nodeIndex(nodeId);
+        if (index >= 0) return index;
+        Integer known = extraNodes.get(nodeId);
+        if (known != null) return known;
+        int assigned = base.nodeCount() + extraNodeIds.size();
+        extraNodes.put(nodeId, assigned);
+        extraNodeIds.add(nodeId);
+        return assigned;
+    }
+
+    private List<Segment> materialize(int[] segments) {
+        List<Segment> result = new ArrayList<>(segments.length);
+        for (int segment : segments) result.add(segmentAt(segment));
+        return result;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) result[i] = values.get(i);
+        return result;
+    }
+}
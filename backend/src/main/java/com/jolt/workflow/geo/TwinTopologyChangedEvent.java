@@ -0,0 +1,14 @@
+package com.jolt.workflow.geo;
+
+import java.util.List;
+
+// A pipe's topology or relations changed: segment endpoints, segment attributes or building bindings.
+// featureId is null when a set-based write (bulk import) touched many pipes at once.
+public record TwinTopologyChangedEvent(
+        String featureId,
+        String action,
+        String segmentId,
+        List<String> nodeIds,
+        GeoFeatureChangedEvent.Footprint footprint
+) {
+}
@@ -0,0 +1,162 @@
+package com.jolt.workflow.geo;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.TreeMap;
+
+// Compressed-sparse-row form of the pipe graph. Segments and nodes are interned into dense ints by sorting
+// their ids (so the dictionaries are plain String[] searched with binarySearch); adjacency is two offset
+// arrays into flat int[] segment lists, one per direction. Nothing here is boxed or per-segment allocated.
+final class TwinTopologyCsr {
+
+    final String[] segmentIds;
+    final String[] featureIds;
+    final int[] fromNodes;
+    final int[] toNodes;
+    final double[] lengths;
+    final String[] nodeIds;
+    // Feature id -> segment, sorted by feature id.
+    final String[] featureKeys;
+    final int[] featureSegments;
+    // Segments leaving node n are downSegments[downOffsets[n] .. downOffsets[n + 1]); same for up/entering.
+    final int[] downOffsets;
+    final int[] downSegments;
+    final int[] upOffsets;
+    final int[] upSegments;
+
+    private TwinTopologyCsr(
+            String[] segmentIds,
+            String[] featureIds,
+            int[] fromNodes,
+            int[] toNodes,
+            double[] lengths,
+            String[] nodeIds,
+            String[] featureKeys,
+            int[] featureSegments
+    ) {
+        this.segmentIds = segmentIds;
+        this.featureIds = featureIds;
+        this.fromNodes = fromNodes;
+        this.toNodes = toNodes;
+        this.lengths = lengths;
+        this.nodeIds = nodeIds;
+        this.featureKeys = featureKeys;
+        this.featureSegments = featureSegments;
+        this.downOffsets = new int[nodeIds.length + 1];
+        this.upOffsets = new int[nodeIds.length + 1];
+        this.downSegments = adjacency(fromNodes, downOffsets);
+        this.upSegments = adjacency(toNodes, upOffsets);
+    }
+
+    // Later duplicates of a segment id win, as with a map put.
+    static TwinTopologyCsr build(Collection<TwinTopology.Segment> segments) {
+        TreeMap<String, TwinTopology.Segment> byId = new TreeMap<>();
+        for (TwinTopology.Segment segment : segments) byId.put(segment.id(), segment);
+        int count = byId.size();
+
+        String[] segmentIds = new String[count];
+        String[] featureIds = new String[count];
+        double[] lengths = new double[count];
+        String[] nodeScratch = new String[count * 2];
+        int nodeScratchSize = 0;
+        int i = 0;
+        for (TwinTopology.Segment segment : byId.values()) {
+            segmentIds[i] = segment.id();
+            featureIds[i] = blankToNull(segment.featureId());
+            lengths[i] = segment.lengthMeters();
+            String from = blankToNull(segment.fromNodeId());
+            String to = blankToNull(segment.toNodeId());
+            if (from != null) nodeScratch[nodeScratchSize++] = from;
+            if (to != null) nodeScratch[nodeScratchSize++] = to;
+            i++;
+        }
+        String[] nodeIds = distinctSorted(nodeScratch, nodeScratchSize);
+
+        int[] fromNodes = new int[count];
+        int[] toNodes = new int[count];
+        i = 0;
+        for (TwinTopology.Segment segment : byId.values()) {
+            fromNodes[i] = indexOf(nodeIds, blankToNull(segment.fromNodeId()));
+            toNodes[i] = indexOf(nodeIds, blankToNull(segment.toNodeId()));
+            i++;
+        }
+
+        Integer[] byFeature = new Integer[count];
+        int featureCount = 0;
+        for (int s = 0; s < count; s++) {
+            if (featureIds[s] != null) byFeature[featureCount++] = s;
+        }
+        // Stable sort: among segments sharing a feature the lowest segment id comes first and is kept.
+        Arrays.sort(byFeature, 0, featureCount, Comparator.comparing(s -> featureIds[s]));
+        String[] featureKeys = new String[featureCount];
+        int[] featureSegments = new int[featureCount];
+        int kept = 0;
+        for (int k = 0; k < featureCount; k++) {
+            String key = featureIds[byFeature[k]];
+            if (kept > 0 && featureKeys[kept - 1].equals(key)) continue;
+            featureKeys[kept] = key;
+            featureSegments[kept] = byFeature[k];
+            kept++;
+        }
+
+        return new TwinTopologyCsr(
+                segmentIds, featureIds, fromNodes, toNodes, lengths, nodeIds,
+                Arrays.copyOf(featureKeys, kept), Arrays.copyOf(featureSegments, kept)
+        );
+    }
+
+    int segmentCount() {
+        return segmentIds.length;
+    }
+
+    int nodeCount() {
+        return nodeIds.length;
+    }
+
+    int segmentIndex(String id) {
+        return indexOf(segmentIds, id);
+    }
+
+    int nodeIndex(String nodeId) {
+        return indexOf(nodeIds, nodeId);
+    }
+
+    int featureSegment(String featureId) {
+        int k = indexOf(featureKeys, featureId);
+        return k < 0 ? -1 : featureSegments[k];
+    }
+
+    private int[] adjacency(int[] endpoints, int[] offsets) {
+        for (int endpoint : endpoints) {
+            if (endpoint >= 0) offsets[endpoint + 1]++;
+        }
+        for (int n = 0; n < nodeIds.length; n++) offsets[n + 1] += offsets[n];
+        int[] cursor = Arrays.copyOf(offsets, nodeIds.length);
+        int[] segments = new int[offsets[nodeIds.length]];
+        for (int s = 0; s < endpoints.length; s++) {
+            if (endpoints[s] >= 0) segments[cursor[endpoints[s]]++] = s;
+        }
+        return segments;
+    }
+
+    private static int indexOf(String[] sorted, String key) {
+        if (key == null) return -1;
+        int found = Arrays.binarySearch(sorted, key);
+        return found < 0 ? -1 : found;
+    }
+
+    private static String[] distinctSorted(String[] values, int size) {
+        Arrays.sort(values, 0, size);
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (kept > 0 && values[kept - 1].equals(values[i])) continue;
+            values[kept++] = values[i];
+        }
+        return Arrays.copyOf(values, kept);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
@@ -0,0 +1,284 @@
+package com.jolt.workflow.geo;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Long-lived pipe_segments graph shared by trace, drilldown and impact analysis. Loaded once (warmed on
+// startup, or on first use), then kept current from TwinTopologyChangedEvent: a single-pipe write re-reads
+// that pipe's segment into the snapshot overlay, a bulk write reloads in the background while the previous
+// snapshot keeps serving. Every change publishes a new snapshot with a higher version, announced afterwards
+// with a TwinTopologyRefreshedEvent for caches derived from the graph.
+//
+// Connected components ride along with each snapshot and are written back to pipe_nodes.component_id and
+// pipe_segments.component_id by one background writer, in publication order: in full after a load, and
+// only what an edit changed otherwise.
+@Component
+public class TwinTopologyGraph {
+
+    private static final Logger log = LoggerFactory.getLogger(TwinTopologyGraph.class);
+
+    // Lengths are measured once here so routing never touches geometry per request.
+    private static final String SEGMENT_SQL = "SELECT s.id, s.feature_id, s.from_node_id, s.to_node_id, " +
+            "       ST_Length(g.geom::geography) AS length_m " +
+            "FROM pipe_segments s LEFT JOIN geo_features g ON g.id = s.feature_id";
+    private static final String NODE_COMPONENT_SQL = "UPDATE pipe_nodes SET component_id = CAST(? AS TEXT) " +
+            "WHERE id = ? AND component_id IS DISTINCT FROM CAST(? AS TEXT)";
+    // A segment belongs to its from node's component, or its to node's when it has no from node.
+    private static final String SEGMENT_COMPONENT_SQL = "UPDATE pipe_segments s SET component_id = n.component_id " +
+            "FROM pipe_nodes n WHERE n.id = COALESCE(s.from_node_id, s.to_node_id) " +
+            "AND s.component_id IS DISTINCT FROM n.component_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int compactThreshold;
+    private final AtomicLong version = new AtomicLong();
+    private final Object loadLock = new Object();
+    private final Object lock = new Object();
+    // Guarded by lock: pipes written while a full load is scanning, re-read once it has been swapped in.
+    private final Set<String> pendingFeatureIds = new LinkedHashSet<>();
+    private boolean loading;
+    private boolean loadAgain;
+    private volatile TwinTopology topology;
+    private final ExecutorService componentWriter =
+            Executors.newSingleThreadExecutor(Thread.ofVirtual().name("twin-components-write").factory());
+
+    public TwinTopologyGraph(
+            JdbcTemplate jdbcTemplate,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${app.twin.topology-graph.compact-threshold:512}") int compactThreshold
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.compactThreshold = Math.max(1, compactThreshold);
+    }
+
+    // Current snapshot; the first caller before warm-up finishes pays for the load.
+    public TwinTopology snapshot() {
+        TwinTopology current = topology;
+        if (current != null) return current;
+        synchronized (loadLock) {
+            if (topology == null) load();
+            return topology;
+        }
+    }
+
+    public long version() {
+        TwinTopology current = topology;
+        return current == null ? 0L : current.version();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        Thread.ofVirtual().name("twin-topology-load").start(() -> {
+            try {
+                snapshot();
+            } catch (RuntimeException e) {
+                log.warn("twin_topology_warmup_failed error={}", e.getMessage());
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTopologyChanged(TwinTopologyChangedEvent event) {
+        if (event.featureId() == null) {
+            synchronized (lock) {
+                if (loading) {
+                    loadAgain = true;
+                    return;
+                }
+                if (topology == null) return;
+            }
+            Thread.ofVirtual().name("twin-topology-reload").start(() -> {
+                try {
+                    synchronized (loadLock) {
+                        load();
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("twin_topology_reload_failed error={}", e.getMessage());
+                }
+            });
+            return;
+        }
+        try {
+            applyFeature(event.featureId());
+        } catch (RuntimeException e) {
+            log.warn("twin_topology_apply_failed feature_id={} error={}", event.featureId(), e.getMessage());
+            synchronized (lock) {
+                // Drop the snapshot so the next reader reloads instead of tracing a graph missing this pipe.
+                topology = null;
+            }
+        }
+    }
+
+    // Re-read and apply under the lock so two writes to the same pipe cannot land out of order.
+    private void applyFeature(String featureId) {
+        TwinTopologyRefreshedEvent refreshed;
+        synchronized (lock) {
+            if (loading) {
+                pendingFeatureIds.add(featureId);
+                return;
+            }
+            TwinTopology current = topology;
+            if (current == null) return;
+            List<TwinTopology.Segment> rows = jdbcTemplate.query(
+                    SEGMENT_SQL + " WHERE s.feature_id = ?",
+                    (rs, rowNum) -> toSegment(rs),
+                    featureId
+            );
+            TwinTopology next = current.withFeature(version.incrementAndGet(), featureId, rows);
+            TwinComponents.Delta delta = next.components().delta();
+            if (next.overlaySize() > compactThreshold) next = next.compact();
+            topology = next;
+            componentWriter.execute(() -> writeComponents(featureId, delta));
+            List<TwinTopology.Segment> before = new ArrayList<>();
+            TwinTopology.Segment previous = current.segmentForFeature(featureId);
+            if (previous != null) before.add(previous);
+            for (TwinTopology.Segment row : rows) {
+                TwinTopology.Segment existing = current.segment(row.id());
+                if (existing != null) before.add(existing);
+            }
+            refreshed = refreshedFeature(next.version(), featureId, before, rows);
+        }
+        eventPublisher.publishEvent(refreshed);
+    }
+
+    // The pipe's segments and their endpoints, before and after.
+    private static TwinTopologyRefreshedEvent refreshedFeature(
+            long version,
+            String featureId,
+            List<TwinTopology.Segment> before,
+            List<TwinTopology.Segment> after
+    ) {
+        Set<String> segmentIds = new LinkedHashSet<>();
+        Set<String> nodeIds = new LinkedHashSet<>();
+        List<TwinTopology.Segment> touched = new ArrayList<>(before);
+        touched.addAll(after);
+        for (TwinTopology.Segment segment : touched) {
+            segmentIds.add(segment.id());
+            if (segment.fromNodeId() != null) nodeIds.add(segment.fromNodeId());
+            if (segment.toNodeId() != null) nodeIds.add(segment.toNodeId());
+        }
+        return new TwinTopologyRefreshedEvent(version, featureId, segmentIds, nodeIds);
+    }
+
+    // Caller holds loadLock.
+    private void load() {
+        synchronized (lock) {
+            loading = true;
+        }
+        List<String> pending;
+        try {
+            while (true) {
+                long startedAt = System.currentTimeMillis();
+                List<TwinTopology.Segment> segments = new ArrayList<>();
+                jdbcTemplate.query(SEGMENT_SQL, rs -> {
+                    segments.add(toSegment(rs));
+                });
+                TwinTopology loaded = TwinTopology.of(version.incrementAndGet(), segments);
+                synchronized (lock) {
+                    if (loadAgain) {
+                        // A bulk write committed while scanning; the scan may have missed part of it.
+                        loadAgain = false;
+                        pendingFeatureIds.clear();
+                        continue;
+                    }
+                    topology = loaded;
+                    loading = false;
+                    componentWriter.execute(() -> writeComponents(loaded));
+                    pending = new ArrayList<>(pendingFeatureIds);
+                    pendingFeatureIds.clear();
+                }
+                log.info("twin_topology_loaded version={} segments={} duration_ms={}",
+                        loaded.version(), loaded.segmentCount(), System.currentTimeMillis() - startedAt);
+                eventPublisher.publishEvent(new TwinTopologyRefreshedEvent(loaded.version(), null, Set.of(), Set.of()));
+                break;
+            }
+        } finally {
+            synchronized (lock) {
+                loading = false;
+                loadAgain = false;
+            }
+        }
+        for (String featureId : pending) applyFeature(featureId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        componentWriter.shutdown();
+    }
+
+    // Full write after a load; rows already holding the right id are left alone.
+    private void writeComponents(TwinTopology loaded) {
+        try {
+            long startedAt = System.currentTimeMillis();
+            List<Object[]> rows = new ArrayList<>();
+            for (int node = 0; node < loaded.nodeLimit(); node++) {
+                if (loaded.next(node, false).length == 0 && loaded.next(node, true).length == 0) continue;
+                String componentId = loaded.componentId(node);
+                rows.add(new Object[] {componentId, loaded.nodeId(node), componentId});
+            }
+            jdbcTemplate.batchUpdate(NODE_COMPONENT_SQL, rows);
+            jdbcTemplate.update("UPDATE pipe_nodes n SET component_id = NULL WHERE component_id IS NOT NULL " +
+                    "AND NOT EXISTS (SELECT 1 FROM pipe_segments s WHERE s.from_node_id = n.id OR s.to_node_id = n.id)");
+            jdbcTemplate.update(SEGMENT_COMPONENT_SQL);
+            log.info("twin_components_written version={} nodes={} duration_ms={}",
+                    loaded.version(), rows.size(), System.currentTimeMillis() - startedAt);
+        } catch (RuntimeException e) {
+            log.warn("twin_components_write_failed version={} error={}", loaded.version(), e.getMessage());
+        }
+    }
+
+    // Incremental write after a pipe edit: merges as renames, then the nodes that moved, then the segments
+    // of the edited pipe and of the moved nodes.
+    private void writeComponents(String featureId, TwinComponents.Delta delta) {
+        try {
+            for (Map.Entry<String, String> merge : delta.merged().entrySet()) {
+                jdbcTemplate.update("UPDATE pipe_nodes SET component_id = ? WHERE component_id = ?", merge.getValue(), merge.getKey());
+                jdbcTemplate.update("UPDATE pipe_segments SET component_id = ? WHERE component_id = ?", merge.getValue(), merge.getKey());
+            }
+            List<Object[]> rows = new ArrayList<>(delta.relabeled().size());
+            delta.relabeled().forEach((nodeId, componentId) -> rows.add(new Object[] {componentId, nodeId, componentId}));
+            if (!rows.isEmpty()) jdbcTemplate.batchUpdate(NODE_COMPONENT_SQL, rows);
+
+            jdbcTemplate.update(SEGMENT_COMPONENT_SQL + " AND s.feature_id = ?", featureId);
+            List<String> nodeIds = new ArrayList<>(delta.relabeled().keySet());
+            for (int from = 0; from < nodeIds.size(); from += TwinTraceStops.CHUNK) {
+                List<String> chunk = nodeIds.subList(from, Math.min(nodeIds.size(), from + TwinTraceStops.CHUNK));
+                String placeholders = String.join(",", java.util.Collections.nCopies(chunk.size(), "?"));
+                List<Object> params = new ArrayList<>(chunk.size() * 2);
+                params.addAll(chunk);
+                params.addAll(chunk);
+                jdbcTemplate.update(SEGMENT_COMPONENT_SQL +
+                        " AND (s.from_node_id IN (" + placeholders + ") OR s.to_node_id IN (" + placeholders + "))",
+                        params.toArray());
+            }
+        } catch (RuntimeException e) {
+            log.warn("twin_components_write_failed feature_id={} error={}", featureId, e.getMessage());
+        }
+    }
+
+    // A pipe without geometry has no length (NaN), which routing reports as unmeasured rather than free.
+    static TwinTopology.Segment toSegment(ResultSet rs) throws SQLException {
+        Double length = rs.getObject("length_m", Double.class);
+        return new TwinTopology.Segment(rs.getString("id"), rs.getString("feature_id"),
+                rs.getString("from_node_id"), rs.getString("to_node_id"), length == null ? Double.NaN : length);
+    }
+}
@@ -0,0 +1,13 @@
+package com.jolt.workflow.geo;
+
+import java.util.Set;
+
+// TwinTopologyGraph published snapshot `version`. For a single pipe, the segments and nodes it had before
+// and has now; featureId is null after a full load, when anything may have changed.
+public record TwinTopologyRefreshedEvent(
+        long version,
+        String featureId,
+        Set<String> segmentIds,
+        Set<String> nodeIds
+) {
+}
@@ -0,0 +1,112 @@
+package com.jolt.workflow.geo;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Bounded breadth-first trace over one topology snapshot, handed out one BFS level at a time so callers can
+// stream it. Depth 0 is the start segment; each further level holds the segments first reached through the
+// previous level's far ends (to-node downstream, from-node upstream). A stopped segment is still reported but
+// the trace does not continue past its far end.
+final class TwinTrace {
+
+    static final int UNLIMITED = Integer.MAX_VALUE;
+
+    // Which segments of a level (bit i for level[i]) the trace must not continue past.
+    interface Stops {
+        Stops NONE = (topology, level, up) -> new BitSet();
+
+        BitSet stopped(TwinTopology topology, int[] level, boolean up);
+    }
+
+    interface LevelSink {
+        void level(int depth, int[] segments, BitSet stopped) throws IOException;
+    }
+
+    // truncated: maxDepth or maxSegments cut the trace while more segments were reachable.
+    record Result(int segments, int depth, boolean truncated) {
+    }
+
+    // Every traced segment in visiting order, and the stopped ones, for callers that want the whole trace.
+    record Collected(int[] segments, int[] stopped, Result result) {
+    }
+
+    private TwinTrace() {
+    }
+
+    static Collected collect(
+            TwinTopology topology,
+            int start,
+            boolean up,
+            int maxDepth,
+            int maxSegments,
+            Stops stops
+    ) throws IOException {
+        int[][] segments = {new int[16]};
+        int[][] stopped = {new int[4]};
+        int[] sizes = new int[2];
+        Result result = run(topology, start, up, maxDepth, maxSegments, stops, (depth, level, levelStopped) -> {
+            for (int i = 0; i < level.length; i++) {
+                if (sizes[0] == segments[0].length) segments[0] = Arrays.copyOf(segments[0], sizes[0] * 2);
+                segments[0][sizes[0]++] = level[i];
+                if (levelStopped.get(i)) {
+                    if (sizes[1] == stopped[0].length) stopped[0] = Arrays.copyOf(stopped[0], sizes[1] * 2);
+                    stopped[0][sizes[1]++] = level[i];
+                }
+            }
+        });
+        return new Collected(Arrays.copyOf(segments[0], sizes[0]), Arrays.copyOf(stopped[0], sizes[1]), result);
+    }
+
+    static Result run(
+            TwinTopology topology,
+            int start,
+            boolean up,
+            int maxDepth,
+            int maxSegments,
+            Stops stops,
+            LevelSink sink
+    ) throws IOException {
+        if (start < 0) return new Result(0, 0, false);
+        BitSet visited = new BitSet(topology.segmentLimit());
+        visited.set(start);
+        int[] level = {start};
+        int count = 1;
+        int depth = 0;
+        while (true) {
+            BitSet stopped = stops.stopped(topology, level, up);
+            sink.level(depth, level, stopped);
+
+            int[] next = new int[Math.max(4, level.length)];
+            int size = 0;
+            boolean truncated = false;
+            expand:
+            for (int i = 0; i < level.length; i++) {
+                if (stopped.get(i)) continue;
+                int node = up ? topology.fromNode(level[i]) : topology.toNode(level[i]);
+                for (int candidate : topology.next(node, up)) {
+                    if (visited.get(candidate)) continue;
+                    if (depth >= maxDepth || count >= maxSegments) {
+                        truncated = true;
+                        break expand;
+                    }
+                    visited.set(candidate);
+                    if (size == next.length) next = Arrays.copyOf(next, size * 2);
+                    next[size++] = candidate;
+                    count++;
+                }
+            }
+            if (size > 0) {
+                // Whatever made it in before a maxSegments cut is still reported, as a final partial level.
+                level = Arrays.copyOf(next, size);
+                depth++;
+                if (truncated) {
+                    sink.level(depth, level, stops.stopped(topology, level, up));
+                    return new Result(count, depth, true);
+                }
+                continue;
+            }
+            return new Result(count, depth, truncated);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.jolt.workflow.geo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+// Up/downstream traces over the in-memory topology snapshot: single start as JSON or NDJSON, or a batch of
+// starts in one request. Only stop-node and building lookups hit the database.
+@RestController
+@RequestMapping("/api/v1/twin")
+public class TwinTraceController {
+
+    static final String TRACE_NDJSON_VALUE = "application/x-ndjson";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TwinTopologyGraph topologyGraph;
+    private final TwinBuildingLinks buildingLinks;
+    private final int traceMaxSegments;
+    private final int traceBatchMaxSources;
+
+    public TwinTraceController(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            TwinTopologyGraph topologyGraph,
+            TwinBuildingLinks buildingLinks,
+            @Value("${app.twin.trace.max-segments:20000}") int traceMaxSegments,
+            @Value("${app.twin.trace.batch-max-sources:200}") int traceBatchMaxSources
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.topologyGraph = topologyGraph;
+        this.buildingLinks = buildingLinks;
+        this.traceMaxSegments = Math.max(1, traceMaxSegments);
+        this.traceBatchMaxSources = Math.max(1, traceBatchMaxSources);
+    }
+
+    // maxDepth counts hops from the start segment; stopAt=valve,pump_station,<node_type> ends a branch at such
+    // a node. The JSON form is capped at app.twin.trace.max-segments; format=ndjson streams without a cap.
+    @GetMapping(value = "/trace", produces = MediaType.APPLICATION_JSON_VALUE)
+    public JsonNode trace(
+            @RequestParam("startId") String startId,
+            @RequestParam(name = "direction", required = false, defaultValue = "down") String directionRaw,
+            @RequestParam(name = "maxDepth", required = false) Integer maxDepth,
+            @RequestParam(name = "maxSegments", required = false) Integer maxSegments,
+            @RequestParam(name = "stopAt", required = false) String stopAt
+    ) throws IOException {
+        String direction = "up".equalsIgnoreCase(directionRaw) ? "up" : "down";
+        int depthLimit = traceDepthLimit(maxDepth);
+        int segmentLimit = maxSegments == null ? traceMaxSegments : Math.min(traceSegmentLimit(maxSegments), traceMaxSegments);
+        TwinTrace.Stops stops = TwinTraceStops.parse(stopAt, jdbcTemplate);
+        TwinTopology topology = topologyGraph.snapshot();
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("startId", startId);
+        root.put("direction", direction);
+        root.put("topologyVersion", topology.version());
+
+        Set<String> visitedSegmentIds = new LinkedHashSet<>();
+        Set<String> visitedFeatureIds = new LinkedHashSet<>();
+        Set<String> visitedNodeIds = new LinkedHashSet<>();
+        ArrayNode stoppedSegmentIds = objectMapper.createArrayNode();
+        TwinTrace.Result result = TwinTrace.run(
+                topology,
+                topology.resolveIndex(startId),
+                "up".equals(direction),
+                depthLimit,
+                segmentLimit,
+                stops,
+                (depth, segments, stopped) -> {
+                    for (int i = 0; i < segments.length; i++) {
+                        int segment = segments[i];
+                        visitedSegmentIds.add(topology.segmentId(segment));
+                        String featureId = topology.featureId(segment);
+                        if (featureId != null) visitedFeatureIds.add(featureId);
+                        String fromNodeId = topology.nodeId(topology.fromNode(segment));
+                        if (fromNodeId != null) visitedNodeIds.add(fromNodeId);
+                        String toNodeId = topology.nodeId(topology.toNode(segment));
+                        if (toNodeId != null) visitedNodeIds.add(toNodeId);
+                        if (stopped.get(i)) stoppedSegmentIds.add(topology.segmentId(segment));
+                    }
+                }
+        );
+
+        ArrayNode pathSegmentIds = root.putArray("pathSegmentIds");
+        ArrayNode pathFeatureIds = root.putArray("pathFeatureIds");
+        ArrayNode nodeIds = root.putArray("nodeIds");
+        for (String segmentId : visitedSegmentIds) pathSegmentIds.add(segmentId);
+        for (String featureId : visitedFeatureIds) pathFeatureIds.add(featureId);
+        for (String nodeId : visitedNodeIds) nodeIds.add(nodeId);
+        root.set("stoppedSegmentIds", stoppedSegmentIds);
+        root.put("depth", result.depth());
+        root.put("truncated", result.truncated());
+
+        if (result.segments() == 0) {
+            root.set("linkedBuildings", objectMapper.createArrayNode());
+            return root;
+        }
+        Set<String> candidateIds = new LinkedHashSet<>();
+        candidateIds.addAll(visitedSegmentIds);
+        candidateIds.addAll(visitedFeatureIds);
+        candidateIds.addAll(visitedNodeIds);
+        root.set("linkedBuildings", buildingLinks.linkedBuildings(buildingLinks.queryRelatedBuildingIds(candidateIds), startId));
+        return root;
+    }
+
+    // One NDJSON line per BFS level as the frontier expands, then a summary line with the linked buildings.
+    // Only the visited bitsets and building ids are held, not the traced ids, apart from the ids waiting for
+    // their building lookup: those go out a chunk at a time, so a long trunk with one segment per level does
+    // not cost a round trip per level.
+    @GetMapping(value = "/trace", params = "format=ndjson", produces = TRACE_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamTrace(
+            @RequestParam("startId") String startId,
+            @RequestParam(name = "direction", required = false, defaultValue = "down") String directionRaw,
+            @RequestParam(name = "maxDepth", required = false) Integer maxDepth,
+            @RequestParam(name = "maxSegments", required = false) Integer maxSegments,
+            @RequestParam(name = "stopAt", required = false) String stopAt
+    ) {
+        String direction = "up".equalsIgnoreCase(directionRaw) ? "up" : "down";
+        int depthLimit = traceDepthLimit(maxDepth);
+        int segmentLimit = maxSegments == null ? TwinTrace.UNLIMITED : traceSegmentLimit(maxSegments);
+        TwinTrace.Stops stops = TwinTraceStops.parse(stopAt, jdbcTemplate);
+        TwinTopology topology = topologyGraph.snapshot();
+
+        StreamingResponseBody body = out -> {
+            ObjectNode start = objectMapper.createObjectNode();
+            start.put("type", "start");
+            start.put("startId", startId);
+            start.put("direction", direction);
+            start.put("topologyVersion", topology.version());
+            writeLine(out, start);
+
+            BitSet seenNodes = new BitSet(topology.nodeLimit());
+            Set<String> buildingIds = new LinkedHashSet<>();
+            Set<String> pendingIds = new LinkedHashSet<>();
+            TwinTrace.Result result = TwinTrace.run(
+                    topology,
+                    topology.resolveIndex(startId),
+                    "up".equals(direction),
+                    depthLimit,
+                    segmentLimit,
+                    stops,
+                    (depth, segments, stopped) -> {
+                        ObjectNode line = objectMapper.createObjectNode();
+                        line.put("type", "level");
+                        line.put("depth", depth);
+                        ArrayNode segmentIds = line.putArray("segmentIds");
+                        ArrayNode featureIds = line.putArray("featureIds");
+                        ArrayNode nodeIds = line.putArray("nodeIds");
+                        ArrayNode stoppedIds = line.putArray("stoppedSegmentIds");
+                        for (int i = 0; i < segments.length; i++) {
+                            int segment = segments[i];
+                            String segmentId = topology.segmentId(segment);
+                            segmentIds.add(segmentId);
+                            pendingIds.add(segmentId);
+                            String featureId = topology.featureId(segment);
+                            if (featureId != null) {
+                                featureIds.add(featureId);
+                                pendingIds.add(featureId);
+                            }
+                            for (int node : new int[] {topology.fromNode(segment), topology.toNode(segment)}) {
+                                if (node < 0 || seenNodes.get(node)) continue;
+                                seenNodes.set(node);
+                                nodeIds.add(topology.nodeId(node));
+                                pendingIds.add(topology.nodeId(node));
+                            }
+                            if (stopped.get(i)) stoppedIds.add(segmentId);
+                        }
+                        if (pendingIds.size() >= TwinTraceStops.CHUNK) {
+                            buildingIds.addAll(buildingLinks.queryRelatedBuildingIds(pendingIds));
+                            pendingIds.clear();
+                        }
+                        writeLine(out, line);
+                        out.flush();
+                    }
+            );
+            if (!pendingIds.isEmpty()) buildingIds.addAll(buildingLinks.queryRelatedBuildingIds(pendingIds));
+
+            ObjectNode summary = objectMapper.createObjectNode();
+            summary.put("type", "summary");
+            summary.put("segments", result.segments());
+            summary.put("depth", result.depth());
+            summary.put("truncated", result.truncated());
+            summary.set("linkedBuildings", result.segments() == 0
+                    ? objectMapper.createArrayNode()
+                    : buildingLinks.linkedBuildings(buildingIds, startId));
+            writeLine(out, summary);
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(TRACE_NDJSON_VALUE))
+                .body(body);
+    }
+
+    // Body: {"startIds": [...], "direction": "down", "maxDepth": 3, "maxSegments": 500, "stopAt": "valve"}.
+    // Every start is traced on its own virtual thread over one shared snapshot, each capped like the JSON
+    // trace; the building relations of all traced ids are then looked up once and split back per source.
+    // Unlike /trace there is no nearest-building fallback, so linkedBuildings only holds related buildings.
+    @PostMapping(value = "/trace/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public JsonNode traceBatch(@RequestBody String body) {
+        JsonNode payload;
+        try {
+            payload = objectMapper.readTree(body);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("invalid_json");
+        }
+        if (payload == null || !payload.isObject()) throw new IllegalArgumentException("invalid_json");
+        Set<String> startIds = new LinkedHashSet<>();
+        for (JsonNode item : payload.path("startIds")) {
+            String startId = item.asText("").trim();
+            if (!startId.isEmpty()) startIds.add(startId);
+        }
+        if (startIds.isEmpty()) throw new IllegalArgumentException("startIds must not be empty");
+        if (startIds.size() > traceBatchMaxSources) {
+            throw new IllegalArgumentException("startIds accepts at most " + traceBatchMaxSources + " entries");
+        }
+        String direction = "up".equalsIgnoreCase(payload.path("direction").asText("down")) ? "up" : "down";
+        int depthLimit = traceDepthLimit(payload.hasNonNull("maxDepth") ? payload.get("maxDepth").asInt() : null);
+        int segmentLimit = payload.hasNonNull("maxSegments")
+                ? Math.min(traceSegmentLimit(payload.get("maxSegments").asInt()), traceMaxSegments)
+                : traceMaxSegments;
+        TwinTrace.Stops stops = TwinTraceStops.parse(payload.path("stopAt").asText(null), jdbcTemplate);
+        TwinTopology topology = topologyGraph.snapshot();
+        boolean up = "up".equals(direction);
+
+        List<String> starts = new ArrayList<>(startIds);
+        List<Future<TwinTrace.Collected>> futures = new ArrayList<>(starts.size());
+        List<TwinTrace.Collected> traces = new ArrayList<>(starts.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String startId : starts) {
+                int start = topology.resolveIndex(startId);
+                futures.add(executor.submit(() -> TwinTrace.collect(topology, start, up, depthLimit, segmentLimit, stops)));
+            }
+            for (Future<TwinTrace.Collected> future : futures) traces.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("trace_batch_interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException("trace_batch_failed", e.getCause());
+        }
+
+        BitSet unionSegments = new BitSet(topology.segmentLimit());
+        for (TwinTrace.Collected trace : traces) {
+            for (int segment : trace.segments()) unionSegments.set(segment);
+        }
+        Set<String> candidateIds = new LinkedHashSet<>();
+        BitSet unionNodes = new BitSet(topology.nodeLimit());
+        for (int segment = unionSegments.nextSetBit(0); segment >= 0; segment = unionSegments.nextSetBit(segment + 1)) {
+            candidateIds.add(topology.segmentId(segment));
+            String featureId = topology.featureId(segment);
+            if (featureId != null) candidateIds.add(featureId);
+            for (int node : new int[] {topology.fromNode(segment), topology.toNode(segment)}) {
+                if (node < 0 || unionNodes.get(node)) continue;
+                unionNodes.set(node);
+                candidateIds.add(topology.nodeId(node));
+            }
+        }
+        Map<String, Set<String>> linksByAsset = buildingLinks.queryBuildingLinks(candidateIds);
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("direction", direction);
+        root.put("topologyVersion", topology.version());
+        ArrayNode sources = root.putArray("sources");
+        Set<String> unionBuildingIds = new LinkedHashSet<>();
+        for (int i = 0; i < starts.size(); i++) {
+            TwinTrace.Collected trace = traces.get(i);
+            ObjectNode source = sources.addObject();
+            source.put("startId", starts.get(i));
+            source.put("found", trace.result().segments() > 0);
+            Set<String> featureIds = new LinkedHashSet<>();
+            Set<String> nodeIds = new LinkedHashSet<>();
+            Set<String> buildingIds = new LinkedHashSet<>();
+            ArrayNode pathSegmentIds = source.putArray("pathSegmentIds");
+            for (int segment : trace.segments()) {
+                String segmentId = topology.segmentId(segment);
+                pathSegmentIds.add(segmentId);
+                buildingIds.addAll(linksByAsset.getOrDefault(segmentId, Set.of()));
+                String featureId = topology.featureId(segment);
+                if (featureId != null && featureIds.add(featureId)) {
+                    buildingIds.addAll(linksByAsset.getOrDefault(featureId, Set.of()));
+                }
+                for (int node : new int[] {topology.fromNode(segment), topology.toNode(segment)}) {
+                    String nodeId = topology.nodeId(node);
+                    if (nodeId != null && nodeIds.add(nodeId)) {
+                        buildingIds.addAll(linksByAsset.getOrDefault(nodeId, Set.of()));
+                    }
+                }
+            }
+            ArrayNode pathFeatureIds = source.putArray("pathFeatureIds");
+            for (String featureId : featureIds) pathFeatureIds.add(featureId);
+            ArrayNode sourceNodeIds = source.putArray("nodeIds");
+            for (String nodeId : nodeIds) sourceNodeIds.add(nodeId);
+            ArrayNode stoppedSegmentIds = source.putArray("stoppedSegmentIds");
+            for (int segment : trace.stopped()) stoppedSegmentIds.add(topology.segmentId(segment));
+            source.put("depth", trace.result().depth());
+            source.put("truncated", trace.result().truncated());
+            ArrayNode linkedBuildingIds = source.putArray("linkedBuildingIds");
+            for (String buildingId : buildingIds) linkedBuildingIds.add(buildingId);
+            unionBuildingIds.addAll(buildingIds);
+        }
+
+        ObjectNode union = root.putObject("union");
+        ArrayNode pathSegmentIds = union.putArray("pathSegmentIds");
+        ArrayNode pathFeatureIds = union.putArray("pathFeatureIds");
+        for (int segment = unionSegments.nextSetBit(0); segment >= 0; segment = unionSegments.nextSetBit(segment + 1)) {
+            pathSegmentIds.add(topology.segmentId(segment));
+            String featureId = topology.featureId(segment);
+            if (featureId != null) pathFeatureIds.add(featureId);
+        }
+        ArrayNode nodeIds = union.putArray("nodeIds");
+        for (int node = unionNodes.nextSetBit(0); node >= 0; node = unionNodes.nextSetBit(node + 1)) {
+            nodeIds.add(topology.nodeId(node));
+        }
+        union.set("linkedBuildings", buildingLinks.queryBuildingRows(unionBuildingIds));
+        return root;
+    }
+
+    private static int traceDepthLimit(Integer maxDepth) {
+        if (maxDepth == null) return TwinTrace.UNLIMITED;
+        if (maxDepth < 0) throw new IllegalArgumentException("maxDepth must be >= 0");
+        return maxDepth;
+    }
+
+    private static int traceSegmentLimit(int maxSegments) {
+        if (maxSegments < 1) throw new IllegalArgumentException("maxSegments must be >= 1");
+        return maxSegments;
+    }
+
+    private void writeLine(OutputStream out, JsonNode line) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(line));
+        out.write('\n');
+    }
+}
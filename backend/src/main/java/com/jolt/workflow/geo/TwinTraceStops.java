@@ -0,0 +1,114 @@
+package com.jolt.workflow.geo;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// stopAt for /twin/trace: "valve" (pipe_valves), "pump_station" (pump_stations) and any pipe_nodes.node_type.
+// A segment is stopped when its far end is such a node, or when a valve sits on the segment without a node.
+// Looked up per BFS level, so only the nodes a trace actually reaches are queried.
+final class TwinTraceStops implements TwinTrace.Stops {
+
+    static final int MAX_KINDS = 16;
+    // Ids per IN list; keeps every statement well under the driver's bind-parameter limit.
+    static final int CHUNK = 1000;
+
+    private static final Pattern KIND = Pattern.compile("[a-z0-9_]{1,64}");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Set<String> kinds;
+
+    private TwinTraceStops(JdbcTemplate jdbcTemplate, Set<String> kinds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.kinds = kinds;
+    }
+
+    static TwinTrace.Stops parse(String stopAt, JdbcTemplate jdbcTemplate) {
+        Set<String> kinds = kinds(stopAt);
+        return kinds.isEmpty() ? TwinTrace.Stops.NONE : new TwinTraceStops(jdbcTemplate, kinds);
+    }
+
+    static Set<String> kinds(String stopAt) {
+        Set<String> kinds = new LinkedHashSet<>();
+        if (stopAt == null || stopAt.isBlank()) return kinds;
+        for (String raw : stopAt.split(",")) {
+            String kind = raw.trim().toLowerCase(Locale.ROOT);
+            if (kind.isEmpty()) continue;
+            if (!KIND.matcher(kind).matches()) {
+                throw new IllegalArgumentException("stopAt entries must be valve, pump_station or a node type");
+            }
+            // Plural forms read naturally in a query string.
+            if (kind.equals("valves")) kind = "valve";
+            if (kind.equals("pump_stations")) kind = "pump_station";
+            kinds.add(kind);
+        }
+        if (kinds.size() > MAX_KINDS) {
+            throw new IllegalArgumentException("stopAt accepts at most " + MAX_KINDS + " entries");
+        }
+        return kinds;
+    }
+
+    @Override
+    public BitSet stopped(TwinTopology topology, int[] level, boolean up) {
+        BitSet stopped = new BitSet(level.length);
+        for (int from = 0; from < level.length; from += CHUNK) {
+            int to = Math.min(level.length, from + CHUNK);
+            Set<String> nodeIds = new LinkedHashSet<>();
+            Set<String> segmentIds = new LinkedHashSet<>();
+            for (int i = from; i < to; i++) {
+                String nodeId = topology.nodeId(up ? topology.fromNode(level[i]) : topology.toNode(level[i]));
+                if (nodeId != null) nodeIds.add(nodeId);
+                segmentIds.add(topology.segmentId(level[i]));
+            }
+            Set<String> stopNodes = new HashSet<>();
+            Set<String> stopSegments = new HashSet<>();
+            query(nodeIds, segmentIds, stopNodes, stopSegments);
+            if (stopNodes.isEmpty() && stopSegments.isEmpty()) continue;
+            for (int i = from; i < to; i++) {
+                String nodeId = topology.nodeId(up ? topology.fromNode(level[i]) : topology.toNode(level[i]));
+                if ((nodeId != null && stopNodes.contains(nodeId)) || stopSegments.contains(topology.segmentId(level[i]))) {
+                    stopped.set(i);
+                }
+            }
+        }
+        return stopped;
+    }
+
+    private void query(Set<String> nodeIds, Set<String> segmentIds, Set<String> stopNodes, Set<String> stopSegments) {
+        String nodePlaceholders = String.join(",", java.util.Collections.nCopies(Math.max(1, nodeIds.size()), "?"));
+        String segmentPlaceholders = String.join(",", java.util.Collections.nCopies(segmentIds.size(), "?"));
+        String typePlaceholders = String.join(",", java.util.Collections.nCopies(kinds.size(), "?"));
+        List<String> parts = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        if (!nodeIds.isEmpty()) {
+            parts.add("SELECT id, 'node' AS kind FROM pipe_nodes " +
+                    "WHERE node_type IN (" + typePlaceholders + ") AND id IN (" + nodePlaceholders + ")");
+            params.addAll(kinds);
+            params.addAll(nodeIds);
+            if (kinds.contains("valve")) {
+                parts.add("SELECT node_id, 'node' FROM pipe_valves WHERE node_id IN (" + nodePlaceholders + ")");
+                params.addAll(nodeIds);
+            }
+            if (kinds.contains("pump_station")) {
+                parts.add("SELECT node_id, 'node' FROM pump_stations WHERE node_id IN (" + nodePlaceholders + ")");
+                params.addAll(nodeIds);
+            }
+        }
+        if (kinds.contains("valve") && !segmentIds.isEmpty()) {
+            parts.add("SELECT segment_id, 'segment' FROM pipe_valves " +
+                    "WHERE node_id IS NULL AND segment_id IN (" + segmentPlaceholders + ")");
+            params.addAll(segmentIds);
+        }
+        if (parts.isEmpty()) return;
+        jdbcTemplate.query(String.join(" UNION ", parts), rs -> {
+            if ("segment".equals(rs.getString("kind"))) stopSegments.add(rs.getString("id"));
+            else stopNodes.add(rs.getString("id"));
+        }, params.toArray());
+    }
+}
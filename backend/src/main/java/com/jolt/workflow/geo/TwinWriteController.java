@@ -9,6 +9,7 @@ import java.math.RoundingMode;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -29,10 +30,19 @@ public class TwinWriteController {
 
     private final JdbcTemplate jdbcTemplate;
     private final ObjectMapper objectMapper;
-
-    public TwinWriteController(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+    private final GeoFeatureChangePublisher changePublisher;
+    private final double nodeSnapToleranceMeters;
+
+    public TwinWriteController(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            GeoFeatureChangePublisher changePublisher,
+            @Value("${app.twin.node-snap-tolerance-m:0.1}") double nodeSnapToleranceMeters
+    ) {
         this.jdbcTemplate = jdbcTemplate;
         this.objectMapper = objectMapper;
+        this.changePublisher = changePublisher;
+        this.nodeSnapToleranceMeters = Math.max(0.0, nodeSnapToleranceMeters);
     }
 
     @PutMapping(value = "/pipes/{id}/geometry", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -59,6 +69,7 @@ public class TwinWriteController {
         }
         String updatedBy = parseUpdatedBy(root);
         JsonNode before = queryFeatureGeoJson(featureId);
+        GeoFeatureChangedEvent.Footprint footprintBefore = changePublisher.footprint(featureId);
 
         int updated;
         try {
@@ -74,8 +85,9 @@ public class TwinWriteController {
             return ResponseEntity.status(404).body(errorNode("not_found"));
         }
 
+        TopologySync topology;
         try {
-            syncTopologyForFeature(featureId);
+            topology = syncTopologyForFeature(featureId);
         } catch (Exception e) {
             markCurrentTransactionRollbackOnly();
             return ResponseEntity.internalServerError().body(errorNode("topology_sync_failed"));
@@ -83,6 +95,15 @@ public class TwinWriteController {
 
         JsonNode after = queryFeatureGeoJson(featureId);
         insertAuditLog(featureId, "geometry_update", updatedBy, before, after);
+        GeoFeatureChangedEvent.Footprint footprintAfter = changePublisher.footprint(featureId);
+        changePublisher.publish(featureId, "geometry_update", footprintBefore, footprintAfter);
+        changePublisher.publishTopology(
+                featureId,
+                "geometry_update",
+                topology.segmentId(),
+                List.of(topology.fromNodeId(), topology.toNodeId()),
+                footprintAfter
+        );
 
         ObjectNode ok = objectMapper.createObjectNode();
         ok.put("ok", true);
@@ -161,6 +182,9 @@ public class TwinWriteController {
 
         JsonNode after = queryFeatureGeoJson(featureId);
         insertAuditLog(featureId, "properties_update", updatedBy, before, after);
+        GeoFeatureChangedEvent.Footprint footprintAfter = changePublisher.footprint(featureId);
+        changePublisher.publish(featureId, "properties_update", null, footprintAfter);
+        changePublisher.publishTopology(featureId, "properties_update", null, List.of(), footprintAfter);
 
         ObjectNode ok = objectMapper.createObjectNode();
         ok.put("ok", true);
@@ -200,6 +224,13 @@ public class TwinWriteController {
 
         JsonNode after = queryFeatureGeoJson(featureId);
         insertAuditLog(featureId, "building_binding_update", updatedBy, before, after);
+        changePublisher.publishTopology(
+                featureId,
+                "building_binding_update",
+                null,
+                List.of(),
+                changePublisher.footprint(featureId)
+        );
 
         ObjectNode ok = objectMapper.createObjectNode();
         ok.put("ok", true);
@@ -379,16 +410,47 @@ public class TwinWriteController {
         );
     }
 
-    private void syncTopologyForFeature(String featureId) {
+    private TopologySync syncTopologyForFeature(String featureId) {
         FeatureEndpoints endpoints = queryFeatureEndpoints(featureId);
         if (endpoints == null) {
             throw new IllegalStateException("line_geometry_required");
         }
 
-        upsertPipeNode(endpoints.fromNodeId(), endpoints.startLon(), endpoints.startLat());
-        upsertPipeNode(endpoints.toNodeId(), endpoints.endLon(), endpoints.endLat());
-        String segmentId = upsertPipeSegment(featureId, endpoints.fromNodeId(), endpoints.toNodeId());
-        refreshTopologyRelations(featureId, segmentId, endpoints.fromNodeId(), endpoints.toNodeId());
+        // A snapped endpoint joins an existing node as it stands; only unsnapped ones are written.
+        String fromNodeId = snapToNode(endpoints.startLon(), endpoints.startLat(), null);
+        if (fromNodeId == null) {
+            fromNodeId = endpoints.fromNodeId();
+            upsertPipeNode(fromNodeId, endpoints.startLon(), endpoints.startLat());
+        }
+        String toNodeId = snapToNode(endpoints.endLon(), endpoints.endLat(), fromNodeId);
+        if (toNodeId == null) {
+            toNodeId = endpoints.toNodeId();
+            upsertPipeNode(toNodeId, endpoints.endLon(), endpoints.endLat());
+        }
+        String segmentId = upsertPipeSegment(featureId, fromNodeId, toNodeId);
+        refreshTopologyRelations(featureId, segmentId, fromNodeId, toNodeId);
+        return new TopologySync(segmentId, fromNodeId, toNodeId);
+    }
+
+    // The nearest existing node within app.twin.node-snap-tolerance-m of the point, found through the
+    // pipe_nodes geom index; null when there is none (the endpoint then gets its coordinate-hash node id).
+    // excludeNodeId keeps a pipe shorter than the tolerance from snapping both ends onto one node.
+    private String snapToNode(double lon, double lat, String excludeNodeId) {
+        if (nodeSnapToleranceMeters <= 0) return null;
+        String sql = "WITH pt AS (SELECT ST_SetSRID(ST_MakePoint(?, ?), 4326) AS geom) " +
+                "SELECT k.id FROM pt CROSS JOIN LATERAL (" +
+                "  SELECT n.id, n.geom FROM pipe_nodes n " +
+                "  WHERE n.geom IS NOT NULL AND n.id IS DISTINCT FROM ? " +
+                "  ORDER BY n.geom <-> pt.geom LIMIT 1" +
+                ") k WHERE ST_Distance(k.geom::geography, pt.geom::geography) <= ?";
+        return jdbcTemplate.query(
+                sql,
+                rs -> rs.next() ? rs.getString("id") : null,
+                lon,
+                lat,
+                excludeNodeId,
+                nodeSnapToleranceMeters
+        );
     }
 
     private void syncSegmentAttributesFromFeature(String featureId) {
@@ -467,20 +529,25 @@ public class TwinWriteController {
     }
 
     private void upsertPipeNode(String nodeId, double lon, double lat) {
+        double roundedLon = roundCoordinate(lon, 8);
+        double roundedLat = roundCoordinate(lat, 8);
         ObjectNode properties = objectMapper.createObjectNode();
-        properties.put("lon", roundCoordinate(lon, 8));
-        properties.put("lat", roundCoordinate(lat, 8));
+        properties.put("lon", roundedLon);
+        properties.put("lat", roundedLat);
         properties.put("autoSynced", true);
 
         jdbcTemplate.update(
-                "INSERT INTO pipe_nodes (id, feature_id, node_type, name, properties) " +
-                        "VALUES (?, NULL, 'junction', ?, ?::jsonb) " +
+                "INSERT INTO pipe_nodes (id, feature_id, node_type, name, properties, geom) " +
+                        "VALUES (?, NULL, 'junction', ?, ?::jsonb, ST_SetSRID(ST_MakePoint(?, ?), 4326)) " +
                         "ON CONFLICT (id) DO UPDATE " +
                         "SET properties = pipe_nodes.properties || EXCLUDED.properties, " +
+                        "geom = EXCLUDED.geom, " +
                         "updated_at = now()",
                 nodeId,
                 nodeId,
-                properties.toString()
+                properties.toString(),
+                roundedLon,
+                roundedLat
         );
     }
 
@@ -666,6 +733,9 @@ public class TwinWriteController {
         }
     }
 
+    private record TopologySync(String segmentId, String fromNodeId, String toNodeId) {
+    }
+
     private record FeatureEndpoints(
             String fromNodeId,
             String toNodeId,
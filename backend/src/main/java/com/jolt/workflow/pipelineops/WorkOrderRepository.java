@@ -1,5 +1,7 @@
 package com.jolt.workflow.pipelineops;
 
+import com.jolt.workflow.geo.GeoNearestService;
+import com.jolt.workflow.geo.TwinTopologyGraph;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.node.ArrayNode;
@@ -32,8 +34,20 @@ public class WorkOrderRepository extends WorkOrderRepositorySupport {
     ) {
     }
 
-    public WorkOrderRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
-        super(jdbcTemplate, objectMapper);
+    private static final List<String> PIPE_LAYERS = List.of("pipes", "roads");
+    // Nearest pipes checked for a pipe_segments row before falling back to the segment-joined KNN query.
+    private static final int SEGMENT_CANDIDATES = 16;
+
+    private final GeoNearestService nearestService;
+
+    public WorkOrderRepository(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            GeoNearestService nearestService,
+            TwinTopologyGraph topologyGraph
+    ) {
+        super(jdbcTemplate, objectMapper, topologyGraph);
+        this.nearestService = nearestService;
     }
 
     public ObjectNode listWorkorders(PipelineOrderListQuery query) {
@@ -1437,6 +1451,24 @@ public class WorkOrderRepository extends WorkOrderRepositorySupport {
     }
 
     private PipeMatch findNearestSegmentBackedPipeMatch(double lng, double lat) {
+        List<String> candidateIds = new ArrayList<>();
+        for (GeoNearestService.NearestAsset asset : nearestService.nearest(lng, lat, PIPE_LAYERS, SEGMENT_CANDIDATES, null)) {
+            candidateIds.add(asset.id());
+        }
+        if (candidateIds.isEmpty()) {
+            return null;
+        }
+        String placeholders = String.join(",", java.util.Collections.nCopies(candidateIds.size(), "?"));
+        Set<String> withSegment = new LinkedHashSet<>(jdbcTemplate.queryForList(
+                "SELECT DISTINCT feature_id FROM pipe_segments WHERE feature_id IN (" + placeholders + ")",
+                String.class,
+                candidateIds.toArray()
+        ));
+        for (String candidateId : candidateIds) {
+            if (withSegment.contains(candidateId)) {
+                return findPipeMatchByFeatureId(candidateId);
+            }
+        }
         List<Map<String, Object>> rows = jdbcTemplate.queryForList(
                 "WITH src AS (SELECT ST_SetSRID(ST_MakePoint(?, ?), 4326) AS geom) " +
                         "SELECT g.id AS feature_id, " +
@@ -1460,26 +1492,8 @@ public class WorkOrderRepository extends WorkOrderRepositorySupport {
     }
 
     private PipeMatch findNearestPipeMatch(double lng, double lat) {
-        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
-                "WITH src AS (SELECT ST_SetSRID(ST_MakePoint(?, ?), 4326) AS geom) " +
-                        "SELECT g.id AS feature_id, " +
-                        "COALESCE(g.properties->>'name', g.properties->>'ref', g.id) AS feature_name, " +
-                        "COALESCE(g.properties->>'area', g.properties->>'campus', g.properties->>'source', '未分区') AS area, " +
-                        "COALESCE(g.properties->>'pipelineMedium', g.properties->>'pipeLayer', g.properties->>'medium', g.properties->>'media', '') AS medium_raw, " +
-                        "COALESCE(ps.id, '') AS segment_id " +
-                        "FROM geo_features g " +
-                        "LEFT JOIN pipe_segments ps ON ps.feature_id = g.id " +
-                        "CROSS JOIN src " +
-                        "WHERE g.layer IN ('pipes', 'roads') " +
-                        "ORDER BY g.geom <-> src.geom " +
-                        "LIMIT 1",
-                lng,
-                lat
-        );
-        if (rows.isEmpty()) {
-            return null;
-        }
-        return mapPipeMatch(rows.get(0));
+        List<GeoNearestService.NearestAsset> nearest = nearestService.nearest(lng, lat, PIPE_LAYERS, 1, null);
+        return nearest.isEmpty() ? null : findPipeMatchByFeatureId(nearest.get(0).id());
     }
 
     private PipeMatch selectQuickReportPipeMatch(String featureId, double lng, double lat) {
@@ -1570,8 +1584,6 @@ public class WorkOrderRepository extends WorkOrderRepositorySupport {
     private record QueryFilter(String whereSql, List<Object> params) {
     }
 
-
-
     public static class PipelineOpsException extends RuntimeException {
         private final int statusCode;
 
@@ -1,5 +1,7 @@
 package com.jolt.workflow.pipelineops;
 
+import com.jolt.workflow.geo.TwinTopology;
+import com.jolt.workflow.geo.TwinTopologyGraph;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.node.ArrayNode;
@@ -18,6 +20,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.dao.EmptyResultDataAccessException;
@@ -43,11 +46,13 @@ abstract class WorkOrderRepositorySupport {
 
     protected final JdbcTemplate jdbcTemplate;
     protected final ObjectMapper objectMapper;
+    private final TwinTopologyGraph topologyGraph;
     private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
 
-    protected WorkOrderRepositorySupport(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+    protected WorkOrderRepositorySupport(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, TwinTopologyGraph topologyGraph) {
         this.jdbcTemplate = jdbcTemplate;
         this.objectMapper = objectMapper;
+        this.topologyGraph = topologyGraph;
     }
 
     protected void syncBuildingLinks(String workOrderId, JsonNode impactedBuildings, boolean manualAdjusted) {
@@ -487,28 +492,20 @@ abstract class WorkOrderRepositorySupport {
         return new ArrayList<>(resolved);
     }
 
+    // Segments matched by segment id or by pipe feature id, distinct and ordered by segment id. Answered from
+    // the shared topology graph instead of a pipe_segments query per impact analysis.
     protected List<SegmentAssetRef> resolveSegmentAssets(List<String> rawSegmentIds) {
-        List<String> ids = normalizeDistinctIds(rawSegmentIds);
-        if (ids.isEmpty()) return List.of();
-        String placeholders = String.join(",", java.util.Collections.nCopies(ids.size(), "?"));
-        String sql = "SELECT ps.id, COALESCE(ps.feature_id, '') AS feature_id, COALESCE(ps.from_node_id, '') AS from_node_id, COALESCE(ps.to_node_id, '') AS to_node_id " +
-                "FROM pipe_segments ps " +
-                "WHERE ps.id IN (" + placeholders + ") OR ps.feature_id IN (" + placeholders + ") " +
-                "ORDER BY ps.id";
-        List<Object> params = new ArrayList<>(ids.size() * 2);
-        params.addAll(ids);
-        params.addAll(ids);
-        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, params.toArray());
-        LinkedHashMap<String, SegmentAssetRef> resolved = new LinkedHashMap<>();
-        for (Map<String, Object> row : rows) {
-            SegmentAssetRef ref = new SegmentAssetRef(
-                    textValue(row.get("id")),
-                    textValue(row.get("feature_id")),
-                    textValue(row.get("from_node_id")),
-                    textValue(row.get("to_node_id"))
-            );
-            if (!ref.id().isBlank()) {
-                resolved.put(ref.id(), ref);
+        TwinTopology topology = topologyGraph.snapshot();
+        TreeMap<String, SegmentAssetRef> resolved = new TreeMap<>();
+        for (String id : normalizeDistinctIds(rawSegmentIds)) {
+            for (TwinTopology.Segment segment : new TwinTopology.Segment[] {topology.segment(id), topology.segmentForFeature(id)}) {
+                if (segment == null || isBlank(segment.id())) continue;
+                resolved.put(segment.id(), new SegmentAssetRef(
+                        segment.id(),
+                        textValue(segment.featureId()),
+                        textValue(segment.fromNodeId()),
+                        textValue(segment.toNodeId())
+                ));
             }
         }
         return new ArrayList<>(resolved.values());
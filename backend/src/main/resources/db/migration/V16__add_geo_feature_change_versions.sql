@@ -0,0 +1,75 @@
+-- V16: change versions for geo_features
+-- Every write (API, Twin writes, seed scripts) bumps a global sequence through triggers:
+-- geo_features.change_version is the row version, geo_layer_versions.version the per-layer version.
+
+CREATE SEQUENCE IF NOT EXISTS geo_feature_change_seq;
+
+ALTER TABLE geo_features
+ADD COLUMN IF NOT EXISTS change_version BIGINT NOT NULL DEFAULT nextval('geo_feature_change_seq');
+
+CREATE TABLE IF NOT EXISTS geo_layer_versions (
+    layer TEXT PRIMARY KEY,
+    version BIGINT NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+INSERT INTO geo_layer_versions (layer, version)
+SELECT layer, MAX(change_version) FROM geo_features GROUP BY layer
+ON CONFLICT (layer) DO UPDATE SET version = GREATEST(geo_layer_versions.version, EXCLUDED.version);
+
+CREATE OR REPLACE FUNCTION set_geo_feature_change_version()
+RETURNS TRIGGER AS $$
+BEGIN
+  NEW.change_version = nextval('geo_feature_change_seq');
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_geo_features_change_version ON geo_features;
+CREATE TRIGGER trg_geo_features_change_version
+BEFORE INSERT OR UPDATE ON geo_features
+FOR EACH ROW
+EXECUTE FUNCTION set_geo_feature_change_version();
+
+-- Statement-level so a bulk write bumps each touched layer once.
+CREATE OR REPLACE FUNCTION bump_geo_layer_versions()
+RETURNS TRIGGER AS $$
+BEGIN
+  IF TG_OP = 'INSERT' THEN
+    INSERT INTO geo_layer_versions (layer, version)
+    SELECT layer, nextval('geo_feature_change_seq') FROM (SELECT DISTINCT layer FROM new_rows) l
+    ON CONFLICT (layer) DO UPDATE SET version = EXCLUDED.version, updated_at = now();
+  ELSIF TG_OP = 'UPDATE' THEN
+    INSERT INTO geo_layer_versions (layer, version)
+    SELECT layer, nextval('geo_feature_change_seq')
+    FROM (SELECT layer FROM new_rows UNION SELECT layer FROM old_rows) l
+    ON CONFLICT (layer) DO UPDATE SET version = EXCLUDED.version, updated_at = now();
+  ELSE
+    INSERT INTO geo_layer_versions (layer, version)
+    SELECT layer, nextval('geo_feature_change_seq') FROM (SELECT DISTINCT layer FROM old_rows) l
+    ON CONFLICT (layer) DO UPDATE SET version = EXCLUDED.version, updated_at = now();
+  END IF;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_geo_features_layer_version_ins ON geo_features;
+CREATE TRIGGER trg_geo_features_layer_version_ins
+AFTER INSERT ON geo_features
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION bump_geo_layer_versions();
+
+DROP TRIGGER IF EXISTS trg_geo_features_layer_version_upd ON geo_features;
+CREATE TRIGGER trg_geo_features_layer_version_upd
+AFTER UPDATE ON geo_features
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION bump_geo_layer_versions();
+
+DROP TRIGGER IF EXISTS trg_geo_features_layer_version_del ON geo_features;
+CREATE TRIGGER trg_geo_features_layer_version_del
+AFTER DELETE ON geo_features
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION bump_geo_layer_versions();
@@ -0,0 +1,48 @@
+-- V17: precomputed level-of-detail geometry for geo_features
+-- Tolerances (degrees, EPSG:4326) must match GeoLod: lod1 1e-5 (z15-16), lod2 4e-5 (z13-14), lod3 1.5e-4 (z<=12).
+-- A LOD column stays NULL for points and when simplification removes no vertices; readers COALESCE back to geom.
+
+ALTER TABLE geo_features
+ADD COLUMN IF NOT EXISTS geom_lod1 geometry(Geometry, 4326),
+ADD COLUMN IF NOT EXISTS geom_lod2 geometry(Geometry, 4326),
+ADD COLUMN IF NOT EXISTS geom_lod3 geometry(Geometry, 4326);
+
+CREATE OR REPLACE FUNCTION geo_feature_lod_geom(g geometry, tolerance DOUBLE PRECISION)
+RETURNS geometry AS $$
+DECLARE
+  simplified geometry;
+BEGIN
+  IF g IS NULL OR GeometryType(g) IN ('POINT', 'MULTIPOINT') THEN
+    RETURN NULL;
+  END IF;
+  simplified := ST_SimplifyPreserveTopology(g, tolerance);
+  IF simplified IS NULL OR ST_IsEmpty(simplified) OR ST_NPoints(simplified) >= ST_NPoints(g) THEN
+    RETURN NULL;
+  END IF;
+  RETURN simplified;
+END;
+$$ LANGUAGE plpgsql IMMUTABLE;
+
+CREATE OR REPLACE FUNCTION set_geo_feature_lod_geom()
+RETURNS TRIGGER AS $$
+BEGIN
+  IF TG_OP = 'INSERT' OR NEW.geom IS DISTINCT FROM OLD.geom THEN
+    NEW.geom_lod1 = geo_feature_lod_geom(NEW.geom, 0.00001);
+    NEW.geom_lod2 = geo_feature_lod_geom(NEW.geom, 0.00004);
+    NEW.geom_lod3 = geo_feature_lod_geom(NEW.geom, 0.00015);
+  END IF;
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_geo_features_lod_geom ON geo_features;
+CREATE TRIGGER trg_geo_features_lod_geom
+BEFORE INSERT OR UPDATE OF geom ON geo_features
+FOR EACH ROW
+EXECUTE FUNCTION set_geo_feature_lod_geom();
+
+UPDATE geo_features
+SET geom_lod1 = geo_feature_lod_geom(geom, 0.00001),
+    geom_lod2 = geo_feature_lod_geom(geom, 0.00004),
+    geom_lod3 = geo_feature_lod_geom(geom, 0.00015)
+WHERE GeometryType(geom) NOT IN ('POINT', 'MULTIPOINT');
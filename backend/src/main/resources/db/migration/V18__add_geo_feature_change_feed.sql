@@ -0,0 +1,74 @@
+-- V18: change feed over geo_features (GET /api/v1/features/changes)
+-- Deletes leave tombstones carrying the version of the delete, so clients holding an older version can drop them.
+-- Writers draw versions under a shared advisory lock; the feed takes it exclusively for an instant to read a
+-- horizon below which every version is committed (a slow writer can no longer commit "behind" a reader).
+
+CREATE INDEX IF NOT EXISTS idx_geo_features_change_version ON geo_features (change_version);
+
+CREATE TABLE IF NOT EXISTS geo_feature_tombstones (
+    id TEXT PRIMARY KEY,
+    layer TEXT NOT NULL,
+    change_version BIGINT NOT NULL,
+    deleted_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_geo_feature_tombstones_change_version ON geo_feature_tombstones (change_version);
+
+CREATE OR REPLACE FUNCTION next_geo_feature_change_version()
+RETURNS BIGINT AS $$
+BEGIN
+  PERFORM pg_advisory_xact_lock_shared(hashtext('geo_feature_changes'));
+  RETURN nextval('geo_feature_change_seq');
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION set_geo_feature_change_version()
+RETURNS TRIGGER AS $$
+BEGIN
+  NEW.change_version = next_geo_feature_change_version();
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION bump_geo_layer_versions()
+RETURNS TRIGGER AS $$
+BEGIN
+  IF TG_OP = 'INSERT' THEN
+    INSERT INTO geo_layer_versions (layer, version)
+    SELECT layer, next_geo_feature_change_version() FROM (SELECT DISTINCT layer FROM new_rows) l
+    ON CONFLICT (layer) DO UPDATE SET version = EXCLUDED.version, updated_at = now();
+  ELSIF TG_OP = 'UPDATE' THEN
+    INSERT INTO geo_layer_versions (layer, version)
+    SELECT layer, next_geo_feature_change_version()
+    FROM (SELECT layer FROM new_rows UNION SELECT layer FROM old_rows) l
+    ON CONFLICT (layer) DO UPDATE SET version = EXCLUDED.version, updated_at = now();
+  ELSE
+    INSERT INTO geo_layer_versions (layer, version)
+    SELECT layer, next_geo_feature_change_version() FROM (SELECT DISTINCT layer FROM old_rows) l
+    ON CONFLICT (layer) DO UPDATE SET version = EXCLUDED.version, updated_at = now();
+  END IF;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION track_geo_feature_tombstone()
+RETURNS TRIGGER AS $$
+BEGIN
+  IF TG_OP = 'DELETE' THEN
+    INSERT INTO geo_feature_tombstones (id, layer, change_version)
+    VALUES (OLD.id, OLD.layer, next_geo_feature_change_version())
+    ON CONFLICT (id) DO UPDATE
+      SET layer = EXCLUDED.layer, change_version = EXCLUDED.change_version, deleted_at = now();
+    RETURN OLD;
+  END IF;
+  -- Re-created id: the live row (with a newer version) supersedes the tombstone.
+  DELETE FROM geo_feature_tombstones WHERE id = NEW.id;
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_geo_features_tombstone ON geo_features;
+CREATE TRIGGER trg_geo_features_tombstone
+AFTER INSERT OR DELETE ON geo_features
+FOR EACH ROW
+EXECUTE FUNCTION track_geo_feature_tombstone();
@@ -0,0 +1,11 @@
+-- V19: helpers for POST /api/v1/features/bulk
+-- Per-row geometry parsing that yields NULL instead of aborting the whole set-based merge.
+
+CREATE OR REPLACE FUNCTION geo_try_geom_from_geojson(geojson TEXT)
+RETURNS geometry AS $$
+BEGIN
+  RETURN ST_SetSRID(ST_GeomFromGeoJSON(geojson), 4326);
+EXCEPTION WHEN OTHERS THEN
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql IMMUTABLE;
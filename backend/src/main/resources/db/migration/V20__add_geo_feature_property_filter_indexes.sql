@@ -0,0 +1,15 @@
+-- V20: typed range filters on promoted geo_features properties (GET /api/v1/features?filter=)
+-- Equality terms use properties @> ... and ride geo_features_properties_gin; ranges need expression indexes.
+
+-- Numeric view of a free-form JSONB text value; NULL instead of a cast error for '球墨铸铁' or ''.
+CREATE OR REPLACE FUNCTION geo_try_numeric(value TEXT)
+RETURNS NUMERIC AS $$
+  SELECT CASE WHEN value ~ '^\s*-?[0-9]+(\.[0-9]+)?\s*$' THEN trim(value)::numeric END
+$$ LANGUAGE sql IMMUTABLE PARALLEL SAFE;
+
+-- Expressions must stay identical to GeoPropertyFilter.PROMOTED for the planner to use them.
+CREATE INDEX IF NOT EXISTS geo_features_prop_diameter_idx
+  ON geo_features ((geo_try_numeric(COALESCE(properties->>'diameter_mm', properties->>'diameter'))));
+
+CREATE INDEX IF NOT EXISTS geo_features_prop_levels_idx
+  ON geo_features ((geo_try_numeric(properties->>'building:levels')));
@@ -0,0 +1,28 @@
+-- V21: type-ahead search (GET /api/v1/features/search) over names of geo_features, pipe_nodes and buildings
+-- pg_trgm GIN indexes serve both LIKE '%q%' and word similarity, and work for CJK names without a tokenizer.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- concat_ws() is only STABLE, so the searchable text goes through an IMMUTABLE wrapper usable in indexes.
+-- Expressions must stay identical to GeoFeatureSearch for the planner to use them.
+CREATE OR REPLACE FUNCTION geo_search_text(a TEXT, b TEXT, c TEXT, d TEXT)
+RETURNS TEXT AS $$
+  SELECT lower(coalesce(a, '') || ' ' || coalesce(b, '') || ' ' || coalesce(c, '') || ' ' || coalesce(d, ''))
+$$ LANGUAGE sql IMMUTABLE PARALLEL SAFE;
+
+CREATE INDEX IF NOT EXISTS geo_features_search_trgm
+  ON geo_features USING GIN (
+    geo_search_text(properties->>'name', properties->>'buildingName', properties->>'ref', id) gin_trgm_ops
+  );
+
+CREATE INDEX IF NOT EXISTS pipe_nodes_search_trgm
+  ON pipe_nodes USING GIN (geo_search_text(name, properties->>'name', node_type, id) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS buildings_search_trgm
+  ON buildings USING GIN (geo_search_text(building_name, project_name, location, code) gin_trgm_ops);
+
+-- Exact name lookups used when resolving work-order buildings (WorkOrderRepositorySupport.findExistingBuildingSeed).
+CREATE INDEX IF NOT EXISTS buildings_lower_name_idx ON buildings (LOWER(building_name));
+CREATE INDEX IF NOT EXISTS geo_features_building_lower_name_idx
+  ON geo_features (LOWER(COALESCE(properties->>'name', properties->>'buildingName', id)))
+  WHERE layer = 'buildings';
@@ -0,0 +1,9 @@
+-- V22: weakly connected component of the pipe network each node and segment belongs to
+-- Maintained by TwinTopologyGraph (full write after a load, incremental after pipe edits). The id is the
+-- smallest node id in the component; NULL for nodes without any segment (orphans) and segments without nodes.
+
+ALTER TABLE pipe_nodes ADD COLUMN IF NOT EXISTS component_id TEXT;
+ALTER TABLE pipe_segments ADD COLUMN IF NOT EXISTS component_id TEXT;
+
+CREATE INDEX IF NOT EXISTS pipe_nodes_component_idx ON pipe_nodes(component_id);
+CREATE INDEX IF NOT EXISTS pipe_segments_component_idx ON pipe_segments(component_id);
@@ -0,0 +1,14 @@
+-- V23: real point geometry for pipe nodes
+-- Written next to properties.lon/lat by TwinWriteController.upsertPipeNode and the bulk loader. Node bbox
+-- filters, clustering, search extents and endpoint snapping read it through the GIST index instead of
+-- parsing JSONB on every row.
+
+ALTER TABLE pipe_nodes ADD COLUMN IF NOT EXISTS geom geometry(Point, 4326);
+
+UPDATE pipe_nodes
+SET geom = ST_SetSRID(ST_MakePoint((properties->>'lon')::double precision, (properties->>'lat')::double precision), 4326)
+WHERE geom IS NULL
+  AND properties->>'lon' ~ '^-?[0-9]+(\.[0-9]+)?([eE][-+]?[0-9]+)?$'
+  AND properties->>'lat' ~ '^-?[0-9]+(\.[0-9]+)?([eE][-+]?[0-9]+)?$';
+
+CREATE INDEX IF NOT EXISTS pipe_nodes_geom_gist ON pipe_nodes USING GIST (geom);
@@ -0,0 +1,30 @@
+-- V24: change feed horizon without a shared/exclusive lock pair
+-- V18 had writers draw versions under a shared advisory lock that the feed took exclusively, so one poll
+-- queued behind a long import blocked every later write. Instead, a writer now announces a floor for the
+-- versions it is about to draw: on its first draw in a transaction it takes a shared advisory lock keyed by
+-- the sequence position, held until it ends. The feed reads the sequence and then the lowest announced floor
+-- from pg_locks; neither side waits on the other.
+--
+-- The floor is split into the two-int4 key form (objsubid 2 in pg_locks), high half first, which nothing
+-- else in this schema uses. Taken once per transaction (tracked in a transaction-local setting), so a bulk
+-- import holds one lock rather than one per row.
+
+CREATE OR REPLACE FUNCTION next_geo_feature_change_version()
+RETURNS BIGINT AS $$
+DECLARE
+  floor_version BIGINT;
+  low BIGINT;
+BEGIN
+  IF COALESCE(current_setting('unispace.geo_change_floor', true), '') = '' THEN
+    SELECT CASE WHEN is_called THEN last_value + 1 ELSE last_value END
+    INTO floor_version FROM geo_feature_change_seq;
+    low := floor_version & 4294967295;
+    IF low >= 2147483648 THEN
+      low := low - 4294967296;
+    END IF;
+    PERFORM pg_advisory_xact_lock_shared((floor_version >> 32)::INT, low::INT);
+    PERFORM set_config('unispace.geo_change_floor', floor_version::TEXT, true);
+  END IF;
+  RETURN nextval('geo_feature_change_seq');
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,68 @@
+-- V25: version for GET /api/v1/twin/nodes ETags
+-- Node responses are built from pipe_nodes and the status of the pipe_segments meeting there, which are not
+-- geo_features rows. Writes to either table bump the 'twin_nodes' row of geo_layer_versions, a key no
+-- feature layer uses, so GeoLayerVersions can build node ETags the same way it builds layer ones.
+-- Statements that touch no rows (component id writes that find nothing to change) leave it alone.
+
+CREATE OR REPLACE FUNCTION bump_twin_node_version()
+RETURNS TRIGGER AS $$
+BEGIN
+  IF TG_OP = 'DELETE' THEN
+    IF NOT EXISTS (SELECT 1 FROM old_rows) THEN
+      RETURN NULL;
+    END IF;
+  ELSIF NOT EXISTS (SELECT 1 FROM new_rows) THEN
+    RETURN NULL;
+  END IF;
+  INSERT INTO geo_layer_versions (layer, version)
+  VALUES ('twin_nodes', next_geo_feature_change_version())
+  ON CONFLICT (layer) DO UPDATE SET version = EXCLUDED.version, updated_at = now();
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_pipe_nodes_version_ins ON pipe_nodes;
+CREATE TRIGGER trg_pipe_nodes_version_ins
+AFTER INSERT ON pipe_nodes
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION bump_twin_node_version();
+
+DROP TRIGGER IF EXISTS trg_pipe_nodes_version_upd ON pipe_nodes;
+CREATE TRIGGER trg_pipe_nodes_version_upd
+AFTER UPDATE ON pipe_nodes
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION bump_twin_node_version();
+
+DROP TRIGGER IF EXISTS trg_pipe_nodes_version_del ON pipe_nodes;
+CREATE TRIGGER trg_pipe_nodes_version_del
+AFTER DELETE ON pipe_nodes
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION bump_twin_node_version();
+
+DROP TRIGGER IF EXISTS trg_pipe_segments_version_ins ON pipe_segments;
+CREATE TRIGGER trg_pipe_segments_version_ins
+AFTER INSERT ON pipe_segments
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION bump_twin_node_version();
+
+DROP TRIGGER IF EXISTS trg_pipe_segments_version_upd ON pipe_segments;
+CREATE TRIGGER trg_pipe_segments_version_upd
+AFTER UPDATE ON pipe_segments
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION bump_twin_node_version();
+
+DROP TRIGGER IF EXISTS trg_pipe_segments_version_del ON pipe_segments;
+CREATE TRIGGER trg_pipe_segments_version_del
+AFTER DELETE ON pipe_segments
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT
+EXECUTE FUNCTION bump_twin_node_version();
+
+INSERT INTO geo_layer_versions (layer, version)
+VALUES ('twin_nodes', next_geo_feature_change_version())
+ON CONFLICT (layer) DO NOTHING;
@@ -0,0 +1,50 @@
+-- V26: keep pipe_nodes.geom and properties lon/lat in step for every writer
+-- V23 added geom, but only the Java writers filled it in, so seed scripts or hand edits that set one side
+-- left the other stale. geom is the source of truth: a write that sets or changes geom rewrites the
+-- properties copy, and one that only changes the properties copy (or inserts without geom) moves geom.
+
+CREATE OR REPLACE FUNCTION sync_pipe_node_geom()
+RETURNS TRIGGER AS $$
+DECLARE
+  number_pattern CONSTANT TEXT := '^-?[0-9]+(\.[0-9]+)?([eE][-+]?[0-9]+)?$';
+  geom_set BOOLEAN;
+  properties_moved BOOLEAN;
+BEGIN
+  IF TG_OP = 'INSERT' THEN
+    geom_set := NEW.geom IS NOT NULL;
+    properties_moved := true;
+  ELSE
+    geom_set := NEW.geom IS DISTINCT FROM OLD.geom;
+    properties_moved := NEW.properties->'lon' IS DISTINCT FROM OLD.properties->'lon'
+      OR NEW.properties->'lat' IS DISTINCT FROM OLD.properties->'lat';
+  END IF;
+
+  IF geom_set THEN
+    IF NEW.geom IS NOT NULL THEN
+      NEW.properties := COALESCE(NEW.properties, '{}'::jsonb)
+        || jsonb_build_object('lon', ST_X(NEW.geom), 'lat', ST_Y(NEW.geom));
+    END IF;
+  ELSIF properties_moved THEN
+    IF NEW.properties->>'lon' ~ number_pattern AND NEW.properties->>'lat' ~ number_pattern THEN
+      NEW.geom := ST_SetSRID(ST_MakePoint((NEW.properties->>'lon')::double precision,
+                                          (NEW.properties->>'lat')::double precision), 4326);
+    ELSE
+      NEW.geom := NULL;
+    END IF;
+  END IF;
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_pipe_nodes_sync_geom ON pipe_nodes;
+CREATE TRIGGER trg_pipe_nodes_sync_geom
+BEFORE INSERT OR UPDATE ON pipe_nodes
+FOR EACH ROW
+EXECUTE FUNCTION sync_pipe_node_geom();
+
+-- Rows whose two copies already disagree: geom wins where it is set.
+UPDATE pipe_nodes
+SET properties = properties || jsonb_build_object('lon', ST_X(geom), 'lat', ST_Y(geom))
+WHERE geom IS NOT NULL
+  AND (properties->'lon' IS DISTINCT FROM to_jsonb(ST_X(geom))
+       OR properties->'lat' IS DISTINCT FROM to_jsonb(ST_Y(geom)));
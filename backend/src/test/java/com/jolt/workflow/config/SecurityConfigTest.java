@@ -1,6 +1,7 @@
 package com.jolt.workflow.config;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
 import java.net.URI;
 import java.net.http.HttpClient;
@@ -34,7 +35,8 @@ import org.springframework.web.bind.annotation.RestController;
         "spring.datasource.password=",
         "spring.flyway.enabled=false",
         "app.db.init.enabled=false",
-        "spring.jpa.hibernate.ddl-auto=none"
+        "spring.jpa.hibernate.ddl-auto=none",
+        "management.endpoints.web.exposure.include=health,info,metrics"
 })
 class SecurityConfigTest {
 
@@ -79,6 +81,49 @@ class SecurityConfigTest {
         assertEquals("ok", response.body());
     }
 
+    @Test
+    void shouldAllowBatchTraceWithoutAuth() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/v1/twin/trace/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"startIds\":[\"pipe_1\"]}"))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertEquals("ok", response.body());
+    }
+
+    @Test
+    void shouldRejectMetricsWithoutAuth() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri("/actuator/metrics"))
+                .GET()
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(401, response.statusCode());
+    }
+
+    @Test
+    void shouldAllowMetricsWithBasicAuth() throws Exception {
+        String credentials = "admin:secret-pass";
+        String basicToken = Base64.getEncoder()
+                .encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+
+        HttpRequest request = HttpRequest.newBuilder(uri("/actuator/metrics"))
+                .header("Authorization", "Basic " + basicToken)
+                .GET()
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+    }
+
+    @Test
+    void shouldAllowHealthWithoutAuth() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri("/actuator/health"))
+                .GET()
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        assertNotEquals(401, response.statusCode());
+    }
+
     private URI uri(String path) {
         return URI.create("http://127.0.0.1:" + port + path);
     }
@@ -100,5 +145,10 @@ class SecurityConfigTest {
         public String write(@RequestBody(required = false) String body) {
             return "ok";
         }
+
+        @PostMapping("/api/v1/twin/trace/batch")
+        public String traceBatch(@RequestBody(required = false) String body) {
+            return "ok";
+        }
     }
 }
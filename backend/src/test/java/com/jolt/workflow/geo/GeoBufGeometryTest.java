@@ -0,0 +1,85 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.jupiter.api.Test;
+
+class GeoBufGeometryTest {
+
+    @Test
+    void pointIsQuantizedWithoutDelta() {
+        byte[] wkb = wkb(1, 1.5, -2.25);
+
+        byte[] encoded = new GeoBufGeometry(2).encode(wkb).toByteArray();
+
+        assertArrayEquals(bytes(0x08, 0x00, 0x1A, 0x04, 0xAC, 0x02, 0xC1, 0x03), encoded);
+    }
+
+    @Test
+    void lineStringIsDeltaEncoded() {
+        ByteBuffer buf = header(2, 4 + 32);
+        buf.putInt(2).putDouble(1.0).putDouble(2.0).putDouble(1.000003).putDouble(1.999998);
+
+        byte[] encoded = new GeoBufGeometry(6).encode(buf.array()).toByteArray();
+
+        assertArrayEquals(
+                bytes(0x08, 0x02, 0x1A, 0x09, 0x80, 0x89, 0x7A, 0x80, 0x92, 0xF4, 0x01, 0x06, 0x03),
+                encoded
+        );
+    }
+
+    @Test
+    void singleRingPolygonDropsClosingPointAndLengths() {
+        ByteBuffer buf = header(3, 4 + 4 + 4 * 16);
+        buf.putInt(1).putInt(4)
+                .putDouble(0).putDouble(0)
+                .putDouble(1).putDouble(0)
+                .putDouble(1).putDouble(1)
+                .putDouble(0).putDouble(0);
+
+        byte[] encoded = new GeoBufGeometry(0).encode(buf.array()).toByteArray();
+
+        // type POLYGON, coords zigzag(0,0, 1,0, 0,1) = 0,0,2,0,0,2
+        assertArrayEquals(bytes(0x08, 0x04, 0x1A, 0x06, 0x00, 0x00, 0x02, 0x00, 0x00, 0x02), encoded);
+    }
+
+    @Test
+    void multiPolygonWritesPartLengths() {
+        ByteBuffer buf = ByteBuffer.allocate(9 + 2 * (9 + 4 + 4 * 16)).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put((byte) 1).putInt(6).putInt(2);
+        for (int p = 0; p < 2; p++) {
+            buf.put((byte) 1).putInt(3).putInt(1).putInt(4)
+                    .putDouble(p).putDouble(0)
+                    .putDouble(p + 1).putDouble(0)
+                    .putDouble(p + 1).putDouble(1)
+                    .putDouble(p).putDouble(0);
+        }
+
+        byte[] encoded = new GeoBufGeometry(0).encode(buf.array()).toByteArray();
+
+        // type MULTIPOLYGON, lengths [2, 1, 3, 1, 3]
+        assertArrayEquals(bytes(0x08, 0x05, 0x12, 0x05, 0x02, 0x01, 0x03, 0x01, 0x03), java.util.Arrays.copyOf(encoded, 9));
+        assertEquals((byte) 0x1A, encoded[9]);
+    }
+
+    private static byte[] wkb(int type, double x, double y) {
+        ByteBuffer buf = header(type, 16);
+        buf.putDouble(x).putDouble(y);
+        return buf.array();
+    }
+
+    private static ByteBuffer header(int type, int bodyBytes) {
+        ByteBuffer buf = ByteBuffer.allocate(5 + bodyBytes).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put((byte) 1).putInt(type);
+        return buf;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] out = new byte[values.length];
+        for (int i = 0; i < values.length; i++) out[i] = (byte) values[i];
+        return out;
+    }
+}
@@ -0,0 +1,50 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class GeoChangeFilterTest {
+
+    private static final GeoFeatureChangedEvent.Footprint PIPE =
+            new GeoFeatureChangedEvent.Footprint("roads", 119.190, 26.030, 119.191, 26.031);
+    private static final GeoFeatureChangedEvent.Footprint BUILDING =
+            new GeoFeatureChangedEvent.Footprint("buildings", 119.200, 26.040, 119.201, 26.041);
+
+    @Test
+    void emptyFilterMatchesEverything() {
+        GeoChangeFilter filter = GeoChangeFilter.of(null, null);
+
+        assertTrue(filter.matches(PIPE));
+        assertTrue(filter.matches(List.of(BUILDING)));
+    }
+
+    @Test
+    void pipesLayerAlsoMatchesLegacyRoadsRows() {
+        GeoChangeFilter filter = GeoChangeFilter.of("pipes", null);
+
+        assertTrue(filter.matches(PIPE));
+        assertFalse(filter.matches(BUILDING));
+    }
+
+    @Test
+    void bboxMatchesWhenAnyFootprintIntersects() {
+        GeoChangeFilter filter = GeoChangeFilter.of(null, "119.195,26.035,119.205,26.045");
+
+        assertFalse(filter.matches(PIPE));
+        assertTrue(filter.matches(List.of(PIPE, BUILDING)));
+        assertThrows(IllegalArgumentException.class, () -> GeoChangeFilter.of(null, "1,2,3"));
+    }
+
+    @Test
+    void filtersWithTheSameBboxAreEqual() {
+        GeoChangeFilter filter = GeoChangeFilter.of("buildings", "119.195,26.035,119.205,26.045");
+
+        assertEquals(GeoChangeFilter.of("buildings", "119.195, 26.035, 119.205, 26.045"), filter);
+        assertEquals(new GeoBbox(119.195, 26.035, 119.205, 26.045), filter.bbox());
+    }
+}
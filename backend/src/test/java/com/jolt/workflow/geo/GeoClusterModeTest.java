@@ -0,0 +1,44 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class GeoClusterModeTest {
+
+    @Test
+    void parsesModesCaseInsensitivelyAndRejectsUnknown() {
+        assertNull(GeoClusterMode.parse(null));
+        assertNull(GeoClusterMode.parse(" "));
+        assertEquals(GeoClusterMode.GRID, GeoClusterMode.parse("Grid"));
+        assertEquals(GeoClusterMode.GEOHASH, GeoClusterMode.parse("geohash"));
+        assertThrows(IllegalArgumentException.class, () -> GeoClusterMode.parse("hex"));
+    }
+
+    @Test
+    void zoomIsRequiredAndBounded() {
+        assertEquals(15, GeoClusterMode.requireZoom(15));
+        assertThrows(IllegalArgumentException.class, () -> GeoClusterMode.requireZoom(null));
+        assertThrows(IllegalArgumentException.class, () -> GeoClusterMode.requireZoom(GeoLod.MAX_ZOOM + 1));
+    }
+
+    @Test
+    void cellsShrinkAsZoomGrows() {
+        assertEquals(90.0, GeoClusterMode.gridCellDegrees(0), 1e-12);
+        assertEquals(GeoClusterMode.gridCellDegrees(14) / 2, GeoClusterMode.gridCellDegrees(15), 1e-12);
+        assertTrue(GeoClusterMode.geohashPrecision(18) > GeoClusterMode.geohashPrecision(10));
+        assertEquals(1, GeoClusterMode.geohashPrecision(0));
+        assertEquals(9, GeoClusterMode.geohashPrecision(22));
+    }
+
+    @Test
+    void cellParamsMatchPlaceholders() {
+        for (GeoClusterMode mode : GeoClusterMode.values()) {
+            long placeholders = mode.cellSql("lon", "lat").chars().filter(c -> c == '?').count();
+            assertEquals(placeholders, mode.cellParams(12).length);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class GeoFeatureBulkLoaderTest {
+
+    @Test
+    void copyFieldEscapesSeparatorsAndBackslashes() {
+        StringBuilder sb = new StringBuilder();
+
+        GeoFeatureBulkLoader.appendCopyField(sb, "{\"name\":\"A\\tB\",\"note\":\"x\ny\r\"}");
+
+        assertEquals("{\"name\":\"A\\\\tB\",\"note\":\"x\\ny\\r\"}", sb.toString());
+    }
+
+    @Test
+    void plainJsonIsCopiedVerbatim() {
+        StringBuilder sb = new StringBuilder();
+
+        GeoFeatureBulkLoader.appendCopyField(sb, "{\"type\":\"Point\",\"coordinates\":[119.19,26.03]}");
+
+        assertEquals("{\"type\":\"Point\",\"coordinates\":[119.19,26.03]}", sb.toString());
+    }
+}
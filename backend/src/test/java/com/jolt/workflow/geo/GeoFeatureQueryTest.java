@@ -0,0 +1,77 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class GeoFeatureQueryTest {
+
+    @Test
+    void cursorPagesByPrimaryKeyInsteadOfOffset() {
+        GeoFeatureQuery first = GeoFeatureQuery.of(null, "buildings", 2, null, null, true, null, null, null);
+        String cursor = first.nextCursor("way/120", 2);
+
+        GeoFeatureQuery next = GeoFeatureQuery.of(null, "buildings", 2, 7, 500, true, cursor, null, null);
+
+        assertEquals("WHERE 1=1 AND layer IN (?) AND visible = ? AND id > ?", next.whereSql());
+        assertArrayEquals(new Object[] {"buildings", true, "way/120", 2, 0L}, next.pagedParams());
+    }
+
+    @Test
+    void partialPageHasNoNextCursor() {
+        GeoFeatureQuery query = GeoFeatureQuery.of(null, "pipes", 50, null, null, null, null, null, null);
+
+        assertNull(query.nextCursor("way/9", 49));
+        assertNull(query.nextCursor(null, 0));
+    }
+
+    @Test
+    void cursorIssuedForAnotherFilterIsRejected() {
+        String cursor = GeoFeatureQuery.of(null, "pipes", 10, null, null, null, null, null, null).nextCursor("way/1", 10);
+
+        IllegalArgumentException ex = assertThrows(
+                IllegalArgumentException.class,
+                () -> GeoFeatureQuery.of(null, "buildings", 10, null, null, null, cursor, null, null)
+        );
+        assertEquals("cursor_filter_mismatch", ex.getMessage());
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> GeoFeatureQuery.of(null, "pipes", 10, null, null, null, "not-a-cursor", null, null)
+        );
+    }
+
+    @Test
+    void offsetPagingIsKeptWithoutCursor() {
+        GeoFeatureQuery query = GeoFeatureQuery.of("119.1,26.0,119.2,26.1", null, 800, 3, null, null, null, null, null);
+
+        assertArrayEquals(new Object[] {119.1, 26.0, 119.2, 26.1, 800, 1600L}, query.pagedParams());
+    }
+
+    @Test
+    void propertyFilterIsPartOfTheCursorFilter() {
+        GeoFeatureQuery query = GeoFeatureQuery.of(null, "pipes", 10, null, null, null, null, null, "material=PE");
+        String cursor = query.nextCursor("way/1", 10);
+
+        assertEquals("WHERE 1=1 AND layer IN (?,?) AND (properties @> ?::jsonb)", query.whereSql());
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> GeoFeatureQuery.of(null, "pipes", 10, null, null, null, cursor, null, "material=PVC")
+        );
+    }
+
+    @Test
+    void zoomSelectsSimplifiedGeometryAndPrecision() {
+        assertEquals(GeoLod.FULL, GeoFeatureQuery.of(null, null, 10, null, null, null, null, null, null).lod());
+        assertEquals(GeoLod.FULL, GeoLod.forZoom(18));
+        assertEquals(GeoLod.LOD1, GeoLod.forZoom(15));
+        assertEquals(GeoLod.LOD2, GeoLod.forZoom(14));
+        assertEquals(GeoLod.LOD3, GeoLod.forZoom(3));
+        assertEquals("ST_AsGeoJSON(geom)", GeoLod.FULL.geoJsonSql());
+        assertEquals("ST_AsGeoJSON(COALESCE(geom_lod3, geom), 4)", GeoLod.LOD3.geoJsonSql());
+        assertEquals("COALESCE(g.geom_lod2, g.geom)", GeoLod.LOD2.geometrySql("g."));
+        assertThrows(IllegalArgumentException.class, () -> GeoLod.forZoom(23));
+    }
+}
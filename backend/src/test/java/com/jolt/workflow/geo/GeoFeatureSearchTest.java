@@ -0,0 +1,29 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class GeoFeatureSearchTest {
+
+    @Test
+    void queryIsTrimmedLowercasedAndBounded() {
+        assertEquals("图书馆 a", GeoFeatureSearch.normalizeQuery("  图书馆 A "));
+        assertThrows(IllegalArgumentException.class, () -> GeoFeatureSearch.normalizeQuery(" "));
+        assertThrows(IllegalArgumentException.class, () -> GeoFeatureSearch.normalizeQuery("x".repeat(65)));
+    }
+
+    @Test
+    void typesDefaultToEverySource() {
+        assertEquals(GeoFeatureSearch.SOURCES, GeoFeatureSearch.parseSources(null));
+        assertEquals(Set.of("nodes", "buildings"), GeoFeatureSearch.parseSources("Nodes, buildings"));
+        assertThrows(IllegalArgumentException.class, () -> GeoFeatureSearch.parseSources("rooms"));
+    }
+
+    @Test
+    void likeWildcardsInTheQueryAreLiteral() {
+        assertEquals("50\\%\\_a\\\\b", GeoFeatureSearch.escapeLike("50%_a\\b"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.ObjectMapper;
+
+class GeoFeatureSelectorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void idSelectorDeduplicatesIds() {
+        GeoFeatureSelector selector = GeoFeatureSelector.fromNode(
+                objectMapper.readTree("{\"visible\":false,\"ids\":[\"way/1\",\"way/2\",\"way/1\"]}")
+        );
+
+        assertEquals("id IN (?,?)", selector.whereSql());
+        assertEquals(List.of("way/1", "way/2"), selector.params());
+    }
+
+    @Test
+    void layerSelectorExpandsPipesAndAppliesBbox() {
+        GeoFeatureSelector selector = GeoFeatureSelector.fromNode(
+                objectMapper.readTree("{\"layers\":\"pipes\",\"bbox\":[119.1,26.0,119.2,26.1]}")
+        );
+
+        assertEquals("layer IN (?,?) AND geom && ST_MakeEnvelope(?, ?, ?, ?, 4326)", selector.whereSql());
+        assertEquals(List.of("pipes", "roads", 119.1, 26.0, 119.2, 26.1), selector.params());
+    }
+
+    @Test
+    void selectorsWithTheSameBboxAreEqual() {
+        GeoFeatureSelector array = GeoFeatureSelector.fromNode(
+                objectMapper.readTree("{\"layers\":\"buildings\",\"bbox\":[119.1,26.0,119.2,26.1]}")
+        );
+        GeoFeatureSelector text = GeoFeatureSelector.fromNode(
+                objectMapper.readTree("{\"layers\":\"buildings\",\"bbox\":\"119.1,26.0,119.2,26.1\"}")
+        );
+
+        assertEquals(array, text);
+        assertEquals(new GeoBbox(119.1, 26.0, 119.2, 26.1), array.bbox());
+    }
+
+    @Test
+    void emptyOrMixedSelectorsAreRejected() {
+        IllegalArgumentException empty = assertThrows(
+                IllegalArgumentException.class,
+                () -> GeoFeatureSelector.fromNode(objectMapper.readTree("{\"visible\":true}"))
+        );
+        IllegalArgumentException mixed = assertThrows(
+                IllegalArgumentException.class,
+                () -> GeoFeatureSelector.fromNode(objectMapper.readTree("{\"ids\":[\"a\"],\"layers\":\"buildings\"}"))
+        );
+
+        assertEquals("selector_required", empty.getMessage());
+        assertEquals("selector_ambiguous", mixed.getMessage());
+    }
+}
@@ -0,0 +1,73 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class GeoPropertyFilterTest {
+
+    @Test
+    void blankFilterAddsNothing() {
+        GeoPropertyFilter filter = GeoPropertyFilter.parse("  ");
+
+        assertEquals("", filter.whereSql());
+        assertEquals(List.of(), filter.params());
+    }
+
+    @Test
+    void equalityCompilesToContainmentPerAlternative() {
+        GeoPropertyFilter filter = GeoPropertyFilter.parse("material=PE|\"球墨;铸铁\"");
+
+        assertEquals(" AND (properties @> ?::jsonb OR properties @> ?::jsonb)", filter.whereSql());
+        assertEquals(List.of("{\"material\":\"PE\"}", "{\"material\":\"球墨;铸铁\"}"), filter.params());
+    }
+
+    @Test
+    void unquotedNumbersMatchBothJsonNumbersAndStrings() {
+        GeoPropertyFilter filter = GeoPropertyFilter.parse("diameter=200");
+
+        assertEquals(List.of("{\"diameter\":\"200\"}", "{\"diameter\":200}"), filter.params());
+    }
+
+    @Test
+    void rangeTermsUsePromotedExpressions() {
+        GeoPropertyFilter filter = GeoPropertyFilter.parse("material=PE; diameter>=200;building:levels<6");
+
+        assertEquals(" AND (properties @> ?::jsonb)" +
+                        " AND " + GeoPropertyFilter.PROMOTED.get("diameter") + " >= ?" +
+                        " AND " + GeoPropertyFilter.PROMOTED.get("building:levels") + " < ?",
+                filter.whereSql());
+        assertEquals(List.of("{\"material\":\"PE\"}", new BigDecimal("200"), new BigDecimal("6")), filter.params());
+    }
+
+    @Test
+    void rejectsUnsafeOrUnsupportedTerms() {
+        assertThrows(IllegalArgumentException.class, () -> GeoPropertyFilter.parse("name'); drop table x;--=1"));
+        assertThrows(IllegalArgumentException.class, () -> GeoPropertyFilter.parse("material>PE"));
+        assertThrows(IllegalArgumentException.class, () -> GeoPropertyFilter.parse("name>3"));
+        assertThrows(IllegalArgumentException.class, () -> GeoPropertyFilter.parse("material=\"PE"));
+        assertThrows(IllegalArgumentException.class, () -> GeoPropertyFilter.parse("material"));
+    }
+
+    @Test
+    void numbersWithLeadingZerosAreSentAsJsonNumbers() {
+        GeoPropertyFilter filter = GeoPropertyFilter.parse("diameter_mm=007|-01");
+
+        assertEquals(List.of(
+                "{\"diameter_mm\":\"007\"}",
+                "{\"diameter_mm\":7}",
+                "{\"diameter_mm\":\"-01\"}",
+                "{\"diameter_mm\":-1}"
+        ), filter.params());
+    }
+
+    @Test
+    void valuesAreJsonEscaped() {
+        GeoPropertyFilter filter = GeoPropertyFilter.parse("name=\"a\\\"b\nc\"");
+
+        assertEquals(List.of("{\"name\":\"a\\\"b\\nc\"}"), filter.params());
+    }
+}
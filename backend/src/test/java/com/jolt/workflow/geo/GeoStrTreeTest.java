@@ -0,0 +1,81 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class GeoStrTreeTest {
+
+    @Test
+    void distanceIsZeroInsideAPolygonAndMetricOutside() {
+        GeoShape square = GeoShape.fromWkb(polygon(119.190, 26.030, 119.191, 26.031));
+
+        assertEquals(0.0, square.distanceMeters(119.1905, 26.0305));
+        // 0.0001 deg of latitude is about 11 m.
+        assertEquals(11.06, square.distanceMeters(119.1905, 26.0311), 0.01);
+    }
+
+    @Test
+    void lineDistanceUsesTheSegmentNotItsBoundingBox() {
+        GeoShape diagonal = GeoShape.fromWkb(line(119.190, 26.030, 119.200, 26.040));
+
+        // Inside the bbox but far from the diagonal.
+        assertTrue(diagonal.distanceMeters(119.199, 26.031) > 500.0);
+        assertEquals(0.0, GeoShape.fromWkb(line(119.190, 26.040, 119.200, 26.030)).distanceMeters(diagonal), 1e-9);
+    }
+
+    @Test
+    void nearestMatchesBruteForce() {
+        Random random = new Random(7);
+        List<GeoStrTree.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            double lon = 119.18 + random.nextDouble() * 0.04;
+            double lat = 26.02 + random.nextDouble() * 0.03;
+            byte[] wkb = i % 2 == 0
+                    ? line(lon, lat, lon + random.nextDouble() * 0.001, lat + random.nextDouble() * 0.001)
+                    : polygon(lon, lat, lon + 0.0003, lat + 0.0002);
+            entries.add(new GeoStrTree.Entry("f" + i, i % 2 == 0 ? "pipes" : "buildings", null, GeoShape.fromWkb(wkb)));
+        }
+        GeoStrTree tree = GeoStrTree.build(entries);
+        double lon = 119.2;
+        double lat = 26.035;
+
+        List<GeoStrTree.Hit> hits = tree.nearest(GeoStrTree.Probe.point(lon, lat), 10, Double.POSITIVE_INFINITY, e -> true);
+        List<GeoStrTree.Entry> expected = new ArrayList<>(entries);
+        expected.sort(Comparator.comparingDouble(e -> e.shape().distanceMeters(lon, lat)));
+
+        assertEquals(1000, tree.size());
+        assertEquals(10, hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            assertEquals(expected.get(i).id(), hits.get(i).entry().id());
+        }
+        List<GeoStrTree.Hit> within = tree.nearest(GeoStrTree.Probe.point(lon, lat), 1000, 50.0, e -> e.layer().equals("pipes"));
+        for (GeoStrTree.Hit hit : within) {
+            assertTrue(hit.distanceMeters() <= 50.0);
+            assertEquals("pipes", hit.entry().layer());
+        }
+    }
+
+    private static byte[] line(double x0, double y0, double x1, double y1) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + 32).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 1).putInt(2).putInt(2);
+        buffer.putDouble(x0).putDouble(y0).putDouble(x1).putDouble(y1);
+        return buffer.array();
+    }
+
+    private static byte[] polygon(double minX, double minY, double maxX, double maxY) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + 4 + 5 * 16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 1).putInt(3).putInt(1).putInt(5);
+        buffer.putDouble(minX).putDouble(minY).putDouble(maxX).putDouble(minY);
+        buffer.putDouble(maxX).putDouble(maxY).putDouble(minX).putDouble(maxY);
+        buffer.putDouble(minX).putDouble(minY);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,75 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class GeoTileCacheTest {
+
+    // z=16 tiles around the campus bbox used by scripts/perf-baseline.sh.
+    private static final GeoTileCache.TileKey PIPES_TILE =
+            new GeoTileCache.TileKey(List.of("pipes", "roads"), true, 16, 54458, 27854);
+    private static final GeoTileCache.TileKey BUILDINGS_TILE =
+            new GeoTileCache.TileKey(List.of("buildings"), true, 16, 54458, 27854);
+    private static final GeoTileCache.TileKey FAR_PIPES_TILE =
+            new GeoTileCache.TileKey(List.of("pipes", "roads"), true, 16, 54478, 27854);
+
+    @Test
+    void invalidateDropsOnlyTilesOfTheChangedLayerThatIntersectTheFootprint() {
+        GeoTileCache cache = new GeoTileCache(16);
+        cache.put(PIPES_TILE, new byte[] {1}, cache.generation());
+        cache.put(BUILDINGS_TILE, new byte[] {2}, cache.generation());
+        cache.put(FAR_PIPES_TILE, new byte[] {3}, cache.generation());
+
+        double[] b = PIPES_TILE.bufferedBounds();
+        double lon = (b[0] + b[2]) / 2;
+        double lat = (b[1] + b[3]) / 2;
+        cache.invalidate(List.of(new GeoFeatureChangedEvent.Footprint("roads", lon, lat, lon + 0.0001, lat + 0.0001)));
+
+        assertNull(cache.get(PIPES_TILE));
+        assertNotNull(cache.get(BUILDINGS_TILE));
+        assertNotNull(cache.get(FAR_PIPES_TILE));
+    }
+
+    @Test
+    void allLayerTilesAreInvalidatedByAnyLayer() {
+        GeoTileCache cache = new GeoTileCache(16);
+        GeoTileCache.TileKey allLayers = new GeoTileCache.TileKey(List.of(), null, 16, 54458, 27854);
+        cache.put(allLayers, new byte[] {1}, cache.generation());
+
+        double[] b = allLayers.bufferedBounds();
+        assertTrue(new GeoFeatureChangedEvent.Footprint("buildings", b[0], b[1], b[0], b[1]).intersects(b[0], b[1], b[2], b[3]));
+        cache.invalidate(List.of(new GeoFeatureChangedEvent.Footprint("buildings", b[0], b[1], b[0], b[1])));
+
+        assertNull(cache.get(allLayers));
+    }
+
+    @Test
+    void tileRenderedBeforeAnInvalidationIsNotCached() {
+        GeoTileCache cache = new GeoTileCache(16);
+        long generation = cache.generation();
+        cache.invalidate(List.of(new GeoFeatureChangedEvent.Footprint("pipes", 0, 0, 1, 1)));
+
+        cache.put(PIPES_TILE, new byte[] {1}, generation);
+
+        assertNull(cache.get(PIPES_TILE));
+    }
+
+    @Test
+    void cacheEvictsLeastRecentlyUsedTileWhenFull() {
+        GeoTileCache cache = new GeoTileCache(2);
+        cache.put(PIPES_TILE, new byte[] {1}, cache.generation());
+        cache.put(BUILDINGS_TILE, new byte[] {2}, cache.generation());
+        cache.get(PIPES_TILE);
+        cache.put(FAR_PIPES_TILE, new byte[] {3}, cache.generation());
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(PIPES_TILE));
+        assertNull(cache.get(BUILDINGS_TILE));
+        assertNotNull(cache.get(FAR_PIPES_TILE));
+    }
+}
@@ -0,0 +1,75 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PmTilesTest {
+
+    @Test
+    void tileIdsFollowTheHilbertCurvePerZoom() {
+        assertEquals(0, PmTiles.tileId(0, 0, 0));
+        assertEquals(1, PmTiles.tileId(1, 0, 0));
+        assertEquals(2, PmTiles.tileId(1, 0, 1));
+        assertEquals(3, PmTiles.tileId(1, 1, 1));
+        assertEquals(4, PmTiles.tileId(1, 1, 0));
+        assertEquals(5, PmTiles.tileId(2, 0, 0));
+    }
+
+    @Test
+    void directoryRoundTripsRunsAndImplicitOffsets() {
+        List<PmTiles.Entry> entries = List.of(
+                new PmTiles.Entry(5, 0, 10, 1),
+                new PmTiles.Entry(6, 10, 20, 3),
+                new PmTiles.Entry(20, 0, 10, 1)
+        );
+
+        List<PmTiles.Entry> decoded = PmTiles.decodeDirectory(ByteBuffer.wrap(PmTiles.encodeDirectory(entries)));
+
+        assertEquals(entries, decoded);
+        assertEquals(entries.get(1), PmTiles.find(decoded, 8));
+        assertNull(PmTiles.find(decoded, 9));
+        assertNull(PmTiles.find(decoded, 4));
+    }
+
+    @Test
+    void writtenArchiveServesTilesThroughRootAndLeafDirectories() throws Exception {
+        Path dir = Files.createTempDirectory("pmtiles-test");
+        Path file = dir.resolve("test.pmtiles");
+        int z = 7;
+        try (PmTilesWriter writer = new PmTilesWriter(file)) {
+            long count = 0;
+            // Enough distinct tiles to overflow the 16 KiB root and force leaf directories.
+            for (long id = PmTiles.tileId(z, 0, 0); count < 6000; id++, count++) {
+                writer.addTile(id, ("tile-" + id).getBytes(StandardCharsets.UTF_8));
+            }
+            writer.addTile(PmTiles.tileId(z, 0, 0) + 7000, "same".getBytes(StandardCharsets.UTF_8));
+            writer.addTile(PmTiles.tileId(z, 0, 0) + 7001, "same".getBytes(StandardCharsets.UTF_8));
+            writer.finish("{}".getBytes(StandardCharsets.UTF_8), z, z, new double[] {119.1, 26.0, 119.3, 26.1});
+        }
+
+        PmTilesArchive archive = PmTilesArchive.open(file);
+        assertTrue(archive.header().leafLength() > 0);
+        assertEquals(6002, archive.header().addressedTiles());
+        long first = PmTiles.tileId(z, 0, 0);
+        assertArrayEquals(("tile-" + (first + 4321)).getBytes(StandardCharsets.UTF_8), bytes(archive.tile(first + 4321)));
+        assertArrayEquals("same".getBytes(StandardCharsets.UTF_8), bytes(archive.tile(first + 7001)));
+        assertNull(archive.tile(first + 6500));
+        assertNull(archive.tile(3, 0, 0));
+        assertEquals(119.1, archive.header().minLon(), 1e-7);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] out = new byte[buffer.remaining()];
+        buffer.duplicate().get(out);
+        return out;
+    }
+}
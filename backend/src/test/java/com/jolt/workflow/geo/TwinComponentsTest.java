@@ -0,0 +1,85 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class TwinComponentsTest {
+
+    // Island {n1, n2, n3} (a chain, flow ignored) and island {n4, n5}.
+    private final TwinTopology topology = TwinTopology.of(1, List.of(
+            segment("seg_a", "n1", "n2"),
+            segment("seg_b", "n3", "n2"),
+            segment("seg_c", "n4", "n5")
+    ));
+
+    @Test
+    void fullBuildFindsWeakComponents() {
+        assertEquals(topology.componentId(node(topology, "n1")), topology.componentId(node(topology, "n3")));
+        assertNotEquals(topology.componentId(node(topology, "n1")), topology.componentId(node(topology, "n4")));
+        assertEquals(3, topology.components().size(node(topology, "n2")));
+        assertTrue(topology.components().delta().isEmpty());
+    }
+
+    @Test
+    void addedPipeMergesTheSmallerComponentIntoTheLarger() {
+        String big = topology.componentId(node(topology, "n1"));
+        String small = topology.componentId(node(topology, "n4"));
+
+        TwinTopology joined = topology.withFeature(2, "pipe_d", List.of(segment("seg_d", "n3", "n4")));
+
+        assertEquals(big, joined.componentId(node(joined, "n5")));
+        assertEquals(Map.of(small, big), joined.components().delta().merged());
+        assertEquals(big, joined.components().delta().relabeled().get("n4"));
+    }
+
+    @Test
+    void removedPipeSplitsOnlyItsComponent() {
+        String big = topology.componentId(node(topology, "n1"));
+        String other = topology.componentId(node(topology, "n4"));
+
+        TwinTopology split = topology.withFeature(2, "pipe_b", List.of());
+
+        // n3 has no segment left: its own component, written back as no component at all.
+        assertEquals(big, split.componentId(node(split, "n1")));
+        assertEquals("n3", split.componentId(node(split, "n3")));
+        assertNull(split.components().delta().relabeled().get("n3"));
+        assertTrue(split.components().delta().relabeled().containsKey("n3"));
+        assertEquals(other, split.componentId(node(split, "n5")));
+        assertEquals(1, split.components().delta().relabeled().size());
+    }
+
+    @Test
+    void reSavingAPipeWithTheSameEndsChangesNothing() {
+        TwinTopology saved = topology.withFeature(2, "pipe_a", List.of(segment("seg_a", "n2", "n1")));
+
+        assertTrue(saved.components().delta().isEmpty());
+        assertEquals(topology.componentId(node(topology, "n1")), saved.componentId(node(saved, "n3")));
+    }
+
+    @Test
+    void reRoutedPipeMovesNodesBetweenComponents() {
+        // pipe_b now runs n3 -> n5: n3 leaves the first island and joins the second.
+        TwinTopology moved = topology.withFeature(2, "pipe_b", List.of(segment("seg_b", "n3", "n5")));
+
+        assertEquals(moved.componentId(node(moved, "n4")), moved.componentId(node(moved, "n3")));
+        assertNotEquals(moved.componentId(node(moved, "n1")), moved.componentId(node(moved, "n3")));
+        assertEquals(moved.componentId(node(moved, "n4")), moved.components().delta().relabeled().get("n3"));
+        // Components survive compaction even though node indices are reassigned.
+        TwinTopology compacted = moved.compact();
+        assertEquals(compacted.componentId(node(compacted, "n4")), compacted.componentId(node(compacted, "n3")));
+    }
+
+    private static int node(TwinTopology topology, String nodeId) {
+        return topology.nodeIndex(nodeId);
+    }
+
+    private static TwinTopology.Segment segment(String id, String from, String to) {
+        return new TwinTopology.Segment(id, "pipe_" + id.substring(4), from, to);
+    }
+}
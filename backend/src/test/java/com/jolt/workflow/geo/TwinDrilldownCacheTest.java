@@ -0,0 +1,75 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class TwinDrilldownCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final TwinDrilldownCache cache = new TwinDrilldownCache(null, registry, 16, 60_000);
+
+    @Test
+    void hitsAreServedAsTheCachedBytesAndCounted() {
+        assertNull(cache.get("pipe_a"));
+        cache.put("pipe_a", new byte[] {1, 2}, Set.of("pipe_a", "seg_a"), cache.generation());
+
+        assertArrayEquals(new byte[] {1, 2}, cache.get("pipe_a"));
+        assertEquals(0.5, cache.hitRatio(), 1e-9);
+        assertEquals(1.0, registry.get("twin.drilldown.cache.requests").tag("result", "hit").functionCounter().count(), 1e-9);
+    }
+
+    @Test
+    void invalidateDropsOnlyEntriesTaggedWithTheChangedIds() {
+        cache.put("pipe_a", new byte[] {1}, Set.of("pipe_a", "n1", "building_1"), cache.generation());
+        cache.put("pipe_b", new byte[] {2}, Set.of("pipe_b", "n2"), cache.generation());
+        cache.put("building_1", new byte[] {3}, Set.of("building_1", "pipe_a"), cache.generation());
+
+        cache.invalidate(List.of("n1"));
+
+        assertNull(cache.get("pipe_a"));
+        assertNotNull(cache.get("pipe_b"));
+        assertNotNull(cache.get("building_1"));
+        cache.invalidate(List.of("pipe_a"));
+        assertNull(cache.get("building_1"));
+    }
+
+    @Test
+    void responseBuiltBeforeAWriteIsNotCached() {
+        long generation = cache.generation();
+        cache.invalidate(List.of("pipe_a"));
+        cache.put("pipe_a", new byte[] {1}, Set.of("pipe_a"), generation);
+
+        assertNull(cache.get("pipe_a"));
+    }
+
+    @Test
+    void buildingEditsDropResponsesThatFellBackToTheNearestBuildings() {
+        cache.put("pipe_a", new byte[] {1}, Set.of("pipe_a", TwinDrilldownCache.NEAREST_BUILDINGS_TAG), cache.generation());
+        cache.put("pipe_b", new byte[] {2}, Set.of("pipe_b"), cache.generation());
+
+        cache.onFeatureChanged(new GeoFeatureChangedEvent("building_9", "create",
+                List.of(new GeoFeatureChangedEvent.Footprint("buildings", 0, 0, 0, 0))));
+
+        assertNull(cache.get("pipe_a"));
+        assertNotNull(cache.get("pipe_b"));
+    }
+
+    @Test
+    void evictedEntriesLeaveTheTagIndex() {
+        TwinDrilldownCache small = new TwinDrilldownCache(null, new SimpleMeterRegistry(), 1, 60_000);
+        small.put("pipe_a", new byte[] {1}, Set.of("n1"), small.generation());
+        small.put("pipe_b", new byte[] {2}, Set.of("n2"), small.generation());
+
+        assertEquals(1, small.size());
+        assertNull(small.get("pipe_a"));
+        small.invalidate(List.of("n1"));
+        assertNotNull(small.get("pipe_b"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+class TwinDrilldownConcurrencyTest {
+
+    private static final int POOL_SIZE = 10;
+    private static final int POOL_RESERVE = 2;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+
+    @Test
+    void parallelDrilldownsCompleteWithoutPartialResults() throws Exception {
+        // Every query takes 20 ms and holds its "connection" for that long.
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class, invocation -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                return RETURNS_DEFAULTS.answer(invocation);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        TwinTopologyGraph topologyGraph = mock(TwinTopologyGraph.class);
+        when(topologyGraph.snapshot()).thenReturn(TwinTopology.of(1, List.of()));
+        TwinController controller = new TwinController(
+                jdbcTemplate,
+                objectMapper,
+                mock(GeoClusterService.class),
+                topologyGraph,
+                new TwinBuildingLinks(jdbcTemplate, objectMapper, mock(GeoNearestService.class)),
+                new TwinDrilldownCache(null, new SimpleMeterRegistry(), 64, 60_000),
+                mock(GeoLayerVersions.class),
+                5000,
+                4,
+                POOL_SIZE,
+                POOL_RESERVE
+        );
+
+        int requests = 12;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ResponseEntity<byte[]>>> responses = new ArrayList<>();
+        ExecutorService clients = Executors.newFixedThreadPool(requests);
+        try {
+            for (int i = 0; i < requests; i++) {
+                String featureId = "pipe_" + i;
+                responses.add(clients.submit(() -> {
+                    start.await();
+                    return controller.drilldown(featureId);
+                }));
+            }
+            start.countDown();
+            for (Future<ResponseEntity<byte[]>> response : responses) {
+                JsonNode body = objectMapper.readTree(response.get().getBody());
+                assertFalse(body.path("partial").asBoolean(true), body.toString());
+                assertEquals("MISS", response.get().getHeaders().getFirst("X-Drilldown-Cache"));
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        assertTrue(peak.get() <= POOL_SIZE - POOL_RESERVE, "peak in-flight queries " + peak.get());
+    }
+}
@@ -0,0 +1,40 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class TwinIsolationServiceTest {
+
+    @Test
+    void editInsideOneLargeZoneDropsItInLinearTime() {
+        // A 100k-segment chain with no valves at all is a single zone.
+        int count = 100_000;
+        List<TwinTopology.Segment> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new TwinTopology.Segment("seg_" + i, "pipe_" + i, "n_" + i, "n_" + (i + 1)));
+        }
+        TwinTopologyGraph topologyGraph = mock(TwinTopologyGraph.class);
+        when(topologyGraph.snapshot()).thenReturn(TwinTopology.of(1, rows));
+        when(topologyGraph.version()).thenReturn(1L);
+        TwinIsolationService service = new TwinIsolationService(mock(JdbcTemplate.class), topologyGraph);
+
+        TwinIsolation.Zone zone = service.zone("seg_0");
+        assertEquals(count, zone.segmentIds().size());
+        assertSame(zone, service.zone("seg_" + (count - 1)));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> service.onTopologyRefreshed(
+                new TwinTopologyRefreshedEvent(2, "pipe_500", Set.of("seg_500"), Set.of("n_500", "n_501"))));
+        assertNotSame(zone, service.zone("seg_" + (count - 1)));
+    }
+}
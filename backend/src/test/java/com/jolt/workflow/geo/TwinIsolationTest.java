@@ -0,0 +1,84 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class TwinIsolationTest {
+
+    // n1 -> n2 -> n3 -> n4 along seg_a, seg_b, seg_c, with seg_d branching off n2 to the dead end n5.
+    private final TwinTopology topology = TwinTopology.of(1, List.of(
+            new TwinTopology.Segment("seg_a", "pipe_a", "n1", "n2"),
+            new TwinTopology.Segment("seg_b", "pipe_b", "n2", "n3"),
+            new TwinTopology.Segment("seg_c", "pipe_c", "n3", "n4"),
+            new TwinTopology.Segment("seg_d", "pipe_d", "n2", "n5")
+    ));
+
+    @Test
+    void segmentEndValveBoundsTheZoneAndDeadEndValvesAreNotNeeded() {
+        TwinIsolation.Zone zone = zone("seg_a",
+                new TwinIsolation.Valve("v_b", "n2", "seg_b", "open"),
+                new TwinIsolation.Valve("v_d", "n5", "seg_d", "open"));
+
+        assertEquals(Set.of("seg_a", "seg_d"), zone.segmentIds());
+        assertEquals(List.of("v_b"), valveIds(zone.close()));
+        assertTrue(zone.nodeIds().contains("n5"));
+
+        TwinIsolation.Downstream downstream = TwinIsolation.downstream(topology, zone, 100);
+        assertEquals(List.of("seg_b", "seg_c"), segmentIds(downstream.segments()));
+        assertFalse(downstream.truncated());
+        assertEquals(1, TwinIsolation.downstream(topology, zone, 1).segments().length);
+        assertTrue(TwinIsolation.downstream(topology, zone, 1).truncated());
+    }
+
+    @Test
+    void faultyValvesAreBypassedAndClosedOnesReported() {
+        TwinIsolation.Zone zone = zone("seg_a",
+                new TwinIsolation.Valve("v_b", "n2", "seg_b", "stuck"),
+                new TwinIsolation.Valve("v_c", "n3", "seg_c", "closed"));
+
+        assertEquals(Set.of("seg_a", "seg_b", "seg_d"), zone.segmentIds());
+        assertTrue(zone.close().isEmpty());
+        assertEquals(List.of("v_c"), valveIds(zone.alreadyClosed()));
+    }
+
+    @Test
+    void midSegmentValveMakesABorderSegment() {
+        TwinIsolation.Zone zone = zone("seg_d", new TwinIsolation.Valve("v_mid", null, "seg_b", "open"));
+
+        assertEquals(Set.of("seg_a", "seg_d"), zone.segmentIds());
+        assertEquals(Set.of("seg_b"), zone.borderSegmentIds());
+        assertEquals(List.of("v_mid"), valveIds(zone.close()));
+        assertTrue(zone.touches(List.of("seg_b")));
+        assertFalse(zone.touches(List.of("seg_c")));
+    }
+
+    @Test
+    void nodeValveSeparatesEverySegmentMeetingThere() {
+        TwinIsolation.Zone zone = zone("seg_b", new TwinIsolation.Valve("v_n2", "n2", null, "open"));
+
+        assertEquals(Set.of("seg_b", "seg_c"), zone.segmentIds());
+        assertEquals(List.of("v_n2"), valveIds(zone.close()));
+    }
+
+    private TwinIsolation.Zone zone(String start, TwinIsolation.Valve... valves) {
+        return TwinIsolation.zone(topology, new TwinIsolation.Valves(List.of(valves)), topology.segmentIndex(start));
+    }
+
+    private List<String> segmentIds(int[] segments) {
+        List<String> ids = new ArrayList<>();
+        for (int segment : segments) ids.add(topology.segmentId(segment));
+        return ids;
+    }
+
+    private static List<String> valveIds(List<TwinIsolation.Valve> valves) {
+        List<String> ids = new ArrayList<>();
+        for (TwinIsolation.Valve valve : valves) ids.add(valve.id());
+        return ids;
+    }
+}
@@ -0,0 +1,55 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TwinPathTest {
+
+    // Two routes from n0 to n3: a long direct pipe, and three short ones through n1 and n2 (one of them
+    // flowing against the route). n4 hangs off nothing.
+    private final TwinTopology topology = TwinTopology.of(1, List.of(
+            new TwinTopology.Segment("seg_direct", "pipe_direct", "n0", "n3", 500),
+            new TwinTopology.Segment("seg_a", "pipe_a", "n0", "n1", 100),
+            new TwinTopology.Segment("seg_b", "pipe_b", "n2", "n1", 100),
+            new TwinTopology.Segment("seg_c", "pipe_c", "n2", "n3", 100),
+            new TwinTopology.Segment("seg_orphan", null, "n4", "n5")
+    ));
+
+    @Test
+    void lengthWeightPrefersTheShorterRouteEvenAgainstFlow() {
+        TwinPath.Route route = shortest("n0", "n3", true);
+
+        assertEquals(List.of("seg_a", "seg_b", "seg_c"), ids(route));
+        assertEquals(300, route.lengthMeters(), 1e-9);
+        assertEquals("n0", topology.nodeId(route.startNode()));
+        assertEquals("n3", topology.nodeId(route.endNode()));
+    }
+
+    @Test
+    void hopWeightPrefersFewerSegments() {
+        TwinPath.Route route = shortest("n3", "n0", false);
+
+        assertEquals(List.of("seg_direct"), ids(route));
+        assertEquals(1, route.cost(), 1e-9);
+    }
+
+    @Test
+    void unreachableTargetsGiveNoRoute() {
+        assertNull(shortest("n0", "n5", true));
+        assertEquals(1, shortest("n4", "n5", true).unmeasured());
+    }
+
+    private TwinPath.Route shortest(String from, String to, boolean byLength) {
+        return TwinPath.shortest(topology, new int[] {topology.nodeIndex(from)}, new int[] {topology.nodeIndex(to)}, byLength);
+    }
+
+    private List<String> ids(TwinPath.Route route) {
+        List<String> ids = new ArrayList<>();
+        for (int segment : route.segments()) ids.add(topology.segmentId(segment));
+        return ids;
+    }
+}
@@ -0,0 +1,44 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TwinTopologyGraphTest {
+
+    @Test
+    void segmentWithoutGeometryHasNoLength() throws SQLException {
+        TwinTopology.Segment segment = TwinTopologyGraph.toSegment(row("seg_a", "n1", "n2", null));
+
+        assertTrue(Double.isNaN(segment.lengthMeters()));
+        // Routed over, it counts as unmeasured rather than as a free pipe.
+        TwinTopology topology = TwinTopology.of(1, List.of(segment));
+        TwinPath.Route route = TwinPath.shortest(topology,
+                new int[] {topology.nodeIndex("n1")}, new int[] {topology.nodeIndex("n2")}, true);
+        assertEquals(1, route.unmeasured());
+        assertEquals(0, route.lengthMeters(), 1e-9);
+    }
+
+    @Test
+    void segmentWithoutToNodeKeepsItsLength() throws SQLException {
+        TwinTopology.Segment segment = TwinTopologyGraph.toSegment(row("seg_b", "n1", null, 42.5));
+
+        assertEquals(42.5, segment.lengthMeters(), 1e-9);
+    }
+
+    private static ResultSet row(String id, String from, String to, Double lengthMeters) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("id")).thenReturn(id);
+        when(rs.getString("feature_id")).thenReturn("pipe_" + id.substring(4));
+        when(rs.getString("from_node_id")).thenReturn(from);
+        when(rs.getString("to_node_id")).thenReturn(to);
+        when(rs.getObject("length_m", Double.class)).thenReturn(lengthMeters);
+        return rs;
+    }
+}
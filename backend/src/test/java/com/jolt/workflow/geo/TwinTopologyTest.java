@@ -0,0 +1,106 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TwinTopologyTest {
+
+    @Test
+    void resolvesSegmentsBySegmentIdOrFeatureId() {
+        TwinTopology topology = TwinTopology.of(1, List.of(
+                segment("seg_a", "pipe_a", "n1", "n2"),
+                segment("seg_b", "pipe_b", "n2", "n3")
+        ));
+
+        assertEquals("seg_a", topology.resolve("seg_a").id());
+        assertEquals("seg_b", topology.resolve("pipe_b").id());
+        assertNull(topology.resolve("pipe_missing"));
+        assertEquals(List.of("seg_b"), ids(topology.downstreamOf("n2")));
+        assertEquals(List.of("seg_a"), ids(topology.upstreamOf("n2")));
+    }
+
+    @Test
+    void featureEditReplacesItsSegmentWithoutTouchingTheBase() {
+        TwinTopology base = TwinTopology.of(1, List.of(
+                segment("seg_a", "pipe_a", "n1", "n2"),
+                segment("seg_b", "pipe_b", "n2", "n3")
+        ));
+
+        // pipe_b re-drawn to start at n1 instead of n2.
+        TwinTopology edited = base.withFeature(2, "pipe_b", List.of(segment("seg_b", "pipe_b", "n1", "n4")));
+
+        assertEquals(2, edited.version());
+        assertEquals(List.of(), ids(edited.downstreamOf("n2")));
+        assertEquals(List.of("seg_a", "seg_b"), ids(edited.downstreamOf("n1")));
+        assertEquals(2, edited.segmentCount());
+        // The older snapshot is unchanged for readers still holding it.
+        assertEquals(List.of("seg_b"), ids(base.downstreamOf("n2")));
+
+        TwinTopology removed = edited.withFeature(3, "pipe_a", List.of());
+        assertNull(removed.resolve("pipe_a"));
+        assertEquals(1, removed.segmentCount());
+        assertEquals(List.of("seg_b"), ids(removed.downstreamOf("n1")));
+    }
+
+    @Test
+    void compactionKeepsTheSameGraph() {
+        TwinTopology topology = TwinTopology.of(1, List.of(segment("seg_a", "pipe_a", "n1", "n2")))
+                .withFeature(2, "pipe_b", List.of(segment("seg_b", "pipe_b", "n2", "n3")))
+                .withFeature(3, "pipe_a", List.of());
+
+        TwinTopology compacted = topology.compact();
+
+        assertEquals(0, compacted.overlaySize());
+        assertEquals(3, compacted.version());
+        assertEquals(1, compacted.segmentCount());
+        assertEquals(List.of("seg_b"), ids(compacted.downstreamOf("n2")));
+        assertNull(compacted.resolve("seg_a"));
+    }
+
+    @Test
+    void traceFollowsFlowThroughBaseAndOverlaySegments() throws IOException {
+        // n1 -> n2 -> n3 -> n4, with a branch n2 -> n5 and a loop n4 -> n2.
+        TwinTopology topology = TwinTopology.of(1, List.of(
+                segment("seg_1", "pipe_1", "n1", "n2"),
+                segment("seg_2", "pipe_2", "n2", "n3"),
+                segment("seg_3", "pipe_3", "n3", "n4"),
+                segment("seg_4", "pipe_4", "n2", "n5"),
+                segment("seg_5", "pipe_5", "n4", "n2")
+        ));
+
+        assertEquals(List.of("seg_1", "seg_2", "seg_4", "seg_3", "seg_5"),
+                ids(topology, trace(topology, "pipe_1", false)));
+        assertEquals(List.of("seg_3", "seg_2", "seg_1", "seg_5"),
+                ids(topology, trace(topology, "seg_3", true)));
+
+        // Cut the n2 -> n3 pipe and add n5 -> n6 through the overlay, which also introduces node n6.
+        TwinTopology edited = topology
+                .withFeature(2, "pipe_2", List.of())
+                .withFeature(3, "pipe_6", List.of(segment("seg_6", "pipe_6", "n5", "n6")));
+
+        assertEquals(List.of("seg_1", "seg_4", "seg_6"),
+                ids(edited, trace(edited, "seg_1", false)));
+        assertEquals("n6", edited.nodeId(edited.toNode(edited.resolveIndex("pipe_6"))));
+    }
+
+    private static int[] trace(TwinTopology topology, String startId, boolean up) throws IOException {
+        return TwinTrace.collect(topology, topology.resolveIndex(startId), up,
+                TwinTrace.UNLIMITED, TwinTrace.UNLIMITED, TwinTrace.Stops.NONE).segments();
+    }
+
+    private static List<String> ids(TwinTopology topology, int[] segments) {
+        return java.util.Arrays.stream(segments).mapToObj(topology::segmentId).toList();
+    }
+
+    private static TwinTopology.Segment segment(String id, String featureId, String from, String to) {
+        return new TwinTopology.Segment(id, featureId, from, to);
+    }
+
+    private static List<String> ids(List<TwinTopology.Segment> segments) {
+        return segments.stream().map(TwinTopology.Segment::id).sorted().toList();
+    }
+}
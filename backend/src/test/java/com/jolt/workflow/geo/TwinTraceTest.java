@@ -0,0 +1,118 @@
+package com.jolt.workflow.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class TwinTraceTest {
+
+    // n0 -> n1 -> n2 -> n3 -> n4 trunk with a branch n1 -> n5 -> n6.
+    private final TwinTopology topology = TwinTopology.of(1, List.of(
+            segment("seg_a", "n0", "n1"),
+            segment("seg_b", "n1", "n2"),
+            segment("seg_c", "n2", "n3"),
+            segment("seg_d", "n3", "n4"),
+            segment("seg_e", "n1", "n5"),
+            segment("seg_f", "n5", "n6")
+    ));
+
+    @Test
+    void reportsOneLevelPerHop() throws Exception {
+        List<String> levels = new ArrayList<>();
+        TwinTrace.Result result = run("seg_a", TwinTrace.UNLIMITED, TwinTrace.UNLIMITED, TwinTrace.Stops.NONE, levels);
+
+        assertEquals(List.of("0:seg_a", "1:seg_b,seg_e", "2:seg_c,seg_f", "3:seg_d"), levels);
+        assertEquals(6, result.segments());
+        assertEquals(3, result.depth());
+        assertFalse(result.truncated());
+    }
+
+    @Test
+    void maxDepthAndMaxSegmentsCutTheTrace() throws Exception {
+        List<String> levels = new ArrayList<>();
+        TwinTrace.Result byDepth = run("seg_a", 1, TwinTrace.UNLIMITED, TwinTrace.Stops.NONE, levels);
+        assertEquals(List.of("0:seg_a", "1:seg_b,seg_e"), levels);
+        assertTrue(byDepth.truncated());
+
+        levels.clear();
+        TwinTrace.Result bySize = run("seg_a", TwinTrace.UNLIMITED, 4, TwinTrace.Stops.NONE, levels);
+        assertEquals(List.of("0:seg_a", "1:seg_b,seg_e", "2:seg_c"), levels);
+        assertEquals(4, bySize.segments());
+        assertTrue(bySize.truncated());
+
+        // Exactly enough room is not a truncation.
+        assertFalse(run("seg_a", TwinTrace.UNLIMITED, 6, TwinTrace.Stops.NONE, new ArrayList<>()).truncated());
+    }
+
+    @Test
+    void stoppedSegmentsAreReportedButNotCrossed() throws Exception {
+        // Pretend a valve sits on node n2.
+        TwinTrace.Stops valveAtN2 = (graph, level, up) -> {
+            BitSet stopped = new BitSet();
+            for (int i = 0; i < level.length; i++) {
+                if ("n2".equals(graph.nodeId(graph.toNode(level[i])))) stopped.set(i);
+            }
+            return stopped;
+        };
+        List<String> levels = new ArrayList<>();
+        run("seg_a", TwinTrace.UNLIMITED, TwinTrace.UNLIMITED, valveAtN2, levels);
+
+        assertEquals(List.of("0:seg_a", "1:seg_b*,seg_e", "2:seg_f"), levels);
+    }
+
+    @Test
+    void collectGathersEveryLevelAndTheStoppedSegments() throws Exception {
+        TwinTrace.Stops stopAtSegB = (graph, level, up) -> {
+            BitSet stopped = new BitSet();
+            for (int i = 0; i < level.length; i++) {
+                if ("seg_b".equals(graph.segmentId(level[i]))) stopped.set(i);
+            }
+            return stopped;
+        };
+        TwinTrace.Collected collected = TwinTrace.collect(
+                topology, topology.resolveIndex("seg_a"), false, TwinTrace.UNLIMITED, TwinTrace.UNLIMITED, stopAtSegB);
+
+        assertEquals(List.of("seg_a", "seg_b", "seg_e", "seg_f"), ids(collected.segments()));
+        assertEquals(List.of("seg_b"), ids(collected.stopped()));
+        assertEquals(2, collected.result().depth());
+
+        TwinTrace.Collected missing = TwinTrace.collect(
+                topology, topology.resolveIndex("nope"), false, TwinTrace.UNLIMITED, TwinTrace.UNLIMITED, TwinTrace.Stops.NONE);
+        assertEquals(0, missing.segments().length);
+        assertEquals(0, missing.result().segments());
+    }
+
+    @Test
+    void stopKindsAreNormalisedAndValidated() {
+        assertEquals(Set.of("valve", "pump_station", "outfall"), TwinTraceStops.kinds(" Valves, pump_stations ,outfall,"));
+        assertTrue(TwinTraceStops.kinds(null).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> TwinTraceStops.kinds("valve;drop table"));
+    }
+
+    private TwinTrace.Result run(String start, int maxDepth, int maxSegments, TwinTrace.Stops stops, List<String> levels) throws Exception {
+        return TwinTrace.run(topology, topology.resolveIndex(start), false, maxDepth, maxSegments, stops, (depth, segments, stopped) -> {
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < segments.length; i++) {
+                ids.add(topology.segmentId(segments[i]) + (stopped.get(i) ? "*" : ""));
+            }
+            levels.add(depth + ":" + String.join(",", ids));
+        });
+    }
+
+    private List<String> ids(int[] segments) {
+        List<String> ids = new ArrayList<>();
+        for (int segment : segments) ids.add(topology.segmentId(segment));
+        return ids;
+    }
+
+    private static TwinTopology.Segment segment(String id, String from, String to) {
+        return new TwinTopology.Segment(id, "pipe_" + id.substring(4), from, to);
+    }
+}
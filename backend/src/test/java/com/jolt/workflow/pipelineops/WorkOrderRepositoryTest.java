@@ -17,6 +17,9 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.jolt.workflow.geo.GeoNearestService;
+import com.jolt.workflow.geo.TwinTopology;
+import com.jolt.workflow.geo.TwinTopologyGraph;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +34,9 @@ import tools.jackson.databind.node.ObjectNode;
 class WorkOrderRepositoryTest {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GeoNearestService nearestService = mock(GeoNearestService.class);
+    private final TwinTopologyGraph topologyGraph = mock(TwinTopologyGraph.class);
+    private final TwinTopology topology = mock(TwinTopology.class);
 
     @Test
     void listWorkordersTreatsDateOnlyCreatedToAsInclusiveEndOfDay() {
@@ -38,7 +44,7 @@ class WorkOrderRepositoryTest {
         when(jdbcTemplate.queryForObject(anyString(), any(Object[].class), eq(Integer.class))).thenReturn(0);
         when(jdbcTemplate.queryForList(anyString(), any(Object[].class))).thenReturn(List.of());
 
-        WorkOrderRepository repository = new WorkOrderRepository(jdbcTemplate, objectMapper);
+        WorkOrderRepository repository = newRepository(jdbcTemplate);
 
         repository.listWorkorders(new WorkOrderRepository.PipelineOrderListQuery(
                 null,
@@ -72,7 +78,7 @@ class WorkOrderRepositoryTest {
     @Test
     void convertToMaintenanceCarriesOverAdjustedImpactScope() {
         JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
-        WorkOrderRepository repository = org.mockito.Mockito.spy(new WorkOrderRepository(jdbcTemplate, objectMapper));
+        WorkOrderRepository repository = org.mockito.Mockito.spy(newRepository(jdbcTemplate));
 
         ObjectNode sourceOrder = inspectionOrderWithManualImpactScope();
         doReturn(sourceOrder).when(repository).getWorkorder("WO-INS-1");
@@ -100,7 +106,7 @@ class WorkOrderRepositoryTest {
     @Test
     void convertToMaintenanceRejectsInspectionWithoutAbnormalRecord() {
         JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
-        WorkOrderRepository repository = org.mockito.Mockito.spy(new WorkOrderRepository(jdbcTemplate, objectMapper));
+        WorkOrderRepository repository = org.mockito.Mockito.spy(newRepository(jdbcTemplate));
 
         ObjectNode sourceOrder = inspectionOrderWithManualImpactScope();
         ((ArrayNode) sourceOrder.path("inspection").path("records")).removeAll();
@@ -124,7 +130,7 @@ class WorkOrderRepositoryTest {
     @Test
     void pumpControlLooksUpPriorStatusAcrossWorkOrders() {
         JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
-        WorkOrderRepository repository = org.mockito.Mockito.spy(new WorkOrderRepository(jdbcTemplate, objectMapper));
+        WorkOrderRepository repository = org.mockito.Mockito.spy(newRepository(jdbcTemplate));
 
         ObjectNode currentOrder = maintenanceOrderWithBuilding("WO-MAI-2", "BLD-001", "博学楼");
         doReturn(currentOrder).when(repository).getWorkorder("WO-MAI-2");
@@ -164,7 +170,7 @@ class WorkOrderRepositoryTest {
     @Test
     void reopenClearsCompletionMetadata() {
         JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
-        WorkOrderRepository repository = org.mockito.Mockito.spy(new WorkOrderRepository(jdbcTemplate, objectMapper));
+        WorkOrderRepository repository = org.mockito.Mockito.spy(newRepository(jdbcTemplate));
 
         ObjectNode currentOrder = objectMapper.createObjectNode();
         currentOrder.put("id", "WO-MAI-3");
@@ -207,7 +213,7 @@ class WorkOrderRepositoryTest {
 
     @Test
     void nextWorkorderIdAddsRandomSuffixToAvoidMillisecondCollisions() throws Exception {
-        WorkOrderRepository repository = new WorkOrderRepository(mock(JdbcTemplate.class), objectMapper);
+        WorkOrderRepository repository = newRepository(mock(JdbcTemplate.class));
         Method method = WorkOrderRepository.class.getDeclaredMethod("nextWorkorderId", String.class);
         method.setAccessible(true);
 
@@ -225,7 +231,7 @@ class WorkOrderRepositoryTest {
     void normalizeWorkOrderInputRejectsUnknownNodeIds() {
         JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
         when(jdbcTemplate.queryForList(anyString(), any(Object[].class))).thenReturn(List.of());
-        WorkOrderRepository repository = new WorkOrderRepository(jdbcTemplate, objectMapper);
+        WorkOrderRepository repository = newRepository(jdbcTemplate);
 
         ObjectNode body = objectMapper.createObjectNode();
         body.put("title", "节点校验");
@@ -245,7 +251,7 @@ class WorkOrderRepositoryTest {
     void normalizeWorkOrderInputRejectsUnknownBuildingId() {
         JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
         when(jdbcTemplate.queryForList(anyString(), any(Object[].class))).thenReturn(List.of());
-        WorkOrderRepository repository = new WorkOrderRepository(jdbcTemplate, objectMapper);
+        WorkOrderRepository repository = newRepository(jdbcTemplate);
 
         ObjectNode body = objectMapper.createObjectNode();
         body.put("title", "楼宇校验");
@@ -274,12 +280,6 @@ class WorkOrderRepositoryTest {
                         "to_node_id", "NODE-B"
                 ));
             }
-            if (sql.contains("FROM pipe_segments WHERE")) {
-                return List.of(Map.of(
-                        "id", "SEG-001",
-                        "feature_id", "pipe-feature-1"
-                ));
-            }
             if (sql.contains("FROM buildings WHERE code = ?")) {
                 return List.of(Map.of(
                         "building_id", "BLD-001",
@@ -301,7 +301,9 @@ class WorkOrderRepositoryTest {
             }
             return List.of();
         });
-        WorkOrderRepository repository = new WorkOrderRepository(jdbcTemplate, objectMapper);
+        when(topology.segmentForFeature("pipe-feature-1"))
+                .thenReturn(new TwinTopology.Segment("SEG-001", "pipe-feature-1", "NODE-A", "NODE-B"));
+        WorkOrderRepository repository = newRepository(jdbcTemplate);
 
         ObjectNode body = objectMapper.createObjectNode();
         body.put("title", "管段归一化");
@@ -319,6 +321,11 @@ class WorkOrderRepositoryTest {
         assertTrue(normalized.path("topologyChain").toString().contains("pipe-feature-1"));
     }
 
+    private WorkOrderRepository newRepository(JdbcTemplate jdbcTemplate) {
+        when(topologyGraph.snapshot()).thenReturn(topology);
+        return new WorkOrderRepository(jdbcTemplate, objectMapper, nearestService, topologyGraph);
+    }
+
     private ObjectNode inspectionOrderWithManualImpactScope() {
         ObjectNode sourceOrder = objectMapper.createObjectNode();
         sourceOrder.put("id", "WO-INS-1");
@@ -21,13 +21,20 @@ measure_time_total() {
 count_features_for_layer() {
   local layer="$1"
   local total=0
+  local cursor=""
 
-  for page in $(seq 1 "$MAX_PAGES"); do
-    local url="${BACKEND_URL}/api/v1/features?layers=${layer}&visible=true&bbox=${BBOX}&limit=${PAGE_SIZE}&page=${page}"
-    local count
-    count=$(curl -s "$url" | node -e "const fs=require('fs');const d=JSON.parse(fs.readFileSync(0,'utf8'));process.stdout.write(String(Array.isArray(d.features)?d.features.length:0));")
+  # Follow nextCursor (keyset paging) so later pages cost the same as the first.
+  for _ in $(seq 1 "$MAX_PAGES"); do
+    local url="${BACKEND_URL}/api/v1/features?layers=${layer}&visible=true&bbox=${BBOX}&limit=${PAGE_SIZE}"
+    if [ -n "$cursor" ]; then
+      url="${url}&cursor=${cursor}"
+    fi
+    local page_info
+    page_info=$(curl -s "$url" | node -e "const fs=require('fs');const d=JSON.parse(fs.readFileSync(0,'utf8'));const n=Array.isArray(d.features)?d.features.length:0;process.stdout.write(n+' '+(d.nextCursor||''));")
+    local count="${page_info%% *}"
+    cursor="${page_info#* }"
     total=$((total + count))
-    if [ "$count" -lt "$PAGE_SIZE" ]; then
+    if [ -z "$cursor" ] || [ "$count" -lt "$PAGE_SIZE" ]; then
       break
     fi
   done